@@ -25,6 +25,20 @@ android {
             )
         }
     }
+    buildFeatures {
+        buildConfig = true
+    }
+    testOptions {
+        unitTests {
+            // Robolectric inflates the real layouts in the startup benchmark
+            isIncludeAndroidResources = true
+            all {
+                // Forward -Pstartup.* and -Pbenchmark.* to the tests, see StartupBenchmarkTest and Benchmarks
+                project.properties.filterKeys { key -> key.startsWith("startup.") || key.startsWith("benchmark.") }
+                    .forEach { (key, value) -> it.systemProperty(key, value.toString()) }
+            }
+        }
+    }
     compileOptions {
         sourceCompatibility = JavaVersion.VERSION_11
         targetCompatibility = JavaVersion.VERSION_11
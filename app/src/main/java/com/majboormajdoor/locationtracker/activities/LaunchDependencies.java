@@ -0,0 +1,48 @@
+package com.majboormajdoor.locationtracker.activities;
+
+import android.app.Activity;
+import android.content.Context;
+
+import com.majboormajdoor.locationtracker.billing.BillingManager;
+import com.majboormajdoor.locationtracker.services.ApiService;
+import com.majboormajdoor.locationtracker.services.CognitoAuthService;
+import com.majboormajdoor.locationtracker.services.StartupPrewarmer;
+
+/**
+ * Builds the services the launch screen talks to
+ * Startup measurements install a subclass handing out fakes with set latencies
+ */
+public class LaunchDependencies {
+
+    private static LaunchDependencies current = new LaunchDependencies();
+
+    public static synchronized LaunchDependencies get() {
+        return current;
+    }
+
+    /**
+     * Replace the services for launches that follow, null restores the real ones
+     */
+    public static synchronized void set(LaunchDependencies dependencies) {
+        current = dependencies != null ? dependencies : new LaunchDependencies();
+    }
+
+    public CognitoAuthService authService(Context context) {
+        return CognitoAuthService.getInstance(context);
+    }
+
+    public ApiService apiService(Context context) {
+        return new ApiService(context);
+    }
+
+    public BillingManager billingManager(Activity activity) {
+        return new BillingManager(activity, null);
+    }
+
+    /**
+     * @return the running prewarmer, or null when launches go without one
+     */
+    public StartupPrewarmer startPrewarmer(Context context) {
+        return StartupPrewarmer.start(context);
+    }
+}
@@ -1,10 +1,12 @@
 package com.majboormajdoor.locationtracker.activities;
 
 import android.app.Dialog;
+import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
+import android.content.IntentFilter;
 import android.content.pm.PackageManager;
+import android.os.Build;
 import android.os.Bundle;
 import android.util.Log;
 import android.widget.Button;
@@ -16,13 +18,26 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentTransaction;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
+import com.majboormajdoor.locationtracker.BuildConfig;
 import com.majboormajdoor.locationtracker.R;
 import com.majboormajdoor.locationtracker.billing.BillingManager;
 import com.majboormajdoor.locationtracker.constants.AppConstants;
 import com.majboormajdoor.locationtracker.fragments.CloudFragment;
 import com.majboormajdoor.locationtracker.fragments.HomeFragment;
+import com.majboormajdoor.locationtracker.logging.AppLog;
+import com.majboormajdoor.locationtracker.logging.LogRingBuffer;
+import com.majboormajdoor.locationtracker.metrics.Gauge;
+import com.majboormajdoor.locationtracker.metrics.LatencyHistogram;
+import com.majboormajdoor.locationtracker.metrics.MetricsRegistry;
 import com.majboormajdoor.locationtracker.services.CognitoAuthService;
 import com.majboormajdoor.locationtracker.utils.PermissionUtils;
+import com.majboormajdoor.locationtracker.utils.PreferenceManager;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Main activity with bottom navigation for home and cloud sections
@@ -30,26 +45,42 @@ import com.majboormajdoor.locationtracker.utils.PermissionUtils;
 public class MainActivity extends AppCompatActivity {
 
     public static final String TAG = "MainActivity";
-    private static final String PREF_FIRST_LAUNCH = "first_launch";
-    private static final String PREF_NAME = "LocationTrackerPrefs";
 
     private BottomNavigationView bottomNavigation;
     private HomeFragment homeFragment;
     private CloudFragment cloudFragment;
     private ImageButton btnInfo;
     private ImageButton btnSignOut;
-    private SharedPreferences sharedPreferences;
+    private PreferenceManager preferenceManager;
     private CognitoAuthService cognitoAuthService;
 
     private BillingManager billingManager;
 
+    // Launch phase, from onCreate to the first resume with the home fragment inflated
+    private final LatencyHistogram startupPhase = MetricsRegistry.getInstance().histogram(AppConstants.METRIC_STARTUP_MAIN);
+    private long startupPhaseStart;
+
+    // Status sent by the tracking service, which may be running in its own process
+    private final Gauge trackerPss = MetricsRegistry.getInstance().gauge(AppConstants.METRIC_TRACKER_PSS);
+    private final BroadcastReceiver trackerStatusReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            long pssKb = intent.getLongExtra(AppConstants.EXTRA_TRACKER_PSS_KB, 0L);
+            trackerPss.set(pssKb);
+            AppLog.d(TAG, "Tracker PSS {} kB, {} pending, separate process: {}", pssKb,
+                    intent.getIntExtra(AppConstants.EXTRA_TRACKER_PENDING, 0),
+                    intent.getBooleanExtra(AppConstants.EXTRA_TRACKER_LEAN, false));
+        }
+    };
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        startupPhaseStart = startupPhase.start();
         setContentView(R.layout.activity_main);
 
-        // Initialize shared preferences
-        sharedPreferences = getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+        // Initialize preferences
+        preferenceManager = PreferenceManager.getInstance(getApplicationContext());
 
         // Initialize CognitoAuthService
         cognitoAuthService = CognitoAuthService.getInstance(getApplicationContext());
@@ -74,6 +105,32 @@ public class MainActivity extends AppCompatActivity {
         showFirstLaunchDialog();
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        IntentFilter filter = new IntentFilter(AppConstants.ACTION_TRACKER_STATUS);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            registerReceiver(trackerStatusReceiver, filter, Context.RECEIVER_NOT_EXPORTED);
+        } else {
+            registerReceiver(trackerStatusReceiver, filter);
+        }
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        unregisterReceiver(trackerStatusReceiver);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        if (startupPhaseStart != 0L) {
+            startupPhase.recordSince(startupPhaseStart);
+            startupPhaseStart = 0L;
+        }
+    }
+
     /**
      * Initialize views
      */
@@ -151,7 +208,40 @@ public class MainActivity extends AppCompatActivity {
     private void setupInfoButton() {
         if (btnInfo != null) {
             btnInfo.setOnClickListener(v -> showInfoDialog());
+            if (BuildConfig.DEBUG) {
+                btnInfo.setOnLongClickListener(v -> {
+                    showMetricsDialog();
+                    return true;
+                });
+            }
+        }
+    }
+
+    /**
+     * Debug builds only: dump pipeline metrics and the log ring buffer to files and show the metrics
+     */
+    private void showMetricsDialog() {
+        String json = MetricsRegistry.getInstance().snapshot().toJson();
+        String title = "Metrics";
+        try {
+            File directory = new File(getFilesDir(), "metrics");
+            File file = MetricsRegistry.getInstance().writeSnapshot(directory);
+            LogRingBuffer ringBuffer = AppLog.getRingBuffer();
+            if (ringBuffer != null) {
+                try (Writer writer = new OutputStreamWriter(new FileOutputStream(
+                        new File(directory, AppConstants.LOG_DUMP_FILE_NAME)), StandardCharsets.UTF_8)) {
+                    ringBuffer.dump(writer);
+                }
+            }
+            title = "Metrics (" + file.getAbsolutePath() + ")";
+        } catch (Exception e) {
+            Log.e(TAG, "Error writing metrics snapshot: " + e.getMessage());
         }
+        new androidx.appcompat.app.AlertDialog.Builder(this)
+                .setTitle(title)
+                .setMessage(json)
+                .setPositiveButton("Close", (dialog, which) -> dialog.dismiss())
+                .show();
     }
 
     /**
@@ -248,10 +338,10 @@ public class MainActivity extends AppCompatActivity {
      * Show info dialog on first launch
      */
     private void showFirstLaunchDialog() {
-        boolean isFirstLaunch = sharedPreferences.getBoolean(PREF_FIRST_LAUNCH, true);
+        boolean isFirstLaunch = preferenceManager.getSettings().showInfoOnLaunch;
         if (isFirstLaunch) {
             // Mark first launch as completed
-            sharedPreferences.edit().putBoolean(PREF_FIRST_LAUNCH, false).apply();
+            preferenceManager.edit().setShowInfoOnLaunch(false).apply();
 
             // Show info dialog after a short delay to ensure UI is ready
             btnInfo.postDelayed(this::showInfoDialog, 500);
@@ -3,6 +3,8 @@ package com.majboormajdoor.locationtracker.activities;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Process;
+import android.os.SystemClock;
 import android.text.Editable;
 import android.text.TextWatcher;
 import android.util.Log;
@@ -16,10 +18,16 @@ import com.google.android.material.textfield.TextInputEditText;
 import com.google.android.material.textfield.TextInputLayout;
 import com.majboormajdoor.locationtracker.R;
 import com.majboormajdoor.locationtracker.billing.BillingManager;
+import com.majboormajdoor.locationtracker.billing.EntitlementResolver;
+import com.majboormajdoor.locationtracker.billing.EntitlementVerdict;
+import com.majboormajdoor.locationtracker.constants.AppConstants;
 import com.majboormajdoor.locationtracker.dto.User;
+import com.majboormajdoor.locationtracker.metrics.LatencyHistogram;
+import com.majboormajdoor.locationtracker.metrics.MetricsRegistry;
 import com.majboormajdoor.locationtracker.services.ApiService;
 import com.majboormajdoor.locationtracker.services.CognitoAuthService;
 import com.majboormajdoor.locationtracker.services.GoogleSignInService;
+import com.majboormajdoor.locationtracker.services.StartupPrewarmer;
 
 /**
  * Authentication activity that handles user sign-in and sign-up
@@ -41,9 +49,14 @@ public class PinLockActivity extends AppCompatActivity {
     private GoogleSignInService googleSignInService;
 
     private BillingManager billingManager;
+    private EntitlementResolver entitlementResolver;
 
     private ApiService apiService;
 
+    private StartupPrewarmer prewarmer;
+    // Set once this screen hands over to the app, which then uses what was pre-warmed
+    private boolean handedOver;
+
     // State Management
     private enum AuthMode {
         SIGN_IN,
@@ -56,13 +69,29 @@ public class PinLockActivity extends AppCompatActivity {
     private AuthMode currentMode = AuthMode.SIGN_IN;
     private String pendingUsername = "";
 
+    // Launch timing, from this screen's creation to leaving it
+    private final LatencyHistogram launchToMain = MetricsRegistry.getInstance().histogram(AppConstants.METRIC_LAUNCH_TO_MAIN);
+    private long launchStartNanos;
+
+    // Launch phases, see LaunchDependencies for running them against fakes
+    private final LatencyHistogram contentViewPhase = MetricsRegistry.getInstance().histogram(AppConstants.METRIC_STARTUP_CONTENT_VIEW);
+    private final LatencyHistogram servicesPhase = MetricsRegistry.getInstance().histogram(AppConstants.METRIC_STARTUP_SERVICES);
+    private final LatencyHistogram authCheckPhase = MetricsRegistry.getInstance().histogram(AppConstants.METRIC_STARTUP_AUTH_CHECK);
+    private final LatencyHistogram entitlementPhase = MetricsRegistry.getInstance().histogram(AppConstants.METRIC_STARTUP_ENTITLEMENT);
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        launchStartNanos = System.nanoTime();
+        long phaseStart = contentViewPhase.start();
         setContentView(R.layout.activity_pin_lock);
+        contentViewPhase.recordSince(phaseStart);
 
         initializeViews();
+        phaseStart = servicesPhase.start();
         initializeServices();
+        servicesPhase.recordSince(phaseStart);
+        prewarmer = LaunchDependencies.get().startPrewarmer(getApplicationContext());
         setupClickListeners();
         setupBackPressHandling();
 
@@ -101,18 +130,26 @@ public class PinLockActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        billingManager.endConnection();
+        if (prewarmer != null && !handedOver && !isChangingConfigurations()) {
+            prewarmer.cancel();
+        }
+        if (entitlementResolver != null) {
+            // A cached verdict lets this screen go before the Play check has answered
+            entitlementResolver.runWhenSettled(billingManager::endConnection);
+        } else {
+            billingManager.endConnection();
+        }
     }
 
     /**
      * Initialize authentication services
      */
     private void initializeServices() {
-        apiService = new ApiService(getApplicationContext());
-        cognitoAuthService = CognitoAuthService.getInstance(getApplicationContext());
+        LaunchDependencies dependencies = LaunchDependencies.get();
+        cognitoAuthService = dependencies.authService(getApplicationContext());
         googleSignInService = GoogleSignInService.getInstance();
-        apiService = new ApiService(getApplicationContext());
-        billingManager = new BillingManager(this, null);
+        apiService = dependencies.apiService(getApplicationContext());
+        billingManager = dependencies.billingManager(this);
 
     }
 
@@ -614,14 +651,16 @@ public class PinLockActivity extends AppCompatActivity {
      * Check if user is already authenticated
      */
     private void checkExistingAuth(Context context) {
-
+        long phaseStart = authCheckPhase.start();
         cognitoAuthService.isSignedIn(new CognitoAuthService.AuthCallback() {
             @Override
             public void onSuccess(String message) {
+                authCheckPhase.recordSince(phaseStart);
                 validateSubscriptionOnPlayStoreAndServer();
             }
             @Override
             public void onError(String error) {
+                authCheckPhase.recordSince(phaseStart);
                 // User not signed in, stay on authentication screen
                 Log.d(TAG, "User not signed in: " + error);
             }
@@ -633,28 +672,46 @@ public class PinLockActivity extends AppCompatActivity {
         } , context);
     }
 
+    /**
+     * Play and server checks run together, a signed cached verdict answers right away when fresh
+     */
     private void validateSubscriptionOnPlayStoreAndServer() {
-        billingManager.checkSubscriptionStatus(isActive -> {
-            if(isActive){
-                navigateToMainActivity();
-            }else{
-                apiService.checkSubscription(getApplicationContext(), new ApiService.UserCallback() {
+        Context context = getApplicationContext();
+        long phaseStart = entitlementPhase.start();
+        entitlementResolver = EntitlementResolver.create(context,
+                billingManager::checkSubscriptionStatus,
+                done -> apiService.checkSubscription(context, new ApiService.UserCallback() {
                     @Override
                     public void onSubscriptionCheckSuccess(User user) {
-                        if (userHasSubscription(user.getSubEndDate())) {
-                            navigateToMainActivity();
-                        } else {
-                            navigateToSubActivity();
-                        }
+                        done.onResult(userHasSubscription(user.getSubEndDate()));
                     }
 
                     @Override
                     public void onSubscriptionCheckError(String error) {
-                        navigateToSubActivity();
+                        done.onResult(false);
                     }
-                });
+                }));
+        entitlementResolver.resolve(verdict -> runOnUiThread(() -> {
+            if (isFinishing() || isDestroyed()) {
+                return;
             }
-        });
+            entitlementPhase.recordSince(phaseStart);
+            reportLaunchTime(verdict);
+            if (verdict.entitled) {
+                navigateToMainActivity();
+            } else {
+                navigateToSubActivity();
+            }
+        }));
+    }
+
+    private void reportLaunchTime(EntitlementVerdict verdict) {
+        long elapsedNanos = System.nanoTime() - launchStartNanos;
+        if (verdict.entitled) {
+            launchToMain.recordNanos(elapsedNanos);
+        }
+        Log.i(TAG, "Entitlement from " + verdict.source + " after " + elapsedNanos / 1_000_000 + " ms, "
+                + (SystemClock.elapsedRealtime() - Process.getStartElapsedRealtime()) + " ms since process start");
     }
 
     /**
@@ -681,6 +738,7 @@ public class PinLockActivity extends AppCompatActivity {
      * Navigate to main activity
      */
     private void navigateToMainActivity() {
+        handedOver = true;
         Intent intent = new Intent(this, MainActivity.class);
         startActivity(intent);
         finish();
@@ -688,6 +746,7 @@ public class PinLockActivity extends AppCompatActivity {
     }
 
     private void navigateToSubActivity() {
+        handedOver = true;
         Intent intent = new Intent(this, SubscriptionActivity.class);
         startActivity(intent);
         finish();
@@ -14,6 +14,7 @@ import com.android.billingclient.api.ProductDetails;
 import com.android.billingclient.api.Purchase;
 import com.majboormajdoor.locationtracker.R;
 import com.majboormajdoor.locationtracker.billing.BillingManager;
+import com.majboormajdoor.locationtracker.billing.EntitlementCache;
 import com.majboormajdoor.locationtracker.services.ApiService;
 import com.majboormajdoor.locationtracker.utils.PreferenceManager;
 
@@ -31,6 +32,18 @@ public class SubscriptionActivity extends AppCompatActivity implements BillingMa
 
     private ApiService apiService;
 
+    // Leaves the paywall as soon as any purchase query sees the subscription
+    private final EntitlementCache.Observer entitlementObserver = purchases -> {
+        if (BillingManager.hasSubscription(purchases, true)) {
+            runOnUiThread(() -> {
+                if (!isFinishing()) {
+                    PreferenceManager.getInstance(getApplicationContext()).setUserSubscriptionStatus(true);
+                    navigateToMainActivity();
+                }
+            });
+        }
+    };
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -54,6 +67,7 @@ public class SubscriptionActivity extends AppCompatActivity implements BillingMa
     }
 
     private void initBilling() {
+        EntitlementCache.getInstance().addObserver(entitlementObserver);
         billingManager = new BillingManager(this, this);
     }
 
@@ -134,6 +148,9 @@ public class SubscriptionActivity extends AppCompatActivity implements BillingMa
         // Check if user already has an active subscription
         billingManager.queryActiveSubscription(isActive -> {
             runOnUiThread(() -> {
+                if (isFinishing()) {
+                    return;
+                }
                 if (isActive) {
                     PreferenceManager.getInstance(getApplicationContext()).setUserSubscriptionStatus(true);
                     navigateToMainActivity();
@@ -161,6 +178,7 @@ public class SubscriptionActivity extends AppCompatActivity implements BillingMa
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        EntitlementCache.getInstance().removeObserver(entitlementObserver);
         if (billingManager != null) {
             billingManager.endConnection();
         }
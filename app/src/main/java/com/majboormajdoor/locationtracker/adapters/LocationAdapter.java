@@ -14,6 +14,7 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.majboormajdoor.locationtracker.R;
 import com.majboormajdoor.locationtracker.dto.Location;
 import com.majboormajdoor.locationtracker.fragments.CloudFragment;
+import com.majboormajdoor.locationtracker.storage.SortedMerge;
 import com.majboormajdoor.locationtracker.utils.CacheLocations;
 
 import java.util.ArrayList;
@@ -21,7 +22,6 @@ import java.util.List;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
-import java.util.stream.Collectors;
 
 /**
  * RecyclerView adapter for displaying location history
@@ -60,42 +60,22 @@ public class LocationAdapter extends RecyclerView.Adapter<LocationAdapter.Locati
 
     public void updateLocations(List<Location> newLocations, CloudFragment.ShowContentCallback callback) {
         this.cacher.cacheLocations(newLocations);
-        this.locationList.clear();
-        for (Location loc : this.cacher.getCachedLocations().values()) {
-            this.locationList.add(loc);
-        }
-        this.locationList = this.locationList.stream().sorted((l1, l2) -> {
-            String t1 = l1.getInsertionTimestamp();
-            String t2 = l2.getInsertionTimestamp();
-            if (t1 == null)
-                t1 = "";
-            if (t2 == null)
-                t2 = "";
-            return t2.compareTo(t1);
-        }).collect(Collectors.toList());
+        // The cache returns time order already, so newest first is a reversal rather than a sort
+        this.locationList = SortedMerge.newestFirst(this.cacher.getRecentLocations());
         if (this.locationList.isEmpty()) {
             callback.showEmptyState();
         }
         notifyDataSetChanged();
     }
-    public void updateFilteredLocations(List<Location> newLocations, CloudFragment.ShowContentCallback callback) {
 
-        this.locationList = newLocations.stream().sorted((l1, l2) -> {
-            String t1 = l1.getInsertionTimestamp();
-            String t2 = l2.getInsertionTimestamp();
-            if (t1 == null)
-                t1 = "";
-            if (t2 == null)
-                t2 = "";
-            return t2.compareTo(t1);
-        }).collect(Collectors.toList());
+    public void updateFilteredLocations(List<Location> newLocations, CloudFragment.ShowContentCallback callback) {
+        this.locationList = SortedMerge.newestFirst(newLocations);
         if (this.locationList.isEmpty()) {
             callback.showEmptyState();
         }
         notifyDataSetChanged();
     }
 
-
     public void clearLocations() {
         this.locationList.clear();
         notifyDataSetChanged();
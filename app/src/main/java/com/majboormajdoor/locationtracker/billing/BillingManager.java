@@ -17,12 +17,14 @@ import com.android.billingclient.api.QueryProductDetailsParams;
 import com.android.billingclient.api.QueryPurchasesParams;
 import com.android.billingclient.api.AcknowledgePurchaseParams;
 import com.android.billingclient.api.PendingPurchasesParams;
+import com.majboormajdoor.locationtracker.constants.AppConstants;
 import com.majboormajdoor.locationtracker.dto.SubscriptionRequest;
 import com.majboormajdoor.locationtracker.services.ApiService;
 import com.majboormajdoor.locationtracker.utils.PreferenceManager;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 public class BillingManager {
     private static final String TAG = "BillingManager";
@@ -33,6 +35,13 @@ public class BillingManager {
     private BillingListener billingListener;
     private ProductDetails subscriptionProductDetails;
     private ApiService apiService;
+    // Shared with every other manager in the process
+    private final EntitlementCache entitlements = EntitlementCache.getInstance();
+    // One instance, so the cache can tell this manager's queries apart when its connection ends
+    private final EntitlementCache.PurchaseQuery playQuery = this::queryPlayPurchases;
+    // Status checks asked for before the first connection attempt finished
+    private final List<SubscriptionStatusCallback> pendingStatusChecks = new ArrayList<>();
+    private boolean setupFinished;
 
     public interface BillingListener {
         void onBillingSetupFinished(BillingResult billingResult);
@@ -66,6 +75,14 @@ public class BillingManager {
         startConnection();
     }
 
+    /**
+     * For subclasses standing in for Play, no billing client is created and status checks answer at once
+     */
+    protected BillingManager(Context context) {
+        this.context = context;
+        setupFinished = true;
+    }
+
     private void startConnection() {
         billingClient.startConnection(new BillingClientStateListener() {
             @Override
@@ -79,6 +96,15 @@ public class BillingManager {
                 if (billingListener != null) {
                     billingListener.onBillingSetupFinished(billingResult);
                 }
+                List<SubscriptionStatusCallback> pending;
+                synchronized (pendingStatusChecks) {
+                    setupFinished = true;
+                    pending = new ArrayList<>(pendingStatusChecks);
+                    pendingStatusChecks.clear();
+                }
+                for (SubscriptionStatusCallback callback : pending) {
+                    checkSubscriptionStatus(callback);
+                }
             }
 
             @Override
@@ -109,6 +135,7 @@ public class BillingManager {
                 if (billingResult.getResponseCode() == BillingClient.BillingResponseCode.OK) {
                     if (productDetailsList != null && !productDetailsList.getProductDetailsList().isEmpty()) {
                         subscriptionProductDetails = productDetailsList.getProductDetailsList().get(0);
+                        entitlements.setProductDetails(subscriptionProductDetails);
                         Log.d(TAG, "Successfully loaded product details for: " + SUBSCRIPTION_PRODUCT_ID);
                     } else {
                         Log.w(TAG, "No product details found for product ID: " + SUBSCRIPTION_PRODUCT_ID +
@@ -130,6 +157,22 @@ public class BillingManager {
             return;
         }
 
+        entitlements.get(AppConstants.BILLING_PURCHASES_MAX_AGE_MS, playQuery, purchasesList -> {
+            if (purchasesList != null) {
+                handlePurchases(purchasesList);
+            }
+        });
+    }
+
+    /**
+     * The one place that asks Play for purchases, only ever run through the entitlement cache
+     */
+    private void queryPlayPurchases(Consumer<List<Purchase>> done) {
+        if (billingClient == null || !billingClient.isReady()) {
+            done.accept(null);
+            return;
+        }
+
         QueryPurchasesParams params = QueryPurchasesParams.newBuilder()
             .setProductType(BillingClient.ProductType.SUBS)
             .build();
@@ -137,13 +180,13 @@ public class BillingManager {
         billingClient.queryPurchasesAsync(params,
             (billingResult, purchasesList) -> {
                 Log.d(TAG, "Query purchases result: " + billingResult.getDebugMessage());
-                if (billingResult.getResponseCode() == BillingClient.BillingResponseCode.OK) {
-                    handlePurchases(purchasesList);
-                }
+                boolean ok = billingResult.getResponseCode() == BillingClient.BillingResponseCode.OK && purchasesList != null;
+                done.accept(ok ? purchasesList : null);
             });
     }
 
     public void launchBillingFlow(Activity activity) {
+        ProductDetails subscriptionProductDetails = getSubscriptionProductDetails();
         if (subscriptionProductDetails == null) {
             Log.w(TAG, "Product details not available");
             return;
@@ -178,6 +221,8 @@ public class BillingManager {
 
     private void handlePurchasesUpdated(BillingResult billingResult, List<Purchase> purchases) {
         if (billingResult.getResponseCode() == BillingClient.BillingResponseCode.OK && purchases != null) {
+            // Play pushes the change, so cached answers stay current without polling
+            entitlements.onPurchasesUpdated(purchases);
             for (Purchase purchase : purchases) {
                 handlePurchase(purchase);
             }
@@ -220,6 +265,10 @@ public class BillingManager {
 
         billingClient.acknowledgePurchase(acknowledgePurchaseParams, billingResult -> {
             Log.d(TAG, "Acknowledge purchase result: " + billingResult.getDebugMessage());
+            if (billingResult.getResponseCode() == BillingClient.BillingResponseCode.OK) {
+                // Let observers see the acknowledged state
+                entitlements.refresh(playQuery, refreshed -> { });
+            }
             if (billingListener != null) {
                 billingListener.onPurchaseAcknowledged(billingResult);
             }
@@ -235,11 +284,24 @@ public class BillingManager {
     }
 
     public void grantPremiumAccess(Purchase purchase) {
+        boolean acknowledged = purchase.isAcknowledged();
+        if (acknowledged) {
+            PreferenceManager.getInstance(context).setUserSubscriptionStatus(true);
+        }
+        // Acknowledged purchases are still recorded once per account and process, a new account
+        // or a reinstall on the same Play account is otherwise never known to the server
+        String userId = PreferenceManager.getInstance(context).getUserId();
+        String token = purchase.getPurchaseToken();
+        String grant = userId + ":" + token;
+        if (!entitlements.markGranted(grant)) {
+            Log.d(TAG, "Purchase already being recorded: " + token);
+            return;
+        }
         Log.d(TAG, "Granting premium access to user");
 
         SubscriptionRequest request = new SubscriptionRequest();
         request.setSubType("monthly");
-        request.setUserId(PreferenceManager.getInstance(context).getUserId());
+        request.setUserId(userId);
         apiService.createSubscription(request, new ApiService.ApiCallback() {
             @Override
             public void onSuccess(String message) {
@@ -253,36 +315,50 @@ public class BillingManager {
             @Override
             public void onError(String error) {
                 Log.i(TAG, "Subscription not recorded on server: ");
-                PreferenceManager.getInstance(context).setUserSubscriptionStatus(false);
+                entitlements.unmarkGranted(grant);
+                if (!acknowledged) {
+                    PreferenceManager.getInstance(context).setUserSubscriptionStatus(false);
+                }
             }
         });
 
     }
 
+    /**
+     * Check if user has an active subscription
+     * Called while the client is still connecting, the answer waits for the connection
+     */
     public void checkSubscriptionStatus(SubscriptionStatusCallback callback) {
-        // Check if user has an active subscription
-        if (!billingClient.isReady()) {
+        if (!isReady()) {
+            synchronized (pendingStatusChecks) {
+                if (!setupFinished) {
+                    pendingStatusChecks.add(callback);
+                    return;
+                }
+            }
             callback.onResult(false);
             return;
         }
 
-        QueryPurchasesParams params = QueryPurchasesParams.newBuilder()
-            .setProductType(BillingClient.ProductType.SUBS)
-            .build();
+        entitlements.get(AppConstants.BILLING_PURCHASES_MAX_AGE_MS, playQuery,
+            purchases -> callback.onResult(hasSubscription(purchases, false)));
+    }
 
-        billingClient.queryPurchasesAsync(params,
-            (result, purchases) -> {
-                if (result.getResponseCode() == BillingClient.BillingResponseCode.OK) {
-                    for (Purchase purchase : purchases) {
-                        if (purchase.getProducts().contains(SUBSCRIPTION_PRODUCT_ID) &&
-                            purchase.getPurchaseState() == Purchase.PurchaseState.PURCHASED) {
-                            callback.onResult(true);
-                            return;
-                        }
-                    }
-                }
-                callback.onResult(false);
-            });
+    /**
+     * Whether the list holds a purchased subscription, acknowledged too if asked
+     */
+    public static boolean hasSubscription(List<Purchase> purchases, boolean requireAcknowledged) {
+        if (purchases == null) {
+            return false;
+        }
+        for (Purchase purchase : purchases) {
+            if (purchase.getProducts().contains(SUBSCRIPTION_PRODUCT_ID) &&
+                purchase.getPurchaseState() == Purchase.PurchaseState.PURCHASED &&
+                (!requireAcknowledged || purchase.isAcknowledged())) {
+                return true;
+            }
+        }
+        return false;
     }
 
     // Add callback interface for subscription status
@@ -297,28 +373,13 @@ public class BillingManager {
             return;
         }
 
-        QueryPurchasesParams params = QueryPurchasesParams.newBuilder()
-            .setProductType(BillingClient.ProductType.SUBS)
-            .build();
-
-        billingClient.queryPurchasesAsync(params, (billingResult, purchasesList) -> {
-            boolean isActive = false;
-            if (billingResult.getResponseCode() == BillingClient.BillingResponseCode.OK && purchasesList != null) {
-                for (Purchase purchase : purchasesList) {
-                    List<String> productIds = purchase.getProducts();
-                    if (productIds.contains(SUBSCRIPTION_PRODUCT_ID) &&
-                        purchase.getPurchaseState() == Purchase.PurchaseState.PURCHASED &&
-                        purchase.isAcknowledged()) {
-                        isActive = true;
-                        break;
-                    }
-                }
-            }
-            callback.onResult(isActive);
-        });
+        entitlements.get(AppConstants.BILLING_PURCHASES_MAX_AGE_MS, playQuery,
+            purchasesList -> callback.onResult(hasSubscription(purchasesList, true)));
     }
 
     public void endConnection() {
+        // A query on this client may never answer once it disconnects
+        entitlements.abandon(playQuery);
         if (billingClient != null && billingClient.isReady()) {
             billingClient.endConnection();
         }
@@ -329,10 +390,11 @@ public class BillingManager {
     }
 
     public ProductDetails getSubscriptionProductDetails() {
-        return subscriptionProductDetails;
+        return subscriptionProductDetails != null ? subscriptionProductDetails : entitlements.getProductDetails();
     }
 
     public String getSubscriptionPrice() {
+        ProductDetails subscriptionProductDetails = getSubscriptionProductDetails();
         if (subscriptionProductDetails != null &&
             subscriptionProductDetails.getSubscriptionOfferDetails() != null &&
             !subscriptionProductDetails.getSubscriptionOfferDetails().isEmpty()) {
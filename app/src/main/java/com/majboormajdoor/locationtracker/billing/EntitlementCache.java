@@ -0,0 +1,260 @@
+package com.majboormajdoor.locationtracker.billing;
+
+import com.android.billingclient.api.ProductDetails;
+import com.android.billingclient.api.Purchase;
+import com.majboormajdoor.locationtracker.constants.AppConstants;
+import com.majboormajdoor.locationtracker.logging.AppLog;
+import com.majboormajdoor.locationtracker.metrics.Counter;
+import com.majboormajdoor.locationtracker.metrics.MetricsRegistry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Process-wide view of the user's Play purchases and the subscription product
+ *
+ * Every {@link BillingManager} reads purchases through here. Callers asking while a query is
+ * in flight join it instead of starting another, a recent enough list is answered without
+ * asking Play at all, and purchases Play pushes through onPurchasesUpdated are merged in as
+ * they arrive. A query that does not answer within {@link AppConstants#BILLING_QUERY_TIMEOUT_MS},
+ * or whose client ended its connection, fails its waiters so the next caller asks again
+ */
+public final class EntitlementCache {
+
+    /**
+     * Notified after the purchase list changed, on the thread that changed it
+     */
+    public interface Observer {
+        void onPurchasesChanged(List<Purchase> purchases);
+    }
+
+    /**
+     * One Play purchase query, reporting the list or null when it failed
+     */
+    public interface PurchaseQuery {
+        void run(Consumer<List<Purchase>> done);
+    }
+
+    private static final String TAG = "EntitlementCache";
+    private static final EntitlementCache instance = new EntitlementCache();
+
+    private static final ScheduledExecutorService timeouts = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "entitlement-cache-timeout");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private List<Purchase> purchases;
+    private long loadedAtMillis;
+    private ProductDetails productDetails;
+    // Identifies the query in flight, answers for any other one are stale
+    private Object inFlight;
+    private PurchaseQuery inFlightQuery;
+    private ScheduledFuture<?> queryTimeout;
+    private final List<Consumer<List<Purchase>>> waiters = new ArrayList<>();
+    private final Set<String> grantedTokens = new HashSet<>();
+    private final List<Observer> observers = new CopyOnWriteArrayList<>();
+
+    private final Counter queries = MetricsRegistry.getInstance().counter(AppConstants.METRIC_BILLING_QUERY);
+    private final Counter joined = MetricsRegistry.getInstance().counter(AppConstants.METRIC_BILLING_QUERY_JOINED);
+    private final Counter hits = MetricsRegistry.getInstance().counter(AppConstants.METRIC_BILLING_CACHE_HIT);
+
+    EntitlementCache() {
+    }
+
+    public static EntitlementCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Purchases no older than maxAgeMillis, from memory or from one shared query
+     * A failed query answers null
+     */
+    public void get(long maxAgeMillis, PurchaseQuery query, Consumer<List<Purchase>> callback) {
+        List<Purchase> cached = null;
+        Object flight = null;
+        synchronized (this) {
+            if (purchases != null && maxAgeMillis >= 0 && System.currentTimeMillis() - loadedAtMillis <= maxAgeMillis) {
+                cached = purchases;
+            } else {
+                waiters.add(callback);
+                if (inFlight != null) {
+                    joined.inc();
+                    return;
+                }
+                flight = new Object();
+                inFlight = flight;
+                inFlightQuery = query;
+                Object timedOut = flight;
+                queryTimeout = timeouts.schedule(() -> {
+                    AppLog.w(TAG, "Purchase query unanswered after {} ms", AppConstants.BILLING_QUERY_TIMEOUT_MS);
+                    onQueryResult(timedOut, null);
+                }, AppConstants.BILLING_QUERY_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (cached != null) {
+            hits.inc();
+            callback.accept(cached);
+            return;
+        }
+        queries.inc();
+        Object started = flight;
+        query.run(result -> onQueryResult(started, result));
+    }
+
+    /**
+     * The client behind query is going away, fail anyone waiting on its answer
+     */
+    public void abandon(PurchaseQuery query) {
+        Object flight;
+        synchronized (this) {
+            if (inFlight == null || inFlightQuery != query) {
+                return;
+            }
+            flight = inFlight;
+        }
+        onQueryResult(flight, null);
+    }
+
+    /**
+     * Always ask Play, still joining a query that is already in flight
+     */
+    public void refresh(PurchaseQuery query, Consumer<List<Purchase>> callback) {
+        get(-1, query, callback);
+    }
+
+    /**
+     * Purchases Play pushed for a purchase flow, merged by purchase token
+     */
+    public void onPurchasesUpdated(List<Purchase> updated) {
+        List<Purchase> merged;
+        synchronized (this) {
+            Map<String, Purchase> byToken = new LinkedHashMap<>();
+            if (purchases != null) {
+                for (Purchase purchase : purchases) {
+                    byToken.put(purchase.getPurchaseToken(), purchase);
+                }
+            }
+            for (Purchase purchase : updated) {
+                byToken.put(purchase.getPurchaseToken(), purchase);
+            }
+            merged = Collections.unmodifiableList(new ArrayList<>(byToken.values()));
+            if (!replace(merged, purchases == null ? 0 : loadedAtMillis)) {
+                return;
+            }
+        }
+        notifyObservers(merged);
+    }
+
+    /**
+     * Last known purchases, null before the first successful query
+     */
+    public synchronized List<Purchase> getPurchases() {
+        return purchases;
+    }
+
+    public synchronized ProductDetails getProductDetails() {
+        return productDetails;
+    }
+
+    public synchronized void setProductDetails(ProductDetails productDetails) {
+        this.productDetails = productDetails;
+    }
+
+    /**
+     * Claim a purchase for recording on the server, false if this process already did
+     *
+     * @param grant the purchase token, scoped to the account it is recorded for
+     */
+    public synchronized boolean markGranted(String grant) {
+        return grantedTokens.add(grant);
+    }
+
+    /**
+     * Recording failed, let the next sighting of the purchase try again
+     */
+    public synchronized void unmarkGranted(String grant) {
+        grantedTokens.remove(grant);
+    }
+
+    public void addObserver(Observer observer) {
+        observers.add(observer);
+    }
+
+    public void removeObserver(Observer observer) {
+        observers.remove(observer);
+    }
+
+    /**
+     * Forget everything, for a user signing out
+     */
+    public synchronized void clear() {
+        purchases = null;
+        loadedAtMillis = 0;
+        productDetails = null;
+        grantedTokens.clear();
+    }
+
+    private void onQueryResult(Object flight, List<Purchase> result) {
+        List<Consumer<List<Purchase>>> callbacks;
+        List<Purchase> current = null;
+        boolean changed = false;
+        synchronized (this) {
+            if (inFlight != flight) {
+                // Timed out or abandoned already, its waiters have their answer
+                return;
+            }
+            inFlight = null;
+            inFlightQuery = null;
+            queryTimeout.cancel(false);
+            callbacks = new ArrayList<>(waiters);
+            waiters.clear();
+            if (result != null) {
+                current = Collections.unmodifiableList(new ArrayList<>(result));
+                changed = replace(current, System.currentTimeMillis());
+            }
+        }
+        for (Consumer<List<Purchase>> callback : callbacks) {
+            callback.accept(current);
+        }
+        if (changed) {
+            notifyObservers(current);
+        }
+    }
+
+    /**
+     * Install a new list, true when it differs from the old one in any token, state or acknowledgement
+     */
+    private boolean replace(List<Purchase> next, long loadedAt) {
+        boolean changed = purchases == null || !stateOf(purchases).equals(stateOf(next));
+        purchases = next;
+        loadedAtMillis = loadedAt;
+        return changed;
+    }
+
+    private static Map<String, String> stateOf(List<Purchase> list) {
+        Map<String, String> state = new HashMap<>();
+        for (Purchase purchase : list) {
+            state.put(purchase.getPurchaseToken(), purchase.getPurchaseState() + ":" + purchase.isAcknowledged());
+        }
+        return state;
+    }
+
+    private void notifyObservers(List<Purchase> current) {
+        for (Observer observer : observers) {
+            observer.onPurchasesChanged(current);
+        }
+    }
+}
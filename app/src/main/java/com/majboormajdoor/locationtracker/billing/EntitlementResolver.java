@@ -0,0 +1,324 @@
+package com.majboormajdoor.locationtracker.billing;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+
+import com.majboormajdoor.locationtracker.constants.AppConstants;
+import com.majboormajdoor.locationtracker.logging.AppLog;
+import com.majboormajdoor.locationtracker.utils.PreferenceManager;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+
+/**
+ * Decides at launch whether the user is entitled to the app
+ *
+ * The Play purchase query and the server check run concurrently and the first positive answer
+ * wins; the user is only sent to the paywall once both said no or the timeout passed. A fresh
+ * positive verdict from an earlier launch is served straight away while both checks revalidate
+ * in the background. One resolver answers one {@link #resolve} call
+ *
+ * The Keystore key and the cached verdict are loaded and signed on a background thread, the
+ * Keystore is binder IPC and the first launch also generates the key
+ */
+public class EntitlementResolver {
+    private static final String TAG = "EntitlementResolver";
+    private static final String KEY_VERDICT = "verdict";
+    private static final String KEYSTORE = "AndroidKeyStore";
+
+    // Shared by every resolver, holds the pending timeouts and the Keystore work
+    private static final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "entitlement");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * One asynchronous source of truth, reporting false on any error
+     */
+    public interface Check {
+        void start(BillingManager.SubscriptionStatusCallback callback);
+    }
+
+    /**
+     * Called once, on whichever thread produced the verdict
+     */
+    public interface Callback {
+        void onVerdict(EntitlementVerdict verdict);
+    }
+
+    /**
+     * Persistence for the signed verdict
+     */
+    public interface VerdictStore {
+        String load();
+
+        void save(String encoded);
+
+        void clear();
+    }
+
+    private final Check play;
+    private final Check server;
+    private final VerdictStore store;
+    private final Supplier<SecretKey> keySource;
+    private final Executor keyExecutor;
+    private final String userId;
+    private final long ttlMillis;
+    private final long timeoutMillis;
+
+    private Callback callback;
+    private boolean started;
+    private boolean delivered;
+    private boolean settled;
+    private boolean playDone;
+    private boolean serverDone;
+    private ScheduledFuture<?> timeout;
+    private final List<Runnable> whenSettled = new ArrayList<>();
+    // Only touched from keyExecutor
+    private SecretKey key;
+    private boolean keyLoaded;
+
+    private static SecretKey verdictKey;
+    private static boolean verdictKeyLoaded;
+
+    /**
+     * @param key signs cached verdicts, null disables the cache
+     */
+    public EntitlementResolver(Check play, Check server, VerdictStore store, SecretKey key, String userId,
+                               long ttlMillis, long timeoutMillis) {
+        this(play, server, store, () -> key, Runnable::run, userId, ttlMillis, timeoutMillis);
+    }
+
+    /**
+     * @param keySource   loads the signing key, called once on keyExecutor
+     * @param keyExecutor runs the key, cache load and signing work in order
+     */
+    public EntitlementResolver(Check play, Check server, VerdictStore store, Supplier<SecretKey> keySource,
+                               Executor keyExecutor, String userId, long ttlMillis, long timeoutMillis) {
+        this.play = play;
+        this.server = server;
+        this.store = store;
+        this.keySource = keySource;
+        this.keyExecutor = keyExecutor;
+        this.userId = userId != null ? userId : "";
+        this.ttlMillis = ttlMillis;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Resolver for the signed-in user, caching in private preferences under a Keystore key
+     */
+    public static EntitlementResolver create(Context context, Check play, Check server) {
+        SharedPreferences preferences = context.getSharedPreferences(AppConstants.ENTITLEMENT_PREFS_NAME, Context.MODE_PRIVATE);
+        VerdictStore store = new VerdictStore() {
+            @Override
+            public String load() {
+                return preferences.getString(KEY_VERDICT, null);
+            }
+
+            @Override
+            public void save(String encoded) {
+                preferences.edit().putString(KEY_VERDICT, encoded).apply();
+            }
+
+            @Override
+            public void clear() {
+                preferences.edit().remove(KEY_VERDICT).apply();
+            }
+        };
+        return new EntitlementResolver(play, server, store, EntitlementResolver::verdictKey, worker,
+                PreferenceManager.getInstance(context).getUserId(),
+                AppConstants.ENTITLEMENT_TTL_MS, AppConstants.ENTITLEMENT_TIMEOUT_MS);
+    }
+
+    public void resolve(Callback callback) {
+        synchronized (this) {
+            if (started) {
+                throw new IllegalStateException("Entitlement already resolved");
+            }
+            started = true;
+            this.callback = callback;
+            timeout = worker.schedule(this::onTimeout, timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        keyExecutor.execute(() -> {
+            EntitlementVerdict cached = loadCached();
+            if (cached != null) {
+                deliver(cached.cached());
+            }
+        });
+        play.start(entitled -> onResult(EntitlementVerdict.Source.PLAY, entitled));
+        server.start(entitled -> onResult(EntitlementVerdict.Source.SERVER, entitled));
+    }
+
+    /**
+     * Run once both checks finished or timed out, right away if they already have
+     */
+    public void runWhenSettled(Runnable action) {
+        synchronized (this) {
+            if (!settled) {
+                whenSettled.add(action);
+                return;
+            }
+        }
+        action.run();
+    }
+
+    public synchronized boolean isSettled() {
+        return settled;
+    }
+
+    private void onResult(EntitlementVerdict.Source source, boolean entitled) {
+        long now = System.currentTimeMillis();
+        boolean allNegative;
+        synchronized (this) {
+            if (source == EntitlementVerdict.Source.PLAY) {
+                playDone = true;
+            } else {
+                serverDone = true;
+            }
+            allNegative = !entitled && playDone && serverDone && !settled;
+        }
+        AppLog.d(TAG, "{} check: {}", source, entitled);
+        if (entitled) {
+            // Even after the timeout, a late yes still speeds up the next launch
+            EntitlementVerdict verdict = new EntitlementVerdict(userId, true, now, now + ttlMillis, source);
+            save(verdict);
+            deliver(verdict);
+            settle();
+        } else if (allNegative) {
+            store.clear();
+            deliver(new EntitlementVerdict(userId, false, now, now, EntitlementVerdict.Source.NONE));
+            settle();
+        }
+    }
+
+    private void onTimeout() {
+        if (isSettled()) {
+            return;
+        }
+        // An unanswered check proves nothing, so the cached verdict is left alone
+        AppLog.w(TAG, "Entitlement checks timed out after {} ms", timeoutMillis);
+        long now = System.currentTimeMillis();
+        deliver(new EntitlementVerdict(userId, false, now, now, EntitlementVerdict.Source.NONE));
+        settle();
+    }
+
+    private void deliver(EntitlementVerdict verdict) {
+        Callback target;
+        synchronized (this) {
+            if (delivered) {
+                return;
+            }
+            delivered = true;
+            target = callback;
+        }
+        AppLog.d(TAG, "Entitlement verdict {}", verdict);
+        target.onVerdict(verdict);
+    }
+
+    private void settle() {
+        List<Runnable> actions;
+        synchronized (this) {
+            if (settled) {
+                return;
+            }
+            settled = true;
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+            actions = new ArrayList<>(whenSettled);
+            whenSettled.clear();
+        }
+        for (Runnable action : actions) {
+            action.run();
+        }
+    }
+
+    /**
+     * A fresh, positive verdict for this user with a valid signature, otherwise null
+     */
+    private EntitlementVerdict loadCached() {
+        SecretKey key = key();
+        if (key == null || userId.isEmpty()) {
+            return null;
+        }
+        EntitlementVerdict verdict = EntitlementVerdict.decode(store.load(), key);
+        if (verdict == null || !verdict.entitled || !userId.equals(verdict.userId)
+                || !verdict.isFresh(System.currentTimeMillis())) {
+            return null;
+        }
+        return verdict;
+    }
+
+    private void save(EntitlementVerdict verdict) {
+        keyExecutor.execute(() -> {
+            SecretKey key = key();
+            if (key == null || userId.isEmpty()) {
+                return;
+            }
+            try {
+                store.save(verdict.encode(key));
+            } catch (GeneralSecurityException e) {
+                AppLog.e(TAG, "Unable to sign entitlement verdict", e);
+            }
+        });
+    }
+
+    private SecretKey key() {
+        if (!keyLoaded) {
+            key = keySource.get();
+            keyLoaded = true;
+        }
+        return key;
+    }
+
+    /**
+     * Load or generate the Keystore key ahead of the first launch check, blocking
+     */
+    public static void warmKey() {
+        verdictKey();
+    }
+
+    /**
+     * HMAC key that never leaves the Keystore, null when the Keystore is unavailable
+     * Loaded once per process
+     */
+    private static synchronized SecretKey verdictKey() {
+        if (!verdictKeyLoaded) {
+            verdictKey = loadVerdictKey();
+            verdictKeyLoaded = true;
+        }
+        return verdictKey;
+    }
+
+    private static SecretKey loadVerdictKey() {
+        try {
+            KeyStore keyStore = KeyStore.getInstance(KEYSTORE);
+            keyStore.load(null);
+            if (keyStore.containsAlias(AppConstants.ENTITLEMENT_KEY_ALIAS)) {
+                return (SecretKey) keyStore.getKey(AppConstants.ENTITLEMENT_KEY_ALIAS, null);
+            }
+            KeyGenerator generator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_HMAC_SHA256, KEYSTORE);
+            generator.init(new KeyGenParameterSpec.Builder(AppConstants.ENTITLEMENT_KEY_ALIAS,
+                    KeyProperties.PURPOSE_SIGN | KeyProperties.PURPOSE_VERIFY).build());
+            return generator.generateKey();
+        } catch (Exception e) {
+            AppLog.w(TAG, "Keystore unavailable, entitlement verdicts are not cached: {}", e.getMessage());
+            return null;
+        }
+    }
+}
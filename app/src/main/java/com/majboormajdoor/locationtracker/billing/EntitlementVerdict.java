@@ -0,0 +1,135 @@
+package com.majboormajdoor.locationtracker.billing;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+
+/**
+ * Outcome of an entitlement check, stored HMAC-signed so a cached verdict cannot be edited by hand
+ */
+public class EntitlementVerdict {
+
+    private static final String VERSION = "v1";
+    private static final String SEPARATOR = "|";
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+
+    /**
+     * Where a verdict came from
+     */
+    public enum Source {
+        CACHE,
+        PLAY,
+        SERVER,
+        NONE
+    }
+
+    public final String userId;
+    public final boolean entitled;
+    public final long checkedAtMillis;
+    public final long expiresAtMillis;
+    public final Source source;
+
+    public EntitlementVerdict(String userId, boolean entitled, long checkedAtMillis, long expiresAtMillis, Source source) {
+        this.userId = userId != null ? userId : "";
+        this.entitled = entitled;
+        this.checkedAtMillis = checkedAtMillis;
+        this.expiresAtMillis = expiresAtMillis;
+        this.source = source;
+    }
+
+    public boolean isFresh(long nowMillis) {
+        return nowMillis >= checkedAtMillis && nowMillis < expiresAtMillis;
+    }
+
+    /**
+     * The same verdict as served from the cache
+     */
+    public EntitlementVerdict cached() {
+        return new EntitlementVerdict(userId, entitled, checkedAtMillis, expiresAtMillis, Source.CACHE);
+    }
+
+    /**
+     * Signed text form, see {@link #decode}
+     */
+    public String encode(SecretKey key) throws GeneralSecurityException {
+        String payload = payload();
+        return payload + SEPARATOR + toHex(sign(key, payload));
+    }
+
+    /**
+     * @return the verdict, or null when the text is malformed or its signature does not match
+     */
+    public static EntitlementVerdict decode(String encoded, SecretKey key) {
+        if (encoded == null || key == null) {
+            return null;
+        }
+        int signatureStart = encoded.lastIndexOf(SEPARATOR);
+        if (signatureStart < 0) {
+            return null;
+        }
+        String payload = encoded.substring(0, signatureStart);
+        try {
+            byte[] expected = sign(key, payload);
+            byte[] actual = fromHex(encoded.substring(signatureStart + 1));
+            if (actual == null || !MessageDigest.isEqual(expected, actual)) {
+                return null;
+            }
+            // The user id goes last so it may contain the separator
+            String[] fields = payload.split("\\|", 6);
+            if (fields.length != 6 || !VERSION.equals(fields[0])) {
+                return null;
+            }
+            return new EntitlementVerdict(fields[5], "1".equals(fields[1]), Long.parseLong(fields[2]),
+                    Long.parseLong(fields[3]), Source.valueOf(fields[4]));
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private String payload() {
+        return VERSION + SEPARATOR + (entitled ? "1" : "0") + SEPARATOR + checkedAtMillis + SEPARATOR
+                + expiresAtMillis + SEPARATOR + source.name() + SEPARATOR + userId;
+    }
+
+    private static byte[] sign(SecretKey key, String payload) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance(MAC_ALGORITHM);
+        mac.init(key);
+        return mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private static byte[] fromHex(String hex) {
+        if (hex.length() % 2 != 0) {
+            return null;
+        }
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(hex.charAt(2 * i), 16);
+            int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                return null;
+            }
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "EntitlementVerdict{" +
+                "entitled=" + entitled +
+                ", source=" + source +
+                ", expiresAtMillis=" + expiresAtMillis +
+                '}';
+    }
+}
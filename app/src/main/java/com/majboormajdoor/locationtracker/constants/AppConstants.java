@@ -15,6 +15,9 @@ public class AppConstants {
     public static final String PREF_TIME_INTERVAL = "time_interval";
 
     public static final String PREF_HAS_SUBSCRIPTION = "has_subscription";
+    public static final String PREF_USER_ID = "userId";
+    public static final String PREF_SHOW_INFO_ON_LAUNCH = "first_launch";
+    public static final String PREF_LEAN_TRACKING_PROCESS = "lean_tracking_process";
 
     // PIN related constants
     public static final int PIN_LENGTH = 4;
@@ -34,11 +37,15 @@ public class AppConstants {
     // Location service constants
     public static final long LOCATION_UPDATE_INTERVAL = 10000; // 10 seconds
     public static final long FASTEST_LOCATION_INTERVAL = 5000; // 5 seconds
+    public static final String LOCATION_THREAD_NAME = "location-fixes";
     public static final float MINIMUM_DISTANCE = 10.0f; // 10 meters
 
     // Service and notification constants
     public static final String SERVICE_ACTION_START = "START_LOCATION_SERVICE";
     public static final String SERVICE_ACTION_STOP = "STOP_LOCATION_SERVICE";
+    public static final String SERVICE_ACTION_UPLOAD_TICK = "UPLOAD_TICK_LOCATION_SERVICE";
+    public static final String SERVICE_ACTION_GEOFENCE = "GEOFENCE_LOCATION_SERVICE";
+    public static final String ACTION_TRACKER_STATUS = "com.majboormajdoor.locationtracker.TRACKER_STATUS";
     public static final int LOCATION_SERVICE_NOTIFICATION_ID = 1001;
     public static final String NOTIFICATION_CHANNEL_ID = "LocationTrackingChannel";
     public static final String NOTIFICATION_CHANNEL_NAME = "Location Tracking";
@@ -47,6 +54,9 @@ public class AppConstants {
     public static final String EXTRA_PHONE_NUMBER = "phone_number";
     public static final String EXTRA_EMAIL_ADDRESS = "email_address";
     public static final String EXTRA_TIME_INTERVAL = "time_interval";
+    public static final String EXTRA_TRACKER_PSS_KB = "tracker_pss_kb";
+    public static final String EXTRA_TRACKER_PENDING = "tracker_pending";
+    public static final String EXTRA_TRACKER_LEAN = "tracker_lean";
 
     // Permission request codes
     public static final int PERMISSION_REQUEST_LOCATION = 1000;
@@ -73,10 +83,135 @@ public class AppConstants {
     public static final String SUCCESS_SERVICE_STOPPED = "Location tracking stopped.";
 
     public static final int TIME_MULTIPLIER = 1;
+    public static final long UPLOAD_FIRST_TICK_DELAY_MS = 60_000; // first upload a minute after starting
     public static final String TRACKING_STATUS = "tracking_status";
 
     //Api constants
     public static final String BASE_URL = "https://majboormajdoor.com";
+    public static final long HTTP_CONNECT_TIMEOUT_MS = 15_000; // pool-wide, DNS, TCP and TLS together
+    public static final long HTTP_RESPONSE_TIMEOUT_MS = 30_000; // longest a request waits on a silent server
+    public static final long HTTP_CONNECTION_REQUEST_TIMEOUT_MS = 10_000; // longest a request waits for a pooled connection
+    public static final int HTTP_MAX_CONNECTIONS_PER_ROUTE = 5;
+
+    // Metric names
+    public static final String METRIC_FIX_COUNT = "fix.count";
+    public static final String METRIC_FIX_INTERVAL = "fix.interval";
+    public static final String METRIC_FIX_TO_UPLOAD = "fix.to_upload";
+    public static final String METRIC_FIX_HANDLING = "fix.handling";
+    public static final String METRIC_UPLOAD_TICK_LATENESS = "upload.tick.lateness";
+    public static final String METRIC_UPLOAD_TICK_MISSED = "upload.tick.missed";
+    public static final String METRIC_UPLOAD_QUEUE_DEPTH = "upload.queue_depth";
+    public static final String METRIC_UPLOAD_SUCCESS = "upload.success";
+    public static final String METRIC_UPLOAD_FAILURE = "upload.failure";
+    public static final String METRIC_HTTP_PREFIX = "http.";
+    public static final String METRIC_SERIALIZE_PREFIX = "serialize.";
+    public static final String METRIC_CACHE_READ = "cache.read";
+    public static final String METRIC_CACHE_WRITE = "cache.write";
+    public static final String METRIC_CACHE_SIZE = "cache.size";
+    public static final String METRIC_CACHE_WRITE_BATCHES = "cache.write_batches";
+    public static final String METRIC_CACHE_HOT_HIT = "cache.hot.hit";
+    public static final String METRIC_CACHE_HOT_MISS = "cache.hot.miss";
+    public static final String METRIC_CACHE_HOT_SIZE = "cache.hot.size";
+    public static final String METRIC_BILLING_QUERY = "billing.query";
+    public static final String METRIC_BILLING_QUERY_JOINED = "billing.query.joined";
+    public static final String METRIC_BILLING_CACHE_HIT = "billing.cache.hit";
+    public static final String METRIC_HTTP_FIRST_WARM = "http.first_request.warm";
+    public static final String METRIC_HTTP_FIRST_COLD = "http.first_request.cold";
+    public static final String METRIC_STARTUP_PREWARM = "startup.prewarm";
+    public static final String METRIC_STARTUP_CONTENT_VIEW = "startup.content_view";
+    public static final String METRIC_STARTUP_SERVICES = "startup.services";
+    public static final String METRIC_STARTUP_AUTH_CHECK = "startup.auth_check";
+    public static final String METRIC_STARTUP_ENTITLEMENT = "startup.entitlement";
+    public static final String METRIC_STARTUP_MAIN = "startup.main";
+    public static final String METRIC_LAUNCH_TO_MAIN = "launch.to_main";
+    public static final String METRIC_PROCESS_PSS = "process.pss_kb";
+    public static final String METRIC_TRACKER_PSS = "tracker.pss_kb";
+    public static final String METRIC_SLEEP_ENTERED = "sleep.entered";
+    public static final String METRIC_SLEEP_EXITED = "sleep.exited";
+    public static final String METRIC_SLEEP_GEOFENCE_FAILED = "sleep.geofence_failed";
+    public static final String METRIC_FILTER_ACCEPTED = "filter.accepted";
+    public static final String METRIC_FILTER_HEARTBEAT = "filter.heartbeat";
+    public static final String METRIC_FILTER_DUPLICATE = "filter.suppressed.duplicate";
+    public static final String METRIC_FILTER_STATIONARY = "filter.suppressed.stationary";
+    public static final String METRIC_FILTER_LOW_ACCURACY = "filter.suppressed.low_accuracy";
+    public static final String METRIC_STORE_BYTES = "store.bytes";
+    public static final String METRIC_STORE_PARTITIONS = "store.partitions";
+    public static final String METRIC_STORE_FILTER_NEW = "store.key_filter.new";
+    public static final String METRIC_STORE_FILTER_FALSE_POSITIVE = "store.key_filter.false_positive";
+    public static final String METRIC_STORE_EVICTED_AGE = "store.evicted.age";
+    public static final String METRIC_STORE_EVICTED_COUNT = "store.evicted.count";
+    public static final String METRIC_STORE_EVICTED_BYTES = "store.evicted.bytes";
+    public static final String METRIC_STORE_DOWNSAMPLED = "store.downsampled";
+
+    // Logging
+    public static final int LOG_RING_BUFFER_BYTES = 64 * 1024;
+    public static final int LOG_MAX_PER_SECOND_PER_TAG = 5;
+    public static final String LOG_DUMP_FILE_NAME = "log_ring.txt";
+
+    // Background upload constants
+    public static final String WORK_UPLOAD_NAME = "location_upload";
+    public static final String WORK_UPLOAD_PERIODIC_NAME = "location_upload_periodic";
+    public static final String WORK_UPLOAD_TAG = "location_upload";
+    public static final int UPLOAD_NOTIFICATION_ID = 1003;
+    public static final long UPLOAD_BACKOFF_SECONDS = 30;
+    public static final int UPLOAD_MAX_ATTEMPTS = 5;
+    public static final int UPLOAD_BATCH_SIZE = 50;
+    public static final long UPLOAD_CALL_TIMEOUT_SECONDS = 30;
+    public static final long UPLOAD_PERIODIC_INTERVAL_MINUTES = 60;
+    public static final int MAX_PENDING_UPLOADS = 1000;
+    public static final String PENDING_UPLOADS_FILE_NAME = "pending_uploads.json";
+
+    // Location history storage
+    public static final String LOCATION_STORE_DIR = "location_store";
+    public static final String LOCATION_STORE_FILE_NAME = "history.bin";
+
+    // Location history retention, 0 disables a limit
+    public static final long RETENTION_MAX_AGE_DAYS = 365;
+    public static final int RETENTION_MAX_RECORDS = 500_000; // about a year of 1-minute fixes
+    public static final long RETENTION_MAX_BYTES = 48L * 1024 * 1024;
+    public static final long RETENTION_FULL_RESOLUTION_DAYS = 30;
+    public static final long RETENTION_DOWNSAMPLE_INTERVAL_MINUTES = 10;
+    public static final int KEY_FILTER_MIN_CAPACITY = 10_000;
+    public static final double KEY_FILTER_FALSE_POSITIVE_RATE = 0.01;
+    public static final String WORK_COMPACTION_NAME = "location_store_compaction";
+    public static final long COMPACTION_INTERVAL_HOURS = 24;
+
+    // In-memory window of recent history served to the UI
+    public static final long HOT_WINDOW_DAYS = 7;
+    public static final int HOT_WINDOW_HEAP_DIVISOR = 16; // at most 1/16 of the memory class
+    public static final int HOT_WINDOW_DEFAULT_MEMORY_CLASS_MB = 64;
+
+    // History export
+    public static final int EXPORT_CHUNK_RECORDS = 10_000; // records read from the store at a time
+    public static final int EXPORT_BUFFER_BYTES = 64 * 1024;
+    public static final String EXPORT_CREATOR = "LocationTracker";
+    public static final int IMPORT_BATCH_RECORDS = 50_000; // records parsed before each store write
+
+    // Work started while the sign-in screen is up
+    public static final long PREWARM_TIMEOUT_MS = 5_000; // response and pool wait limit for the warm-up request
+
+    // Upload filter constants
+    public static final float FILTER_MAX_ACCURACY_METERS = 100.0f;
+    public static final long FILTER_HEARTBEAT_MINUTES = 30;
+
+    // Kalman smoothing constants
+    public static final double KALMAN_ACCELERATION_STD_DEV = 3.0; // m/s^2
+    public static final long KALMAN_MAX_GAP_MILLIS = 5 * 60 * 1000; // restart after 5 minutes without fixes
+
+    // Entitlement constants
+    public static final String ENTITLEMENT_PREFS_NAME = "entitlement";
+    public static final String ENTITLEMENT_KEY_ALIAS = "entitlement_verdict";
+    public static final long ENTITLEMENT_TTL_MS = 24 * 60 * 60 * 1000; // cached verdicts are served for a day
+    public static final long ENTITLEMENT_TIMEOUT_MS = 10_000; // longest the launch waits for either check
+    public static final long BILLING_PURCHASES_MAX_AGE_MS = 5 * 60 * 1000; // Play pushes changes, older lists are re-read
+    public static final long BILLING_QUERY_TIMEOUT_MS = 15 * 1000; // a query on a client that disconnected may never answer
+
+    // Sleep mode constants
+    public static final float DWELL_RADIUS_METERS = 50.0f; // staying within this counts as parked
+    public static final long DWELL_MILLIS = 10 * 60 * 1000; // parked this long before sleeping
+    public static final float DWELL_MAX_ACCURACY_METERS = 50.0f; // vaguer fixes neither start nor break a dwell
+    public static final float SLEEP_GEOFENCE_RADIUS_METERS = 150.0f; // smaller fences trigger on drift
+    public static final String SLEEP_GEOFENCE_ID = "sleep_exit";
 
     // Private constructor to prevent instantiation
     private AppConstants() {
@@ -0,0 +1,71 @@
+package com.majboormajdoor.locationtracker.export;
+
+import com.majboormajdoor.locationtracker.dto.Location;
+import com.majboormajdoor.locationtracker.storage.Timestamps;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * RFC 4180 CSV with a header row, one row per point
+ */
+final class CsvWriter extends TextLocationWriter {
+
+    private String trackie;
+
+    CsvWriter(Writer out) {
+        super(out);
+    }
+
+    @Override
+    public void begin() throws IOException {
+        line.append("trackie,user_id,time_utc,latitude,longitude");
+        writeLine();
+    }
+
+    @Override
+    public void beginTrack(String trackie) {
+        this.trackie = trackie;
+    }
+
+    @Override
+    public void write(Location location, long millis) throws IOException {
+        appendField(trackie);
+        line.append(',');
+        appendField(location.getUserId());
+        line.append(',').append(Timestamps.formatIso(millis)).append(',');
+        appendCoordinate(location.getLatitude());
+        line.append(',');
+        appendCoordinate(location.getLongitude());
+        writeLine();
+    }
+
+    @Override
+    public void endTrack() {
+        trackie = null;
+    }
+
+    private void appendField(String value) {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            line.append(value);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                line.append('"');
+            }
+            line.append(c);
+        }
+        line.append('"');
+    }
+}
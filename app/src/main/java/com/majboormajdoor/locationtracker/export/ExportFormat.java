@@ -0,0 +1,38 @@
+package com.majboormajdoor.locationtracker.export;
+
+import java.io.Writer;
+
+/**
+ * File formats history can be exported to
+ */
+public enum ExportFormat {
+    GPX("gpx", "application/gpx+xml"),
+    KML("kml", "application/vnd.google-earth.kml+xml"),
+    GEOJSON("geojson", "application/geo+json"),
+    CSV("csv", "text/csv");
+
+    public final String extension;
+    public final String mimeType;
+
+    ExportFormat(String extension, String mimeType) {
+        this.extension = extension;
+        this.mimeType = mimeType;
+    }
+
+    /**
+     * Writer producing this format on the given character stream
+     */
+    public LocationWriter newWriter(Writer out) {
+        switch (this) {
+            case GPX:
+                return new GpxWriter(out);
+            case KML:
+                return new KmlWriter(out);
+            case GEOJSON:
+                return new GeoJsonWriter(out);
+            case CSV:
+            default:
+                return new CsvWriter(out);
+        }
+    }
+}
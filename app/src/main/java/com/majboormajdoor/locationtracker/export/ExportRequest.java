@@ -0,0 +1,40 @@
+package com.majboormajdoor.locationtracker.export;
+
+/**
+ * What to export: a format, a time range with fromMillis <= time < toMillis and
+ * optionally a single trackie ("" for records without one, null for all)
+ */
+public class ExportRequest {
+
+    public final ExportFormat format;
+    public final long fromMillis;
+    public final long toMillis;
+    public final String trackie;
+    public final boolean zip;
+
+    public ExportRequest(ExportFormat format, long fromMillis, long toMillis, String trackie, boolean zip) {
+        this.format = format;
+        this.fromMillis = fromMillis;
+        this.toMillis = toMillis;
+        this.trackie = trackie;
+        this.zip = zip;
+    }
+
+    /**
+     * Every stored record of every trackie, uncompressed
+     */
+    public static ExportRequest everything(ExportFormat format) {
+        return new ExportRequest(format, Long.MIN_VALUE, Long.MAX_VALUE, null, false);
+    }
+
+    /**
+     * Suggested file name, also used for the entry inside a zip
+     */
+    public String entryName() {
+        return "locations." + format.extension;
+    }
+
+    public String fileName() {
+        return zip ? entryName() + ".zip" : entryName();
+    }
+}
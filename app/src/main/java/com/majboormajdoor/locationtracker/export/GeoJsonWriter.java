@@ -0,0 +1,61 @@
+package com.majboormajdoor.locationtracker.export;
+
+import com.majboormajdoor.locationtracker.dto.Location;
+import com.majboormajdoor.locationtracker.storage.Timestamps;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * GeoJSON FeatureCollection of Point features, trackie and time as properties
+ */
+final class GeoJsonWriter extends TextLocationWriter {
+
+    private String trackie;
+    private boolean first = true;
+
+    GeoJsonWriter(Writer out) {
+        super(out);
+    }
+
+    @Override
+    public void begin() throws IOException {
+        line.append("{\"type\":\"FeatureCollection\",\"features\":[");
+        writeLine();
+    }
+
+    @Override
+    public void beginTrack(String trackie) {
+        this.trackie = trackie;
+    }
+
+    @Override
+    public void write(Location location, long millis) throws IOException {
+        if (!first) {
+            line.append(',');
+        }
+        first = false;
+        line.append("{\"type\":\"Feature\",\"geometry\":{\"type\":\"Point\",\"coordinates\":[");
+        appendCoordinate(location.getLongitude());
+        line.append(',');
+        appendCoordinate(location.getLatitude());
+        line.append("]},\"properties\":{\"trackie\":");
+        appendJson(trackie);
+        line.append(",\"userId\":");
+        appendJson(location.getUserId());
+        line.append(",\"time\":\"").append(Timestamps.formatIso(millis)).append("\"}}");
+        writeLine();
+    }
+
+    @Override
+    public void endTrack() {
+        trackie = null;
+    }
+
+    @Override
+    public void end() throws IOException {
+        line.append("]}");
+        writeLine();
+        super.end();
+    }
+}
@@ -0,0 +1,57 @@
+package com.majboormajdoor.locationtracker.export;
+
+import com.majboormajdoor.locationtracker.constants.AppConstants;
+import com.majboormajdoor.locationtracker.dto.Location;
+import com.majboormajdoor.locationtracker.storage.Timestamps;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * GPX 1.1, one track per trackie
+ */
+final class GpxWriter extends TextLocationWriter {
+
+    GpxWriter(Writer out) {
+        super(out);
+    }
+
+    @Override
+    public void begin() throws IOException {
+        line.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<gpx version=\"1.1\" creator=\"").append(AppConstants.EXPORT_CREATOR)
+                .append("\" xmlns=\"http://www.topografix.com/GPX/1/1\">");
+        writeLine();
+    }
+
+    @Override
+    public void beginTrack(String trackie) throws IOException {
+        line.append("<trk><name>");
+        appendXml(trackie);
+        line.append("</name><trkseg>");
+        writeLine();
+    }
+
+    @Override
+    public void write(Location location, long millis) throws IOException {
+        line.append("<trkpt lat=\"");
+        appendCoordinate(location.getLatitude());
+        line.append("\" lon=\"");
+        appendCoordinate(location.getLongitude());
+        line.append("\"><time>").append(Timestamps.formatIso(millis)).append("</time></trkpt>");
+        writeLine();
+    }
+
+    @Override
+    public void endTrack() throws IOException {
+        line.append("</trkseg></trk>");
+        writeLine();
+    }
+
+    @Override
+    public void end() throws IOException {
+        line.append("</gpx>");
+        writeLine();
+        super.end();
+    }
+}
@@ -0,0 +1,18 @@
+package com.majboormajdoor.locationtracker.export;
+
+/**
+ * What to import: the file's format and the trackie and user id given to records whose
+ * file does not name them
+ */
+public class ImportRequest {
+
+    public final ExportFormat format;
+    public final String defaultTrackie;
+    public final String defaultUserId;
+
+    public ImportRequest(ExportFormat format, String defaultTrackie, String defaultUserId) {
+        this.format = format;
+        this.defaultTrackie = defaultTrackie;
+        this.defaultUserId = defaultUserId;
+    }
+}
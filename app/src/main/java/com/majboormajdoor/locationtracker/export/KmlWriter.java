@@ -0,0 +1,56 @@
+package com.majboormajdoor.locationtracker.export;
+
+import com.majboormajdoor.locationtracker.dto.Location;
+import com.majboormajdoor.locationtracker.storage.Timestamps;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * KML 2.2, a folder per trackie with one time-stamped placemark per point
+ */
+final class KmlWriter extends TextLocationWriter {
+
+    KmlWriter(Writer out) {
+        super(out);
+    }
+
+    @Override
+    public void begin() throws IOException {
+        line.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<kml xmlns=\"http://www.opengis.net/kml/2.2\"><Document>");
+        writeLine();
+    }
+
+    @Override
+    public void beginTrack(String trackie) throws IOException {
+        line.append("<Folder><name>");
+        appendXml(trackie);
+        line.append("</name>");
+        writeLine();
+    }
+
+    @Override
+    public void write(Location location, long millis) throws IOException {
+        line.append("<Placemark><TimeStamp><when>").append(Timestamps.formatIso(millis))
+                .append("</when></TimeStamp><Point><coordinates>");
+        appendCoordinate(location.getLongitude());
+        line.append(',');
+        appendCoordinate(location.getLatitude());
+        line.append("</coordinates></Point></Placemark>");
+        writeLine();
+    }
+
+    @Override
+    public void endTrack() throws IOException {
+        line.append("</Folder>");
+        writeLine();
+    }
+
+    @Override
+    public void end() throws IOException {
+        line.append("</Document></kml>");
+        writeLine();
+        super.end();
+    }
+}
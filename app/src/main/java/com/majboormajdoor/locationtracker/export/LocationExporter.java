@@ -0,0 +1,199 @@
+package com.majboormajdoor.locationtracker.export;
+
+import android.content.Context;
+
+import com.majboormajdoor.locationtracker.constants.AppConstants;
+import com.majboormajdoor.locationtracker.dto.Location;
+import com.majboormajdoor.locationtracker.logging.AppLog;
+import com.majboormajdoor.locationtracker.storage.DailyRollup;
+import com.majboormajdoor.locationtracker.storage.Timestamps;
+import com.majboormajdoor.locationtracker.utils.CacheLocations;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams stored history into an export file
+ *
+ * The daily rollups tell which trackies have data on which days and how much, so the store
+ * is read one bounded time window at a time and each record is written straight through.
+ * Memory stays at one chunk of {@link AppConstants#EXPORT_CHUNK_RECORDS} records however
+ * large the export is. Records with unparseable timestamps are not exported
+ */
+public class LocationExporter {
+    private static final String TAG = "LocationExporter";
+
+    /**
+     * Where exported records come from
+     */
+    public interface LocationSource {
+        /**
+         * Per-day summaries with a per-trackie breakdown, oldest day first
+         */
+        List<DailyRollup> dailyRollups();
+
+        /**
+         * One trackie's records with fromMillis <= time < toMillis, oldest first
+         */
+        List<Location> read(String trackie, long fromMillis, long toMillis);
+    }
+
+    private final LocationSource source;
+    private final int chunkRecords;
+
+    public LocationExporter(LocationSource source) {
+        this(source, AppConstants.EXPORT_CHUNK_RECORDS);
+    }
+
+    public LocationExporter(LocationSource source, int chunkRecords) {
+        this.source = source;
+        this.chunkRecords = Math.max(1, chunkRecords);
+    }
+
+    /**
+     * Exporter over the local history cache
+     */
+    public static LocationExporter from(Context context) {
+        CacheLocations cache = CacheLocations.getInstance(context);
+        return new LocationExporter(new LocationSource() {
+            @Override
+            public List<DailyRollup> dailyRollups() {
+                return cache.getDailyRollups();
+            }
+
+            @Override
+            public List<Location> read(String trackie, long fromMillis, long toMillis) {
+                return cache.getTrackieLocations(trackie, fromMillis, toMillis);
+            }
+        });
+    }
+
+    /**
+     * Write the export to a file, replacing it only once complete
+     *
+     * @return number of records written
+     */
+    public int export(ExportRequest request, File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        int written;
+        try (OutputStream out = new FileOutputStream(temp)) {
+            written = export(request, out);
+        } catch (IOException e) {
+            if (!temp.delete()) {
+                AppLog.w(TAG, "Unable to delete {}", temp.getName());
+            }
+            throw e;
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Unable to replace " + file);
+        }
+        return written;
+    }
+
+    /**
+     * Write the export to a stream, zipped on the fly if requested. The stream is flushed, not closed
+     *
+     * @return number of records written
+     */
+    public int export(ExportRequest request, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        OutputStream target = new BufferedOutputStream(out, AppConstants.EXPORT_BUFFER_BYTES);
+        ZipOutputStream zip = null;
+        if (request.zip) {
+            zip = new ZipOutputStream(target);
+            zip.putNextEntry(new ZipEntry(request.entryName()));
+            target = zip;
+        }
+        Writer writer = new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8),
+                AppConstants.EXPORT_BUFFER_BYTES);
+        LocationWriter locations = request.format.newWriter(writer);
+
+        List<DailyRollup> days = source.dailyRollups();
+        int written = 0;
+        locations.begin();
+        for (String trackie : trackies(request, days)) {
+            written += exportTrackie(request, trackie, days, locations);
+        }
+        locations.end();
+        writer.flush();
+        if (zip != null) {
+            zip.closeEntry();
+            zip.finish();
+        }
+        target.flush();
+        out.flush();
+        AppLog.d(TAG, "Exported {} records as {} in {} ms", written, request.format,
+                (System.nanoTime() - start) / 1_000_000);
+        return written;
+    }
+
+    private int exportTrackie(ExportRequest request, String trackie, List<DailyRollup> days,
+                              LocationWriter locations) throws IOException {
+        int written = 0;
+        boolean started = false;
+        for (DailyRollup day : days) {
+            DailyRollup rollup = day.getTrackies().get(trackie);
+            if (rollup == null) {
+                continue;
+            }
+            long from = Math.max(request.fromMillis, rollup.getFirstMillis());
+            long to = Math.min(request.toMillis, rollup.getLastMillis() + 1);
+            if (from >= to) {
+                continue;
+            }
+            // Busy days are split into equal time slices of about chunkRecords each
+            int slices = (rollup.getCount() + chunkRecords - 1) / chunkRecords;
+            long span = to - from;
+            for (int slice = 0; slice < slices; slice++) {
+                long sliceFrom = from + span * slice / slices;
+                long sliceTo = slice == slices - 1 ? to : from + span * (slice + 1) / slices;
+                List<Location> chunk = source.read(trackie, sliceFrom, sliceTo);
+                if (chunk.isEmpty()) {
+                    continue;
+                }
+                if (!started) {
+                    locations.beginTrack(trackie);
+                    started = true;
+                }
+                for (Location location : chunk) {
+                    locations.write(location, Timestamps.parseMillis(location.getInsertionTimestamp()));
+                }
+                written += chunk.size();
+            }
+        }
+        if (started) {
+            locations.endTrack();
+        }
+        return written;
+    }
+
+    /**
+     * Trackies to export in name order, only those with data in the range
+     */
+    private static Set<String> trackies(ExportRequest request, List<DailyRollup> days) {
+        Set<String> trackies = new TreeSet<>();
+        for (DailyRollup day : days) {
+            if (day.getLastMillis() < request.fromMillis || day.getFirstMillis() >= request.toMillis) {
+                continue;
+            }
+            if (request.trackie == null) {
+                trackies.addAll(day.getTrackies().keySet());
+            } else if (day.getTrackies().containsKey(request.trackie)) {
+                trackies.add(request.trackie);
+            }
+        }
+        return trackies;
+    }
+}
@@ -0,0 +1,553 @@
+package com.majboormajdoor.locationtracker.export;
+
+import android.content.Context;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.majboormajdoor.locationtracker.constants.AppConstants;
+import com.majboormajdoor.locationtracker.dto.Location;
+import com.majboormajdoor.locationtracker.logging.AppLog;
+import com.majboormajdoor.locationtracker.storage.LocationCache;
+import com.majboormajdoor.locationtracker.storage.SortedMerge;
+import com.majboormajdoor.locationtracker.storage.Timestamps;
+import com.majboormajdoor.locationtracker.utils.CacheLocations;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
+import org.xml.sax.ext.DefaultHandler2;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+/**
+ * Streams a GPX, KML, GeoJSON or CSV file into time-sorted batches for {@link LocationCache#importBulk}
+ *
+ * Files are parsed incrementally (SAX for XML, a token reader for JSON, line by line for CSV),
+ * so the importer holds one batch of {@link AppConstants#IMPORT_BATCH_RECORDS} records at most.
+ * Points without a parseable time or with out-of-range coordinates are skipped
+ */
+public class LocationImporter {
+    private static final String TAG = "LocationImporter";
+
+    /**
+     * Called after every batch, on the thread doing the import
+     */
+    public interface ProgressListener {
+        void onProgress(int records, long bytesRead);
+    }
+
+    private final ImportRequest request;
+    private final int batchRecords;
+    private final ProgressListener listener;
+
+    public LocationImporter(ImportRequest request, ProgressListener listener) {
+        this(request, AppConstants.IMPORT_BATCH_RECORDS, listener);
+    }
+
+    public LocationImporter(ImportRequest request, int batchRecords, ProgressListener listener) {
+        this.request = request;
+        this.batchRecords = Math.max(1, batchRecords);
+        this.listener = listener;
+    }
+
+    /**
+     * Import a whole file into the local history cache
+     *
+     * @return number of records imported
+     */
+    public int importInto(Context context, InputStream in) throws IOException {
+        return CacheLocations.getInstance(context).importHistory(sink -> feed(in, sink));
+    }
+
+    /**
+     * Import a whole file through the cache's bulk path
+     *
+     * @return number of records imported
+     */
+    public int importInto(LocationCache cache, InputStream in) throws IOException {
+        return cache.importBulk(sink -> feed(in, sink));
+    }
+
+    /**
+     * Parse the stream, handing each full batch to the sink sorted by time. The stream is not closed
+     *
+     * @return number of records handed to the sink
+     */
+    public int feed(InputStream in, Consumer<List<Location>> sink) throws IOException {
+        long start = System.nanoTime();
+        CountingInputStream counted = new CountingInputStream(in);
+        Batcher batcher = new Batcher(sink, counted);
+        switch (request.format) {
+            case GPX:
+            case KML:
+                parseXml(counted, batcher);
+                break;
+            case GEOJSON:
+                parseGeoJson(counted, batcher);
+                break;
+            case CSV:
+            default:
+                parseCsv(counted, batcher);
+                break;
+        }
+        batcher.flush();
+        long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        AppLog.i(TAG, "Imported {} locations ({} skipped) from {} bytes in {} ms, {} records/s",
+                batcher.records, batcher.skipped, counted.count, elapsedMillis,
+                batcher.records * 1000L / elapsedMillis);
+        return batcher.records;
+    }
+
+    private void parseXml(InputStream in, Batcher batcher) throws IOException {
+        try {
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setNamespaceAware(true);
+            // GPX and KML never need a DTD, refuse them so entities can't expand or reach outside the file
+            setFeature(factory, "http://apache.org/xml/features/disallow-doctype-decl", true);
+            setFeature(factory, "http://xml.org/sax/features/external-general-entities", false);
+            setFeature(factory, "http://xml.org/sax/features/external-parameter-entities", false);
+            XmlHandler handler = request.format == ExportFormat.GPX
+                    ? new GpxHandler(batcher) : new KmlHandler(batcher);
+            SAXParser parser = factory.newSAXParser();
+            try {
+                // Parsers without the features above still report the DOCTYPE to the handler
+                parser.setProperty("http://xml.org/sax/properties/lexical-handler", handler);
+            } catch (SAXNotRecognizedException | SAXNotSupportedException e) {
+                AppLog.w(TAG, "XML parser has no lexical handler: {}", e.getMessage());
+            }
+            parser.parse(in, handler);
+        } catch (SAXException | ParserConfigurationException e) {
+            throw new IOException("Unreadable " + request.format + " file", e);
+        }
+    }
+
+    private static void setFeature(SAXParserFactory factory, String feature, boolean value)
+            throws ParserConfigurationException {
+        try {
+            factory.setFeature(feature, value);
+        } catch (SAXNotRecognizedException | SAXNotSupportedException e) {
+            AppLog.d(TAG, "XML parser does not support {}", feature);
+        }
+    }
+
+    /**
+     * FeatureCollection of Point features, read one token at a time
+     */
+    private void parseGeoJson(InputStream in, Batcher batcher) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!reader.nextName().equals("features")) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginArray();
+            while (reader.hasNext()) {
+                readFeature(reader, batcher);
+            }
+            reader.endArray();
+        }
+        reader.endObject();
+    }
+
+    private void readFeature(JsonReader reader, Batcher batcher) throws IOException {
+        String type = null;
+        double longitude = Double.NaN;
+        double latitude = Double.NaN;
+        String trackie = null;
+        String userId = null;
+        String time = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("geometry") && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String field = reader.nextName();
+                    if (field.equals("type")) {
+                        type = reader.nextString();
+                    } else if (field.equals("coordinates") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                        reader.beginArray();
+                        int index = 0;
+                        while (reader.hasNext()) {
+                            if (reader.peek() != JsonToken.NUMBER) {
+                                reader.skipValue();
+                            } else if (index == 0) {
+                                longitude = reader.nextDouble();
+                            } else if (index == 1) {
+                                latitude = reader.nextDouble();
+                            } else {
+                                reader.skipValue();
+                            }
+                            index++;
+                        }
+                        reader.endArray();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else if (name.equals("properties") && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String field = reader.nextName();
+                    if (reader.peek() != JsonToken.STRING) {
+                        reader.skipValue();
+                    } else if (field.equals("trackie")) {
+                        trackie = reader.nextString();
+                    } else if (field.equals("userId")) {
+                        userId = reader.nextString();
+                    } else if (field.equals("time") || field.equals("timestamp")) {
+                        time = reader.nextString();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if ("Point".equals(type)) {
+            batcher.add(trackie, userId, Timestamps.parseIsoMillis(time), latitude, longitude);
+        } else {
+            batcher.skipped++;
+        }
+    }
+
+    /**
+     * Header row names the columns, the order is free
+     */
+    private void parseCsv(InputStream in, Batcher batcher) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8),
+                AppConstants.EXPORT_BUFFER_BYTES);
+        String header = reader.readLine();
+        if (header == null) {
+            return;
+        }
+        int trackieColumn = -1;
+        int userIdColumn = -1;
+        int timeColumn = -1;
+        int latitudeColumn = -1;
+        int longitudeColumn = -1;
+        List<String> names = splitCsv(header, new ArrayList<>());
+        for (int i = 0; i < names.size(); i++) {
+            switch (names.get(i).trim().toLowerCase(Locale.US)) {
+                case "trackie":
+                case "username":
+                    trackieColumn = i;
+                    break;
+                case "user_id":
+                case "userid":
+                    userIdColumn = i;
+                    break;
+                case "time_utc":
+                case "time":
+                case "timestamp":
+                case "insertiontimestamp":
+                    timeColumn = i;
+                    break;
+                case "latitude":
+                case "lat":
+                    latitudeColumn = i;
+                    break;
+                case "longitude":
+                case "lon":
+                case "lng":
+                    longitudeColumn = i;
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (timeColumn < 0 || latitudeColumn < 0 || longitudeColumn < 0) {
+            throw new IOException("CSV header needs time, latitude and longitude columns: " + header);
+        }
+
+        List<String> fields = new ArrayList<>(names.size());
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            splitCsv(line, fields);
+            try {
+                batcher.add(field(fields, trackieColumn), field(fields, userIdColumn),
+                        Timestamps.parseIsoMillis(field(fields, timeColumn)),
+                        Double.parseDouble(field(fields, latitudeColumn)),
+                        Double.parseDouble(field(fields, longitudeColumn)));
+            } catch (NumberFormatException | NullPointerException e) {
+                batcher.skipped++;
+            }
+        }
+    }
+
+    private static String field(List<String> fields, int column) {
+        if (column < 0 || column >= fields.size()) {
+            return null;
+        }
+        String value = fields.get(column);
+        return value.isEmpty() ? null : value;
+    }
+
+    /**
+     * RFC 4180 fields of one line into the reused list; quoted fields may not span lines
+     */
+    private static List<String> splitCsv(String line, List<String> fields) {
+        fields.clear();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * Collects records and hands them over sorted, one full batch at a time
+     */
+    private final class Batcher {
+        private final Consumer<List<Location>> sink;
+        private final CountingInputStream in;
+        private List<Location> batch = new ArrayList<>();
+        int records;
+        int skipped;
+
+        Batcher(Consumer<List<Location>> sink, CountingInputStream in) {
+            this.sink = sink;
+            this.in = in;
+        }
+
+        void add(String trackie, String userId, long millis, double latitude, double longitude) {
+            if (millis == Timestamps.UNKNOWN || !(Math.abs(latitude) <= 90) || !(Math.abs(longitude) <= 180)) {
+                skipped++;
+                return;
+            }
+            Location location = new Location(latitude, longitude,
+                    trackie != null ? trackie : request.defaultTrackie, Timestamps.format(millis));
+            location.setUserId(userId != null ? userId : request.defaultUserId);
+            batch.add(location);
+            if (batch.size() >= batchRecords) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            // Files are almost always in time order, so this is a linear pass
+            List<Location> sorted = SortedMerge.sort(batch);
+            records += sorted.size();
+            batch = new ArrayList<>();
+            sink.accept(sorted);
+            if (listener != null) {
+                listener.onProgress(records, in.count);
+            }
+        }
+    }
+
+    /**
+     * Element-path aware base for the XML formats, collecting the text of interesting elements
+     */
+    private abstract static class XmlHandler extends DefaultHandler2 {
+        protected final Deque<String> path = new ArrayDeque<>();
+        protected final StringBuilder text = new StringBuilder();
+
+        @Override
+        public void startDTD(String name, String publicId, String systemId) throws SAXException {
+            throw new SAXException("DOCTYPE is not allowed in an imported file");
+        }
+
+        @Override
+        public InputSource resolveEntity(String name, String publicId, String baseURI, String systemId) {
+            // Never fetch what the file points at
+            return new InputSource(new StringReader(""));
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            text.setLength(0);
+            start(localName, attributes);
+            path.push(localName);
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            path.pop();
+            end(localName, text.toString().trim());
+            text.setLength(0);
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            text.append(ch, start, length);
+        }
+
+        protected String parent() {
+            return path.peek();
+        }
+
+        abstract void start(String element, Attributes attributes);
+
+        abstract void end(String element, String text);
+    }
+
+    /**
+     * Track, route and waypoint points; a track's name becomes the trackie
+     */
+    private static final class GpxHandler extends XmlHandler {
+        private final Batcher batcher;
+        private String trackie;
+        private double latitude;
+        private double longitude;
+        private long millis;
+
+        GpxHandler(Batcher batcher) {
+            this.batcher = batcher;
+        }
+
+        @Override
+        void start(String element, Attributes attributes) {
+            if (element.equals("trk")) {
+                trackie = null;
+            } else if (element.equals("trkpt") || element.equals("rtept") || element.equals("wpt")) {
+                latitude = parseDouble(attributes.getValue("lat"));
+                longitude = parseDouble(attributes.getValue("lon"));
+                millis = Timestamps.UNKNOWN;
+            }
+        }
+
+        @Override
+        void end(String element, String text) {
+            if (element.equals("name") && "trk".equals(parent())) {
+                trackie = text.isEmpty() ? null : text;
+            } else if (element.equals("time")) {
+                millis = Timestamps.parseIsoMillis(text);
+            } else if (element.equals("trkpt") || element.equals("rtept") || element.equals("wpt")) {
+                batcher.add(trackie, null, millis, latitude, longitude);
+            } else if (element.equals("trk")) {
+                trackie = null;
+            }
+        }
+    }
+
+    /**
+     * Time-stamped Point placemarks; a folder's name becomes the trackie
+     */
+    private static final class KmlHandler extends XmlHandler {
+        private final Batcher batcher;
+        private String trackie;
+        private String coordinates;
+        private long millis;
+
+        KmlHandler(Batcher batcher) {
+            this.batcher = batcher;
+        }
+
+        @Override
+        void start(String element, Attributes attributes) {
+            if (element.equals("Placemark")) {
+                coordinates = null;
+                millis = Timestamps.UNKNOWN;
+            }
+        }
+
+        @Override
+        void end(String element, String text) {
+            if (element.equals("name") && "Folder".equals(parent())) {
+                trackie = text.isEmpty() ? null : text;
+            } else if (element.equals("when")) {
+                millis = Timestamps.parseIsoMillis(text);
+            } else if (element.equals("coordinates") && "Point".equals(parent())) {
+                coordinates = text;
+            } else if (element.equals("Placemark")) {
+                // lon,lat[,alt]
+                String[] parts = coordinates != null ? coordinates.split(",") : new String[0];
+                if (parts.length >= 2) {
+                    batcher.add(trackie, null, millis, parseDouble(parts[1]), parseDouble(parts[0]));
+                } else {
+                    batcher.skipped++;
+                }
+            } else if (element.equals("Folder")) {
+                trackie = null;
+            }
+        }
+    }
+
+    private static double parseDouble(String value) {
+        try {
+            return value != null ? Double.parseDouble(value.trim()) : Double.NaN;
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() {
+            // The caller owns the stream
+        }
+    }
+}
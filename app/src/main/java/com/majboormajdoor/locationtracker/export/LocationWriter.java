@@ -0,0 +1,32 @@
+package com.majboormajdoor.locationtracker.export;
+
+import com.majboormajdoor.locationtracker.dto.Location;
+
+import java.io.IOException;
+
+/**
+ * Streaming writer for one export format
+ * Called as begin, then per trackie beginTrack, write... endTrack, then end. Nothing is buffered
+ * beyond the current record, so output size does not affect memory
+ */
+public interface LocationWriter {
+
+    void begin() throws IOException;
+
+    /**
+     * @param trackie trackie name, "" for records without one
+     */
+    void beginTrack(String trackie) throws IOException;
+
+    /**
+     * @param millis the record's time as epoch millis
+     */
+    void write(Location location, long millis) throws IOException;
+
+    void endTrack() throws IOException;
+
+    /**
+     * Close the document and flush, the underlying stream is left open
+     */
+    void end() throws IOException;
+}
@@ -0,0 +1,97 @@
+package com.majboormajdoor.locationtracker.export;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Shared plumbing for the text formats: each record is built in a reused buffer and written in one call
+ */
+abstract class TextLocationWriter implements LocationWriter {
+
+    private static final long COORDINATE_SCALE = 10_000_000L; // 7 decimals, about 1 cm
+
+    protected final Writer out;
+    protected final StringBuilder line = new StringBuilder(256);
+
+    TextLocationWriter(Writer out) {
+        this.out = out;
+    }
+
+    @Override
+    public void end() throws IOException {
+        out.flush();
+    }
+
+    protected void writeLine() throws IOException {
+        line.append('\n');
+        out.append(line);
+        line.setLength(0);
+    }
+
+    /**
+     * Fixed-point decimal, never in exponent form which GPX and KML readers reject
+     */
+    protected void appendCoordinate(double value) {
+        long scaled = Math.round(value * COORDINATE_SCALE);
+        if (scaled < 0) {
+            line.append('-');
+            scaled = -scaled;
+        }
+        line.append(scaled / COORDINATE_SCALE).append('.');
+        long fraction = scaled % COORDINATE_SCALE;
+        for (long digit = COORDINATE_SCALE / 10; digit > 1 && fraction < digit; digit /= 10) {
+            line.append('0');
+        }
+        line.append(fraction);
+    }
+
+    protected void appendXml(String text) {
+        if (text == null) {
+            return;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&':
+                    line.append("&amp;");
+                    break;
+                case '<':
+                    line.append("&lt;");
+                    break;
+                case '>':
+                    line.append("&gt;");
+                    break;
+                case '"':
+                    line.append("&quot;");
+                    break;
+                case '\'':
+                    line.append("&apos;");
+                    break;
+                default:
+                    line.append(c);
+            }
+        }
+    }
+
+    /**
+     * Quoted JSON string, or null
+     */
+    protected void appendJson(String text) {
+        if (text == null) {
+            line.append("null");
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c < 0x20) {
+                line.append(String.format("\\u%04x", (int) c));
+            } else {
+                line.append(c);
+            }
+        }
+        line.append('"');
+    }
+}
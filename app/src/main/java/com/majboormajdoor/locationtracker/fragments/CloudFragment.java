@@ -1,6 +1,5 @@
 package com.majboormajdoor.locationtracker.fragments;
 
-import android.app.DatePickerDialog;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
@@ -21,17 +20,25 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.button.MaterialButton;
+import com.google.android.material.datepicker.CalendarConstraints;
+import com.google.android.material.datepicker.MaterialDatePicker;
 import com.majboormajdoor.locationtracker.R;
 import com.majboormajdoor.locationtracker.adapters.LocationAdapter;
 import com.majboormajdoor.locationtracker.dto.Location;
 import com.majboormajdoor.locationtracker.services.ApiService;
+import com.majboormajdoor.locationtracker.storage.DailyRollup;
 import com.majboormajdoor.locationtracker.utils.CacheLocations;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 /**
@@ -41,6 +48,7 @@ import java.util.stream.Collectors;
 public class CloudFragment extends Fragment implements ApiService.LocationHistoryCallback {
 
     private static final String TAG = "CloudFragment";
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
 
     // UI Components
     private RecyclerView recyclerViewLocations;
@@ -59,10 +67,15 @@ public class CloudFragment extends Fragment implements ApiService.LocationHistor
     private LocationAdapter locationAdapter;
     private ApiService apiService;
     private Handler mainHandler;
+    // Store reads wait behind queued writes and imports, never on the main thread
+    private final ExecutorService storeReader = Executors.newSingleThreadExecutor();
 
     // Filter data
     private List<Location> allLocationsList;
     private String selectedDateFilter;
+    private long selectedDayStartMillis;
+    private long selectedDayEndMillis;
+    private Map<Long, DailyRollup> rollupsByDay = new HashMap<>();
     private SimpleDateFormat dateFormat;
     private SimpleDateFormat displayDateFormat;
 
@@ -85,9 +98,7 @@ public class CloudFragment extends Fragment implements ApiService.LocationHistor
         mainHandler = new Handler(Looper.getMainLooper());
 
         // Load location history on fragment creation
-        List<Location> locations = new ArrayList<>(
-                CacheLocations.getInstance(getContext()).getCachedLocations().values());
-        onSuccess(locations);
+        onSuccess(CacheLocations.getInstance(getContext()).getRecentLocations());
     }
 
     private void initializeViews(View view) {
@@ -165,13 +176,12 @@ public class CloudFragment extends Fragment implements ApiService.LocationHistor
                 // Store all locations for filtering
                 allLocationsList = new ArrayList<>(locations);
 
-                // Apply filter if one is selected
-                List<Location> displayLocations = locations;
+                // Keep showing the selected day if a filter is active
                 if (selectedDateFilter != null && !selectedDateFilter.isEmpty()) {
-                    displayLocations = filterLocationsByDate(locations, selectedDateFilter);
-                } else {
-                    displayLocations = allLocationsList;
+                    applyDateFilter();
+                    return;
                 }
+                List<Location> displayLocations = allLocationsList;
 
                 Log.d(TAG, "Displaying " + displayLocations.size() + " location records");
                 recyclerViewLocations.setVisibility(View.VISIBLE);
@@ -228,87 +238,116 @@ public class CloudFragment extends Fragment implements ApiService.LocationHistor
     }
 
     /**
-     * Show date picker dialog
+     * Show a date picker that only enables days with stored locations
+     * The rollups are read in the background, the picker opens once they arrive
      */
     private void showDatePicker() {
-        Calendar calendar = Calendar.getInstance();
-        int year = calendar.get(Calendar.YEAR);
-        int month = calendar.get(Calendar.MONTH);
-        int day = calendar.get(Calendar.DAY_OF_MONTH);
-
-        DatePickerDialog datePickerDialog = new DatePickerDialog(
-                requireContext(),
-                (view, selectedYear, selectedMonth, selectedDay) -> {
-                    Calendar selectedDate = Calendar.getInstance();
-                    selectedDate.set(selectedYear, selectedMonth, selectedDay);
-
-                    selectedDateFilter = dateFormat.format(selectedDate.getTime());
-                    String displayDate = displayDateFormat.format(selectedDate.getTime());
-
-                    // Update UI
-                    tvSelectedDate.setText("Showing: " + displayDate);
-                    tvSelectedDate.setVisibility(View.VISIBLE);
-                    btnClearFilter.setVisibility(View.VISIBLE);
-
-                    // Apply filter
-                    applyDateFilter();
-                },
-                year, month, day);
+        CacheLocations cache = CacheLocations.getInstance(getContext());
+        btnSelectDate.setEnabled(false);
+        storeReader.execute(() -> {
+            List<DailyRollup> rollups = cache.getDailyRollups();
+            mainHandler.post(() -> {
+                btnSelectDate.setEnabled(true);
+                if (isAdded() && !isStateSaved()) {
+                    showDatePicker(rollups);
+                }
+            });
+        });
+    }
 
-        datePickerDialog.show();
+    private void showDatePicker(List<DailyRollup> rollups) {
+        Map<Long, DailyRollup> byDay = new HashMap<>();
+        long[] days = new long[rollups.size()];
+        for (int i = 0; i < days.length; i++) {
+            days[i] = rollups.get(i).getEpochDay();
+            byDay.put(days[i], rollups.get(i));
+        }
+        rollupsByDay = byDay;
+
+        // The picker works in UTC midnights, which map one to one onto local calendar days
+        CalendarConstraints.Builder constraints = new CalendarConstraints.Builder();
+        long selection = MaterialDatePicker.todayInUtcMilliseconds();
+        if (days.length > 0) {
+            constraints.setStart(days[0] * MILLIS_PER_DAY)
+                    .setEnd(days[days.length - 1] * MILLIS_PER_DAY)
+                    .setOpenAt(days[days.length - 1] * MILLIS_PER_DAY)
+                    .setValidator(new DaysWithDataValidator(days));
+            selection = days[days.length - 1] * MILLIS_PER_DAY;
+        }
+
+        MaterialDatePicker<Long> datePicker = MaterialDatePicker.Builder.datePicker()
+                .setTitleText("Select date")
+                .setCalendarConstraints(constraints.build())
+                .setSelection(selection)
+                .build();
+        datePicker.addOnPositiveButtonClickListener(this::onDaySelected);
+        datePicker.show(getParentFragmentManager(), "date_picker");
     }
 
     /**
-     * Apply the selected date filter
+     * Select the local calendar day of the picker's UTC midnight
      */
-    private void applyDateFilter() {
-        if (allLocationsList != null && !allLocationsList.isEmpty()) {
-            List<Location> filteredLocations = filterLocationsByDate(allLocationsList, selectedDateFilter);
-            Log.d(TAG, "Filtered to " + filteredLocations.size() + " locations for date: " + selectedDateFilter);
-
-            if (filteredLocations.isEmpty()) {
-                showEmptyState();
-            } else {
-                mainHandler.post(() -> {
-                    recyclerViewLocations.setVisibility(View.VISIBLE);
-                    emptyStateLayout.setVisibility(View.GONE);
-                    errorStateLayout.setVisibility(View.GONE);
-                    locationAdapter.updateFilteredLocations(filteredLocations, CloudFragment.this::showEmptyState);
-                });
-            }
+    private void onDaySelected(Long utcMidnight) {
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        utc.setTimeInMillis(utcMidnight);
+        Calendar selectedDate = Calendar.getInstance();
+        selectedDate.clear();
+        selectedDate.set(utc.get(Calendar.YEAR), utc.get(Calendar.MONTH), utc.get(Calendar.DAY_OF_MONTH), 0, 0, 0);
+
+        selectedDateFilter = dateFormat.format(selectedDate.getTime());
+        selectedDayStartMillis = selectedDate.getTimeInMillis();
+        selectedDate.add(Calendar.DATE, 1);
+        selectedDayEndMillis = selectedDate.getTimeInMillis();
+        selectedDate.add(Calendar.DATE, -1);
+        String displayDate = displayDateFormat.format(selectedDate.getTime());
+
+        // Summary comes from the rollup, no points are read to show it
+        DailyRollup rollup = rollupsByDay.get(Math.floorDiv(utcMidnight, MILLIS_PER_DAY));
+        String summary = rollup != null
+                ? String.format(Locale.getDefault(), " - %d points, %.1f km",
+                        rollup.getCount(), rollup.getDistanceMeters() / 1000)
+                : "";
+
+        // Update UI
+        tvSelectedDate.setText("Showing: " + displayDate + summary);
+        tvSelectedDate.setVisibility(View.VISIBLE);
+        btnClearFilter.setVisibility(View.VISIBLE);
+
+        if (rollup == null && !rollupsByDay.isEmpty()) {
+            showEmptyState();
+            return;
         }
+        applyDateFilter();
     }
 
     /**
-     * Filter locations by date
+     * Apply the selected date filter
      */
-    private List<Location> filterLocationsByDate(List<Location> locations, String dateFilter) {
-        List<Location> filtered = new ArrayList<>();
-
-        for (Location location : locations) {
-            String timestamp = location.getInsertionTimestamp();
-            if (timestamp != null && !timestamp.isEmpty()) {
-                try {
-                    // Extract date part from timestamp (assuming format like "2025-12-17 14:30:00")
-                    String locationDate;
-                    if (timestamp.contains(" ")) {
-                        locationDate = timestamp.split(" ")[0];
-                    } else if (timestamp.length() >= 10) {
-                        locationDate = timestamp.substring(0, 10);
-                    } else {
-                        continue;
-                    }
-
-                    if (locationDate.equals(dateFilter)) {
-                        filtered.add(location);
-                    }
-                } catch (Exception e) {
-                    Log.e(TAG, "Error parsing timestamp: " + timestamp, e);
-                }
-            }
-        }
+    private void applyDateFilter() {
+        // Read from the cache rather than the loaded list, which only covers recent days
+        CacheLocations cache = CacheLocations.getInstance(getContext());
+        String dateFilter = selectedDateFilter;
+        long fromMillis = selectedDayStartMillis;
+        long toMillis = selectedDayEndMillis;
+        storeReader.execute(() -> {
+            List<Location> filteredLocations = cache.getLocationsBetween(fromMillis, toMillis);
+            Log.d(TAG, "Filtered to " + filteredLocations.size() + " locations for date: " + dateFilter);
 
-        return filtered;
+            mainHandler.post(() -> {
+                // A newer selection or a cleared filter wins over this late result
+                if (!isAdded() || !dateFilter.equals(selectedDateFilter)) {
+                    return;
+                }
+                if (filteredLocations.isEmpty()) {
+                    showEmptyState();
+                    return;
+                }
+                recyclerViewLocations.setVisibility(View.VISIBLE);
+                emptyStateLayout.setVisibility(View.GONE);
+                errorStateLayout.setVisibility(View.GONE);
+                locationAdapter.updateFilteredLocations(filteredLocations, CloudFragment.this::showEmptyState);
+            });
+        });
     }
 
     /**
@@ -336,9 +375,7 @@ public class CloudFragment extends Fragment implements ApiService.LocationHistor
         super.onResume();
         // Refresh data when fragment becomes visible
         if (locationAdapter != null && locationAdapter.getItemCount() == 0) {
-            List<Location> locations = new ArrayList<>(
-                    CacheLocations.getInstance(getContext()).getCachedLocations().values());
-            onSuccess(locations);
+            onSuccess(CacheLocations.getInstance(getContext()).getRecentLocations());
         }
     }
 
@@ -346,6 +383,7 @@ public class CloudFragment extends Fragment implements ApiService.LocationHistor
     public void onDestroy() {
         super.onDestroy();
         // Clean up resources
+        storeReader.shutdownNow();
         if (locationAdapter != null) {
             locationAdapter.clearLocations();
         }
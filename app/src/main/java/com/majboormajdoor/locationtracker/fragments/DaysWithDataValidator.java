@@ -0,0 +1,54 @@
+package com.majboormajdoor.locationtracker.fragments;
+
+import android.os.Parcel;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.material.datepicker.CalendarConstraints;
+
+import java.util.Arrays;
+
+/**
+ * Date picker validator that only enables days with stored locations
+ * Days are local calendar dates as epoch days, the picker hands in UTC midnights of the same dates
+ */
+public class DaysWithDataValidator implements CalendarConstraints.DateValidator {
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    private final long[] epochDays;
+
+    /**
+     * @param epochDays days with data, sorted ascending
+     */
+    public DaysWithDataValidator(long[] epochDays) {
+        this.epochDays = epochDays;
+    }
+
+    @Override
+    public boolean isValid(long date) {
+        return Arrays.binarySearch(epochDays, Math.floorDiv(date, MILLIS_PER_DAY)) >= 0;
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(@NonNull Parcel dest, int flags) {
+        dest.writeLongArray(epochDays);
+    }
+
+    public static final Creator<DaysWithDataValidator> CREATOR = new Creator<DaysWithDataValidator>() {
+        @Override
+        public DaysWithDataValidator createFromParcel(Parcel source) {
+            return new DaysWithDataValidator(source.createLongArray());
+        }
+
+        @Override
+        public DaysWithDataValidator[] newArray(int size) {
+            return new DaysWithDataValidator[size];
+        }
+    };
+}
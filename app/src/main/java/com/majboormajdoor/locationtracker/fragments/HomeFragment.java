@@ -7,6 +7,7 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Button;
+import android.widget.CompoundButton;
 import android.widget.SeekBar;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -24,6 +25,7 @@ import com.majboormajdoor.locationtracker.services.LocationTrackingService;
 import com.majboormajdoor.locationtracker.utils.PermissionUtils;
 import com.majboormajdoor.locationtracker.utils.PreferenceManager;
 import com.majboormajdoor.locationtracker.utils.ValidationUtils;
+import com.majboormajdoor.locationtracker.workers.UploadScheduler;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
@@ -37,6 +39,7 @@ public class HomeFragment extends Fragment {
     private SeekBar seekBarInterval;
     private TextView tvIntervalValue, tvIntervalLabel;
     private Button btnStartTracking, btnStopTracking, btnTestLocation;
+    private CompoundButton switchLeanTracking;
 
     private PreferenceManager preferenceManager;
     private FusedLocationProviderClient fusedLocationClient;
@@ -75,6 +78,7 @@ public class HomeFragment extends Fragment {
         btnStartTracking = view.findViewById(R.id.btn_start_tracking);
         btnStopTracking = view.findViewById(R.id.btn_stop_tracking);
         btnTestLocation = view.findViewById(R.id.btn_test_location);
+        switchLeanTracking = view.findViewById(R.id.switch_lean_tracking);
     }
 
     /**
@@ -123,6 +127,8 @@ public class HomeFragment extends Fragment {
         btnStartTracking.setOnClickListener(v -> startLocationTracking());
         btnStopTracking.setOnClickListener(v -> stopLocationTracking());
         btnTestLocation.setOnClickListener(v -> testLocationSending());
+        switchLeanTracking.setOnCheckedChangeListener((button, checked) ->
+                preferenceManager.setLeanTrackingProcess(checked));
 
         // Save email address when focus is lost
         trackieName.setOnFocusChangeListener((v, hasFocus) -> {
@@ -145,6 +151,8 @@ public class HomeFragment extends Fragment {
             trackieName.setText(savedEmail);
         }
 
+        switchLeanTracking.setChecked(preferenceManager.isLeanTrackingProcess());
+
         // Load saved time interval (stored in minutes)
         int savedIntervalMinutes = preferenceManager.getTimeInterval();
 
@@ -228,7 +236,7 @@ public class HomeFragment extends Fragment {
         int intervalMinutes = AppConstants.MIN_TIME_INTERVAL_MINUTES + (seekBarInterval.getProgress() * 10);
 
         // Start the service
-        Intent serviceIntent = new Intent(requireContext(), LocationTrackingService.class);
+        Intent serviceIntent = new Intent(requireContext(), LocationTrackingService.serviceClass(requireContext()));
         serviceIntent.setAction(AppConstants.SERVICE_ACTION_START);
         serviceIntent.putExtra(AppConstants.EXTRA_EMAIL_ADDRESS, trackieName);
         serviceIntent.putExtra(AppConstants.EXTRA_TIME_INTERVAL, intervalMinutes);
@@ -248,10 +256,15 @@ public class HomeFragment extends Fragment {
      * Stop location tracking service
      */
     private void stopLocationTracking() {
-        Intent serviceIntent = new Intent(requireContext(), LocationTrackingService.class);
+        Intent serviceIntent = new Intent(requireContext(), LocationTrackingService.serviceClass(requireContext()));
         serviceIntent.setAction(AppConstants.SERVICE_ACTION_STOP);
         requireContext().startService(serviceIntent);
         PreferenceManager.getInstance(getContext()).setTrackingStatus(false);
+        if (preferenceManager.isLeanTrackingProcess()) {
+            // The tracking process is going away, locations it could not send are flushed from here
+            // once its last upload finished, the two never drain the queue at the same time
+            UploadScheduler.requestFlush(requireContext());
+        }
         updateUI();
         showSuccess(AppConstants.SUCCESS_SERVICE_STOPPED);
     }
@@ -269,6 +282,7 @@ public class HomeFragment extends Fragment {
             // Disable configuration changes while tracking
             trackieName.setEnabled(false);
             seekBarInterval.setEnabled(false);
+            switchLeanTracking.setEnabled(false);
 
         } else {
             btnStartTracking.setEnabled(true);
@@ -279,6 +293,7 @@ public class HomeFragment extends Fragment {
             // Enable configuration changes
             trackieName.setEnabled(true);
             seekBarInterval.setEnabled(true);
+            switchLeanTracking.setEnabled(true);
         }
     }
 
@@ -0,0 +1,279 @@
+package com.majboormajdoor.locationtracker.logging;
+
+import android.util.Log;
+
+import com.majboormajdoor.locationtracker.BuildConfig;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Logging facade used on hot paths instead of calling {@link Log} directly
+ * Level, sampling and rate-limit checks run before any message is built, messages
+ * are parameterized with {} placeholders and {pii} marks values that are redacted
+ * in release builds (coordinates, tokens, emails)
+ */
+public final class AppLog {
+
+    static final String PII_PLACEHOLDER = "{pii}";
+    static final String PLACEHOLDER = "{}";
+    static final String REDACTED = "<redacted>";
+
+    private static final Pattern EMAIL_PATTERN = Pattern.compile("[\\w.%+-]+@[\\w.-]+\\.[A-Za-z]{2,}");
+    private static final Pattern JWT_PATTERN = Pattern.compile("eyJ[\\w-]+\\.[\\w-]+\\.[\\w-]*");
+
+    private static volatile int minLevel = BuildConfig.DEBUG ? Log.DEBUG : Log.INFO;
+    private static volatile boolean redactPii = !BuildConfig.DEBUG;
+    private static volatile LogRingBuffer ringBuffer;
+
+    private static final Map<String, TagPolicy> policies = new ConcurrentHashMap<>();
+
+    private AppLog() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    /**
+     * Minimum level written to logcat, e.g. {@link Log#INFO}
+     */
+    public static void setMinLevel(int level) {
+        minLevel = level;
+    }
+
+    public static void setRedactPii(boolean redact) {
+        redactPii = redact;
+    }
+
+    /**
+     * Attach (or detach with null) the in-memory binary sink
+     */
+    public static void setRingBuffer(LogRingBuffer buffer) {
+        ringBuffer = buffer;
+    }
+
+    public static LogRingBuffer getRingBuffer() {
+        return ringBuffer;
+    }
+
+    /**
+     * Keep only every Nth debug/info message for a tag
+     */
+    public static void setSampling(String tag, int everyN) {
+        policyFor(tag).sampleEvery = Math.max(1, everyN);
+    }
+
+    /**
+     * Allow at most maxPerSecond debug/info messages for a tag
+     */
+    public static void setRateLimit(String tag, int maxPerSecond) {
+        policyFor(tag).maxPerSecond = Math.max(0, maxPerSecond);
+    }
+
+    /**
+     * Check whether a message at this level would be recorded by any sink
+     */
+    public static boolean isLoggable(int level) {
+        LogRingBuffer buffer = ringBuffer;
+        return level >= minLevel || (buffer != null && level >= buffer.getMinLevel());
+    }
+
+    public static boolean isDebugEnabled() {
+        return isLoggable(Log.DEBUG);
+    }
+
+    // Debug
+
+    public static void d(String tag, String message) {
+        if (admit(Log.DEBUG, tag)) emit(Log.DEBUG, tag, message, null, null);
+    }
+
+    public static void d(String tag, String template, Object arg) {
+        if (admit(Log.DEBUG, tag)) emit(Log.DEBUG, tag, template, new Object[]{arg}, null);
+    }
+
+    public static void d(String tag, String template, double first, double second) {
+        if (admit(Log.DEBUG, tag)) emit(Log.DEBUG, tag, template, new Object[]{first, second}, null);
+    }
+
+    public static void d(String tag, String template, Object first, Object second) {
+        if (admit(Log.DEBUG, tag)) emit(Log.DEBUG, tag, template, new Object[]{first, second}, null);
+    }
+
+    public static void d(String tag, String template, Object... args) {
+        if (admit(Log.DEBUG, tag)) emit(Log.DEBUG, tag, template, args, null);
+    }
+
+    // Info
+
+    public static void i(String tag, String message) {
+        if (admit(Log.INFO, tag)) emit(Log.INFO, tag, message, null, null);
+    }
+
+    public static void i(String tag, String template, Object arg) {
+        if (admit(Log.INFO, tag)) emit(Log.INFO, tag, template, new Object[]{arg}, null);
+    }
+
+    public static void i(String tag, String template, Object... args) {
+        if (admit(Log.INFO, tag)) emit(Log.INFO, tag, template, args, null);
+    }
+
+    // Warning
+
+    public static void w(String tag, String message) {
+        if (admit(Log.WARN, tag)) emit(Log.WARN, tag, message, null, null);
+    }
+
+    public static void w(String tag, String template, Object arg) {
+        if (admit(Log.WARN, tag)) emit(Log.WARN, tag, template, new Object[]{arg}, null);
+    }
+
+    public static void w(String tag, String template, Object... args) {
+        if (admit(Log.WARN, tag)) emit(Log.WARN, tag, template, args, null);
+    }
+
+    // Error
+
+    public static void e(String tag, String message) {
+        if (admit(Log.ERROR, tag)) emit(Log.ERROR, tag, message, null, null);
+    }
+
+    public static void e(String tag, String message, Throwable throwable) {
+        if (admit(Log.ERROR, tag)) emit(Log.ERROR, tag, message, null, throwable);
+    }
+
+    public static void e(String tag, String template, Object arg) {
+        if (admit(Log.ERROR, tag)) emit(Log.ERROR, tag, template, new Object[]{arg}, null);
+    }
+
+    public static void e(String tag, String template, Object arg, Throwable throwable) {
+        if (admit(Log.ERROR, tag)) emit(Log.ERROR, tag, template, new Object[]{arg}, throwable);
+    }
+
+    /**
+     * Level check plus per-tag sampling and rate limiting, warnings and errors are never dropped
+     */
+    private static boolean admit(int level, String tag) {
+        if (!isLoggable(level)) {
+            return false;
+        }
+        if (level >= Log.WARN || policies.isEmpty()) {
+            return true;
+        }
+        TagPolicy policy = policies.get(tag);
+        return policy == null || policy.admit(System.currentTimeMillis());
+    }
+
+    private static void emit(int level, String tag, String template, Object[] args, Throwable throwable) {
+        boolean redact = redactPii;
+        LogRingBuffer buffer = ringBuffer;
+        if (buffer != null && level >= buffer.getMinLevel()) {
+            buffer.append(level, tag, template, args, redact);
+        }
+        if (level >= minLevel) {
+            String message = format(template, args, redact);
+            if (throwable != null) {
+                message = message + '\n' + stackTrace(throwable, redact);
+            }
+            Log.println(level, tag, message);
+        }
+    }
+
+    /**
+     * Substitute {} and {pii} placeholders, scrubbing emails and JWTs when redacting
+     */
+    static String format(String template, Object[] args, boolean redact) {
+        if (template == null) {
+            return "null";
+        }
+        String message = template;
+        if (args != null && args.length > 0) {
+            StringBuilder builder = new StringBuilder(template.length() + 16 * args.length);
+            int argIndex = 0;
+            int cursor = 0;
+            while (cursor < template.length()) {
+                int open = template.indexOf('{', cursor);
+                if (open < 0 || argIndex >= args.length) {
+                    break;
+                }
+                boolean pii = template.startsWith(PII_PLACEHOLDER, open);
+                if (!pii && !template.startsWith(PLACEHOLDER, open)) {
+                    builder.append(template, cursor, open + 1);
+                    cursor = open + 1;
+                    continue;
+                }
+                builder.append(template, cursor, open);
+                Object arg = args[argIndex++];
+                builder.append(pii && redact ? REDACTED : String.valueOf(arg));
+                cursor = open + (pii ? PII_PLACEHOLDER.length() : PLACEHOLDER.length());
+            }
+            builder.append(template, cursor, template.length());
+            message = builder.toString();
+        }
+        if (redact) {
+            message = scrub(message);
+        }
+        return message;
+    }
+
+    /**
+     * When redacting, exception messages are dropped from the whole cause chain, HTTP and
+     * Cognito errors carry URLs and account ids that no pattern reliably catches
+     */
+    static String stackTrace(Throwable throwable, boolean redact) {
+        if (!redact) {
+            return Log.getStackTraceString(throwable);
+        }
+        StringBuilder builder = new StringBuilder();
+        Set<Throwable> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Throwable current = throwable; current != null && seen.add(current); current = current.getCause()) {
+            if (current != throwable) {
+                builder.append("Caused by: ");
+            }
+            builder.append(current.getClass().getName()).append('\n');
+            for (StackTraceElement frame : current.getStackTrace()) {
+                builder.append("\tat ").append(frame).append('\n');
+            }
+        }
+        return builder.toString();
+    }
+
+    static String scrub(String message) {
+        if (message.indexOf('@') >= 0) {
+            message = EMAIL_PATTERN.matcher(message).replaceAll(REDACTED);
+        }
+        if (message.contains("eyJ")) {
+            message = JWT_PATTERN.matcher(message).replaceAll(REDACTED);
+        }
+        return message;
+    }
+
+    private static TagPolicy policyFor(String tag) {
+        return policies.computeIfAbsent(tag, key -> new TagPolicy());
+    }
+
+    /**
+     * Per-tag sampling counter and fixed one-second rate-limit window
+     */
+    private static final class TagPolicy {
+        volatile int sampleEvery = 1;
+        volatile int maxPerSecond = Integer.MAX_VALUE;
+
+        private long seen;
+        private long windowStartMillis;
+        private int windowCount;
+
+        synchronized boolean admit(long nowMillis) {
+            if (sampleEvery > 1 && (seen++ % sampleEvery) != 0) {
+                return false;
+            }
+            if (nowMillis - windowStartMillis >= 1000) {
+                windowStartMillis = nowMillis;
+                windowCount = 0;
+            }
+            return windowCount++ < maxPerSecond;
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package com.majboormajdoor.locationtracker.logging;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Fixed-size in-memory log sink storing compact binary records
+ * Tags and message templates are dictionary encoded and arguments are stored
+ * as typed values, so recording a message never formats a string; the oldest
+ * records are overwritten once the buffer is full
+ *
+ * Record layout: length(2) time(8) level(1) tag(2) template(2) argc(1) args...
+ * Ids are two bytes, so once either dictionary is full the buffer starts over rather than
+ * letting ids wrap onto the wrong tag or template
+ */
+public class LogRingBuffer {
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_DOUBLE = 1;
+    private static final byte TYPE_LONG = 2;
+    private static final byte TYPE_BOOLEAN = 3;
+    private static final byte TYPE_STRING = 4;
+    private static final byte TYPE_REDACTED = 5;
+
+    private static final int HEADER_SIZE = 2 + 8 + 1 + 2 + 2 + 1;
+    private static final int MAX_STRING_BYTES = 255;
+    private static final int MAX_ARGS = 64;
+    // Well under the 0xFFFF id space, templates are literals so only a misuse gets anywhere near
+    static final int MAX_DICTIONARY_ENTRIES = 4096;
+
+    private final byte[] buffer;
+    private final int minLevel;
+
+    private final Map<String, Integer> tagIds = new HashMap<>();
+    private final List<String> tags = new ArrayList<>();
+    private final Map<String, Template> templateIds = new HashMap<>();
+    private final List<Template> templates = new ArrayList<>();
+
+    private int head;
+    private int tail;
+    private int used;
+    private int records;
+    private long dropped;
+
+    public LogRingBuffer(int capacityBytes, int minLevel) {
+        this.buffer = new byte[Math.max(1024, capacityBytes)];
+        this.minLevel = minLevel;
+    }
+
+    public int getMinLevel() {
+        return minLevel;
+    }
+
+    /**
+     * Number of records overwritten because the buffer was full
+     */
+    public synchronized long getDroppedCount() {
+        return dropped;
+    }
+
+    synchronized void append(int level, String tag, String template, Object[] args, boolean redact) {
+        if ((!tagIds.containsKey(tag) && tags.size() >= MAX_DICTIONARY_ENTRIES)
+                || (!templateIds.containsKey(keyFor(template)) && templates.size() >= MAX_DICTIONARY_ENTRIES)) {
+            // Retained records refer to the old ids, they go with the dictionaries
+            dropped += records;
+            reset();
+        }
+        Template info = templateFor(template);
+        int tagId = idFor(tag);
+        int argc = args == null ? 0 : Math.min(args.length, MAX_ARGS);
+
+        int size = HEADER_SIZE;
+        for (int i = 0; i < argc; i++) {
+            size += encodedSize(args[i], redact && info.isPii(i));
+        }
+        if (size > buffer.length) {
+            return;
+        }
+        while (buffer.length - used < size) {
+            int recordSize = readShort(head);
+            head = (head + recordSize) % buffer.length;
+            used -= recordSize;
+            records--;
+            dropped++;
+        }
+
+        int position = tail;
+        position = writeShort(position, size);
+        position = writeLong(position, System.currentTimeMillis());
+        position = writeByte(position, level);
+        position = writeShort(position, tagId);
+        position = writeShort(position, info.id);
+        position = writeByte(position, argc);
+        for (int i = 0; i < argc; i++) {
+            position = writeArg(position, args[i], redact && info.isPii(i));
+        }
+        tail = position;
+        used += size;
+        records++;
+    }
+
+    /**
+     * Decode every retained record, oldest first, as logcat-style lines
+     */
+    public synchronized void dump(Writer writer) throws IOException {
+        SimpleDateFormat timeFormat = new SimpleDateFormat("MM-dd HH:mm:ss.SSS", Locale.US);
+        int position = head;
+        int remaining = used;
+        while (remaining > 0) {
+            int recordSize = readShort(position);
+            int cursor = (position + 2) % buffer.length;
+            long time = readLong(cursor);
+            cursor = (cursor + 8) % buffer.length;
+            int level = buffer[cursor] & 0xFF;
+            cursor = (cursor + 1) % buffer.length;
+            String tag = tags.get(readShort(cursor));
+            cursor = (cursor + 2) % buffer.length;
+            Template template = templates.get(readShort(cursor));
+            cursor = (cursor + 2) % buffer.length;
+            int argc = buffer[cursor] & 0xFF;
+            cursor = (cursor + 1) % buffer.length;
+
+            Object[] args = new Object[argc];
+            for (int i = 0; i < argc; i++) {
+                byte type = buffer[cursor];
+                cursor = (cursor + 1) % buffer.length;
+                switch (type) {
+                    case TYPE_DOUBLE:
+                        args[i] = Double.longBitsToDouble(readLong(cursor));
+                        cursor = (cursor + 8) % buffer.length;
+                        break;
+                    case TYPE_LONG:
+                        args[i] = readLong(cursor);
+                        cursor = (cursor + 8) % buffer.length;
+                        break;
+                    case TYPE_BOOLEAN:
+                        args[i] = buffer[cursor] != 0;
+                        cursor = (cursor + 1) % buffer.length;
+                        break;
+                    case TYPE_STRING:
+                        int length = buffer[cursor] & 0xFF;
+                        cursor = (cursor + 1) % buffer.length;
+                        byte[] bytes = new byte[length];
+                        for (int b = 0; b < length; b++) {
+                            bytes[b] = buffer[(cursor + b) % buffer.length];
+                        }
+                        args[i] = new String(bytes, StandardCharsets.UTF_8);
+                        cursor = (cursor + length) % buffer.length;
+                        break;
+                    case TYPE_REDACTED:
+                        args[i] = AppLog.REDACTED;
+                        break;
+                    default:
+                        args[i] = null;
+                        break;
+                }
+            }
+
+            writer.write(timeFormat.format(new Date(time)));
+            writer.write(' ');
+            writer.write(levelChar(level));
+            writer.write('/');
+            writer.write(tag);
+            writer.write(": ");
+            // PII was already dropped at record time when redaction was on
+            writer.write(AppLog.format(template.text, args, false));
+            writer.write('\n');
+
+            position = (position + recordSize) % buffer.length;
+            remaining -= recordSize;
+        }
+        writer.flush();
+    }
+
+    /**
+     * Drop every record along with the tag and template dictionaries
+     */
+    public synchronized void clear() {
+        reset();
+    }
+
+    private void reset() {
+        head = 0;
+        tail = 0;
+        used = 0;
+        records = 0;
+        tagIds.clear();
+        tags.clear();
+        templateIds.clear();
+        templates.clear();
+    }
+
+    private int idFor(String tag) {
+        Integer id = tagIds.get(tag);
+        if (id == null) {
+            id = tags.size();
+            tagIds.put(tag, id);
+            tags.add(tag);
+        }
+        return id;
+    }
+
+    private static String keyFor(String text) {
+        return text == null ? "null" : text;
+    }
+
+    private Template templateFor(String text) {
+        String key = keyFor(text);
+        Template template = templateIds.get(key);
+        if (template == null) {
+            template = new Template(templates.size(), key);
+            templateIds.put(key, template);
+            templates.add(template);
+        }
+        return template;
+    }
+
+    private static int encodedSize(Object arg, boolean redacted) {
+        if (redacted || arg == null) return 1;
+        if (arg instanceof Double || arg instanceof Float) return 1 + 8;
+        if (arg instanceof Long || arg instanceof Integer || arg instanceof Short || arg instanceof Byte) return 1 + 8;
+        if (arg instanceof Boolean) return 1 + 1;
+        return 1 + 1 + Math.min(MAX_STRING_BYTES, String.valueOf(arg).getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    private int writeArg(int position, Object arg, boolean redacted) {
+        if (redacted) {
+            return writeByte(position, TYPE_REDACTED);
+        }
+        if (arg == null) {
+            return writeByte(position, TYPE_NULL);
+        }
+        if (arg instanceof Double || arg instanceof Float) {
+            position = writeByte(position, TYPE_DOUBLE);
+            return writeLong(position, Double.doubleToRawLongBits(((Number) arg).doubleValue()));
+        }
+        if (arg instanceof Long || arg instanceof Integer || arg instanceof Short || arg instanceof Byte) {
+            position = writeByte(position, TYPE_LONG);
+            return writeLong(position, ((Number) arg).longValue());
+        }
+        if (arg instanceof Boolean) {
+            position = writeByte(position, TYPE_BOOLEAN);
+            return writeByte(position, ((Boolean) arg) ? 1 : 0);
+        }
+        byte[] bytes = String.valueOf(arg).getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(MAX_STRING_BYTES, bytes.length);
+        position = writeByte(position, TYPE_STRING);
+        position = writeByte(position, length);
+        for (int i = 0; i < length; i++) {
+            position = writeByte(position, bytes[i]);
+        }
+        return position;
+    }
+
+    private int writeByte(int position, int value) {
+        buffer[position] = (byte) value;
+        return (position + 1) % buffer.length;
+    }
+
+    private int writeShort(int position, int value) {
+        position = writeByte(position, value >>> 8);
+        return writeByte(position, value);
+    }
+
+    private int writeLong(int position, long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            position = writeByte(position, (int) (value >>> shift));
+        }
+        return position;
+    }
+
+    private int readShort(int position) {
+        return ((buffer[position] & 0xFF) << 8) | (buffer[(position + 1) % buffer.length] & 0xFF);
+    }
+
+    private long readLong(int position) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (buffer[(position + i) % buffer.length] & 0xFF);
+        }
+        return value;
+    }
+
+    private static char levelChar(int level) {
+        switch (level) {
+            case Log.VERBOSE: return 'V';
+            case Log.DEBUG: return 'D';
+            case Log.INFO: return 'I';
+            case Log.WARN: return 'W';
+            case Log.ERROR: return 'E';
+            default: return 'A';
+        }
+    }
+
+    /**
+     * Message template with the positions of its {pii} placeholders
+     */
+    private static final class Template {
+        final int id;
+        final String text;
+        private final long piiMask;
+
+        Template(int id, String text) {
+            this.id = id;
+            this.text = text;
+            long mask = 0;
+            int argIndex = 0;
+            int cursor = 0;
+            while (argIndex < 64) {
+                int open = text.indexOf('{', cursor);
+                if (open < 0) break;
+                if (text.startsWith(AppLog.PII_PLACEHOLDER, open)) {
+                    mask |= 1L << argIndex++;
+                    cursor = open + AppLog.PII_PLACEHOLDER.length();
+                } else if (text.startsWith(AppLog.PLACEHOLDER, open)) {
+                    argIndex++;
+                    cursor = open + AppLog.PLACEHOLDER.length();
+                } else {
+                    cursor = open + 1;
+                }
+            }
+            this.piiMask = mask;
+        }
+
+        boolean isPii(int argIndex) {
+            return argIndex < 64 && (piiMask & (1L << argIndex)) != 0;
+        }
+    }
+}
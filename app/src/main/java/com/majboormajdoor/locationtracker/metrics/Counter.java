@@ -0,0 +1,41 @@
+package com.majboormajdoor.locationtracker.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonic lock-free counter
+ * Increments are dropped while metrics are disabled
+ */
+public class Counter {
+
+    private final String name;
+    private final LongAdder value = new LongAdder();
+
+    Counter(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void inc() {
+        if (MetricsRegistry.enabled) {
+            value.increment();
+        }
+    }
+
+    public void add(long delta) {
+        if (MetricsRegistry.enabled) {
+            value.add(delta);
+        }
+    }
+
+    public long get() {
+        return value.sum();
+    }
+
+    void reset() {
+        value.reset();
+    }
+}
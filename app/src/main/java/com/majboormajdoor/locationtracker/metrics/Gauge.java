@@ -0,0 +1,46 @@
+package com.majboormajdoor.locationtracker.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Point-in-time value such as a queue depth or a store size
+ */
+public class Gauge {
+
+    private final String name;
+    private final AtomicLong value = new AtomicLong();
+
+    Gauge(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void set(long newValue) {
+        if (MetricsRegistry.enabled) {
+            value.set(newValue);
+        }
+    }
+
+    public void inc() {
+        if (MetricsRegistry.enabled) {
+            value.incrementAndGet();
+        }
+    }
+
+    public void dec() {
+        if (MetricsRegistry.enabled) {
+            value.decrementAndGet();
+        }
+    }
+
+    public long get() {
+        return value.get();
+    }
+
+    void reset() {
+        value.set(0);
+    }
+}
@@ -0,0 +1,149 @@
+package com.majboormajdoor.locationtracker.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free log-linear latency histogram (HDR style)
+ * Values are recorded in nanoseconds into 16 linear sub-buckets per power of two,
+ * which bounds the relative error of reported percentiles to about 6%
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(0);
+
+    LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Start a timing section, returns 0 when metrics are disabled so that
+     * {@link #recordSince(long)} can skip the clock read as well
+     */
+    public long start() {
+        return MetricsRegistry.enabled ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Record the time elapsed since a value returned by {@link #start()}
+     */
+    public void recordSince(long startNanos) {
+        if (startNanos != 0L && MetricsRegistry.enabled) {
+            recordNanos(System.nanoTime() - startNanos);
+        }
+    }
+
+    public void recordMillis(long millis) {
+        recordNanos(millis * 1_000_000L);
+    }
+
+    public void recordNanos(long nanos) {
+        if (!MetricsRegistry.enabled) {
+            return;
+        }
+        long value = Math.max(0L, nanos);
+        counts.incrementAndGet(indexFor(value));
+        count.increment();
+        sum.add(value);
+
+        long currentMin;
+        while (value < (currentMin = min.get())) {
+            if (min.compareAndSet(currentMin, value)) break;
+        }
+        long currentMax;
+        while (value > (currentMax = max.get())) {
+            if (max.compareAndSet(currentMax, value)) break;
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Approximate value at the given percentile (0-100) in nanoseconds
+     */
+    public long percentileNanos(double percentile) {
+        long total = count.sum();
+        if (total == 0) {
+            return 0L;
+        }
+        long target = (long) Math.ceil(total * Math.min(100.0, Math.max(0.0, percentile)) / 100.0);
+        if (target < 1) target = 1;
+
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(highestEquivalentValue(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Immutable view of this histogram, reported in milliseconds
+     */
+    public MetricsSnapshot.HistogramSnapshot snapshot() {
+        long total = count.sum();
+        MetricsSnapshot.HistogramSnapshot snapshot = new MetricsSnapshot.HistogramSnapshot();
+        snapshot.count = total;
+        if (total > 0) {
+            snapshot.minMs = toMillis(min.get());
+            snapshot.maxMs = toMillis(max.get());
+            snapshot.meanMs = toMillis(sum.sum()) / total;
+            snapshot.p50Ms = toMillis(percentileNanos(50));
+            snapshot.p90Ms = toMillis(percentileNanos(90));
+            snapshot.p99Ms = toMillis(percentileNanos(99));
+        }
+        return snapshot;
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0L);
+        }
+        count.reset();
+        sum.reset();
+        min.set(Long.MAX_VALUE);
+        max.set(0L);
+    }
+
+    static int indexFor(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+    }
+
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        long lowest = ((long) (SUB_BUCKETS + subBucket)) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,112 @@
+package com.majboormajdoor.locationtracker.metrics;
+
+import com.majboormajdoor.locationtracker.BuildConfig;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide registry of counters, gauges and latency histograms
+ * Call sites should look up a metric once and keep the handle, recording is then
+ * a single volatile read when metrics are disabled
+ */
+public class MetricsRegistry {
+
+    public static final String SNAPSHOT_FILE_NAME = "metrics.json";
+
+    static volatile boolean enabled = BuildConfig.DEBUG;
+
+    private static final MetricsRegistry instance = new MetricsRegistry();
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final long createdAtMillis = System.currentTimeMillis();
+
+    private MetricsRegistry() {
+    }
+
+    public static MetricsRegistry getInstance() {
+        return instance;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean isEnabled) {
+        enabled = isEnabled;
+    }
+
+    public Counter counter(String name) {
+        Counter counter = counters.get(name);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(name, Counter::new);
+        }
+        return counter;
+    }
+
+    public Gauge gauge(String name) {
+        Gauge gauge = gauges.get(name);
+        if (gauge == null) {
+            gauge = gauges.computeIfAbsent(name, Gauge::new);
+        }
+        return gauge;
+    }
+
+    public LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = histograms.get(name);
+        if (histogram == null) {
+            histogram = histograms.computeIfAbsent(name, LatencyHistogram::new);
+        }
+        return histogram;
+    }
+
+    /**
+     * Capture the current value of every metric
+     */
+    public MetricsSnapshot snapshot() {
+        MetricsSnapshot snapshot = new MetricsSnapshot();
+        snapshot.capturedAtMillis = System.currentTimeMillis();
+        snapshot.uptimeMillis = snapshot.capturedAtMillis - createdAtMillis;
+        for (Counter counter : counters.values()) {
+            snapshot.counters.put(counter.getName(), counter.get());
+        }
+        for (Gauge gauge : gauges.values()) {
+            snapshot.gauges.put(gauge.getName(), gauge.get());
+        }
+        for (LatencyHistogram histogram : histograms.values()) {
+            snapshot.histograms.put(histogram.getName(), histogram.snapshot());
+        }
+        return snapshot;
+    }
+
+    /**
+     * Write a JSON snapshot into the given directory and return the file
+     */
+    public File writeSnapshot(File directory) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+        File file = new File(directory, SNAPSHOT_FILE_NAME);
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(snapshot().toJson());
+        }
+        return file;
+    }
+
+    /**
+     * Reset all recorded values, registered handles stay valid
+     */
+    public void reset() {
+        for (Counter counter : counters.values()) counter.reset();
+        for (Gauge gauge : gauges.values()) gauge.reset();
+        for (LatencyHistogram histogram : histograms.values()) histogram.reset();
+    }
+}
@@ -0,0 +1,37 @@
+package com.majboormajdoor.locationtracker.metrics;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Point-in-time copy of every registered metric, serializable to JSON
+ */
+public class MetricsSnapshot {
+
+    public long capturedAtMillis;
+    public long uptimeMillis;
+    public Map<String, Long> counters = new TreeMap<>();
+    public Map<String, Long> gauges = new TreeMap<>();
+    public Map<String, HistogramSnapshot> histograms = new TreeMap<>();
+
+    /**
+     * Summary of a {@link LatencyHistogram}, values in milliseconds
+     */
+    public static class HistogramSnapshot {
+        public long count;
+        public double minMs;
+        public double maxMs;
+        public double meanMs;
+        public double p50Ms;
+        public double p90Ms;
+        public double p99Ms;
+    }
+
+    public String toJson() {
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        return gson.toJson(this);
+    }
+}
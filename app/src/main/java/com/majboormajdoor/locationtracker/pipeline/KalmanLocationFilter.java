@@ -0,0 +1,182 @@
+package com.majboormajdoor.locationtracker.pipeline;
+
+/**
+ * Constant-velocity Kalman filter that smooths raw GPS fixes
+ * Positions are tracked in meters on a local east/north plane around an origin near the
+ * track, each measurement is weighted by its reported accuracy. All state lives in
+ * primitive fields so an update never allocates
+ */
+public class KalmanLocationFilter {
+
+    private static final double EARTH_RADIUS_METERS = 6371008.8;
+    private static final double METERS_PER_DEGREE = EARTH_RADIUS_METERS * Math.PI / 180.0;
+    private static final double REANCHOR_DISTANCE_METERS = 50_000;
+    private static final float DEFAULT_ACCURACY_METERS = 30f;
+
+    private final double accelerationVariance;
+    private final long maxGapNanos;
+    private final float maxAccuracyMeters;
+
+    private boolean initialized;
+    private long lastTimeNanos;
+
+    // Local plane origin
+    private double originLatitude;
+    private double originLongitude;
+    private double metersPerDegreeLongitude;
+
+    // State: east/north position and velocity
+    private double east;
+    private double north;
+    private double velocityEast;
+    private double velocityNorth;
+
+    // Covariance [[p00, p01], [p01, p11]], identical for both axes because they share
+    // the same timing, process noise and measurement noise
+    private double p00;
+    private double p01;
+    private double p11;
+
+    /**
+     * @param accelerationStdDev expected unmodelled acceleration in m/s^2, higher follows turns faster
+     * @param maxGapMillis       a longer gap between fixes restarts the filter from the new fix
+     */
+    public KalmanLocationFilter(double accelerationStdDev, long maxGapMillis) {
+        this(accelerationStdDev, maxGapMillis, 0f);
+    }
+
+    /**
+     * @param maxAccuracyMeters fixes with a larger accuracy radius are rejected before they reach
+     *                          the estimate, 0 disables the check
+     */
+    public KalmanLocationFilter(double accelerationStdDev, long maxGapMillis, float maxAccuracyMeters) {
+        this.accelerationVariance = accelerationStdDev * accelerationStdDev;
+        this.maxGapNanos = maxGapMillis * 1_000_000L;
+        this.maxAccuracyMeters = maxAccuracyMeters;
+    }
+
+    /**
+     * Feed one fix, the smoothed result is then available from the getters
+     *
+     * @param accuracyMeters reported horizontal accuracy, 0 or less when unknown
+     * @param timeNanos      monotonic fix time, e.g. elapsed realtime nanos
+     * @return false when the fix was too inaccurate to use, the estimate is then unchanged
+     */
+    public boolean update(double latitude, double longitude, float accuracyMeters, long timeNanos) {
+        if (maxAccuracyMeters > 0 && accuracyMeters > maxAccuracyMeters) {
+            return false;
+        }
+        double accuracy = accuracyMeters > 0 ? accuracyMeters : DEFAULT_ACCURACY_METERS;
+        double measurementVariance = accuracy * accuracy;
+
+        long gapNanos = timeNanos - lastTimeNanos;
+        if (!initialized || gapNanos > maxGapNanos || gapNanos < 0) {
+            reset(latitude, longitude, measurementVariance, timeNanos);
+            return true;
+        }
+
+        double measuredEast = (longitude - originLongitude) * metersPerDegreeLongitude;
+        double measuredNorth = (latitude - originLatitude) * METERS_PER_DEGREE;
+
+        if (gapNanos > 0) {
+            predict(gapNanos / 1e9);
+        }
+        lastTimeNanos = timeNanos;
+
+        // Update, the gain is shared by both axes
+        double innovationVariance = p00 + measurementVariance;
+        double k0 = p00 / innovationVariance;
+        double k1 = p01 / innovationVariance;
+
+        double residualEast = measuredEast - east;
+        double residualNorth = measuredNorth - north;
+        east += k0 * residualEast;
+        north += k0 * residualNorth;
+        velocityEast += k1 * residualEast;
+        velocityNorth += k1 * residualNorth;
+
+        double oldP01 = p01;
+        p11 -= k1 * oldP01;
+        p01 = (1 - k0) * oldP01;
+        p00 = (1 - k0) * p00;
+
+        if (Math.abs(east) > REANCHOR_DISTANCE_METERS || Math.abs(north) > REANCHOR_DISTANCE_METERS) {
+            setOrigin(getLatitude(), getLongitude());
+            east = 0;
+            north = 0;
+        }
+        return true;
+    }
+
+    public void reset() {
+        initialized = false;
+    }
+
+    public boolean isInitialized() {
+        return initialized;
+    }
+
+    public double getLatitude() {
+        return originLatitude + north / METERS_PER_DEGREE;
+    }
+
+    public double getLongitude() {
+        return originLongitude + east / metersPerDegreeLongitude;
+    }
+
+    /**
+     * Estimated ground speed in m/s
+     */
+    public double getSpeed() {
+        return Math.sqrt(velocityEast * velocityEast + velocityNorth * velocityNorth);
+    }
+
+    /**
+     * Estimated heading in degrees clockwise from north
+     */
+    public double getBearing() {
+        double bearing = Math.toDegrees(Math.atan2(velocityEast, velocityNorth));
+        return bearing < 0 ? bearing + 360 : bearing;
+    }
+
+    /**
+     * One-sigma position uncertainty of the estimate in meters
+     */
+    public double getAccuracy() {
+        return Math.sqrt(p00);
+    }
+
+    /**
+     * Constant-velocity prediction with white-noise acceleration
+     */
+    private void predict(double dt) {
+        east += velocityEast * dt;
+        north += velocityNorth * dt;
+
+        double dt2 = dt * dt;
+        double q = accelerationVariance;
+        p00 += 2 * dt * p01 + dt2 * p11 + q * dt2 * dt2 / 4;
+        p01 += dt * p11 + q * dt2 * dt / 2;
+        p11 += q * dt2;
+    }
+
+    private void reset(double latitude, double longitude, double measurementVariance, long timeNanos) {
+        setOrigin(latitude, longitude);
+        east = 0;
+        north = 0;
+        velocityEast = 0;
+        velocityNorth = 0;
+        p00 = measurementVariance;
+        p01 = 0;
+        // Unknown velocity, allow anything up to highway speeds
+        p11 = 30.0 * 30.0;
+        lastTimeNanos = timeNanos;
+        initialized = true;
+    }
+
+    private void setOrigin(double latitude, double longitude) {
+        originLatitude = latitude;
+        originLongitude = longitude;
+        metersPerDegreeLongitude = METERS_PER_DEGREE * Math.max(1e-6, Math.cos(Math.toRadians(latitude)));
+    }
+}
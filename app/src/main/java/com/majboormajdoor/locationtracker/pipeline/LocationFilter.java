@@ -0,0 +1,133 @@
+package com.majboormajdoor.locationtracker.pipeline;
+
+import com.majboormajdoor.locationtracker.constants.AppConstants;
+import com.majboormajdoor.locationtracker.metrics.Counter;
+import com.majboormajdoor.locationtracker.metrics.MetricsRegistry;
+
+/**
+ * Decides which fixes are worth uploading
+ * Drops repeated fixes, movement inside the fixes' own accuracy radius and low-accuracy
+ * outliers, while still letting a stationary heartbeat through every few minutes
+ */
+public class LocationFilter {
+
+    private static final double EARTH_RADIUS_METERS = 6371008.8;
+
+    /**
+     * Outcome of {@link #evaluate}
+     */
+    public enum Decision {
+        ACCEPT(true),
+        HEARTBEAT(true),
+        DUPLICATE(false),
+        STATIONARY(false),
+        LOW_ACCURACY(false);
+
+        public final boolean upload;
+
+        Decision(boolean upload) {
+            this.upload = upload;
+        }
+    }
+
+    private final float minDistanceMeters;
+    private final float maxAccuracyMeters;
+    private final long heartbeatMillis;
+
+    private final Counter accepted = MetricsRegistry.getInstance().counter(AppConstants.METRIC_FILTER_ACCEPTED);
+    private final Counter heartbeats = MetricsRegistry.getInstance().counter(AppConstants.METRIC_FILTER_HEARTBEAT);
+    private final Counter duplicates = MetricsRegistry.getInstance().counter(AppConstants.METRIC_FILTER_DUPLICATE);
+    private final Counter stationary = MetricsRegistry.getInstance().counter(AppConstants.METRIC_FILTER_STATIONARY);
+    private final Counter lowAccuracy = MetricsRegistry.getInstance().counter(AppConstants.METRIC_FILTER_LOW_ACCURACY);
+
+    private boolean hasLast;
+    private double lastLatitude;
+    private double lastLongitude;
+    private float lastAccuracy;
+    private long lastFixTimeMillis;
+
+    public LocationFilter() {
+        this(AppConstants.MINIMUM_DISTANCE, AppConstants.FILTER_MAX_ACCURACY_METERS,
+                AppConstants.FILTER_HEARTBEAT_MINUTES * 60_000L);
+    }
+
+    /**
+     * @param minDistanceMeters movement below this is never reported
+     * @param maxAccuracyMeters fixes with a larger accuracy radius are dropped, 0 disables the check
+     * @param heartbeatMillis   a stationary fix is sent once this long has passed since the last upload, 0 disables heartbeats
+     */
+    public LocationFilter(float minDistanceMeters, float maxAccuracyMeters, long heartbeatMillis) {
+        this.minDistanceMeters = minDistanceMeters;
+        this.maxAccuracyMeters = maxAccuracyMeters;
+        this.heartbeatMillis = heartbeatMillis;
+    }
+
+    /**
+     * Classify a fix and, when it should be uploaded, remember it as the new reference point
+     *
+     * @param accuracyMeters horizontal accuracy radius, 0 or less when unknown
+     */
+    public synchronized Decision evaluate(double latitude, double longitude, float accuracyMeters, long fixTimeMillis) {
+        Decision decision = classify(latitude, longitude, accuracyMeters, fixTimeMillis);
+        switch (decision) {
+            case ACCEPT: accepted.inc(); break;
+            case HEARTBEAT: heartbeats.inc(); break;
+            case DUPLICATE: duplicates.inc(); break;
+            case STATIONARY: stationary.inc(); break;
+            case LOW_ACCURACY: lowAccuracy.inc(); break;
+        }
+        if (decision.upload) {
+            hasLast = true;
+            lastLatitude = latitude;
+            lastLongitude = longitude;
+            lastAccuracy = Math.max(0f, accuracyMeters);
+            lastFixTimeMillis = fixTimeMillis;
+        }
+        return decision;
+    }
+
+    /**
+     * Forget the reference point so the next fix is always uploaded
+     */
+    public synchronized void reset() {
+        hasLast = false;
+    }
+
+    private Decision classify(double latitude, double longitude, float accuracyMeters, long fixTimeMillis) {
+        if (maxAccuracyMeters > 0 && accuracyMeters > maxAccuracyMeters) {
+            return Decision.LOW_ACCURACY;
+        }
+        if (!hasLast) {
+            return Decision.ACCEPT;
+        }
+        if (fixTimeMillis == lastFixTimeMillis
+                || (latitude == lastLatitude && longitude == lastLongitude)) {
+            return heartbeatDue(fixTimeMillis) ? Decision.HEARTBEAT : Decision.DUPLICATE;
+        }
+
+        // Two fixes closer together than their accuracy radius are indistinguishable
+        double threshold = Math.max(minDistanceMeters, Math.max(lastAccuracy, Math.max(0f, accuracyMeters)));
+        if (distanceMeters(lastLatitude, lastLongitude, latitude, longitude) < threshold) {
+            return heartbeatDue(fixTimeMillis) ? Decision.HEARTBEAT : Decision.STATIONARY;
+        }
+        return Decision.ACCEPT;
+    }
+
+    private boolean heartbeatDue(long fixTimeMillis) {
+        return heartbeatMillis > 0 && fixTimeMillis - lastFixTimeMillis >= heartbeatMillis;
+    }
+
+    /**
+     * Great-circle distance using the haversine formula
+     */
+    public static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
+        double phi1 = Math.toRadians(lat1);
+        double phi2 = Math.toRadians(lat2);
+        double dPhi = phi2 - phi1;
+        double dLambda = Math.toRadians(lon2 - lon1);
+        double sinPhi = Math.sin(dPhi / 2);
+        double sinLambda = Math.sin(dLambda / 2);
+        double a = sinPhi * sinPhi + Math.cos(phi1) * Math.cos(phi2) * sinLambda * sinLambda;
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+}
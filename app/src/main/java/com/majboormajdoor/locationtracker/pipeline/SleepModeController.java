@@ -0,0 +1,176 @@
+package com.majboormajdoor.locationtracker.pipeline;
+
+import com.majboormajdoor.locationtracker.constants.AppConstants;
+import com.majboormajdoor.locationtracker.logging.AppLog;
+import com.majboormajdoor.locationtracker.metrics.Counter;
+import com.majboormajdoor.locationtracker.metrics.MetricsRegistry;
+
+/**
+ * Puts tracking to sleep while a trackie is parked
+ *
+ * Fixes that stay within {@link AppConstants#DWELL_RADIUS_METERS} of an anchor for
+ * {@link AppConstants#DWELL_MILLIS} count as a dwell. Active updates are then dropped in favour
+ * of an exit geofence around the anchor, and resume once the geofence reports an exit. Active
+ * updates are only stopped after the geofence is confirmed, a failed registration keeps tracking
+ */
+public class SleepModeController {
+    private static final String TAG = "SleepModeController";
+
+    public enum State {
+        ACTIVE,
+        ARMING,
+        SLEEPING
+    }
+
+    /**
+     * The platform side, results of {@link #addExitGeofence} come back through
+     * {@link #onGeofenceAdded()} or {@link #onGeofenceFailed()}
+     */
+    public interface Provider {
+        /**
+         * Whether an exit geofence can be registered at all, without it the trackie never sleeps
+         */
+        boolean canGeofence();
+
+        void startActiveUpdates();
+
+        void stopActiveUpdates();
+
+        void addExitGeofence(double latitude, double longitude, float radiusMeters);
+
+        void removeExitGeofence();
+    }
+
+    private final Provider provider;
+    private final float dwellRadiusMeters;
+    private final long dwellMillis;
+    private final float maxAccuracyMeters;
+    private final float geofenceRadiusMeters;
+
+    private State state = State.ACTIVE;
+    private boolean hasAnchor;
+    private double anchorLatitude;
+    private double anchorLongitude;
+    private long anchorTimeMillis;
+
+    private final Counter entered = MetricsRegistry.getInstance().counter(AppConstants.METRIC_SLEEP_ENTERED);
+    private final Counter exited = MetricsRegistry.getInstance().counter(AppConstants.METRIC_SLEEP_EXITED);
+    private final Counter geofenceFailed = MetricsRegistry.getInstance().counter(AppConstants.METRIC_SLEEP_GEOFENCE_FAILED);
+
+    public SleepModeController(Provider provider) {
+        this(provider, AppConstants.DWELL_RADIUS_METERS, AppConstants.DWELL_MILLIS,
+                AppConstants.DWELL_MAX_ACCURACY_METERS, AppConstants.SLEEP_GEOFENCE_RADIUS_METERS);
+    }
+
+    /**
+     * @param maxAccuracyMeters    fixes with a larger accuracy radius are ignored, 0 disables the check
+     * @param geofenceRadiusMeters exit geofence radius, never smaller than the dwell radius
+     */
+    public SleepModeController(Provider provider, float dwellRadiusMeters, long dwellMillis,
+                               float maxAccuracyMeters, float geofenceRadiusMeters) {
+        this.provider = provider;
+        this.dwellRadiusMeters = dwellRadiusMeters;
+        this.dwellMillis = dwellMillis;
+        this.maxAccuracyMeters = maxAccuracyMeters;
+        this.geofenceRadiusMeters = Math.max(geofenceRadiusMeters, dwellRadiusMeters);
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized boolean isSleeping() {
+        return state == State.SLEEPING;
+    }
+
+    /**
+     * Feed an active fix, may start arming the exit geofence
+     *
+     * @param accuracyMeters horizontal accuracy radius, 0 or less when unknown
+     */
+    public synchronized void onFix(double latitude, double longitude, float accuracyMeters, long fixTimeMillis) {
+        if (state != State.ACTIVE) {
+            // Late fixes delivered while the geofence is being armed or after stopping updates
+            return;
+        }
+        if (maxAccuracyMeters > 0 && accuracyMeters > maxAccuracyMeters) {
+            return;
+        }
+        if (!hasAnchor || fixTimeMillis < anchorTimeMillis
+                || LocationFilter.distanceMeters(anchorLatitude, anchorLongitude, latitude, longitude) > dwellRadiusMeters) {
+            hasAnchor = true;
+            anchorLatitude = latitude;
+            anchorLongitude = longitude;
+            anchorTimeMillis = fixTimeMillis;
+            return;
+        }
+        if (fixTimeMillis - anchorTimeMillis >= dwellMillis) {
+            if (!provider.canGeofence()) {
+                // Not a failure, check again after the next dwell
+                hasAnchor = false;
+                AppLog.d(TAG, "Dwell detected but geofencing is unavailable, staying active");
+                return;
+            }
+            state = State.ARMING;
+            AppLog.d(TAG, "Dwell detected after {} ms, arming exit geofence", fixTimeMillis - anchorTimeMillis);
+            provider.addExitGeofence(anchorLatitude, anchorLongitude, geofenceRadiusMeters);
+        }
+    }
+
+    /**
+     * The exit geofence is registered, active updates can stop
+     */
+    public synchronized void onGeofenceAdded() {
+        if (state != State.ARMING) {
+            // Stopped or woken while the registration was in flight
+            provider.removeExitGeofence();
+            return;
+        }
+        state = State.SLEEPING;
+        entered.inc();
+        provider.stopActiveUpdates();
+        AppLog.d(TAG, "Sleeping until the trackie leaves {} m around the parked position", geofenceRadiusMeters);
+    }
+
+    /**
+     * The exit geofence could not be registered, keep tracking and retry after another dwell
+     */
+    public synchronized void onGeofenceFailed() {
+        geofenceFailed.inc();
+        if (state != State.ARMING) {
+            return;
+        }
+        state = State.ACTIVE;
+        hasAnchor = false;
+        AppLog.w(TAG, "Exit geofence not registered, staying active");
+    }
+
+    /**
+     * The trackie left the parked position, resume active tracking
+     */
+    public synchronized void onGeofenceExit() {
+        if (state == State.ACTIVE) {
+            return;
+        }
+        boolean wasSleeping = state == State.SLEEPING;
+        state = State.ACTIVE;
+        hasAnchor = false;
+        provider.removeExitGeofence();
+        if (wasSleeping) {
+            exited.inc();
+            provider.startActiveUpdates();
+        }
+        AppLog.d(TAG, "Exit geofence triggered, active tracking resumed");
+    }
+
+    /**
+     * Tracking stopped, drop any geofence. Active updates are left to the caller
+     */
+    public synchronized void stop() {
+        if (state != State.ACTIVE) {
+            provider.removeExitGeofence();
+        }
+        state = State.ACTIVE;
+        hasAnchor = false;
+    }
+}
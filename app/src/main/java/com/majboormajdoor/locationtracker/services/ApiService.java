@@ -1,9 +1,12 @@
 package com.majboormajdoor.locationtracker.services;
 
 import static com.majboormajdoor.locationtracker.constants.AppConstants.BASE_URL;
+import static com.majboormajdoor.locationtracker.constants.AppConstants.METRIC_HTTP_FIRST_COLD;
+import static com.majboormajdoor.locationtracker.constants.AppConstants.METRIC_HTTP_FIRST_WARM;
+import static com.majboormajdoor.locationtracker.constants.AppConstants.METRIC_HTTP_PREFIX;
+import static com.majboormajdoor.locationtracker.constants.AppConstants.METRIC_SERIALIZE_PREFIX;
 
 import android.content.Context;
-import android.util.Log;
 
 import androidx.annotation.Nullable;
 
@@ -14,6 +17,9 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.majboormajdoor.locationtracker.dto.Location;
 import com.majboormajdoor.locationtracker.dto.SubscriptionRequest;
 import com.majboormajdoor.locationtracker.dto.User;
+import com.majboormajdoor.locationtracker.logging.AppLog;
+import com.majboormajdoor.locationtracker.metrics.LatencyHistogram;
+import com.majboormajdoor.locationtracker.metrics.MetricsRegistry;
 import com.majboormajdoor.locationtracker.utils.PreferenceManager;
 import com.majboormajdoor.locationtracker.utils.ValidationUtils;
 
@@ -30,25 +36,42 @@ import org.apache.hc.core5.http.io.entity.StringEntity;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 public class ApiService {
 
     private static final String TAG = "ApiService";
+
+    // Per-endpoint HTTP latency and JSON (de)serialization timings
+    private static final LatencyHistogram HTTP_POST_LOCATION = MetricsRegistry.getInstance().histogram(METRIC_HTTP_PREFIX + "post_location");
+    private static final LatencyHistogram HTTP_GET_LOCATION = MetricsRegistry.getInstance().histogram(METRIC_HTTP_PREFIX + "get_location");
+    private static final LatencyHistogram HTTP_GET_SUBSCRIBE = MetricsRegistry.getInstance().histogram(METRIC_HTTP_PREFIX + "get_subscribe");
+    private static final LatencyHistogram HTTP_PUT_SUBSCRIBE = MetricsRegistry.getInstance().histogram(METRIC_HTTP_PREFIX + "put_subscribe");
+    private static final LatencyHistogram SERIALIZE_LOCATION = MetricsRegistry.getInstance().histogram(METRIC_SERIALIZE_PREFIX + "location");
+    private static final LatencyHistogram DESERIALIZE_LOCATIONS = MetricsRegistry.getInstance().histogram(METRIC_SERIALIZE_PREFIX + "location_history");
+    private static final LatencyHistogram DESERIALIZE_USER = MetricsRegistry.getInstance().histogram(METRIC_SERIALIZE_PREFIX + "user");
+    private static final LatencyHistogram SERIALIZE_SUBSCRIPTION = MetricsRegistry.getInstance().histogram(METRIC_SERIALIZE_PREFIX + "subscription");
+    // The process's first request, split by whether startup pre-warmed the connection
+    private static final LatencyHistogram HTTP_FIRST_WARM = MetricsRegistry.getInstance().histogram(METRIC_HTTP_FIRST_WARM);
+    private static final LatencyHistogram HTTP_FIRST_COLD = MetricsRegistry.getInstance().histogram(METRIC_HTTP_FIRST_COLD);
+    private static final AtomicBoolean firstRequestPending = new AtomicBoolean(true);
     private final CloseableHttpClient httpClient;
     private final CognitoAuthService authService;
 
 
 
     public ApiService(Context context) {
-        this.httpClient = CustomHttpClientConfig.createHttpClient();
+        this.httpClient = CustomHttpClientConfig.sharedHttpClient();
         this.authService = CognitoAuthService.getInstance(context);
     }
 
     /**
      * Posts location data to the backend with authentication using Amplify session directly
+     * @return handle that aborts the post if it has not been answered yet
      */
-    public void postLocation(Location locationData, ApiCallback callback) {
+    public UploadCall postLocation(Location locationData, ApiCallback callback) {
+        UploadCall call = new UploadCall();
         // First get the authentication token using CognitoAuthService for proper JWT token
         authService.getTokenForApiCall(new CognitoAuthService.TokenCallback() {
             @Override
@@ -58,14 +81,14 @@ public class ApiService {
                     result -> {
                         if (result.isSignedIn()) {
                             // Use both JWT token and session for API call
-                            executeLocationPostWithAuth(locationData, accessToken, result, callback);
+                            executeLocationPostWithAuth(locationData, accessToken, result, call, callback);
                         } else {
-                            Log.e(TAG, "User not signed in");
+                            AppLog.e(TAG, "User not signed in");
                             callback.onError("User not signed in - please authenticate first");
                         }
                     },
                     error -> {
-                        Log.e(TAG, "Failed to fetch auth session: " + error);
+                        AppLog.e(TAG, "Failed to fetch auth session: {}", error);
                         callback.onError("Authentication session failed: " + error.getMessage());
                     }
                 );
@@ -73,10 +96,11 @@ public class ApiService {
 
             @Override
             public void onError(String error) {
-                Log.e(TAG, "Failed to get authentication token: " + error);
+                AppLog.e(TAG, "Failed to get authentication token: {}", error);
                 callback.onError("Authentication failed: " + error);
             }
         });
+        return call;
     }
 
     public void createSubscription(SubscriptionRequest subscriptionRequest, ApiCallback callback) {
@@ -91,12 +115,12 @@ public class ApiService {
                                 // Use both JWT token and session for API call
                                 executeSubscriptionPutWithAuth(subscriptionRequest, accessToken, result, callback);
                             } else {
-                                Log.e(TAG, "User not signed in");
+                                AppLog.e(TAG, "User not signed in");
                                 callback.onError("User not signed in - please authenticate first");
                             }
                         },
                         error -> {
-                            Log.e(TAG, "Failed to fetch auth session: " + error);
+                            AppLog.e(TAG, "Failed to fetch auth session: {}", error);
                             callback.onError("Authentication session failed: " + error.getMessage());
                         }
                 );
@@ -104,7 +128,7 @@ public class ApiService {
 
             @Override
             public void onError(String error) {
-                Log.e(TAG, "Failed to get authentication token: " + error);
+                AppLog.e(TAG, "Failed to get authentication token: {}", error);
                 callback.onError("Authentication failed: " + error);
             }
         });
@@ -122,12 +146,12 @@ public class ApiService {
                                 // Use both JWT token and session for API call
                                 executeUserCheckSubscription(result, callback, context);
                             } else {
-                                Log.e(TAG, "User not signed in");
+                                AppLog.e(TAG, "User not signed in");
                                 callback.onSubscriptionCheckError("Error");
                             }
                         },
                         error -> {
-                            Log.e(TAG, "Failed to fetch auth session: " + error);
+                            AppLog.e(TAG, "Failed to fetch auth session: {}", error);
                             callback.onSubscriptionCheckError("Authentication error");
                         }
                 );
@@ -135,7 +159,7 @@ public class ApiService {
 
             @Override
             public void onError(String error) {
-                Log.e(TAG, "Failed to get authentication token: " + error);
+                AppLog.e(TAG, "Failed to get authentication token: {}", error);
                 callback.onSubscriptionCheckError("Authentication failed: " + error);
             }
         });
@@ -144,7 +168,7 @@ public class ApiService {
     /**
      * Execute the actual HTTP POST request with JWT token and Amplify session authentication
      */
-    private void executeLocationPostWithAuth(Location locationData, String jwtToken, com.amplifyframework.auth.AuthSession authSession, ApiCallback callback) {
+    private void executeLocationPostWithAuth(Location locationData, String jwtToken, com.amplifyframework.auth.AuthSession authSession, UploadCall call, ApiCallback callback) {
         // Execute network operation on background thread to avoid NetworkOnMainThreadException
         new Thread(() -> {
 
@@ -153,7 +177,7 @@ public class ApiService {
 
                 AWSCognitoAuthSession cogSession = (AWSCognitoAuthSession) authSession;
                 if (cogSession.getUserPoolTokensResult().getValue() == null){
-                    Log.e(TAG, "Cognito session tokens are null");
+                    AppLog.e(TAG, "Cognito session tokens are null");
                     callback.onError("Authentication tokens are null - please authenticate first");
                     return;
                  }
@@ -161,7 +185,7 @@ public class ApiService {
                 postRequest.setHeader("Content-Type", "application/json");
                 postRequest.setHeader("Authorization", cogSession.getUserPoolTokensResult().getValue().getIdToken());
                 postRequest.setHeader("X-Amz-Date", ValidationUtils.generateISO8601BasicFormat());
-                Log.d(TAG, "Added Authorization header with JWT token");
+                AppLog.d(TAG, "Added Authorization header with JWT token");
 
                 // For AWS API Gateway, we need to pass Cognito identity information
                 // Try to extract user information from the session
@@ -173,39 +197,47 @@ public class ApiService {
                             postRequest.setHeader("X-Amz-User-Id", user.getUserId());
                             postRequest.setHeader("X-Amz-User-Sub", user.getUserId());
 
-                            Log.d(TAG, "Added user headers - ID: " + user.getUserId());
+                            AppLog.d(TAG, "Added user headers - ID: {pii}", user.getUserId());
                         },
-                        error -> Log.w(TAG, "Could not get user info: " + error)
+                        error -> AppLog.w(TAG, "Could not get user info: {}", error)
                     );
                 } catch (Exception e) {
-                    Log.w(TAG, "Error getting user context: " + e.getMessage());
+                    AppLog.w(TAG, "Error getting user context: {}", e.getMessage());
                 }
 
-                Log.d(TAG, "Using Amplify session for authentication");
-                Log.d(TAG, "Session signed in: " + authSession.isSignedIn());
+                AppLog.d(TAG, "Using Amplify session for authentication");
+                AppLog.d(TAG, "Session signed in: {}", authSession.isSignedIn());
 
                 // Create the request entity
                 postRequest.setEntity(createLocationEntity(locationData));
 
                 // Log the location data being sent
-                Log.d(TAG, "Sending location data - Lat: " + locationData.getLatitude() +
-                          ", Lng: " + locationData.getLongitude() +
-                          ", Email: " + locationData.getUserName()); // Using getPhoneNumber() which contains email
-                Log.d(TAG, "Sending POST request to: " + BASE_URL);
+                AppLog.d(TAG, "Sending location data - Lat: {pii}, Lng: {pii}, Email: {pii}",
+                        locationData.getLatitude(), locationData.getLongitude(), locationData.getUserName());
+                AppLog.d(TAG, "Sending POST request to: {}", BASE_URL);
 
             } catch (JsonProcessingException e) {
-                Log.e(TAG, "Error serializing location data", e);
+                AppLog.e(TAG, "Error serializing location data", e);
                 callback.onError("Failed to serialize location data");
                 return;
             }
 
+            // Published before the check so a cancel in between still aborts it
+            call.request = postRequest;
+            if (call.cancelled) {
+                callback.onError("Upload cancelled");
+                return;
+            }
+            long httpStart = HTTP_POST_LOCATION.start();
             try (CloseableHttpResponse response = httpClient.execute(postRequest)) {
+                HTTP_POST_LOCATION.recordSince(httpStart);
+                recordIfFirstRequest(httpStart);
                 int statusCode = response.getCode();
                 if (statusCode == HttpStatus.SC_OK || statusCode == HttpStatus.SC_CREATED) {
-                    Log.d(TAG, "Location updated successfully - Status: " + statusCode);
+                    AppLog.d(TAG, "Location updated successfully - Status: {}", statusCode);
                     callback.onSuccess("Location sent successfully to API");
                 } else {
-                    Log.w(TAG, "Failed to update location. HTTP Status: " + statusCode);
+                    AppLog.w(TAG, "Failed to update location. HTTP Status: {}", statusCode);
                     // Try to get response body for more details
                     try {
                         if (response.getEntity() != null) {
@@ -215,12 +247,12 @@ public class ApiService {
                             callback.onError("API call failed with status " + statusCode + " (no response body)");
                         }
                     } catch (Exception e) {
-                        Log.e(TAG, "Error reading response body: " + e.getMessage());
+                        AppLog.e(TAG, "Error reading response body: {}", e.getMessage());
                         callback.onError("API call failed with status " + statusCode);
                     }
                 }
             } catch (Exception e) {
-                Log.e(TAG, "Error sending location data", e);
+                AppLog.e(TAG, "Error sending location data", e);
                 callback.onError("Network error: " + e.getMessage());
             }
         }).start();
@@ -241,12 +273,12 @@ public class ApiService {
                             // Use both JWT token and session for API call
                             executeLocationGetWithAuth(accessToken, result, callback, context);
                         } else {
-                            Log.e(TAG, "User not signed in");
+                            AppLog.e(TAG, "User not signed in");
                             callback.onError("User not signed in - please authenticate first");
                         }
                     },
                     error -> {
-                        Log.e(TAG, "Failed to fetch auth session: " + error);
+                        AppLog.e(TAG, "Failed to fetch auth session: {}", error);
                         callback.onError("Authentication session failed: " + error.getMessage());
                     }
                 );
@@ -254,7 +286,7 @@ public class ApiService {
 
             @Override
             public void onError(String error) {
-                Log.e(TAG, "Failed to get authentication token: " + error);
+                AppLog.e(TAG, "Failed to get authentication token: {}", error);
                 callback.onError("Authentication failed: " + error);
             }
         });
@@ -272,7 +304,7 @@ public class ApiService {
             try {
                 AWSCognitoAuthSession cogSession = (AWSCognitoAuthSession) authSession;
                 if (cogSession.getUserPoolTokensResult().getValue() == null){
-                    Log.e(TAG, "Cognito session tokens are null");
+                    AppLog.e(TAG, "Cognito session tokens are null");
                     callback.onError("Authentication tokens are null - please authenticate first");
                     return;
                 }
@@ -282,7 +314,7 @@ public class ApiService {
                 getRequest.setHeader("Content-Type", "application/json");
                 getRequest.setHeader("Authorization", cogSession.getUserPoolTokensResult().getValue().getIdToken());
                 getRequest.setHeader("X-Amz-Date", ValidationUtils.generateISO8601BasicFormat());
-                Log.d(TAG, "Added Authorization header with JWT token for GET request");
+                AppLog.d(TAG, "Added Authorization header with JWT token for GET request");
 
                 // For AWS API Gateway, we need to pass Cognito identity information
                 try {
@@ -294,47 +326,52 @@ public class ApiService {
                             getRequest.setHeader("X-Amz-User-Id", user.getUserId());
                             getRequest.setHeader("X-Amz-User-Sub", user.getUserId());
 
-                            Log.d(TAG, "Added user headers - ID: " + user.getUserId());
+                            AppLog.d(TAG, "Added user headers - ID: {pii}", user.getUserId());
                         },
-                        error -> Log.w(TAG, "Could not get user info: " + error)
+                        error -> AppLog.w(TAG, "Could not get user info: {}", error)
                     );
                 } catch (Exception e) {
-                    Log.w(TAG, "Error getting user context: " + e.getMessage());
+                    AppLog.w(TAG, "Error getting user context: {}", e.getMessage());
                 }
 
-                Log.d(TAG, "Sending GET request to: " + BASE_URL + "/location");
+                AppLog.d(TAG, "Sending GET request to: {}/location", BASE_URL);
 
             } catch (Exception e) {
-                Log.e(TAG, "Error creating GET request", e);
+                AppLog.e(TAG, "Error creating GET request", e);
                 callback.onError("Failed to create request");
                 return;
             }
 
+            long httpStart = HTTP_GET_LOCATION.start();
             try (CloseableHttpResponse response = httpClient.execute(getRequest)) {
+                HTTP_GET_LOCATION.recordSince(httpStart);
+                recordIfFirstRequest(httpStart);
                 int statusCode = response.getCode();
                 if (statusCode == HttpStatus.SC_OK) {
-                    Log.d(TAG, "Location history fetched successfully - Status: " + statusCode);
+                    AppLog.d(TAG, "Location history fetched successfully - Status: {}", statusCode);
 
                     // Parse the response body
                     if (response.getEntity() != null) {
                         String responseBody = EntityUtils.toString(response.getEntity());
-                        Log.d(TAG, "Response body: " + responseBody);
+                        AppLog.d(TAG, "Response body: {} chars", responseBody.length());
 
                         try {
                             ObjectMapper mapper = new ObjectMapper();
                             // Parse as array of Location objects
+                            long parseStart = DESERIALIZE_LOCATIONS.start();
                             Location[] locations = mapper.readValue(responseBody, Location[].class);
+                            DESERIALIZE_LOCATIONS.recordSince(parseStart);
                             List<Location> locationList = Arrays.asList(locations);
                             callback.onSuccess(locationList);
                         } catch (Exception e) {
-                            Log.e(TAG, "Error parsing location history response", e);
+                            AppLog.e(TAG, "Error parsing location history response", e);
                             callback.onError("Failed to parse location data: " + e.getMessage());
                         }
                     } else {
                         callback.onError("Empty response from server");
                     }
                 } else {
-                    Log.w(TAG, "Failed to fetch location history. HTTP Status: " + statusCode);
+                    AppLog.w(TAG, "Failed to fetch location history. HTTP Status: {}", statusCode);
                     // Try to get response body for more details
                     try {
                         if (response.getEntity() != null) {
@@ -344,30 +381,50 @@ public class ApiService {
                             callback.onError("API call failed with status " + statusCode + " (no response body)");
                         }
                     } catch (Exception e) {
-                        Log.e(TAG, "Error reading error response body: " + e.getMessage());
+                        AppLog.e(TAG, "Error reading error response body: {}", e.getMessage());
                         callback.onError("API call failed with status " + statusCode);
                     }
                 }
             } catch (Exception e) {
-                Log.e(TAG, "Error fetching location history", e);
+                AppLog.e(TAG, "Error fetching location history", e);
                 callback.onError("Network error: " + e.getMessage());
             }
         }).start();
     }
 
     private StringEntity createLocationEntity(Location locationData) throws JsonProcessingException {
+        long start = SERIALIZE_LOCATION.start();
         ObjectMapper mapper = new ObjectMapper();
         String json = mapper.writeValueAsString(locationData);
+        SERIALIZE_LOCATION.recordSince(start);
         return new StringEntity(json, ContentType.APPLICATION_JSON);
     }
 
     private StringEntity createSubscriptionRequestEntity(SubscriptionRequest subscriptionRequest) throws JsonProcessingException {
+        long start = SERIALIZE_SUBSCRIPTION.start();
         ObjectMapper mapper = new ObjectMapper();
         String json = mapper.writeValueAsString(subscriptionRequest);
+        SERIALIZE_SUBSCRIPTION.recordSince(start);
         return new StringEntity(json, ContentType.APPLICATION_JSON);
     }
 
 
+    /**
+     * A location post in flight, cancelling stops it from reaching the server if it has not yet
+     */
+    public static final class UploadCall {
+        private volatile boolean cancelled;
+        private volatile HttpPost request;
+
+        public void cancel() {
+            cancelled = true;
+            HttpPost current = request;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+    }
+
     /**
      * Callback interface for API responses
      */
@@ -376,6 +433,12 @@ public class ApiService {
         void onError(String error);
     }
 
+    private static void recordIfFirstRequest(long httpStart) {
+        if (httpStart != 0L && firstRequestPending.compareAndSet(true, false)) {
+            (StartupPrewarmer.isConnectionWarm() ? HTTP_FIRST_WARM : HTTP_FIRST_COLD).recordSince(httpStart);
+        }
+    }
+
     /**
      * Callback interface for location history responses
      */
@@ -396,30 +459,35 @@ public class ApiService {
             HttpGet getRequest = buildGetRequest((AWSCognitoAuthSession) authSession, callback, context);
             if (getRequest == null) return;
 
+            long httpStart = HTTP_GET_SUBSCRIBE.start();
             try (CloseableHttpResponse response = httpClient.execute(getRequest)) {
+                HTTP_GET_SUBSCRIBE.recordSince(httpStart);
+                recordIfFirstRequest(httpStart);
                 int statusCode = response.getCode();
                 if (statusCode == HttpStatus.SC_OK) {
-                    Log.d(TAG, "User checked successfully " + statusCode);
+                    AppLog.d(TAG, "User checked successfully {}", statusCode);
 
                     // Parse the response body
                     if (response.getEntity() != null) {
                         String responseBody = EntityUtils.toString(response.getEntity());
-                        Log.d(TAG, "Response body: " + responseBody);
+                        AppLog.d(TAG, "Response body: {} chars", responseBody.length());
 
                         try {
                             ObjectMapper mapper = new ObjectMapper();
                             // Parse as array of Location objects
+                            long parseStart = DESERIALIZE_USER.start();
                             User user = mapper.readValue(responseBody, User.class);
+                            DESERIALIZE_USER.recordSince(parseStart);
                             callback.onSubscriptionCheckSuccess(user);
                         } catch (Exception e) {
-                            Log.e(TAG, "Error parsing luser subscription", e);
+                            AppLog.e(TAG, "Error parsing luser subscription", e);
                             callback.onSubscriptionCheckError("Failed to parse user subscription " + e.getMessage());
                         }
                     } else {
                         callback.onSubscriptionCheckError("Empty response from server");
                     }
                 } else {
-                    Log.w(TAG, "Failed to check user subscription" + statusCode);
+                    AppLog.w(TAG, "Failed to check user subscription {}", statusCode);
                     // Try to get response body for more details
                     try {
                         if (response.getEntity() != null) {
@@ -429,12 +497,12 @@ public class ApiService {
                             callback.onSubscriptionCheckError("API call failed with status " + statusCode + " (no response body)");
                         }
                     } catch (Exception e) {
-                        Log.e(TAG, "Error reading error response body: " + e.getMessage());
+                        AppLog.e(TAG, "Error reading error response body: {}", e.getMessage());
                         callback.onSubscriptionCheckError("API call failed with status " + statusCode);
                     }
                 }
             } catch (Exception e) {
-                Log.e(TAG, "Error fetching location history", e);
+                AppLog.e(TAG, "Error fetching location history", e);
                 callback.onSubscriptionCheckError("Network error: " + e.getMessage());
             }
         }).start();
@@ -446,7 +514,7 @@ public class ApiService {
         try {
             AWSCognitoAuthSession cogSession = authSession;
             if (cogSession.getUserPoolTokensResult().getValue() == null){
-                Log.e(TAG, "Cognito session tokens are null");
+                AppLog.e(TAG, "Cognito session tokens are null");
                 callback.onSubscriptionCheckError("Authentication tokens are null - please authenticate first");
                 return null;
             }
@@ -462,12 +530,12 @@ public class ApiService {
             getRequest.setHeader("X-Amz-User-Id", userID);
             getRequest.setHeader("X-Amz-User-Sub", userID);
 
-            Log.d(TAG, "Added user headers - ID: " + userID);
-            Log.d(TAG, "Added Authorization header with JWT token for GET request");
-            Log.d(TAG, "Sending GET request to: " + BASE_URL + "/location");
+            AppLog.d(TAG, "Added user headers - ID: {pii}", userID);
+            AppLog.d(TAG, "Added Authorization header with JWT token for GET request");
+            AppLog.d(TAG, "Sending GET request to: {}/location", BASE_URL);
 
         } catch (Exception e) {
-            Log.e(TAG, "Error creating GET request", e);
+            AppLog.e(TAG, "Error creating GET request", e);
             callback.onSubscriptionCheckError("Failed to create request");
             return null;
         }
@@ -482,10 +550,10 @@ public class ApiService {
                         // Add user identification headers for AWS API Gateway
                        PreferenceManager.getInstance(context).saveUserId(authUser.getUserId());
                     },
-                    error -> Log.w(TAG, "Could not get user info: " + error)
+                    error -> AppLog.w(TAG, "Could not get user info: {}", error)
             );
         } catch (Exception e) {
-            Log.w(TAG, "Error getting user context: " + e.getMessage());
+            AppLog.w(TAG, "Error getting user context: {}", e.getMessage());
         }
     }
 
@@ -498,7 +566,7 @@ public class ApiService {
 
                 AWSCognitoAuthSession cogSession = (AWSCognitoAuthSession) authSession;
                 if (cogSession.getUserPoolTokensResult().getValue() == null){
-                    Log.e(TAG, "Cognito session tokens are null");
+                    AppLog.e(TAG, "Cognito session tokens are null");
                     callback.onError("Authentication tokens are null - please authenticate first");
                     return;
                 }
@@ -506,7 +574,7 @@ public class ApiService {
                 httpPut.setHeader("Content-Type", "application/json");
                 httpPut.setHeader("Authorization", cogSession.getUserPoolTokensResult().getValue().getIdToken());
                 httpPut.setHeader("X-Amz-Date", ValidationUtils.generateISO8601BasicFormat());
-                Log.d(TAG, "Added Authorization header with JWT token");
+                AppLog.d(TAG, "Added Authorization header with JWT token");
 
                 // For AWS API Gateway, we need to pass Cognito identity information
                 // Try to extract user information from the session
@@ -518,34 +586,37 @@ public class ApiService {
                                 httpPut.setHeader("X-Amz-User-Id", authUser.getUserId());
                                 httpPut.setHeader("X-Amz-User-Sub", authUser.getUserId());
 
-                                Log.d(TAG, "Added user headers - ID: " + authUser.getUserId());
+                                AppLog.d(TAG, "Added user headers - ID: {pii}", authUser.getUserId());
                             },
-                            error -> Log.w(TAG, "Could not get user info: " + error)
+                            error -> AppLog.w(TAG, "Could not get user info: {}", error)
                     );
                 } catch (Exception e) {
-                    Log.w(TAG, "Error getting user context: " + e.getMessage());
+                    AppLog.w(TAG, "Error getting user context: {}", e.getMessage());
                 }
 
-                Log.d(TAG, "Using Amplify session for authentication");
-                Log.d(TAG, "Session signed in: " + authSession.isSignedIn());
+                AppLog.d(TAG, "Using Amplify session for authentication");
+                AppLog.d(TAG, "Session signed in: {}", authSession.isSignedIn());
 
                 // Create the request entity
                 httpPut.setEntity(createSubscriptionRequestEntity(subscriptionRequest));
 
 
             } catch (JsonProcessingException e) {
-                Log.e(TAG, "Error serializing user data", e);
+                AppLog.e(TAG, "Error serializing user data", e);
                 callback.onError("Failed to serialize user data");
                 return;
             }
 
+            long httpStart = HTTP_PUT_SUBSCRIBE.start();
             try (CloseableHttpResponse response = httpClient.execute(httpPut)) {
+                HTTP_PUT_SUBSCRIBE.recordSince(httpStart);
+                recordIfFirstRequest(httpStart);
                 int statusCode = response.getCode();
                 if (statusCode == HttpStatus.SC_OK || statusCode == HttpStatus.SC_CREATED) {
-                    Log.d(TAG, "Location updated successfully - Status: " + statusCode);
+                    AppLog.d(TAG, "Location updated successfully - Status: {}", statusCode);
                     callback.onSuccess("Location sent successfully to API");
                 } else {
-                    Log.w(TAG, "Failed to update location. HTTP Status: " + statusCode);
+                    AppLog.w(TAG, "Failed to update location. HTTP Status: {}", statusCode);
                     // Try to get response body for more details
                     try {
                         if (response.getEntity() != null) {
@@ -555,12 +626,12 @@ public class ApiService {
                             callback.onError("API call failed with status " + statusCode + " (no response body)");
                         }
                     } catch (Exception e) {
-                        Log.e(TAG, "Error reading response body: " + e.getMessage());
+                        AppLog.e(TAG, "Error reading response body: {}", e.getMessage());
                         callback.onError("API call failed with status " + statusCode);
                     }
                 }
             } catch (Exception e) {
-                Log.e(TAG, "Error sending location data", e);
+                AppLog.e(TAG, "Error sending location data", e);
                 callback.onError("Network error: " + e.getMessage());
             }
         }).start();
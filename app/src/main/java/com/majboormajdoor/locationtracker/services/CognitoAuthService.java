@@ -13,6 +13,7 @@ import com.amplifyframework.auth.cognito.AWSCognitoAuthSession;
 import com.amplifyframework.auth.cognito.result.AWSCognitoAuthSignOutResult;
 import com.amplifyframework.auth.options.AuthSignUpOptions;
 import com.amplifyframework.core.Amplify;
+import com.majboormajdoor.locationtracker.billing.EntitlementCache;
 import com.majboormajdoor.locationtracker.utils.PreferenceManager;
 
 import java.util.ArrayList;
@@ -30,7 +31,7 @@ public class CognitoAuthService {
     private final Handler mainHandler = new Handler(Looper.getMainLooper());
 
     // Store authentication tokens
-    private String accessToken;
+    private volatile String accessToken;
 
     // Authentication result callbacks
     public interface AuthCallback {
@@ -49,8 +50,8 @@ public class CognitoAuthService {
         void onError(String error);
     }
 
-    private CognitoAuthService() {
-        // Private constructor for singleton
+    protected CognitoAuthService() {
+        // Singleton, subclassed only to stand in for Cognito when measuring startup
     }
 
     /**
@@ -80,6 +81,13 @@ public class CognitoAuthService {
         return instance;
     }
 
+    /**
+     * Install the instance {@link #getInstance} hands out, for fakes measuring startup
+     */
+    public static synchronized void setInstance(CognitoAuthService service) {
+        instance = service;
+    }
+
     /**
      * Post runnable to main thread
      */
@@ -258,6 +266,30 @@ public class CognitoAuthService {
         );
     }
 
+    /**
+     * Load the session ahead of the first API call and cache the user id, nothing is posted to the main thread
+     * @param done run on an Amplify thread once the session answered, signed in or not
+     */
+    public void primeSession(Context context, Runnable done) {
+        Amplify.Auth.fetchAuthSession(
+            result -> {
+                if (result.isSignedIn()) {
+                    accessToken = "authenticated";
+                    AWSCognitoAuthSession session = (AWSCognitoAuthSession) result;
+                    String userId = session.getUserSubResult().getValue();
+                    if (userId != null && !userId.equals(PreferenceManager.getInstance(context).getUserId())) {
+                        PreferenceManager.getInstance(context).saveUserId(userId);
+                    }
+                }
+                done.run();
+            },
+            error -> {
+                Log.w(TAG, "Could not prime auth session", error);
+                done.run();
+            }
+        );
+    }
+
     /**
      * Check if user is signed in and return status
      */
@@ -291,6 +323,8 @@ public class CognitoAuthService {
     public void signOut(AuthCallback callback) {
         Amplify.Auth.signOut(
             authSignOutResult -> {
+                // Purchases and grants belong to the account that is leaving
+                EntitlementCache.getInstance().clear();
                 if (authSignOutResult instanceof AWSCognitoAuthSignOutResult.CompleteSignOut) {
                     // Sign Out completed fully and without errors.
                     Log.i("AuthQuickStart", "Signed out successfully");
@@ -1,21 +1,54 @@
 package com.majboormajdoor.locationtracker.services;
 
+import com.majboormajdoor.locationtracker.constants.AppConstants;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
 import org.apache.hc.client5.http.config.RequestConfig;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
 import org.apache.hc.core5.util.Timeout;
 
- class CustomHttpClientConfig {
+public class CustomHttpClientConfig {
+
+    private static CloseableHttpClient shared;
+
+    /**
+     * One pooled client for the process, so a connection opened by any caller serves the next
+     */
+    public static synchronized CloseableHttpClient sharedHttpClient() {
+        if (shared == null) {
+            shared = createHttpClient();
+        }
+        return shared;
+    }
 
     public static CloseableHttpClient createHttpClient() {
+        return createHttpClient(AppConstants.HTTP_RESPONSE_TIMEOUT_MS, AppConstants.HTTP_CONNECTION_REQUEST_TIMEOUT_MS);
+    }
+
+    /**
+     * Both limits are bounded so hung calls give their pooled connection back and a caller
+     * never waits for one forever
+     */
+    public static CloseableHttpClient createHttpClient(long responseTimeoutMs, long connectionRequestTimeoutMs) {
+
+        // Connect limits belong to the pool, requests only set how long they wait for a response
+        ConnectionConfig connectionConfig = ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(AppConstants.HTTP_CONNECT_TIMEOUT_MS))
+                .build();
 
         RequestConfig config = RequestConfig.custom()
-                .setConnectTimeout(Timeout.ofDays(5000))
-                .setResponseTimeout(Timeout.ofDays(5000))
+                .setResponseTimeout(Timeout.ofMilliseconds(responseTimeoutMs))
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(connectionRequestTimeoutMs))
                 .build();
 
         return HttpClients.custom()
+                .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                        .setDefaultConnectionConfig(connectionConfig)
+                        .setMaxConnPerRoute(AppConstants.HTTP_MAX_CONNECTIONS_PER_ROUTE)
+                        .build())
                 .setDefaultRequestConfig(config)
                 .build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,17 @@
+package com.majboormajdoor.locationtracker.services;
+
+/**
+ * {@link LocationTrackingService} declared in its own process, see the manifest
+ *
+ * Only the pipeline, the pending queue and the upload path are loaded there, the activities,
+ * Billing and whatever the UI left in memory stay in the app process, so a long session is a
+ * much smaller target for low-memory kills. The two processes share the pending queue and
+ * settings on disk; status comes back to the UI as a package-local broadcast
+ */
+public class LeanLocationTrackingService extends LocationTrackingService {
+
+    @Override
+    protected boolean isLeanProcess() {
+        return true;
+    }
+}
@@ -6,35 +6,58 @@ import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.app.Service;
+import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.location.Location;
 import android.os.Build;
+import android.os.Debug;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
-import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.core.app.ActivityCompat;
 import androidx.core.app.NotificationCompat;
 import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.Geofence;
+import com.google.android.gms.location.GeofencingClient;
+import com.google.android.gms.location.GeofencingEvent;
+import com.google.android.gms.location.GeofencingRequest;
 import com.google.android.gms.location.LocationCallback;
 import com.google.android.gms.location.LocationRequest;
 import com.google.android.gms.location.LocationResult;
 import com.google.android.gms.location.LocationServices;
 import com.google.android.gms.location.Priority;
+import com.majboormajdoor.locationtracker.BuildConfig;
 import com.majboormajdoor.locationtracker.R;
 import com.majboormajdoor.locationtracker.activities.MainActivity;
 import com.majboormajdoor.locationtracker.constants.AppConstants;
+import com.majboormajdoor.locationtracker.logging.AppLog;
+import com.majboormajdoor.locationtracker.logging.LogRingBuffer;
+import com.majboormajdoor.locationtracker.metrics.Counter;
+import com.majboormajdoor.locationtracker.metrics.Gauge;
+import com.majboormajdoor.locationtracker.metrics.LatencyHistogram;
+import com.majboormajdoor.locationtracker.metrics.MetricsRegistry;
+import com.majboormajdoor.locationtracker.pipeline.KalmanLocationFilter;
+import com.majboormajdoor.locationtracker.pipeline.LocationFilter;
+import com.majboormajdoor.locationtracker.pipeline.SleepModeController;
+import com.majboormajdoor.locationtracker.utils.PendingLocationQueue;
 import com.majboormajdoor.locationtracker.utils.PreferenceManager;
+import com.majboormajdoor.locationtracker.workers.AlarmTimer;
+import com.majboormajdoor.locationtracker.workers.LocationUploader;
+import com.majboormajdoor.locationtracker.workers.UploadCadence;
+import com.majboormajdoor.locationtracker.workers.UploadScheduler;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Background service for location tracking and SMS sending
@@ -47,24 +70,97 @@ public class LocationTrackingService extends Service {
     private FusedLocationProviderClient fusedLocationClient;
     private LocationCallback locationCallback;
     private LocationRequest locationRequest;
-    private Handler apiHandler;
-    private Runnable apiRunnable;
-    private ApiService apiService;
+    // Fixes are received and smoothed here, never on the main thread
+    private HandlerThread locationThread;
+    private Handler locationHandler;
+    private PendingLocationQueue pendingQueue;
+    private final LocationFilter uploadFilter = new LocationFilter();
+    private final KalmanLocationFilter smoother = new KalmanLocationFilter(
+            AppConstants.KALMAN_ACCELERATION_STD_DEV, AppConstants.KALMAN_MAX_GAP_MILLIS,
+            AppConstants.FILTER_MAX_ACCURACY_METERS);
+
+    // Upload ticks come from alarms so they keep firing under Doze
+    private UploadCadence uploadCadence;
+    private final PreferenceManager.SettingsListener intervalListener = (previous, current, changedKeys) -> {
+        if (changedKeys.contains(AppConstants.PREF_TIME_INTERVAL) && current.timeIntervalMinutes > 0) {
+            timeIntervalMinutes = current.timeIntervalMinutes;
+            uploadCadence.setInterval(intervalMillis());
+        }
+    };
+
+    // Parked trackies swap active updates for an exit geofence
+    private GeofencingClient geofencingClient;
+    private PendingIntent geofenceIntent;
+    private SleepModeController sleepMode;
+
+    private volatile int timeIntervalMinutes;
+    private volatile String trackieName;
+    // Handoff to the upload stage: written by the location thread once a fix is fully processed,
+    // read by the upload tick
+    private volatile android.location.Location lastKnownLocation;
+
+    // Pipeline metrics
+    private final Counter fixCounter = MetricsRegistry.getInstance().counter(AppConstants.METRIC_FIX_COUNT);
+    private final LatencyHistogram fixInterval = MetricsRegistry.getInstance().histogram(AppConstants.METRIC_FIX_INTERVAL);
+    private final LatencyHistogram fixHandling = MetricsRegistry.getInstance().histogram(AppConstants.METRIC_FIX_HANDLING);
+    private final Gauge processPss = MetricsRegistry.getInstance().gauge(AppConstants.METRIC_PROCESS_PSS);
+
+    // Lean process only: WorkManager lives in the app process, so uploads run here instead
+    private ExecutorService uploadExecutor;
+    private LocationUploader uploader;
+    private final AtomicBoolean uploadRequested = new AtomicBoolean();
 
-    private ScheduledExecutorService scheduler;
+    /**
+     * The service class tracking runs in, picked by the lean process setting
+     */
+    public static Class<? extends LocationTrackingService> serviceClass(Context context) {
+        return PreferenceManager.getInstance(context).isLeanTrackingProcess()
+                ? LeanLocationTrackingService.class : LocationTrackingService.class;
+    }
 
-    private int timeIntervalMinutes;
-    private android.location.Location lastKnownLocation;
+    /**
+     * Whether this instance runs in the separate tracking process
+     */
+    protected boolean isLeanProcess() {
+        return false;
+    }
 
     @Override
     public void onCreate() {
         super.onCreate();
-        Log.d(TAG, "Service created");
+        // Per-fix debug output is capped; debug builds also keep a binary ring buffer for dumps
+        AppLog.setRateLimit(TAG, AppConstants.LOG_MAX_PER_SECOND_PER_TAG);
+        if (BuildConfig.DEBUG && AppLog.getRingBuffer() == null) {
+            AppLog.setRingBuffer(new LogRingBuffer(AppConstants.LOG_RING_BUFFER_BYTES, Log.DEBUG));
+        }
+        AppLog.d(TAG, "Service created");
 
         fusedLocationClient = LocationServices.getFusedLocationProviderClient(this);
-        apiHandler = new Handler(Looper.getMainLooper());
-        apiService = new ApiService(getApplicationContext());
+        locationThread = new HandlerThread(AppConstants.LOCATION_THREAD_NAME, Process.THREAD_PRIORITY_BACKGROUND);
+        locationThread.start();
+        locationHandler = new Handler(locationThread.getLooper());
+        pendingQueue = PendingLocationQueue.getInstance(getApplicationContext());
+        if (isLeanProcess()) {
+            uploadExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, "tracker-upload"));
+            uploader = new LocationUploader(getApplicationContext());
+        }
 
+        Intent tick = new Intent(this, getClass()).setAction(AppConstants.SERVICE_ACTION_UPLOAD_TICK);
+        PendingIntent tickIntent = PendingIntent.getService(this, 0, tick,
+                PendingIntent.FLAG_IMMUTABLE | PendingIntent.FLAG_UPDATE_CURRENT);
+        uploadCadence = new UploadCadence(new AlarmTimer(this, tickIntent), SystemClock::elapsedRealtime,
+                this::onUploadTick);
+        PreferenceManager.getInstance(getApplicationContext()).addListener(intervalListener);
+
+        geofencingClient = LocationServices.getGeofencingClient(this);
+        Intent geofence = new Intent(this, getClass()).setAction(AppConstants.SERVICE_ACTION_GEOFENCE);
+        // Play services adds the event to the intent, so it has to stay mutable
+        geofenceIntent = PendingIntent.getService(this, 1, geofence, PendingIntent.FLAG_UPDATE_CURRENT
+                | (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S ? PendingIntent.FLAG_MUTABLE : 0));
+        sleepMode = new SleepModeController(new SleepProvider());
 
         createNotificationChannel();
         setupLocationRequest();
@@ -80,10 +176,29 @@ public class LocationTrackingService extends Service {
             if (AppConstants.SERVICE_ACTION_START.equals(action)) {
                 timeIntervalMinutes = intent.getIntExtra(AppConstants.EXTRA_TIME_INTERVAL,
                     AppConstants.DEFAULT_TIME_INTERVAL_MINUTES);
+                // Settings written by the app process just now may not be on disk yet for a fresh lean process
+                trackieName = intent.getStringExtra(AppConstants.EXTRA_EMAIL_ADDRESS);
 
                 startLocationTracking();
                 startForeground(AppConstants.LOCATION_SERVICE_NOTIFICATION_ID, createNotification());
 
+            } else if (AppConstants.SERVICE_ACTION_UPLOAD_TICK.equals(action)) {
+                if (uploadCadence.isRunning()) {
+                    // Off the main thread, queuing writes to disk
+                    locationHandler.post(uploadCadence::onTimer);
+                } else {
+                    // An alarm outlived the tracking session that armed it
+                    stopSelf(startId);
+                }
+
+            } else if (AppConstants.SERVICE_ACTION_GEOFENCE.equals(action)) {
+                GeofencingEvent event = GeofencingEvent.fromIntent(intent);
+                if (event == null || event.hasError()) {
+                    AppLog.w(TAG, "Geofence event error {}", event != null ? event.getErrorCode() : -1);
+                } else if (event.getGeofenceTransition() == Geofence.GEOFENCE_TRANSITION_EXIT) {
+                    locationHandler.post(sleepMode::onGeofenceExit);
+                }
+
             } else if (AppConstants.SERVICE_ACTION_STOP.equals(action)) {
                 stopLocationTracking();
                 stopForeground(true);
@@ -102,8 +217,19 @@ public class LocationTrackingService extends Service {
     @Override
     public void onDestroy() {
         super.onDestroy();
-        Log.d(TAG, "Service destroyed");
+        AppLog.d(TAG, "Service destroyed");
         stopLocationTracking();
+        PreferenceManager.getInstance(getApplicationContext()).removeListener(intervalListener);
+        if (uploadExecutor != null) {
+            // An upload in flight finishes its request, the rest stays queued
+            uploadExecutor.shutdown();
+            uploadExecutor = null;
+        }
+        if (locationThread != null) {
+            locationThread.quitSafely();
+            locationThread = null;
+            locationHandler = null;
+        }
     }
 
     /**
@@ -119,7 +245,7 @@ public class LocationTrackingService extends Service {
     }
 
     /**
-     * Setup location callback to handle location updates
+     * Setup location callback to handle location updates, delivered on the location thread
      */
     private void setupLocationCallback() {
         locationCallback = new LocationCallback() {
@@ -129,109 +255,284 @@ public class LocationTrackingService extends Service {
 
                 Location location = locationResult.getLastLocation();
                 if (location != null) {
+                    long start = fixHandling.start();
+                    fixCounter.inc();
+                    Location previous = lastKnownLocation;
+                    if (previous != null) {
+                        fixInterval.recordNanos(location.getElapsedRealtimeNanos() - previous.getElapsedRealtimeNanos());
+                    }
+                    if (!smooth(location)) {
+                        // An outlier never reaches the estimate, the dwell detector or the upload stage
+                        AppLog.d(TAG, "Inaccurate fix dropped, {} m", location.getAccuracy());
+                        fixHandling.recordSince(start);
+                        return;
+                    }
+                    sleepMode.onFix(location.getLatitude(), location.getLongitude(),
+                            location.hasAccuracy() ? location.getAccuracy() : 0f, location.getTime());
+                    // Publish only once processing is done, the upload stage never sees a half-smoothed fix
                     lastKnownLocation = location;
-                    Log.d(TAG, "Location updated: " + location.getLatitude() + ", " + location.getLongitude());
+                    AppLog.d(TAG, "Location updated: {pii}, {pii}", location.getLatitude(), location.getLongitude());
+                    fixHandling.recordSince(start);
                 }
             }
         };
     }
 
+    /**
+     * Replace the raw position of a fix with the Kalman estimate, in place
+     * @return false when the fix is too inaccurate to use, it is then left as it was
+     */
+    private boolean smooth(Location location) {
+        if (!smoother.update(location.getLatitude(), location.getLongitude(),
+                location.hasAccuracy() ? location.getAccuracy() : 0f,
+                location.getElapsedRealtimeNanos())) {
+            return false;
+        }
+        location.setLatitude(smoother.getLatitude());
+        location.setLongitude(smoother.getLongitude());
+        // The reported accuracy stays: the posterior only ever shrinks, so gating on it would let
+        // every later outlier through the upload filter and the dwell detector
+        location.setSpeed((float) smoother.getSpeed());
+        if (location.getSpeed() > 0) {
+            location.setBearing((float) smoother.getBearing());
+        }
+        return true;
+    }
+
     /**
      * Start location tracking and SMS scheduling
      */
     private void startLocationTracking() {
         if (ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION)
                 != PackageManager.PERMISSION_GRANTED) {
-            Log.e(TAG, "Location permission not granted");
+            AppLog.e(TAG, "Location permission not granted");
             return;
         }
 
-        fusedLocationClient.requestLocationUpdates(locationRequest, locationCallback, Looper.getMainLooper());
+        // A restart while parked goes back to active tracking
+        sleepMode.stop();
+        requestActiveUpdates();
         scheduleLocationAPI();
+        if (isLeanProcess()) {
+            // Whatever an earlier session left behind goes out now
+            requestUpload();
+        } else {
+            UploadScheduler.schedulePeriodicFlush(getApplicationContext());
+        }
+        locationHandler.post(this::reportStatus);
 
-        Log.d(TAG, "Location tracking started, will send to API every " + timeIntervalMinutes + " minutes");
+        AppLog.d(TAG, "Location tracking started in the {} process, will send to API every {} minutes",
+                isLeanProcess() ? "tracking" : "app", timeIntervalMinutes);
+    }
+
+    /**
+     * High-accuracy updates delivered on the location thread
+     */
+    private void requestActiveUpdates() {
+        if (ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION)
+                != PackageManager.PERMISSION_GRANTED) {
+            AppLog.e(TAG, "Location permission not granted");
+            return;
+        }
+        fusedLocationClient.requestLocationUpdates(locationRequest, locationCallback, locationThread.getLooper());
     }
 
     /**
      * Stop location tracking and API scheduling
      */
     private void stopLocationTracking() {
+        if (sleepMode != null) {
+            sleepMode.stop();
+        }
         if (fusedLocationClient != null) {
             fusedLocationClient.removeLocationUpdates(locationCallback);
         }
+        // Reset on the location thread so it cannot race a fix still being smoothed
+        if (locationHandler != null) {
+            locationHandler.post(smoother::reset);
+        } else {
+            smoother.reset();
+        }
 
-        if (apiHandler != null && apiRunnable != null) {
-            apiHandler.removeCallbacks(apiRunnable);
+        if (uploadCadence != null) {
+            uploadCadence.stop();
         }
 
-        if (scheduler != null && !scheduler.isShutdown()) {
-            Log.d(TAG, "Shutting down scheduler");
-            scheduler.shutdownNow();
-            scheduler = null;
+        // Leave the periodic flush in place while a backlog remains, the worker cancels it once drained
+        // The lean process never scheduled one, the app process flushes its leftovers
+        // This runs on the main thread, so the depth is this process's last view rather than a locked read
+        if (!isLeanProcess() && pendingQueue != null && pendingQueue.lastKnownSize() == 0) {
+            UploadScheduler.cancelPeriodicFlush(getApplicationContext());
         }
 
-        Log.d(TAG, "Location tracking stopped");
+        AppLog.d(TAG, "Location tracking stopped");
     }
 
     /**
-     * Schedule periodic API calls to send location data
+     * Schedule periodic queuing of the latest location for upload
      */
     private void scheduleLocationAPI() {
         if (timeIntervalMinutes <= 0) {
             timeIntervalMinutes = AppConstants.DEFAULT_TIME_INTERVAL_MINUTES;
         }
+        uploadCadence.start(intervalMillis(), AppConstants.UPLOAD_FIRST_TICK_DELAY_MS);
+    }
 
-        if (scheduler != null && !scheduler.isShutdown()) {
-            scheduler.shutdownNow();
-        }
-
-        scheduler = Executors.newSingleThreadScheduledExecutor();
-        scheduler.scheduleWithFixedDelay(() -> {
-            try {
-                sendLocationToAPI();
-            } catch (Exception e) {
-                Log.e(TAG, "Error running scheduled API task", e);
-            }
-        }, 1, timeIntervalMinutes * AppConstants.TIME_MULTIPLIER, TimeUnit.MINUTES);
+    private long intervalMillis() {
+        return timeIntervalMinutes * AppConstants.TIME_MULTIPLIER * 60_000L;
+    }
 
-        Log.d(TAG, "Scheduler started (every " + timeIntervalMinutes + " min)");
+    private void onUploadTick() {
+        if (isLeanProcess()) {
+            // Settings changed in the app process only reach this one from disk
+            PreferenceManager.getInstance(getApplicationContext()).reloadIfChanged();
+        }
+        queueLocationForUpload();
+        reportStatus();
     }
 
     /**
-     * Send location data to API endpoint
+     * Queue the latest location and have it uploaded, through WorkManager once the network is
+     * available or straight from the lean process
      */
-    private void sendLocationToAPI() {
+    private void queueLocationForUpload() {
+        android.location.Location lastKnownLocation = this.lastKnownLocation;
         if (lastKnownLocation == null) {
-            Log.w(TAG, "No location available for API call");
+            AppLog.w(TAG, "No location available for API call");
+            return;
+        }
+        // While asleep the parked fix stands in for fresh ones; aging it by wall time lets the
+        // filter's heartbeat come due without waking the GPS
+        long fixTime = sleepMode.isSleeping() ? System.currentTimeMillis() : lastKnownLocation.getTime();
+        LocationFilter.Decision decision = uploadFilter.evaluate(lastKnownLocation.getLatitude(),
+                lastKnownLocation.getLongitude(),
+                lastKnownLocation.hasAccuracy() ? lastKnownLocation.getAccuracy() : 0f,
+                fixTime);
+        if (!decision.upload) {
+            AppLog.d(TAG, "Location not queued: {}", decision);
             return;
         }
         try {
-            double latitude = lastKnownLocation.getLatitude();
-            double longitude = lastKnownLocation.getLongitude();
             String timestamp = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()).format(new Date());
 
             // Create Location DTO object
             com.majboormajdoor.locationtracker.dto.Location locationData = new com.majboormajdoor.locationtracker.dto.Location();
-            locationData.setLatitude(latitude);
-            locationData.setLongitude(longitude);
+            locationData.setLatitude(lastKnownLocation.getLatitude());
+            locationData.setLongitude(lastKnownLocation.getLongitude());
             locationData.setInsertionTimestamp(timestamp);
-            locationData.setUserName(PreferenceManager.getInstance(getApplicationContext()).getTrackieName());
+            String name = trackieName;
+            locationData.setUserName(name != null ? name
+                    : PreferenceManager.getInstance(getApplicationContext()).getTrackieName());
+
+            pendingQueue.enqueue(locationData, lastKnownLocation.getTime());
+            if (isLeanProcess()) {
+                requestUpload();
+            } else {
+                UploadScheduler.requestFlush(getApplicationContext());
+            }
+            AppLog.d(TAG, "Location queued for upload, {} pending", pendingQueue.lastKnownSize());
 
-            // Send location data to API
-            apiService.postLocation(locationData, new ApiService.ApiCallback() {
-                @Override
-                public void onSuccess(String message) {
-                    Log.d(TAG, "Location sent to API successfully: " + latitude + ", " + longitude);
-                }
+        } catch (Exception e) {
+            AppLog.e(TAG, "Error preparing location data for API: {}", e.getMessage(), e);
+        }
+    }
 
-                @Override
-                public void onError(String error) {
-                    Log.e(TAG, "Failed to send location to API: " + error);
-                }
-            });
+    /**
+     * Drain the queue on the upload thread, requests made while one is waiting share it
+     * A failed flush leaves the rest queued for the next tick
+     */
+    private void requestUpload() {
+        ExecutorService executor = uploadExecutor;
+        if (executor == null || !uploadRequested.compareAndSet(false, true)) {
+            return;
+        }
+        executor.execute(() -> {
+            uploadRequested.set(false);
+            LocationUploader.Outcome outcome = uploader.flush(executor::isShutdown);
+            AppLog.d(TAG, "Upload flush {}, {} pending", outcome, pendingQueue.lastKnownSize());
+        });
+    }
 
-        } catch (Exception e) {
-            Log.e(TAG, "Error preparing location data for API: " + e.getMessage(), e);
+    /**
+     * Record this process's resident memory and tell the app process how tracking is doing
+     * The broadcast stays inside the package, the receiver is registered unexported
+     */
+    private void reportStatus() {
+        Debug.MemoryInfo memory = new Debug.MemoryInfo();
+        Debug.getMemoryInfo(memory);
+        long pssKb = memory.getTotalPss();
+        processPss.set(pssKb);
+        AppLog.d(TAG, "Tracking process PSS {} kB", pssKb);
+
+        Intent status = new Intent(AppConstants.ACTION_TRACKER_STATUS)
+                .setPackage(getPackageName())
+                .putExtra(AppConstants.EXTRA_TRACKER_PSS_KB, pssKb)
+                .putExtra(AppConstants.EXTRA_TRACKER_PENDING, pendingQueue.lastKnownSize())
+                .putExtra(AppConstants.EXTRA_TRACKER_LEAN, isLeanProcess());
+        sendBroadcast(status);
+    }
+
+    /**
+     * Sleep mode on top of the fused and geofencing clients, results are handed back on the location thread
+     */
+    private final class SleepProvider implements SleepModeController.Provider {
+        @Override
+        public boolean canGeofence() {
+            // From Android 10 geofences need background location, which the app does not hold
+            return ActivityCompat.checkSelfPermission(LocationTrackingService.this,
+                    Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED
+                    && (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q
+                    || ActivityCompat.checkSelfPermission(LocationTrackingService.this,
+                    Manifest.permission.ACCESS_BACKGROUND_LOCATION) == PackageManager.PERMISSION_GRANTED);
+        }
+
+        @Override
+        public void startActiveUpdates() {
+            requestActiveUpdates();
+        }
+
+        @Override
+        public void stopActiveUpdates() {
+            fusedLocationClient.removeLocationUpdates(locationCallback);
+        }
+
+        @Override
+        public void addExitGeofence(double latitude, double longitude, float radiusMeters) {
+            if (ActivityCompat.checkSelfPermission(LocationTrackingService.this, Manifest.permission.ACCESS_FINE_LOCATION)
+                    != PackageManager.PERMISSION_GRANTED) {
+                sleepMode.onGeofenceFailed();
+                return;
+            }
+            Geofence geofence = new Geofence.Builder()
+                    .setRequestId(AppConstants.SLEEP_GEOFENCE_ID)
+                    .setCircularRegion(latitude, longitude, radiusMeters)
+                    .setExpirationDuration(Geofence.NEVER_EXPIRE)
+                    .setTransitionTypes(Geofence.GEOFENCE_TRANSITION_EXIT)
+                    .build();
+            GeofencingRequest request = new GeofencingRequest.Builder()
+                    .setInitialTrigger(GeofencingRequest.INITIAL_TRIGGER_EXIT)
+                    .addGeofence(geofence)
+                    .build();
+            // onDestroy clears the field while a registration can still be in flight
+            Handler handler = locationHandler;
+            geofencingClient.addGeofences(request, geofenceIntent)
+                    .addOnSuccessListener(unused -> {
+                        if (handler == null || !handler.post(sleepMode::onGeofenceAdded)) {
+                            // The service is gone, don't leave a geofence behind that never expires
+                            geofencingClient.removeGeofences(geofenceIntent);
+                        }
+                    })
+                    .addOnFailureListener(e -> {
+                        AppLog.w(TAG, "Unable to add exit geofence: {}", e.getMessage());
+                        if (handler != null) {
+                            handler.post(sleepMode::onGeofenceFailed);
+                        }
+                    });
+        }
+
+        @Override
+        public void removeExitGeofence() {
+            geofencingClient.removeGeofences(geofenceIntent);
         }
     }
 
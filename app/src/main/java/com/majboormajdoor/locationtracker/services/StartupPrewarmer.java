@@ -0,0 +1,200 @@
+package com.majboormajdoor.locationtracker.services;
+
+import android.content.Context;
+import android.os.Process;
+
+import com.majboormajdoor.locationtracker.billing.EntitlementResolver;
+import com.majboormajdoor.locationtracker.constants.AppConstants;
+import com.majboormajdoor.locationtracker.logging.AppLog;
+import com.majboormajdoor.locationtracker.metrics.LatencyHistogram;
+import com.majboormajdoor.locationtracker.metrics.MetricsRegistry;
+import com.majboormajdoor.locationtracker.utils.CacheLocations;
+
+import org.apache.hc.client5.http.classic.methods.HttpHead;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.core5.util.Timeout;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gets the groundwork for the first API call done while the sign-in screen is up
+ *
+ * Four steps run in parallel, all off the main thread: a HEAD request to the API through the
+ * shared client leaves a pooled connection behind with DNS, TCP and TLS already paid for, the
+ * Cognito session is loaded and the user id cached, the location store is opened so its hot
+ * window loads, and the entitlement Keystore key is loaded or generated. The process's first
+ * API request is recorded as warm or cold so the two cases can be compared
+ */
+public class StartupPrewarmer {
+    private static final String TAG = "StartupPrewarmer";
+
+    private static volatile boolean connectionWarm;
+
+    /**
+     * One piece of warm-up work, reporting through done once it finished or gave up
+     */
+    public interface Step {
+        void run(Runnable done);
+    }
+
+    private final Context context;
+    private final ExecutorService executor;
+    private final AtomicInteger remaining;
+    private final LatencyHistogram prewarmTimer = MetricsRegistry.getInstance().histogram(AppConstants.METRIC_STARTUP_PREWARM);
+    private final long startNanos;
+    private volatile boolean cancelled;
+    private volatile HttpHead warmUpRequest;
+
+    private StartupPrewarmer(Context context, int steps, boolean background) {
+        this.context = context;
+        this.remaining = new AtomicInteger(steps);
+        this.executor = Executors.newFixedThreadPool(steps, threads(background));
+        this.startNanos = prewarmTimer.start();
+    }
+
+    /**
+     * Start every step and return right away
+     */
+    public static StartupPrewarmer start(Context context) {
+        StartupPrewarmer prewarmer = new StartupPrewarmer(context.getApplicationContext(), 4, true);
+        prewarmer.run(Arrays.asList(prewarmer::warmConnection, prewarmer::primeAuth,
+                prewarmer::openStore, prewarmer::loadEntitlementKey));
+        return prewarmer;
+    }
+
+    /**
+     * Start the given steps instead of the real ones, for tests, on threads of default priority
+     */
+    public static StartupPrewarmer start(List<Step> steps) {
+        StartupPrewarmer prewarmer = new StartupPrewarmer(null, steps.size(), false);
+        prewarmer.run(steps);
+        return prewarmer;
+    }
+
+    /**
+     * Abort the warm-up request and skip steps not yet started, work already done is kept
+     */
+    public void cancel() {
+        cancelled = true;
+        HttpHead request = warmUpRequest;
+        if (request != null) {
+            request.cancel();
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isDone() {
+        return remaining.get() == 0;
+    }
+
+    /**
+     * Whether a warm-up request has reached the API in this process
+     */
+    public static boolean isConnectionWarm() {
+        return connectionWarm;
+    }
+
+    private static ThreadFactory threads(boolean background) {
+        return runnable -> {
+            Thread thread = new Thread(() -> {
+                if (background) {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                }
+                runnable.run();
+            }, "startup-prewarm");
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private void run(List<Step> steps) {
+        for (Step step : steps) {
+            executor.execute(() -> {
+                // Each step counts once, however often or if ever it reports
+                AtomicBoolean reported = new AtomicBoolean();
+                Runnable done = () -> {
+                    if (reported.compareAndSet(false, true)) {
+                        stepDone();
+                    }
+                };
+                if (cancelled) {
+                    done.run();
+                    return;
+                }
+                try {
+                    step.run(done);
+                } catch (RuntimeException e) {
+                    AppLog.w(TAG, "Pre-warm step failed: {}", e.getMessage());
+                    done.run();
+                }
+            });
+        }
+        executor.shutdown();
+    }
+
+    private void warmConnection(Runnable done) {
+        HttpHead request = new HttpHead(AppConstants.BASE_URL);
+        // Connecting is bounded by the pool's HTTP_CONNECT_TIMEOUT_MS, and cancel() aborts it
+        request.setConfig(RequestConfig.custom()
+                .setResponseTimeout(Timeout.ofMilliseconds(AppConstants.PREWARM_TIMEOUT_MS))
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(AppConstants.PREWARM_TIMEOUT_MS))
+                .build());
+        // Published before the check so a cancel in between still aborts it
+        warmUpRequest = request;
+        if (cancelled) {
+            warmUpRequest = null;
+            done.run();
+            return;
+        }
+        try {
+            // Any status will do, the pooled connection is what this is for
+            int code = CustomHttpClientConfig.sharedHttpClient().execute(request, response -> response.getCode());
+            connectionWarm = true;
+            AppLog.d(TAG, "Connection warmed, HTTP {}", code);
+        } catch (Exception e) {
+            if (!cancelled) {
+                AppLog.w(TAG, "Connection warm-up failed: {}", e.getMessage());
+            }
+        } finally {
+            warmUpRequest = null;
+            done.run();
+        }
+    }
+
+    private void primeAuth(Runnable done) {
+        CognitoAuthService.getInstance(context).primeSession(context, done);
+    }
+
+    private void openStore(Runnable done) {
+        try {
+            // Opening the store starts the hot window load on its writer thread
+            CacheLocations.getInstance(context);
+        } finally {
+            done.run();
+        }
+    }
+
+    private void loadEntitlementKey(Runnable done) {
+        try {
+            EntitlementResolver.warmKey();
+        } finally {
+            done.run();
+        }
+    }
+
+    private void stepDone() {
+        if (remaining.decrementAndGet() == 0) {
+            prewarmTimer.recordSince(startNanos);
+            AppLog.d(TAG, "Pre-warm finished, cancelled: {}", cancelled);
+        }
+    }
+}
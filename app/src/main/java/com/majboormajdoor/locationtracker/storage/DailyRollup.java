@@ -0,0 +1,95 @@
+package com.majboormajdoor.locationtracker.storage;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Summary of one local calendar day of stored locations
+ *
+ * Distance sums the steps between consecutive points of the same trackie within the day.
+ * The whole-day rollup carries a per-trackie breakdown; the breakdown entries have none
+ */
+public final class DailyRollup {
+
+    private final long epochDay;
+    private final int count;
+    private final long firstMillis;
+    private final long lastMillis;
+    private final double minLatitude;
+    private final double maxLatitude;
+    private final double minLongitude;
+    private final double maxLongitude;
+    private final double distanceMeters;
+    private final Map<String, DailyRollup> trackies;
+
+    public DailyRollup(long epochDay, int count, long firstMillis, long lastMillis,
+                       double minLatitude, double maxLatitude, double minLongitude, double maxLongitude,
+                       double distanceMeters, Map<String, DailyRollup> trackies) {
+        this.epochDay = epochDay;
+        this.count = count;
+        this.firstMillis = firstMillis;
+        this.lastMillis = lastMillis;
+        this.minLatitude = minLatitude;
+        this.maxLatitude = maxLatitude;
+        this.minLongitude = minLongitude;
+        this.maxLongitude = maxLongitude;
+        this.distanceMeters = distanceMeters;
+        this.trackies = Collections.unmodifiableMap(trackies);
+    }
+
+    /**
+     * Days since 1970-01-01 of the local calendar date
+     */
+    public long getEpochDay() {
+        return epochDay;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getFirstMillis() {
+        return firstMillis;
+    }
+
+    public long getLastMillis() {
+        return lastMillis;
+    }
+
+    public double getMinLatitude() {
+        return minLatitude;
+    }
+
+    public double getMaxLatitude() {
+        return maxLatitude;
+    }
+
+    public double getMinLongitude() {
+        return minLongitude;
+    }
+
+    public double getMaxLongitude() {
+        return maxLongitude;
+    }
+
+    public double getDistanceMeters() {
+        return distanceMeters;
+    }
+
+    /**
+     * Per-trackie rollups of this day keyed by trackie name, "" for records without one
+     */
+    public Map<String, DailyRollup> getTrackies() {
+        return trackies;
+    }
+
+    @Override
+    public String toString() {
+        return "DailyRollup{" +
+                "epochDay=" + epochDay +
+                ", count=" + count +
+                ", distanceMeters=" + distanceMeters +
+                ", trackies=" + trackies.keySet() +
+                '}';
+    }
+}
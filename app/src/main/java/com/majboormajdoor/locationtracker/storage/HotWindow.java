@@ -0,0 +1,258 @@
+package com.majboormajdoor.locationtracker.storage;
+
+import com.majboormajdoor.locationtracker.dto.Location;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Immutable columnar copy of the most recent locations, sorted oldest first
+ *
+ * Coordinates and times live in primitive arrays; the string columns share their values
+ * with the records they came from. Updates return a new window built by merging, so the
+ * cost of a write is proportional to the window rather than the whole history.
+ * Every record at or after {@link #getCoverageStart()} is guaranteed to be present
+ */
+public final class HotWindow {
+
+    /**
+     * Rough heap cost of one record, used to size the window against the memory class
+     */
+    public static final int BYTES_PER_RECORD = 128;
+
+    private final long coverageStart;
+    private final int capacity;
+    private final int size;
+    private final long[] millis;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final String[] userIds;
+    private final String[] userNames;
+    private final String[] timestamps;
+
+    private HotWindow(long coverageStart, int capacity, int size) {
+        this.coverageStart = coverageStart;
+        this.capacity = capacity;
+        this.size = size;
+        this.millis = new long[size];
+        this.latitudes = new double[size];
+        this.longitudes = new double[size];
+        this.userIds = new String[size];
+        this.userNames = new String[size];
+        this.timestamps = new String[size];
+    }
+
+    /**
+     * Window over every record at or after windowStart, truncated to the newest capacity records
+     */
+    public static HotWindow build(Collection<Location> locations, long windowStart, int capacity) {
+        return new HotWindow(windowStart, capacity, 0).plus(locations, windowStart);
+    }
+
+    /**
+     * Merge new or replaced records and drop anything older than windowStart
+     */
+    public HotWindow plus(Collection<Location> locations, long windowStart) {
+        long start = Math.max(coverageStart, windowStart);
+        List<Location> added = new ArrayList<>();
+        Set<String> addedKeys = new HashSet<>();
+        for (Location location : locations) {
+            long time = Timestamps.parseMillis(location.getInsertionTimestamp());
+            if (time >= start && time != Timestamps.UNKNOWN && addedKeys.add(LocationStore.keyOf(location))) {
+                added.add(location);
+            }
+        }
+        if (added.isEmpty() && start == coverageStart) {
+            return this;
+        }
+
+        // Batches usually arrive in time order, making this a linear pass
+        added = SortedMerge.sort(added);
+        long[] addedMillis = new long[added.size()];
+        for (int i = 0; i < addedMillis.length; i++) {
+            addedMillis[i] = Timestamps.parseMillis(added.get(i).getInsertionTimestamp());
+        }
+
+        // Existing records replaced by the batch are skipped while merging
+        int first = lowerBound(start);
+        boolean[] replaced = new boolean[size];
+        int kept = 0;
+        for (int i = first; i < size; i++) {
+            replaced[i] = !addedKeys.isEmpty() && addedKeys.contains(keyAt(i));
+            if (!replaced[i]) {
+                kept++;
+            }
+        }
+
+        int total = kept + added.size();
+        int skip = Math.max(0, total - capacity);
+        long[] mergedMillis = new long[total];
+        int[] source = new int[total]; // >= 0 existing index, < 0 ~index into the batch
+        int i = first;
+        int j = 0;
+        for (int k = 0; k < total; k++) {
+            while (i < size && replaced[i]) {
+                i++;
+            }
+            boolean takeExisting = j >= addedMillis.length
+                    || (i < size && millis[i] <= addedMillis[j]);
+            if (takeExisting) {
+                mergedMillis[k] = millis[i];
+                source[k] = i++;
+            } else {
+                mergedMillis[k] = addedMillis[j];
+                source[k] = ~j++;
+            }
+        }
+
+        // When over capacity drop the oldest, never splitting records that share a millisecond
+        long coverage = start;
+        if (skip > 0) {
+            while (skip < total && mergedMillis[skip] == mergedMillis[skip - 1]) {
+                skip++;
+            }
+            coverage = skip < total ? mergedMillis[skip] : Long.MAX_VALUE;
+        }
+
+        HotWindow next = new HotWindow(coverage, capacity, total - skip);
+        for (int k = skip; k < total; k++) {
+            int n = k - skip;
+            next.millis[n] = mergedMillis[k];
+            if (source[k] >= 0) {
+                int s = source[k];
+                next.latitudes[n] = latitudes[s];
+                next.longitudes[n] = longitudes[s];
+                next.userIds[n] = userIds[s];
+                next.userNames[n] = userNames[s];
+                next.timestamps[n] = timestamps[s];
+            } else {
+                Location location = added.get(~source[k]);
+                next.latitudes[n] = location.getLatitude();
+                next.longitudes[n] = location.getLongitude();
+                next.userIds[n] = location.getUserId();
+                next.userNames[n] = location.getUserName();
+                next.timestamps[n] = location.getInsertionTimestamp();
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Window without the given {@link LocationStore#keyOf} keys, coverage is unchanged
+     */
+    public HotWindow minus(Collection<String> keys) {
+        Set<String> removed = new HashSet<>(keys);
+        boolean[] drop = new boolean[size];
+        int dropped = 0;
+        for (int i = 0; i < size; i++) {
+            drop[i] = removed.contains(keyAt(i));
+            if (drop[i]) {
+                dropped++;
+            }
+        }
+        if (dropped == 0) {
+            return this;
+        }
+        HotWindow next = new HotWindow(coverageStart, capacity, size - dropped);
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            if (!drop[i]) {
+                next.millis[n] = millis[i];
+                next.latitudes[n] = latitudes[i];
+                next.longitudes[n] = longitudes[i];
+                next.userIds[n] = userIds[i];
+                next.userNames[n] = userNames[i];
+                next.timestamps[n] = timestamps[i];
+                n++;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Records with fromMillis <= time < toMillis, oldest first
+     * Only complete when fromMillis is at or after {@link #getCoverageStart()}
+     */
+    public List<Location> between(long fromMillis, long toMillis) {
+        int from = lowerBound(fromMillis);
+        int to = lowerBound(toMillis);
+        List<Location> result = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            result.add(locationAt(i));
+        }
+        return result;
+    }
+
+    /**
+     * One trackie's records with fromMillis <= time < toMillis, oldest first
+     */
+    public List<Location> between(String trackie, long fromMillis, long toMillis) {
+        int from = lowerBound(fromMillis);
+        int to = lowerBound(toMillis);
+        List<Location> result = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            if (trackie.equals(userNames[i] != null ? userNames[i] : "")) {
+                result.add(locationAt(i));
+            }
+        }
+        return result;
+    }
+
+    public boolean covers(long fromMillis) {
+        return fromMillis >= coverageStart;
+    }
+
+    public long getCoverageStart() {
+        return coverageStart;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getMillis(int index) {
+        return millis[index];
+    }
+
+    public double getLatitude(int index) {
+        return latitudes[index];
+    }
+
+    public double getLongitude(int index) {
+        return longitudes[index];
+    }
+
+    public String getUserId(int index) {
+        return userIds[index];
+    }
+
+    public Location locationAt(int index) {
+        Location location = new Location(latitudes[index], longitudes[index], userNames[index], timestamps[index]);
+        location.setUserId(userIds[index]);
+        return location;
+    }
+
+    private String keyAt(int index) {
+        return userIds[index] + "_" + timestamps[index];
+    }
+
+    /**
+     * Index of the first record at or after the given time
+     */
+    private int lowerBound(long time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (millis[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,114 @@
+package com.majboormajdoor.locationtracker.storage;
+
+import com.majboormajdoor.locationtracker.dto.Location;
+
+/**
+ * Bloom filter over {@link LocationStore#keyOf} keys
+ *
+ * Hashes are derived from the record's userId and timestamp hash codes, so no key string
+ * is built to ask whether a record may already be stored in another partition; the one it
+ * goes into still needs the key. A negative answer is definite; a positive one has to be
+ * confirmed against the partition maps. Removed keys cannot be cleared, so the owner
+ * rebuilds the filter once enough of it is stale
+ */
+public final class KeyFilter {
+
+    private static final double LN2_SQUARED = Math.log(2) * Math.log(2);
+
+    private final long[] words;
+    private final long bitCount;
+    private final int hashCount;
+    private final int capacity;
+    private int insertions;
+
+    /**
+     * @param capacity          records expected before the false-positive rate degrades
+     * @param falsePositiveRate target rate at capacity, e.g. 0.01
+     */
+    public KeyFilter(int capacity, double falsePositiveRate) {
+        this.capacity = Math.max(1, capacity);
+        long bits = (long) Math.ceil(-this.capacity * Math.log(falsePositiveRate) / LN2_SQUARED);
+        this.words = new long[(int) Math.max(1, (bits + 63) / 64)];
+        this.bitCount = words.length * 64L;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / this.capacity * Math.log(2)));
+    }
+
+    public void add(Location location) {
+        add(location.getUserId(), location.getInsertionTimestamp());
+    }
+
+    public void add(String userId, String timestamp) {
+        long hash = hash(userId, timestamp);
+        long step = (hash >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = ((hash + i * step) & Long.MAX_VALUE) % bitCount;
+            words[(int) (bit >>> 6)] |= 1L << bit;
+        }
+        insertions++;
+    }
+
+    /**
+     * False means the key was never added, true means it may have been
+     */
+    public boolean mightContain(Location location) {
+        return mightContain(location.getUserId(), location.getInsertionTimestamp());
+    }
+
+    public boolean mightContain(String userId, String timestamp) {
+        long hash = hash(userId, timestamp);
+        long step = (hash >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = ((hash + i * step) & Long.MAX_VALUE) % bitCount;
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int getInsertions() {
+        return insertions;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Expected false-positive rate at the current number of insertions
+     */
+    public double expectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-(double) hashCount * insertions / bitCount), hashCount);
+    }
+
+    /**
+     * 64-bit mix of keyOf(userId, timestamp).hashCode(), computed without building the key
+     * Equal keys always hash alike, including keys that only match once concatenated
+     */
+    private static long hash(String userId, String timestamp) {
+        String id = String.valueOf(userId);
+        String time = String.valueOf(timestamp);
+        int keyHash = (id.hashCode() * 31 + '_') * pow31(time.length()) + time.hashCode();
+        long h = keyHash;
+        // MurmurHash3 fmix64
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static int pow31(int exponent) {
+        int result = 1;
+        int base = 31;
+        while (exponent > 0) {
+            if ((exponent & 1) != 0) {
+                result *= base;
+            }
+            base *= base;
+            exponent >>= 1;
+        }
+        return result;
+    }
+}
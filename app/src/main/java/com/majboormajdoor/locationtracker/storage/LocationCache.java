@@ -0,0 +1,484 @@
+package com.majboormajdoor.locationtracker.storage;
+
+import android.content.ComponentCallbacks2;
+
+import com.majboormajdoor.locationtracker.constants.AppConstants;
+import com.majboormajdoor.locationtracker.dto.Location;
+import com.majboormajdoor.locationtracker.logging.AppLog;
+import com.majboormajdoor.locationtracker.metrics.Counter;
+import com.majboormajdoor.locationtracker.metrics.Gauge;
+import com.majboormajdoor.locationtracker.metrics.LatencyHistogram;
+import com.majboormajdoor.locationtracker.metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Concurrent front for a {@link LocationStore}
+ *
+ * Readers get an immutable snapshot through a single volatile read. Writers publish a
+ * copy-on-write snapshot right away, so callers read their own writes, and hand the disk
+ * work to one writer thread that merges everything queued since its last run into a
+ * single store write. Records the store evicts are then pruned from the snapshot
+ *
+ * Time range queries are answered from a {@link HotWindow} of recent records that is
+ * updated on every write; older ranges are read from the store's partitions behind any
+ * queued writes. Both tiers can be released under memory pressure and are rebuilt from
+ * the store on the writer thread at the next read
+ */
+public class LocationCache {
+    private static final String TAG = "LocationCache";
+
+    private final LocationStore store;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "location-cache-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Object publishLock = new Object();
+    private volatile Map<String, Location> snapshot;
+    private volatile HotWindow hot;
+
+    private final long hotWindowMillis;
+    private final int hotCapacity;
+
+    private final ConcurrentLinkedQueue<Op> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+    private final LatencyHistogram loadTimer = MetricsRegistry.getInstance().histogram(AppConstants.METRIC_CACHE_READ);
+    private final LatencyHistogram writeTimer = MetricsRegistry.getInstance().histogram(AppConstants.METRIC_CACHE_WRITE);
+    private final Counter writeBatches = MetricsRegistry.getInstance().counter(AppConstants.METRIC_CACHE_WRITE_BATCHES);
+    private final Counter hotHits = MetricsRegistry.getInstance().counter(AppConstants.METRIC_CACHE_HOT_HIT);
+    private final Counter hotMisses = MetricsRegistry.getInstance().counter(AppConstants.METRIC_CACHE_HOT_MISS);
+    private final Gauge hotSize = MetricsRegistry.getInstance().gauge(AppConstants.METRIC_CACHE_HOT_SIZE);
+
+    /**
+     * Queued write, either a batch of locations or a clear
+     */
+    private static final class Op {
+        final Collection<Location> locations;
+
+        Op(Collection<Location> locations) {
+            this.locations = locations;
+        }
+
+        boolean isClear() {
+            return locations == null;
+        }
+    }
+
+    /**
+     * Producer of an import, handing batches to a sink that adds them straight to the store
+     */
+    public interface BulkSource {
+        void feed(Consumer<List<Location>> sink) throws IOException;
+    }
+
+    /**
+     * @param hotWindowMillis how far back the hot window reaches
+     * @param hotCapacity     most records the hot window may hold
+     */
+    public LocationCache(LocationStore store, long hotWindowMillis, int hotCapacity) {
+        this(store, hotWindowMillis, hotCapacity, () -> { });
+    }
+
+    /**
+     * @param prepare run on the writer thread before the first load, e.g. a one-time import
+     *                into the store that must not hold up the caller
+     */
+    public LocationCache(LocationStore store, long hotWindowMillis, int hotCapacity, Runnable prepare) {
+        this.store = store;
+        this.hotWindowMillis = hotWindowMillis;
+        this.hotCapacity = hotCapacity;
+        // Prepare and warm both tiers off the caller's thread
+        writer.execute(() -> {
+            try {
+                prepare.run();
+            } finally {
+                warm();
+            }
+        });
+    }
+
+    /**
+     * Current contents keyed by {@link LocationStore#keyOf}, immutable
+     * Blocks only before the first load or after a release, while the writer thread reloads it
+     */
+    public Map<String, Location> snapshot() {
+        Map<String, Location> current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        return readOnWriter(this::loadSnapshot);
+    }
+
+    /**
+     * Merge locations, visible to readers on return and persisted shortly after
+     */
+    public void putAll(Collection<Location> locations) {
+        if (locations == null || locations.isEmpty()) {
+            return;
+        }
+        List<Location> batch = new ArrayList<>(locations);
+        synchronized (publishLock) {
+            Map<String, Location> current = snapshot;
+            // A released snapshot is not reloaded here, the writer replays this batch when it reloads it
+            if (current != null) {
+                if (alreadyCached(current, batch)) {
+                    // The UI hands back records it read from here, nothing to write
+                    return;
+                }
+                Map<String, Location> next = new LinkedHashMap<>(current);
+                for (Location location : batch) {
+                    next.put(LocationStore.keyOf(location), location);
+                }
+                snapshot = Collections.unmodifiableMap(next);
+            }
+            if (hot != null) {
+                publishHot(hot.plus(batch, windowStart()));
+            }
+            // Enqueued under the lock so the writer sees operations in snapshot order
+            pending.add(new Op(batch));
+        }
+        scheduleDrain();
+    }
+
+    public void clear() {
+        synchronized (publishLock) {
+            snapshot = Collections.emptyMap();
+            publishHot(HotWindow.build(Collections.emptyList(), windowStart(), hotCapacity));
+            pending.add(new Op(null));
+        }
+        scheduleDrain();
+    }
+
+    /**
+     * Records with fromMillis <= time < toMillis, oldest first
+     * Served from the hot window when it reaches back far enough, otherwise by a merged
+     * read of every store partition. Records whose timestamp cannot be parsed are never returned
+     */
+    public List<Location> between(long fromMillis, long toMillis) {
+        HotWindow window = hot;
+        if (window != null && window.covers(fromMillis)) {
+            hotHits.inc();
+            return window.between(fromMillis, toMillis);
+        }
+        hotMisses.inc();
+        if (window == null) {
+            // Released under memory pressure, rebuilt behind queued writes instead of on the caller's thread
+            window = readOnWriter(this::rebuildHot);
+            if (window.covers(fromMillis)) {
+                return window.between(fromMillis, toMillis);
+            }
+        }
+        return readOnWriter(() -> store.readOrdered(fromMillis, toMillis));
+    }
+
+    /**
+     * One trackie's records with fromMillis <= time < toMillis, oldest first
+     * Outside the hot window only that trackie's partition of the store is read
+     */
+    public List<Location> between(String trackie, long fromMillis, long toMillis) {
+        String name = trackie != null ? trackie : "";
+        HotWindow window = hot;
+        if (window != null && window.covers(fromMillis)) {
+            hotHits.inc();
+            return window.between(name, fromMillis, toMillis);
+        }
+        hotMisses.inc();
+        return readOnWriter(() -> store.read(name, fromMillis, toMillis));
+    }
+
+    /**
+     * Trackie names present in the store
+     */
+    public List<String> trackies() {
+        return readOnWriter(store::getTrackies);
+    }
+
+    /**
+     * Per-day summaries including queued writes, oldest day first
+     */
+    public List<DailyRollup> dailyRollups() {
+        return readOnWriter(store::getDailyRollups);
+    }
+
+    /**
+     * Release memory following {@link ComponentCallbacks2#onTrimMemory} semantics
+     * Both tiers survive the app being hidden or cached. The full snapshot goes when memory is
+     * critical, the hot window only when the process is about to be killed; either is rebuilt
+     * on the writer thread
+     */
+    @SuppressWarnings("deprecation") // Android 14 no longer sends these levels, older releases still do
+    public void onTrimMemory(int level) {
+        boolean complete = level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE;
+        if (!complete && level != ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            return;
+        }
+        writer.execute(() -> {
+            synchronized (publishLock) {
+                if (complete) {
+                    publishHot(null);
+                }
+                if (snapshot != null) {
+                    snapshot = null;
+                    AppLog.d(TAG, "Released location snapshot");
+                }
+            }
+        });
+    }
+
+    /**
+     * Run the store's full retention pass on the writer thread and wait for it
+     *
+     * @return number of records removed
+     */
+    public int compact(long nowMillis) throws IOException {
+        Future<List<String>> result = writer.submit(() -> {
+            List<String> removed = store.compact(nowMillis);
+            prune(removed);
+            return removed;
+        });
+        try {
+            return result.get().size();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Compaction failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compacting", e);
+        }
+    }
+
+    /**
+     * Run an import on the writer thread and wait for it
+     * Batches skip the per-write snapshot copy and store persistence; indexes, rollups and files
+     * are brought up to date once at the end, then both tiers are rebuilt from the store
+     *
+     * @return number of records handed to the sink
+     */
+    public int importBulk(BulkSource source) throws IOException {
+        Future<Integer> result = writer.submit(() -> {
+            int[] imported = new int[1];
+            try {
+                source.feed(batch -> {
+                    store.putBulk(batch);
+                    imported[0] += batch.size();
+                });
+            } finally {
+                // Whatever was added before a failure is kept, like any other write
+                try {
+                    store.finishBulk();
+                } finally {
+                    invalidate();
+                    writer.execute(this::warm);
+                }
+            }
+            return imported[0];
+        });
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Import failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while importing", e);
+        }
+    }
+
+    /**
+     * Block until every write queued so far has reached the store
+     */
+    public void flush() throws InterruptedException {
+        try {
+            writer.submit(() -> { }).get();
+        } catch (ExecutionException e) {
+            AppLog.e(TAG, "Flush failed", e);
+        }
+    }
+
+    /**
+     * Run a store read behind every queued write, so it sees what callers already wrote
+     */
+    private <T> T readOnWriter(Callable<T> read) {
+        try {
+            return writer.submit(read).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Location store read failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading locations", e);
+        }
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            writer.execute(this::drain);
+        }
+    }
+
+    /**
+     * Writer thread: fold every queued operation into at most one clear and one store write
+     */
+    private void drain() {
+        drainScheduled.set(false);
+        long start = writeTimer.start();
+        List<Location> merged = new ArrayList<>();
+        boolean clear = false;
+        Op op;
+        while ((op = pending.poll()) != null) {
+            if (op.isClear()) {
+                merged.clear();
+                clear = true;
+            } else {
+                merged.addAll(op.locations);
+            }
+        }
+        if (clear) {
+            store.clear();
+        }
+        if (merged.isEmpty()) {
+            return;
+        }
+        try {
+            prune(store.putAll(merged));
+            writeBatches.inc();
+            writeTimer.recordSince(start);
+        } catch (IOException e) {
+            AppLog.e(TAG, "Error writing {} locations", merged.size(), e);
+        }
+    }
+
+    /**
+     * Drop keys the store evicted from the published snapshot
+     */
+    private void prune(List<String> removedKeys) {
+        if (removedKeys.isEmpty()) {
+            return;
+        }
+        synchronized (publishLock) {
+            // A released snapshot is reloaded from the store, which no longer has these keys
+            if (snapshot != null) {
+                Map<String, Location> next = new LinkedHashMap<>(snapshot);
+                for (String key : removedKeys) {
+                    next.remove(key);
+                }
+                snapshot = Collections.unmodifiableMap(next);
+            }
+            if (hot != null) {
+                publishHot(hot.minus(removedKeys));
+            }
+        }
+    }
+
+    /**
+     * Writer thread: the store changed behind the snapshot, drop both tiers so they are rebuilt
+     * from it with any writes queued meanwhile replayed on top
+     */
+    private void invalidate() {
+        synchronized (publishLock) {
+            publishHot(null);
+            snapshot = null;
+        }
+    }
+
+    /**
+     * Writer thread: load both tiers if they are not in memory
+     */
+    private void warm() {
+        loadSnapshot();
+        rebuildHot();
+    }
+
+    /**
+     * Writer thread: reload a released snapshot from the store
+     * Writes queued but not drained yet are not in the store, so they are replayed on top
+     */
+    private Map<String, Location> loadSnapshot() {
+        Map<String, Location> current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        long start = loadTimer.start();
+        // Read outside the lock, only this thread changes the store
+        Map<String, Location> next = store.readAll();
+        synchronized (publishLock) {
+            if (snapshot == null) {
+                for (Op op : pending) {
+                    if (op.isClear()) {
+                        next.clear();
+                    } else {
+                        for (Location location : op.locations) {
+                            next.put(LocationStore.keyOf(location), location);
+                        }
+                    }
+                }
+                snapshot = Collections.unmodifiableMap(next);
+                loadTimer.recordSince(start);
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Writer thread: rebuild a released hot window from the store's time indexes, without
+     * loading the full snapshot, and replay writes not drained yet on top
+     */
+    private HotWindow rebuildHot() {
+        HotWindow window = hot;
+        if (window != null) {
+            return window;
+        }
+        long windowStart = windowStart();
+        List<Location> recent = store.readOrdered(windowStart, Long.MAX_VALUE);
+        synchronized (publishLock) {
+            if (hot == null) {
+                window = HotWindow.build(recent, windowStart, hotCapacity);
+                for (Op op : pending) {
+                    window = op.isClear()
+                            ? HotWindow.build(Collections.emptyList(), windowStart, hotCapacity)
+                            : window.plus(op.locations, windowStart);
+                }
+                publishHot(window);
+            }
+            return hot;
+        }
+    }
+
+    private void publishHot(HotWindow window) {
+        hot = window;
+        hotSize.set(window != null ? window.size() : 0);
+    }
+
+    private long windowStart() {
+        return System.currentTimeMillis() - hotWindowMillis;
+    }
+
+    private static boolean alreadyCached(Map<String, Location> current, List<Location> batch) {
+        for (Location location : batch) {
+            if (current.get(LocationStore.keyOf(location)) != location) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,89 @@
+package com.majboormajdoor.locationtracker.storage;
+
+import com.majboormajdoor.locationtracker.dto.Location;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Binary encoding of the location history file
+ *
+ * Layout: magic(4) version(4) count(4) then per record
+ * latitude(8) longitude(8) userName(str) insertionTimestamp(str) userId(str),
+ * where str is a presence byte followed by modified UTF-8
+ */
+public final class LocationCodec {
+
+    public static final int MAGIC = 0x4C544C53; // "LTLS"
+    public static final int VERSION = 1;
+
+    private LocationCodec() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    public static void write(DataOutputStream out, Collection<Location> locations) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(locations.size());
+        for (Location location : locations) {
+            out.writeDouble(location.getLatitude());
+            out.writeDouble(location.getLongitude());
+            writeString(out, location.getUserName());
+            writeString(out, location.getInsertionTimestamp());
+            writeString(out, location.getUserId());
+        }
+    }
+
+    /**
+     * Decode every record into the map, keyed by {@link LocationStore#keyOf}
+     */
+    public static void read(DataInputStream in, Map<String, Location> into) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a location store file");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported location store version " + version);
+        }
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Corrupt record count " + count);
+        }
+        for (int i = 0; i < count; i++) {
+            Location location = new Location();
+            location.setLatitude(in.readDouble());
+            location.setLongitude(in.readDouble());
+            location.setUserName(readString(in));
+            location.setInsertionTimestamp(readString(in));
+            location.setUserId(readString(in));
+            into.put(LocationStore.keyOf(location), location);
+        }
+    }
+
+    /**
+     * Approximate encoded size of one record, exact for ASCII strings
+     */
+    public static int recordSize(Location location) {
+        return 16 + stringSize(location.getUserName())
+                + stringSize(location.getInsertionTimestamp())
+                + stringSize(location.getUserId());
+    }
+
+    private static int stringSize(String value) {
+        return value == null ? 1 : 3 + value.length();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
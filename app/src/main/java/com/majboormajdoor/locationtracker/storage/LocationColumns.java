@@ -0,0 +1,442 @@
+package com.majboormajdoor.locationtracker.storage;
+
+import com.majboormajdoor.locationtracker.dto.Location;
+import com.majboormajdoor.locationtracker.pipeline.LocationFilter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Immutable struct-of-arrays copy of a location list for scans and aggregates
+ *
+ * Each point costs {@link #BYTES_PER_POINT} bytes of primitive columns; trackie names and
+ * user ids are dictionary encoded and timestamps are kept as epoch millis, re-formatted on
+ * the way back to {@link Location}. Only timestamps that would not survive that round trip
+ * are kept as text. Slices share the columns of the instance they came from
+ */
+public final class LocationColumns {
+
+    /**
+     * latitude(8) longitude(8) time(8) accuracy(4) trackieId(4) userIdCode(4)
+     */
+    public static final int BYTES_PER_POINT = 36;
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final long[] millis;
+    private final float[] accuracies;
+    private final int[] trackieIds;
+    private final int[] userIdCodes;
+    private final String[] trackieNames;
+    private final String[] userIdNames;
+    // Absolute row -> original text, for timestamps Timestamps.format cannot reproduce
+    private final Map<Integer, String> irregularTimestamps;
+    private final int offset;
+    private final int size;
+
+    private LocationColumns(double[] latitudes, double[] longitudes, long[] millis, float[] accuracies,
+                            int[] trackieIds, int[] userIdCodes, String[] trackieNames, String[] userIdNames,
+                            Map<Integer, String> irregularTimestamps, int offset, int size) {
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.millis = millis;
+        this.accuracies = accuracies;
+        this.trackieIds = trackieIds;
+        this.userIdCodes = userIdCodes;
+        this.trackieNames = trackieNames;
+        this.userIdNames = userIdNames;
+        this.irregularTimestamps = irregularTimestamps;
+        this.offset = offset;
+        this.size = size;
+    }
+
+    /**
+     * Columns in the order of the given locations, accuracy is unknown (NaN) for DTO input
+     */
+    public static LocationColumns from(Collection<Location> locations) {
+        Builder builder = new Builder(locations.size());
+        for (Location location : locations) {
+            builder.add(location);
+        }
+        return builder.build();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double getLatitude(int row) {
+        return latitudes[offset + row];
+    }
+
+    public double getLongitude(int row) {
+        return longitudes[offset + row];
+    }
+
+    /**
+     * Epoch millis, {@link Timestamps#UNKNOWN} when the timestamp could not be parsed
+     */
+    public long getMillis(int row) {
+        return millis[offset + row];
+    }
+
+    /**
+     * Accuracy radius in meters, NaN when unknown
+     */
+    public float getAccuracy(int row) {
+        return accuracies[offset + row];
+    }
+
+    /**
+     * Trackie name of a row, null when the record had none
+     */
+    public String getTrackie(int row) {
+        return trackieNames[trackieIds[offset + row]];
+    }
+
+    public String getUserId(int row) {
+        return userIdNames[userIdCodes[offset + row]];
+    }
+
+    public String getTimestamp(int row) {
+        int index = offset + row;
+        String irregular = irregularTimestamps.get(index);
+        if (irregular != null || irregularTimestamps.containsKey(index)) {
+            return irregular;
+        }
+        return Timestamps.format(millis[index]);
+    }
+
+    public Location toLocation(int row) {
+        Location location = new Location(getLatitude(row), getLongitude(row), getTrackie(row), getTimestamp(row));
+        location.setUserId(getUserId(row));
+        return location;
+    }
+
+    public List<Location> toLocations() {
+        List<Location> locations = new ArrayList<>(size);
+        for (int row = 0; row < size; row++) {
+            locations.add(toLocation(row));
+        }
+        return locations;
+    }
+
+    /**
+     * Rows from (inclusive) to (exclusive), sharing this instance's columns
+     */
+    public LocationColumns slice(int from, int to) {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("slice " + from + ".." + to + " of " + size);
+        }
+        return new LocationColumns(latitudes, longitudes, millis, accuracies, trackieIds, userIdCodes,
+                trackieNames, userIdNames, irregularTimestamps, offset + from, to - from);
+    }
+
+    /**
+     * Compacted copy of the selected rows, in order
+     */
+    public LocationColumns select(BitSet rows) {
+        int count = rows.cardinality();
+        double[] selectedLatitudes = new double[count];
+        double[] selectedLongitudes = new double[count];
+        long[] selectedMillis = new long[count];
+        float[] selectedAccuracies = new float[count];
+        int[] selectedTrackies = new int[count];
+        int[] selectedUserIds = new int[count];
+        Map<Integer, String> selectedIrregular = new HashMap<>();
+        int n = 0;
+        for (int row = rows.nextSetBit(0); row >= 0 && row < size; row = rows.nextSetBit(row + 1)) {
+            int index = offset + row;
+            selectedLatitudes[n] = latitudes[index];
+            selectedLongitudes[n] = longitudes[index];
+            selectedMillis[n] = millis[index];
+            selectedAccuracies[n] = accuracies[index];
+            selectedTrackies[n] = trackieIds[index];
+            selectedUserIds[n] = userIdCodes[index];
+            if (irregularTimestamps.containsKey(index)) {
+                selectedIrregular.put(n, irregularTimestamps.get(index));
+            }
+            n++;
+        }
+        return new LocationColumns(selectedLatitudes, selectedLongitudes, selectedMillis, selectedAccuracies,
+                selectedTrackies, selectedUserIds, trackieNames, userIdNames, selectedIrregular, 0, n);
+    }
+
+    /**
+     * Rows with fromMillis <= time < toMillis
+     */
+    public BitSet timeBetween(long fromMillis, long toMillis) {
+        BitSet rows = new BitSet(size);
+        for (int row = 0; row < size; row++) {
+            long time = millis[offset + row];
+            if (time >= fromMillis && time < toMillis) {
+                rows.set(row);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Rows belonging to a trackie, null selects records without a name
+     */
+    public BitSet ofTrackie(String trackie) {
+        BitSet rows = new BitSet(size);
+        int id = indexOf(trackieNames, trackie);
+        if (id < 0) {
+            return rows;
+        }
+        for (int row = 0; row < size; row++) {
+            if (trackieIds[offset + row] == id) {
+                rows.set(row);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Rows inside a latitude/longitude box, edges included
+     */
+    public BitSet withinBounds(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude) {
+        BitSet rows = new BitSet(size);
+        for (int row = 0; row < size; row++) {
+            double latitude = latitudes[offset + row];
+            double longitude = longitudes[offset + row];
+            if (latitude >= minLatitude && latitude <= maxLatitude
+                    && longitude >= minLongitude && longitude <= maxLongitude) {
+                rows.set(row);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Rows whose accuracy is at most maxMeters, rows with unknown accuracy are kept
+     */
+    public BitSet accurateTo(float maxMeters) {
+        BitSet rows = new BitSet(size);
+        for (int row = 0; row < size; row++) {
+            // NaN fails the comparison, so unknown accuracy is not filtered out
+            if (!(accuracies[offset + row] > maxMeters)) {
+                rows.set(row);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Path length in meters, summing consecutive rows of the same trackie
+     * Rows are expected oldest first, as returned by the store
+     */
+    public double distanceMeters() {
+        int[] previous = newPreviousRows();
+        double total = 0;
+        for (int index = offset; index < offset + size; index++) {
+            int trackie = trackieIds[index];
+            int last = previous[trackie];
+            if (last >= 0) {
+                total += LocationFilter.distanceMeters(latitudes[last], longitudes[last],
+                        latitudes[index], longitudes[index]);
+            }
+            previous[trackie] = index;
+        }
+        return total;
+    }
+
+    /**
+     * Per-day point counts and path lengths in the given time zone, rows expected oldest first
+     * A step between two points counts towards the day of the later one; unparseable times are skipped
+     */
+    public Daily daily(TimeZone zone) {
+        int[] previous = newPreviousRows();
+        long[] days = new long[Math.min(size, 16)];
+        int[] counts = new int[days.length];
+        double[] distances = new double[days.length];
+        int dayCount = 0;
+        for (int index = offset; index < offset + size; index++) {
+            long time = millis[index];
+            if (time == Timestamps.UNKNOWN) {
+                continue;
+            }
+            long day = Math.floorDiv(time + zone.getOffset(time), MILLIS_PER_DAY);
+            // Ordered input means a new day only ever appends, anything else falls back to a search
+            int slot = dayCount > 0 && days[dayCount - 1] == day ? dayCount - 1 : find(days, dayCount, day);
+            if (slot < 0) {
+                if (dayCount == days.length) {
+                    int grown = Math.max(16, dayCount * 2);
+                    days = Arrays.copyOf(days, grown);
+                    counts = Arrays.copyOf(counts, grown);
+                    distances = Arrays.copyOf(distances, grown);
+                }
+                slot = dayCount++;
+                days[slot] = day;
+            }
+            counts[slot]++;
+            int trackie = trackieIds[index];
+            int last = previous[trackie];
+            if (last >= 0) {
+                distances[slot] += LocationFilter.distanceMeters(latitudes[last], longitudes[last],
+                        latitudes[index], longitudes[index]);
+            }
+            previous[trackie] = index;
+        }
+        return new Daily(Arrays.copyOf(days, dayCount), Arrays.copyOf(counts, dayCount),
+                Arrays.copyOf(distances, dayCount));
+    }
+
+    /**
+     * Heap held by this instance's columns, slices report their share
+     */
+    public long getEstimatedBytes() {
+        return (long) size * BYTES_PER_POINT;
+    }
+
+    private int[] newPreviousRows() {
+        int[] previous = new int[trackieNames.length];
+        Arrays.fill(previous, -1);
+        return previous;
+    }
+
+    private static int find(long[] days, int count, long day) {
+        for (int i = 0; i < count; i++) {
+            if (days[i] == day) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(String[] names, String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (name == null ? names[i] == null : name.equals(names[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Daily aggregates in first-seen order, the same order as the days in ordered input
+     */
+    public static final class Daily {
+        private final long[] epochDays;
+        private final int[] counts;
+        private final double[] distancesMeters;
+
+        private Daily(long[] epochDays, int[] counts, double[] distancesMeters) {
+            this.epochDays = epochDays;
+            this.counts = counts;
+            this.distancesMeters = distancesMeters;
+        }
+
+        public int size() {
+            return epochDays.length;
+        }
+
+        /**
+         * Days since 1970-01-01 in the zone the aggregate was built for
+         */
+        public long getEpochDay(int index) {
+            return epochDays[index];
+        }
+
+        public int getCount(int index) {
+            return counts[index];
+        }
+
+        public double getDistanceMeters(int index) {
+            return distancesMeters[index];
+        }
+    }
+
+    /**
+     * Appends rows and interns trackie names and user ids into the dictionaries
+     */
+    public static final class Builder {
+        private double[] latitudes;
+        private double[] longitudes;
+        private long[] millis;
+        private float[] accuracies;
+        private int[] trackieIds;
+        private int[] userIdCodes;
+        private final Map<String, Integer> trackieCodes = new HashMap<>();
+        private final Map<String, Integer> userIdCodesByName = new HashMap<>();
+        private final List<String> trackieNames = new ArrayList<>();
+        private final List<String> userIdNames = new ArrayList<>();
+        private final Map<Integer, String> irregularTimestamps = new HashMap<>();
+        private int size;
+
+        public Builder(int expectedSize) {
+            int capacity = Math.max(16, expectedSize);
+            latitudes = new double[capacity];
+            longitudes = new double[capacity];
+            millis = new long[capacity];
+            accuracies = new float[capacity];
+            trackieIds = new int[capacity];
+            userIdCodes = new int[capacity];
+        }
+
+        public Builder add(Location location) {
+            String timestamp = location.getInsertionTimestamp();
+            long time = Timestamps.parseMillis(timestamp);
+            if (time == Timestamps.UNKNOWN || !Timestamps.format(time).equals(timestamp)) {
+                irregularTimestamps.put(size, timestamp);
+            }
+            return add(location.getLatitude(), location.getLongitude(), time, Float.NaN,
+                    location.getUserName(), location.getUserId());
+        }
+
+        /**
+         * @param accuracyMeters NaN when unknown
+         */
+        public Builder add(double latitude, double longitude, long timeMillis, float accuracyMeters,
+                           String trackie, String userId) {
+            if (size == latitudes.length) {
+                grow();
+            }
+            latitudes[size] = latitude;
+            longitudes[size] = longitude;
+            millis[size] = timeMillis;
+            accuracies[size] = accuracyMeters;
+            trackieIds[size] = code(trackieCodes, trackieNames, trackie);
+            userIdCodes[size] = code(userIdCodesByName, userIdNames, userId);
+            size++;
+            return this;
+        }
+
+        public LocationColumns build() {
+            return new LocationColumns(Arrays.copyOf(latitudes, size), Arrays.copyOf(longitudes, size),
+                    Arrays.copyOf(millis, size), Arrays.copyOf(accuracies, size),
+                    Arrays.copyOf(trackieIds, size), Arrays.copyOf(userIdCodes, size),
+                    trackieNames.toArray(new String[0]), userIdNames.toArray(new String[0]),
+                    new HashMap<>(irregularTimestamps), 0, size);
+        }
+
+        private void grow() {
+            int capacity = latitudes.length * 2;
+            latitudes = Arrays.copyOf(latitudes, capacity);
+            longitudes = Arrays.copyOf(longitudes, capacity);
+            millis = Arrays.copyOf(millis, capacity);
+            accuracies = Arrays.copyOf(accuracies, capacity);
+            trackieIds = Arrays.copyOf(trackieIds, capacity);
+            userIdCodes = Arrays.copyOf(userIdCodes, capacity);
+        }
+
+        private static int code(Map<String, Integer> codes, List<String> names, String name) {
+            Integer code = codes.get(name);
+            if (code == null) {
+                code = names.size();
+                codes.put(name, code);
+                names.add(name);
+            }
+            return code;
+        }
+    }
+}
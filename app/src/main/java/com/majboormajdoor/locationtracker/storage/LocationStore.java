@@ -0,0 +1,803 @@
+package com.majboormajdoor.locationtracker.storage;
+
+import android.content.Context;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.majboormajdoor.locationtracker.constants.AppConstants;
+import com.majboormajdoor.locationtracker.dto.Location;
+import com.majboormajdoor.locationtracker.logging.AppLog;
+import com.majboormajdoor.locationtracker.metrics.Counter;
+import com.majboormajdoor.locationtracker.metrics.Gauge;
+import com.majboormajdoor.locationtracker.metrics.MetricsRegistry;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * File-backed store for downloaded location history
+ * Kept out of SharedPreferences so settings writes never rewrite the history and
+ * reading a setting never parses it. The files are loaded lazily on first access and
+ * replaced atomically on every write
+ *
+ * History is partitioned per trackie (the record's userName), each partition with its own
+ * segment file and time index. Partitions load and build their indexes in parallel, writes
+ * only rewrite the partitions they touched, and a combined time-ordered view is a k-way
+ * merge of the partition indexes
+ *
+ * A {@link RetentionPolicy} is enforced on every write for age, count and size limits;
+ * downsampling of older days only runs in {@link #compact}
+ */
+public class LocationStore {
+    private static final String TAG = "LocationStore";
+
+    private static LocationStore instance;
+    private static final Object lock = new Object();
+
+    private final File directory;
+    // Single-file layout used before partitioning, imported and removed on first load
+    private final File legacyFile;
+    private final ExecutorService pool = ForkJoinPool.commonPool();
+    private final Map<String, StorePartition> partitions = new LinkedHashMap<>();
+    private boolean loaded;
+
+    private RetentionPolicy retentionPolicy = RetentionPolicy.defaults();
+    private int recordCount;
+    private long estimatedBytes;
+    private long oldestMillis = Timestamps.UNKNOWN;
+
+    // Every stored key, lets new records skip the lookup in other partitions
+    private KeyFilter keyFilter = newKeyFilter(0);
+    private int staleKeys;
+    private final RollupIndex rollups = new RollupIndex();
+    private boolean bulkLoading;
+
+    private final Counter evictedAge = MetricsRegistry.getInstance().counter(AppConstants.METRIC_STORE_EVICTED_AGE);
+    private final Counter evictedCount = MetricsRegistry.getInstance().counter(AppConstants.METRIC_STORE_EVICTED_COUNT);
+    private final Counter evictedBytes = MetricsRegistry.getInstance().counter(AppConstants.METRIC_STORE_EVICTED_BYTES);
+    private final Counter downsampled = MetricsRegistry.getInstance().counter(AppConstants.METRIC_STORE_DOWNSAMPLED);
+    private final Gauge recordsGauge = MetricsRegistry.getInstance().gauge(AppConstants.METRIC_CACHE_SIZE);
+    private final Gauge bytesGauge = MetricsRegistry.getInstance().gauge(AppConstants.METRIC_STORE_BYTES);
+    private final Gauge partitionsGauge = MetricsRegistry.getInstance().gauge(AppConstants.METRIC_STORE_PARTITIONS);
+    private final Counter filterNew = MetricsRegistry.getInstance().counter(AppConstants.METRIC_STORE_FILTER_NEW);
+    private final Counter filterFalsePositives = MetricsRegistry.getInstance().counter(AppConstants.METRIC_STORE_FILTER_FALSE_POSITIVE);
+
+    public static LocationStore getInstance(Context context) {
+        if (instance == null) {
+            synchronized (lock) {
+                if (instance == null) {
+                    File directory = new File(context.getApplicationContext().getFilesDir(), AppConstants.LOCATION_STORE_DIR);
+                    instance = new LocationStore(directory);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Store rooted at the given directory, app code should use {@link #getInstance}
+     */
+    public LocationStore(File directory) {
+        this.directory = directory;
+        this.legacyFile = new File(directory, AppConstants.LOCATION_STORE_FILE_NAME);
+    }
+
+    /**
+     * Deduplication key, one entry per user and timestamp
+     */
+    public static String keyOf(Location location) {
+        return location.getUserId() + "_" + location.getInsertionTimestamp();
+    }
+
+    public synchronized void setRetentionPolicy(RetentionPolicy policy) {
+        retentionPolicy = policy;
+    }
+
+    /**
+     * Copy of every stored location keyed by {@link #keyOf}
+     */
+    public synchronized Map<String, Location> readAll() {
+        ensureLoaded();
+        Map<String, Location> all = new LinkedHashMap<>(recordCount * 4 / 3 + 1);
+        for (StorePartition partition : partitions.values()) {
+            all.putAll(partition.records);
+        }
+        return all;
+    }
+
+    /**
+     * Trackie names with at least one stored record
+     */
+    public synchronized List<String> getTrackies() {
+        ensureLoaded();
+        List<String> trackies = new ArrayList<>();
+        for (StorePartition partition : partitions.values()) {
+            if (!partition.records.isEmpty()) {
+                trackies.add(partition.trackie);
+            }
+        }
+        return trackies;
+    }
+
+    /**
+     * One trackie's records with fromMillis <= time < toMillis, oldest first
+     * Only that trackie's partition is touched
+     */
+    public synchronized List<Location> read(String trackie, long fromMillis, long toMillis) {
+        ensureLoaded();
+        StorePartition partition = partitions.get(trackie != null ? trackie : "");
+        if (partition == null) {
+            return new ArrayList<>();
+        }
+        return partition.between(fromMillis, toMillis);
+    }
+
+    /**
+     * Every trackie's records with fromMillis <= time < toMillis, merged oldest first
+     * Records whose timestamp cannot be parsed are never returned
+     */
+    public synchronized List<Location> readOrdered(long fromMillis, long toMillis) {
+        ensureLoaded();
+        List<StorePartition> indexed = new ArrayList<>(partitions.values());
+        buildIndexes(indexed);
+        return merge(indexed, fromMillis, toMillis);
+    }
+
+    /**
+     * Per-day summaries of every stored record, oldest day first
+     * Days touched out of order since the last call are recomputed from their partitions
+     */
+    public synchronized List<DailyRollup> getDailyRollups() {
+        ensureLoaded();
+        if (rollups.zoneChanged()) {
+            rebuildRollups();
+        }
+        return rollups.rollups(partitions);
+    }
+
+    public synchronized int size() {
+        ensureLoaded();
+        return recordCount;
+    }
+
+    /**
+     * Approximate size of the store files in bytes
+     */
+    public synchronized long getEstimatedBytes() {
+        ensureLoaded();
+        return estimatedBytes;
+    }
+
+    /**
+     * Merge locations into the store, replacing entries with the same key
+     *
+     * @return keys evicted by the retention policy during this write
+     */
+    public synchronized List<String> putAll(Collection<Location> newLocations) throws IOException {
+        ensureLoaded();
+        for (Location location : newLocations) {
+            add(location);
+        }
+        List<String> evicted = new ArrayList<>();
+        enforce(System.currentTimeMillis(), false, evicted);
+        if (staleKeys > keyFilter.getInsertions() / 2) {
+            rebuildKeyFilter();
+        }
+        persist();
+        return evicted;
+    }
+
+    /**
+     * Add a batch of an import without retention, persistence or rollup upkeep
+     * Nothing is written until {@link #finishBulk()}, which must follow the last batch
+     */
+    public synchronized void putBulk(Collection<Location> batch) {
+        ensureLoaded();
+        bulkLoading = true;
+        for (Location location : batch) {
+            add(location);
+        }
+    }
+
+    /**
+     * End an import: apply retention, rebuild indexes and rollups once, then write every changed partition
+     *
+     * @return keys evicted by the retention policy
+     */
+    public synchronized List<String> finishBulk() throws IOException {
+        ensureLoaded();
+        bulkLoading = false;
+        List<String> evicted = new ArrayList<>();
+        enforce(System.currentTimeMillis(), false, evicted);
+        if (staleKeys > 0) {
+            rebuildKeyFilter();
+        }
+        rebuildRollups();
+        persist();
+        AppLog.d(TAG, "Bulk load finished with {} locations in {} partitions", recordCount, partitions.size());
+        return evicted;
+    }
+
+    /**
+     * Apply every retention rule including downsampling
+     * Only partitions that lost records are rewritten
+     *
+     * @return keys of the removed records
+     */
+    public synchronized List<String> compact(long nowMillis) throws IOException {
+        ensureLoaded();
+        List<String> removed = new ArrayList<>();
+        enforce(nowMillis, true, removed);
+        if (staleKeys > 0) {
+            rebuildKeyFilter();
+        }
+        persist();
+        AppLog.d(TAG, "Compaction removed {} records, {} left", removed.size(), recordCount);
+        return removed;
+    }
+
+    public synchronized void clear() {
+        // Segments on disk that were never loaded go too
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                boolean segment = StorePartition.trackieOfFile(file.getName()) != null;
+                if ((segment || file.equals(legacyFile)) && !file.delete()) {
+                    AppLog.w(TAG, "Unable to delete {}", file.getName());
+                }
+            }
+        }
+        partitions.clear();
+        rollups.clear();
+        keyFilter = newKeyFilter(0);
+        staleKeys = 0;
+        recordCount = 0;
+        estimatedBytes = 0;
+        oldestMillis = Timestamps.UNKNOWN;
+        loaded = true;
+        updateGauges();
+    }
+
+    /**
+     * Import the JSON map the old SharedPreferences cache used, returns the number of entries imported
+     * Unparseable JSON imports nothing, it cannot become readable later
+     */
+    public synchronized int importLegacyJson(String json) throws IOException {
+        Type mapType = new TypeToken<Map<String, Location>>(){}.getType();
+        Map<String, Location> legacy;
+        try {
+            legacy = new Gson().fromJson(json, mapType);
+        } catch (RuntimeException e) {
+            AppLog.e(TAG, "Unreadable legacy location cache", e);
+            return 0;
+        }
+        if (legacy == null || legacy.isEmpty()) {
+            return 0;
+        }
+        putAll(legacy.values());
+        return legacy.size();
+    }
+
+    /**
+     * Place a record in its trackie's partition
+     * A key lives in exactly one partition, so a record that changed trackie leaves its old one
+     *
+     * The key string is still built once per record: the partition maps are keyed by it, so the
+     * insert needs it whatever the filter says. The filter only spares a new record the lookup
+     * in every other partition
+     */
+    private void add(Location location) {
+        String key = keyOf(location);
+        String trackie = StorePartition.trackieOf(location);
+        StorePartition target = partitions.get(trackie);
+        if (target == null) {
+            target = new StorePartition(directory, trackie);
+            partitions.put(trackie, target);
+        }
+        Location replaced = target.put(key, location);
+        if (replaced == null && partitions.size() > 1) {
+            if (keyFilter.mightContain(location)) {
+                for (StorePartition partition : partitions.values()) {
+                    if (partition != target && (replaced = partition.remove(key)) != null) {
+                        break;
+                    }
+                }
+                if (replaced == null) {
+                    filterFalsePositives.inc();
+                }
+            } else {
+                filterNew.inc();
+            }
+        }
+        // A bulk load rebuilds every day once at the end instead
+        if (!bulkLoading) {
+            if (replaced != null) {
+                rollups.remove(StorePartition.trackieOf(replaced), replaced);
+            }
+            rollups.add(trackie, location);
+        }
+        if (replaced == null) {
+            recordCount++;
+            keyFilter.add(location);
+            if (keyFilter.getInsertions() > keyFilter.getCapacity()) {
+                rebuildKeyFilter();
+            }
+        } else {
+            estimatedBytes -= LocationCodec.recordSize(replaced);
+        }
+        track(location);
+    }
+
+    /**
+     * Size the filter for twice the live records and add them all, dropping removed keys
+     */
+    private void rebuildKeyFilter() {
+        keyFilter = newKeyFilter(recordCount);
+        for (StorePartition partition : partitions.values()) {
+            for (Location location : partition.records.values()) {
+                keyFilter.add(location);
+            }
+        }
+        staleKeys = 0;
+    }
+
+    private static KeyFilter newKeyFilter(int records) {
+        return new KeyFilter(Math.max(AppConstants.KEY_FILTER_MIN_CAPACITY, records * 2),
+                AppConstants.KEY_FILTER_FALSE_POSITIVE_RATE);
+    }
+
+    private void track(Location added) {
+        estimatedBytes += LocationCodec.recordSize(added);
+        oldestMillis = Math.min(oldestMillis, Timestamps.parseMillis(added.getInsertionTimestamp()));
+    }
+
+    /**
+     * Evict records that break the retention policy, oldest first
+     * Returns at once when no limit can be exceeded
+     */
+    private void enforce(long nowMillis, boolean downsample, List<String> removed) {
+        RetentionPolicy policy = retentionPolicy;
+        long ageCutoff = policy.maxAgeMillis > 0 ? nowMillis - policy.maxAgeMillis : Long.MIN_VALUE;
+        boolean overAge = oldestMillis != Timestamps.UNKNOWN && oldestMillis < ageCutoff;
+        boolean overCount = policy.maxRecords > 0 && recordCount > policy.maxRecords;
+        boolean overBytes = policy.maxBytes > 0 && estimatedBytes > policy.maxBytes;
+        boolean thin = downsample && policy.downsamples();
+        if (!overAge && !overCount && !overBytes && !thin) {
+            return;
+        }
+        if (thin) {
+            enforceSorted(nowMillis, ageCutoff, removed);
+        } else {
+            evictOldest(ageCutoff, removed);
+        }
+        if (!removed.isEmpty()) {
+            AppLog.d(TAG, "Evicted {} records", removed.size());
+        }
+    }
+
+    /**
+     * Per-write eviction: merge the partitions' time indexes oldest first and stop at the first
+     * record that breaks no limit, so a store at its cap only visits the few records it evicts
+     */
+    private void evictOldest(long ageCutoff, List<String> removed) {
+        RetentionPolicy policy = retentionPolicy;
+        List<StorePartition> all = new ArrayList<>(partitions.values());
+        buildIndexes(all);
+        PriorityQueue<Cursor> heads = new PriorityQueue<>(Math.max(1, all.size()),
+                (a, b) -> Long.compare(a.partition.millisAt(a.position), b.partition.millisAt(b.position)));
+        for (StorePartition partition : all) {
+            if (!partition.records.isEmpty()) {
+                heads.add(new Cursor(partition, 0, partition.records.size()));
+            }
+        }
+
+        // Chosen first and removed after, removing invalidates the index being walked
+        List<Aged> victims = new ArrayList<>();
+        int count = recordCount;
+        long bytes = estimatedBytes;
+        oldestMillis = Timestamps.UNKNOWN;
+        while (!heads.isEmpty()) {
+            Cursor cursor = heads.peek();
+            long millis = cursor.partition.millisAt(cursor.position);
+            Counter reason;
+            if (millis < ageCutoff) {
+                reason = evictedAge;
+            } else if (policy.maxRecords > 0 && count > policy.maxRecords) {
+                reason = evictedCount;
+            } else if (policy.maxBytes > 0 && bytes > policy.maxBytes) {
+                reason = evictedBytes;
+            } else {
+                oldestMillis = millis;
+                break;
+            }
+            Location location = cursor.partition.recordAt(cursor.position);
+            victims.add(new Aged(cursor.partition, keyOf(location), location, millis));
+            reason.inc();
+            count--;
+            bytes -= LocationCodec.recordSize(location);
+            heads.poll();
+            if (++cursor.position < cursor.end) {
+                heads.add(cursor);
+            }
+        }
+        for (Aged victim : victims) {
+            remove(victim, removed);
+        }
+    }
+
+    /**
+     * Compaction: age limit, then downsampling, then count and size limits over one full sort
+     */
+    private void enforceSorted(long nowMillis, long ageCutoff, List<String> removed) {
+        RetentionPolicy policy = retentionPolicy;
+        Aged[] byAge = new Aged[recordCount];
+        int n = 0;
+        for (StorePartition partition : partitions.values()) {
+            for (Map.Entry<String, Location> entry : partition.records.entrySet()) {
+                byAge[n++] = new Aged(partition, entry.getKey(), entry.getValue());
+            }
+        }
+        Arrays.sort(byAge, (a, b) -> Long.compare(a.millis, b.millis));
+
+        int first = 0;
+        while (first < n && byAge[first].millis < ageCutoff) {
+            remove(byAge[first++], removed);
+            evictedAge.inc();
+        }
+
+        long fullResolutionCutoff = nowMillis - policy.fullResolutionMillis;
+        Set<String> buckets = new HashSet<>();
+        for (int i = first; i < n && byAge[i].millis < fullResolutionCutoff; i++) {
+            Aged aged = byAge[i];
+            // Per trackie, one account follows several and each keeps its own history
+            String bucket = aged.partition.trackie + "#" + (aged.millis / policy.downsampleIntervalMillis);
+            if (!buckets.add(bucket)) {
+                remove(aged, removed);
+                downsampled.inc();
+            }
+        }
+
+        for (int i = first; i < n; i++) {
+            Aged aged = byAge[i];
+            if (aged.removed) {
+                continue;
+            }
+            boolean countExceeded = policy.maxRecords > 0 && recordCount > policy.maxRecords;
+            boolean bytesExceeded = policy.maxBytes > 0 && estimatedBytes > policy.maxBytes;
+            if (!countExceeded && !bytesExceeded) {
+                break;
+            }
+            remove(aged, removed);
+            if (countExceeded) {
+                evictedCount.inc();
+            } else {
+                evictedBytes.inc();
+            }
+        }
+
+        oldestMillis = Timestamps.UNKNOWN;
+        for (int i = first; i < n; i++) {
+            if (!byAge[i].removed) {
+                oldestMillis = byAge[i].millis;
+                break;
+            }
+        }
+    }
+
+    private void remove(Aged aged, List<String> removed) {
+        aged.partition.remove(aged.key);
+        rollups.remove(aged.partition.trackie, aged.location);
+        recordCount--;
+        staleKeys++;
+        estimatedBytes -= LocationCodec.recordSize(aged.location);
+        aged.removed = true;
+        removed.add(aged.key);
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        File[] files = directory.listFiles();
+        if (files != null) {
+            List<StorePartition> found = new ArrayList<>();
+            for (File file : files) {
+                String trackie = StorePartition.trackieOfFile(file.getName());
+                if (trackie != null) {
+                    found.add(new StorePartition(directory, trackie));
+                }
+            }
+            loadPartitions(found);
+            rebuildKeyFilter();
+            rebuildRollups();
+        }
+        if (legacyFile.exists()) {
+            importLegacyFile();
+        }
+        updateGauges();
+        if (!partitions.isEmpty()) {
+            AppLog.d(TAG, "Loaded {} locations in {} partitions", recordCount, partitions.size());
+        }
+    }
+
+    /**
+     * Read every segment in parallel, then index the records on this thread
+     */
+    private void loadPartitions(List<StorePartition> found) {
+        List<Callable<Void>> loads = new ArrayList<>(found.size());
+        for (StorePartition partition : found) {
+            loads.add(() -> {
+                partition.load();
+                partition.buildIndex();
+                return null;
+            });
+        }
+        List<Future<Void>> results = invokeAll(loads);
+        for (int i = 0; i < found.size(); i++) {
+            StorePartition partition = found.get(i);
+            if (!partition.hasIndex()) {
+                partition.records.clear();
+                await(results.get(i), loads.get(i), partition);
+            }
+            if (!partition.hasIndex()) {
+                // A damaged segment only holds a cache of server data, start it over rather than fail
+                AppLog.e(TAG, "Error reading partition {}, discarding it", partition.file.getName());
+                partition.records.clear();
+                partition.dirty = true;
+            }
+            partitions.put(partition.trackie, partition);
+            recordCount += partition.records.size();
+            for (Location location : partition.records.values()) {
+                track(location);
+            }
+        }
+    }
+
+    /**
+     * Split the pre-partitioning single file into segments, then remove it
+     * If the segments cannot be written the file stays and is imported again next time
+     */
+    private void importLegacyFile() {
+        Map<String, Location> legacy = new LinkedHashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(legacyFile)))) {
+            LocationCodec.read(in, legacy);
+        } catch (IOException e) {
+            AppLog.e(TAG, "Error reading legacy location store, discarding it", e);
+            legacy.clear();
+        }
+        for (Location location : legacy.values()) {
+            add(location);
+        }
+        try {
+            persist();
+        } catch (IOException e) {
+            AppLog.e(TAG, "Unable to split legacy location store, will retry", e);
+            return;
+        }
+        if (!legacyFile.delete()) {
+            AppLog.w(TAG, "Unable to delete {}", legacyFile.getName());
+        }
+        AppLog.i(TAG, "Split {} legacy locations into partitions", legacy.size());
+    }
+
+    /**
+     * Recompute every day from the raw records, one task per partition
+     */
+    private void rebuildRollups() {
+        rollups.clear();
+        List<StorePartition> all = new ArrayList<>(partitions.values());
+        buildIndexes(all);
+        TimeZone zone = rollups.getZone();
+        List<Callable<TreeMap<Long, RollupIndex.Day>>> scans = new ArrayList<>(all.size());
+        for (StorePartition partition : all) {
+            scans.add(() -> RollupIndex.summarize(partition, zone, Long.MIN_VALUE, Timestamps.UNKNOWN));
+        }
+        List<Future<TreeMap<Long, RollupIndex.Day>>> results = invokeAll(scans);
+        for (int i = 0; i < all.size(); i++) {
+            StorePartition partition = all.get(i);
+            TreeMap<Long, RollupIndex.Day> days = await(results.get(i), scans.get(i), partition);
+            if (days == null) {
+                discard(partition);
+            } else {
+                rollups.replace(partition.trackie, days);
+            }
+        }
+    }
+
+    private void buildIndexes(List<StorePartition> indexed) {
+        List<StorePartition> unindexed = new ArrayList<>();
+        List<Callable<Void>> builds = new ArrayList<>();
+        for (StorePartition partition : indexed) {
+            if (!partition.hasIndex()) {
+                unindexed.add(partition);
+                builds.add(() -> {
+                    partition.buildIndex();
+                    return null;
+                });
+            }
+        }
+        if (builds.isEmpty()) {
+            return;
+        }
+        List<Future<Void>> results = invokeAll(builds);
+        for (int i = 0; i < unindexed.size(); i++) {
+            StorePartition partition = unindexed.get(i);
+            await(results.get(i), builds.get(i), partition);
+            if (!partition.hasIndex()) {
+                discard(partition);
+            }
+        }
+    }
+
+    /**
+     * Run the tasks on the pool, or on this thread when interrupted while waiting for it
+     * Every returned future is done
+     */
+    private <T> List<Future<T>> invokeAll(List<Callable<T>> tasks) {
+        try {
+            return pool.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            AppLog.w(TAG, "Interrupted waiting for {} partition tasks, running them here", tasks.size());
+            List<Future<T>> results = new ArrayList<>(tasks.size());
+            for (Callable<T> task : tasks) {
+                FutureTask<T> result = new FutureTask<>(task);
+                result.run();
+                results.add(result);
+            }
+            return results;
+        }
+    }
+
+    /**
+     * Result of a finished partition task, retried once on this thread if the pool run failed
+     * Null when the retry fails too, the caller then discards the partition
+     */
+    private <T> T await(Future<T> result, Callable<T> task, StorePartition partition) {
+        // The task is done, but a pending interrupt would still fail get() on a pool task
+        boolean interrupted = Thread.interrupted();
+        try {
+            return result.get();
+        } catch (ExecutionException | InterruptedException | CancellationException e) {
+            AppLog.e(TAG, "Task on partition {} failed, retrying", partition.file.getName(), e);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            return task.call();
+        } catch (Exception e) {
+            AppLog.e(TAG, "Task on partition {} failed again", partition.file.getName(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Drop a partition's records after a failure, like a damaged segment: the store is only
+     * a cache of server data, losing one trackie's slice beats failing every read
+     */
+    private void discard(StorePartition partition) {
+        AppLog.e(TAG, "Discarding partition {}", partition.file.getName());
+        for (Location location : partition.records.values()) {
+            estimatedBytes -= LocationCodec.recordSize(location);
+        }
+        recordCount -= partition.records.size();
+        staleKeys += partition.records.size();
+        partition.records.clear();
+        partition.dirty = true;
+        partition.buildIndex();
+        rollups.replace(partition.trackie, new TreeMap<>());
+    }
+
+    /**
+     * K-way merge of the indexed partitions' slices for the range
+     */
+    private static List<Location> merge(List<StorePartition> indexed, long fromMillis, long toMillis) {
+        PriorityQueue<Cursor> heads = new PriorityQueue<>(Math.max(1, indexed.size()),
+                (a, b) -> Long.compare(a.partition.millisAt(a.position), b.partition.millisAt(b.position)));
+        int total = 0;
+        for (StorePartition partition : indexed) {
+            Cursor cursor = new Cursor(partition, partition.lowerBound(fromMillis), partition.lowerBound(toMillis));
+            if (cursor.position < cursor.end) {
+                heads.add(cursor);
+                total += cursor.end - cursor.position;
+            }
+        }
+        List<Location> merged = new ArrayList<>(total);
+        while (!heads.isEmpty()) {
+            Cursor cursor = heads.poll();
+            merged.add(cursor.partition.recordAt(cursor.position++));
+            if (cursor.position < cursor.end) {
+                heads.add(cursor);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Write every partition changed since the last write, dropping partitions left empty
+     */
+    private void persist() throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+        List<String> emptied = new ArrayList<>();
+        for (StorePartition partition : partitions.values()) {
+            partition.persist();
+            if (partition.records.isEmpty()) {
+                emptied.add(partition.trackie);
+            }
+        }
+        for (String trackie : emptied) {
+            partitions.remove(trackie);
+        }
+        updateGauges();
+    }
+
+    private void updateGauges() {
+        recordsGauge.set(recordCount);
+        bytesGauge.set(estimatedBytes);
+        partitionsGauge.set(partitions.size());
+    }
+
+    /**
+     * Read position within one partition's index
+     */
+    private static final class Cursor {
+        final StorePartition partition;
+        final int end;
+        int position;
+
+        Cursor(StorePartition partition, int position, int end) {
+            this.partition = partition;
+            this.position = position;
+            this.end = end;
+        }
+    }
+
+    /**
+     * Store entry paired with its parsed timestamp for sorting
+     */
+    private static final class Aged {
+        final StorePartition partition;
+        final String key;
+        final Location location;
+        final long millis;
+        boolean removed;
+
+        Aged(StorePartition partition, String key, Location location) {
+            this(partition, key, location, Timestamps.parseMillis(location.getInsertionTimestamp()));
+        }
+
+        Aged(StorePartition partition, String key, Location location, long millis) {
+            this.partition = partition;
+            this.key = key;
+            this.location = location;
+            this.millis = millis;
+        }
+    }
+}
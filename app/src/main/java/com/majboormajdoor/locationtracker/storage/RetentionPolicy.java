@@ -0,0 +1,46 @@
+package com.majboormajdoor.locationtracker.storage;
+
+import com.majboormajdoor.locationtracker.constants.AppConstants;
+
+/**
+ * Limits applied to the location store, a value of 0 disables that limit
+ * When several limits are exceeded the oldest records are evicted first
+ */
+public class RetentionPolicy {
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    public final long maxAgeMillis;
+    public final int maxRecords;
+    public final long maxBytes;
+
+    // Downsampling tier: records older than fullResolutionMillis keep one point per interval
+    public final long fullResolutionMillis;
+    public final long downsampleIntervalMillis;
+
+    public RetentionPolicy(long maxAgeMillis, int maxRecords, long maxBytes,
+                           long fullResolutionMillis, long downsampleIntervalMillis) {
+        this.maxAgeMillis = maxAgeMillis;
+        this.maxRecords = maxRecords;
+        this.maxBytes = maxBytes;
+        this.fullResolutionMillis = fullResolutionMillis;
+        this.downsampleIntervalMillis = downsampleIntervalMillis;
+    }
+
+    public static RetentionPolicy defaults() {
+        return new RetentionPolicy(
+                AppConstants.RETENTION_MAX_AGE_DAYS * MILLIS_PER_DAY,
+                AppConstants.RETENTION_MAX_RECORDS,
+                AppConstants.RETENTION_MAX_BYTES,
+                AppConstants.RETENTION_FULL_RESOLUTION_DAYS * MILLIS_PER_DAY,
+                AppConstants.RETENTION_DOWNSAMPLE_INTERVAL_MINUTES * 60_000L);
+    }
+
+    public static RetentionPolicy unlimited() {
+        return new RetentionPolicy(0, 0, 0, 0, 0);
+    }
+
+    public boolean downsamples() {
+        return fullResolutionMillis > 0 && downsampleIntervalMillis > 0;
+    }
+}
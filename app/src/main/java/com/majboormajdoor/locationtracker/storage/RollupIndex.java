@@ -0,0 +1,282 @@
+package com.majboormajdoor.locationtracker.storage;
+
+import com.majboormajdoor.locationtracker.dto.Location;
+import com.majboormajdoor.locationtracker.pipeline.LocationFilter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+/**
+ * Per-trackie, per-day accumulators behind {@link DailyRollup}
+ *
+ * Records arriving in time order extend their day in place. Anything else (an out-of-order
+ * record, a replacement, an eviction) marks the day stale and it is recomputed from the
+ * partition's time index the next time rollups are read. Not thread-safe, only used under
+ * the owning {@link LocationStore}'s lock
+ */
+final class RollupIndex {
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    private final Map<String, TreeMap<Long, Day>> byTrackie = new HashMap<>();
+    private TimeZone zone = TimeZone.getDefault();
+    private int staleDays;
+
+    // Day the previous add landed in, records mostly arrive in runs for one trackie and day
+    private String lastTrackie;
+    private Day lastDay;
+    private long lastDayStart;
+    private long lastDayEnd;
+
+    /**
+     * True once the default time zone no longer matches the one the days were cut in
+     */
+    boolean zoneChanged() {
+        TimeZone current = TimeZone.getDefault();
+        return !current.getID().equals(zone.getID()) || !current.hasSameRules(zone);
+    }
+
+    TimeZone getZone() {
+        return zone;
+    }
+
+    /**
+     * Drop every day and start over in the current default zone
+     */
+    void clear() {
+        lastDay = null;
+        byTrackie.clear();
+        zone = TimeZone.getDefault();
+        staleDays = 0;
+    }
+
+    void replace(String trackie, TreeMap<Long, Day> days) {
+        lastDay = null;
+        if (days.isEmpty()) {
+            byTrackie.remove(trackie);
+        } else {
+            byTrackie.put(trackie, days);
+        }
+    }
+
+    void add(String trackie, Location location) {
+        long millis = Timestamps.parseMillis(location.getInsertionTimestamp());
+        if (millis == Timestamps.UNKNOWN) {
+            return;
+        }
+        Day day = lastDay;
+        if (day == null || millis < lastDayStart || millis >= lastDayEnd || !trackie.equals(lastTrackie)) {
+            day = findOrCreate(trackie, millis);
+        }
+        if (day.stale) {
+            return;
+        }
+        if (day.count > 0 && millis < day.last) {
+            markStale(day);
+            return;
+        }
+        day.append(millis, location.getLatitude(), location.getLongitude());
+    }
+
+    void remove(String trackie, Location location) {
+        long millis = Timestamps.parseMillis(location.getInsertionTimestamp());
+        TreeMap<Long, Day> days = byTrackie.get(trackie);
+        if (millis == Timestamps.UNKNOWN || days == null) {
+            return;
+        }
+        Day day = days.get(epochDay(millis, zone));
+        if (day != null) {
+            markStale(day);
+        }
+    }
+
+    /**
+     * Recompute stale days from their partitions, then combine trackies per day, oldest first
+     */
+    List<DailyRollup> rollups(Map<String, StorePartition> partitions) {
+        if (staleDays > 0) {
+            refreshStale(partitions);
+        }
+        TreeMap<Long, Map<String, Day>> byDay = new TreeMap<>();
+        for (Map.Entry<String, TreeMap<Long, Day>> trackie : byTrackie.entrySet()) {
+            for (Map.Entry<Long, Day> day : trackie.getValue().entrySet()) {
+                Map<String, Day> trackies = byDay.get(day.getKey());
+                if (trackies == null) {
+                    trackies = new LinkedHashMap<>();
+                    byDay.put(day.getKey(), trackies);
+                }
+                trackies.put(trackie.getKey(), day.getValue());
+            }
+        }
+        List<DailyRollup> rollups = new ArrayList<>(byDay.size());
+        for (Map.Entry<Long, Map<String, Day>> entry : byDay.entrySet()) {
+            Day total = new Day();
+            Map<String, DailyRollup> trackies = new LinkedHashMap<>();
+            for (Map.Entry<String, Day> trackie : entry.getValue().entrySet()) {
+                Day day = trackie.getValue();
+                total.combine(day);
+                trackies.put(trackie.getKey(), day.toRollup(entry.getKey(), new HashMap<>()));
+            }
+            rollups.add(total.toRollup(entry.getKey(), trackies));
+        }
+        return rollups;
+    }
+
+    /**
+     * Days of one indexed partition's records between fromMillis (inclusive) and toMillis (exclusive)
+     * Pure function of the partition, safe to run for several partitions in parallel
+     */
+    static TreeMap<Long, Day> summarize(StorePartition partition, TimeZone zone, long fromMillis, long toMillis) {
+        TreeMap<Long, Day> days = new TreeMap<>();
+        int end = partition.lowerBound(toMillis);
+        Day day = null;
+        long current = Long.MIN_VALUE;
+        // Unparseable timestamps sort last as UNKNOWN, which is never below toMillis
+        for (int i = partition.lowerBound(fromMillis); i < end; i++) {
+            long millis = partition.millisAt(i);
+            long epochDay = epochDay(millis, zone);
+            if (day == null || epochDay != current) {
+                current = epochDay;
+                day = new Day();
+                days.put(epochDay, day);
+            }
+            Location location = partition.recordAt(i);
+            day.append(millis, location.getLatitude(), location.getLongitude());
+        }
+        return days;
+    }
+
+    static long epochDay(long millis, TimeZone zone) {
+        return Math.floorDiv(millis + zone.getOffset(millis), MILLIS_PER_DAY);
+    }
+
+    private Day findOrCreate(String trackie, long millis) {
+        int offset = zone.getOffset(millis);
+        long epochDay = Math.floorDiv(millis + offset, MILLIS_PER_DAY);
+        TreeMap<Long, Day> days = byTrackie.get(trackie);
+        if (days == null) {
+            days = new TreeMap<>();
+            byTrackie.put(trackie, days);
+        }
+        Day day = days.get(epochDay);
+        if (day == null) {
+            day = new Day();
+            days.put(epochDay, day);
+        }
+        long start = epochDay * MILLIS_PER_DAY - offset;
+        long end = start + MILLIS_PER_DAY;
+        // Only remember days without an offset change, their bounds are exact
+        if (zone.getOffset(start) == offset && zone.getOffset(end - 1) == offset) {
+            lastTrackie = trackie;
+            lastDay = day;
+            lastDayStart = start;
+            lastDayEnd = end;
+        } else {
+            lastDay = null;
+        }
+        return day;
+    }
+
+    private void markStale(Day day) {
+        if (!day.stale) {
+            day.stale = true;
+            staleDays++;
+        }
+    }
+
+    private void refreshStale(Map<String, StorePartition> partitions) {
+        lastDay = null;
+        Iterator<Map.Entry<String, TreeMap<Long, Day>>> trackies = byTrackie.entrySet().iterator();
+        while (trackies.hasNext()) {
+            Map.Entry<String, TreeMap<Long, Day>> trackie = trackies.next();
+            StorePartition partition = partitions.get(trackie.getKey());
+            TreeMap<Long, Day> days = trackie.getValue();
+            List<Long> stale = new ArrayList<>();
+            for (Map.Entry<Long, Day> day : days.entrySet()) {
+                if (day.getValue().stale) {
+                    stale.add(day.getKey());
+                }
+            }
+            for (Long epochDay : stale) {
+                days.remove(epochDay);
+                if (partition == null) {
+                    continue;
+                }
+                if (!partition.hasIndex()) {
+                    partition.buildIndex();
+                }
+                // A day in any zone lies within the UTC days either side of it
+                TreeMap<Long, Day> recomputed = summarize(partition, zone,
+                        (epochDay - 1) * MILLIS_PER_DAY, (epochDay + 2) * MILLIS_PER_DAY);
+                Day day = recomputed.get(epochDay);
+                if (day != null) {
+                    days.put(epochDay, day);
+                }
+            }
+            if (days.isEmpty()) {
+                trackies.remove();
+            }
+        }
+        staleDays = 0;
+    }
+
+    /**
+     * Running totals of one trackie's day
+     */
+    static final class Day {
+        int count;
+        long first = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+        double minLatitude = Double.POSITIVE_INFINITY;
+        double maxLatitude = Double.NEGATIVE_INFINITY;
+        double minLongitude = Double.POSITIVE_INFINITY;
+        double maxLongitude = Double.NEGATIVE_INFINITY;
+        double distanceMeters;
+        double lastLatitude;
+        double lastLongitude;
+        boolean stale;
+
+        /**
+         * Extend the day with a point no older than the last one
+         */
+        void append(long millis, double latitude, double longitude) {
+            if (count > 0) {
+                distanceMeters += LocationFilter.distanceMeters(lastLatitude, lastLongitude, latitude, longitude);
+            }
+            count++;
+            first = Math.min(first, millis);
+            last = millis;
+            minLatitude = Math.min(minLatitude, latitude);
+            maxLatitude = Math.max(maxLatitude, latitude);
+            minLongitude = Math.min(minLongitude, longitude);
+            maxLongitude = Math.max(maxLongitude, longitude);
+            lastLatitude = latitude;
+            lastLongitude = longitude;
+        }
+
+        /**
+         * Fold another trackie's day into a whole-day total
+         */
+        void combine(Day other) {
+            count += other.count;
+            first = Math.min(first, other.first);
+            last = Math.max(last, other.last);
+            minLatitude = Math.min(minLatitude, other.minLatitude);
+            maxLatitude = Math.max(maxLatitude, other.maxLatitude);
+            minLongitude = Math.min(minLongitude, other.minLongitude);
+            maxLongitude = Math.max(maxLongitude, other.maxLongitude);
+            distanceMeters += other.distanceMeters;
+        }
+
+        DailyRollup toRollup(long epochDay, Map<String, DailyRollup> trackies) {
+            return new DailyRollup(epochDay, count, first, last, minLatitude, maxLatitude,
+                    minLongitude, maxLongitude, distanceMeters, trackies);
+        }
+    }
+}
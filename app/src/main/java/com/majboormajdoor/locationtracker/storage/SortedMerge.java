@@ -0,0 +1,182 @@
+package com.majboormajdoor.locationtracker.storage;
+
+import com.majboormajdoor.locationtracker.dto.Location;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+
+/**
+ * Time ordering for location lists built from already sorted runs
+ *
+ * Server pages and store reads arrive in time order, so inputs are split into their natural
+ * ascending or descending runs and combined with a k-way merge instead of a full sort.
+ * Ordered input costs one linear pass; k runs cost O(n log k)
+ */
+public final class SortedMerge {
+
+    private SortedMerge() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    /**
+     * Ascending by time, unparseable timestamps last
+     */
+    public static List<Location> sort(Collection<Location> locations) {
+        Run all = new Run(locations.toArray(new Location[0]), 0);
+        List<Run> runs = all.split();
+        return mergeRuns(runs, all.items.length, false);
+    }
+
+    /**
+     * Descending by time, the order the history list is shown in
+     */
+    public static List<Location> newestFirst(Collection<Location> locations) {
+        List<Location> sorted = sort(locations);
+        Collections.reverse(sorted);
+        return sorted;
+    }
+
+    /**
+     * K-way merge of lists that are each ascending by time, keeping one record per
+     * {@link LocationStore#keyOf}. When runs disagree the later run wins, so pass newer data last
+     */
+    public static List<Location> merge(List<List<Location>> runs) {
+        List<Run> heads = new ArrayList<>(runs.size());
+        int total = 0;
+        for (int i = 0; i < runs.size(); i++) {
+            Run run = new Run(runs.get(i).toArray(new Location[0]), i);
+            heads.add(run);
+            total += run.end;
+        }
+        return mergeRuns(heads, total, true);
+    }
+
+    private static List<Location> mergeRuns(List<Run> runs, int total, boolean dedupe) {
+        List<Location> merged = new ArrayList<>(total);
+        if (runs.size() == 1 && !dedupe) {
+            Run run = runs.get(0);
+            for (int i = run.position; i < run.end; i++) {
+                merged.add(run.items[i]);
+            }
+            return merged;
+        }
+        // Ties go to the later run first so its copy of a duplicate is the one kept
+        PriorityQueue<Run> heads = new PriorityQueue<>(Math.max(1, runs.size()), (a, b) -> {
+            int byTime = Long.compare(a.headMillis(), b.headMillis());
+            return byTime != 0 ? byTime : Integer.compare(b.rank, a.rank);
+        });
+        for (Run run : runs) {
+            if (run.position < run.end) {
+                heads.add(run);
+            }
+        }
+        // Duplicates share a timestamp, so records are only compared within one millisecond
+        List<Location> group = new ArrayList<>();
+        long groupMillis = Long.MIN_VALUE;
+        while (!heads.isEmpty()) {
+            Run run = heads.poll();
+            Run next = heads.peek();
+            // Keep taking from this run while it stays strictly ahead, without touching the heap
+            do {
+                long millis = run.headMillis();
+                Location location = run.items[run.position++];
+                if (dedupe) {
+                    if (millis != groupMillis) {
+                        groupMillis = millis;
+                        group.clear();
+                    } else if (containsKey(group, location)) {
+                        continue;
+                    }
+                    group.add(location);
+                }
+                merged.add(location);
+            } while (run.position < run.end && (next == null || run.headMillis() < next.headMillis()));
+            if (run.position < run.end) {
+                heads.add(run);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Same {@link LocationStore#keyOf} as any record in the group, without building the keys
+     */
+    private static boolean containsKey(List<Location> group, Location location) {
+        for (Location other : group) {
+            if (Objects.equals(other.getUserId(), location.getUserId())
+                    && Objects.equals(other.getInsertionTimestamp(), location.getInsertionTimestamp())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Slice of an array that is ascending by time between position and end
+     */
+    private static final class Run {
+        final Location[] items;
+        final long[] millis;
+        final int rank;
+        int position;
+        int end;
+
+        Run(Location[] items, int rank) {
+            this(items, new long[items.length], rank, 0, items.length);
+            for (int i = 0; i < items.length; i++) {
+                millis[i] = Timestamps.parseMillis(items[i].getInsertionTimestamp());
+            }
+        }
+
+        private Run(Location[] items, long[] millis, int rank, int position, int end) {
+            this.items = items;
+            this.millis = millis;
+            this.rank = rank;
+            this.position = position;
+            this.end = end;
+        }
+
+        long headMillis() {
+            return millis[position];
+        }
+
+        /**
+         * Natural runs of this slice, descending runs are reversed in place
+         */
+        List<Run> split() {
+            List<Run> runs = new ArrayList<>();
+            int start = position;
+            while (start < end) {
+                int next = start + 1;
+                if (next < end && millis[next] < millis[start]) {
+                    while (next < end && millis[next] <= millis[next - 1]) {
+                        next++;
+                    }
+                    reverse(start, next);
+                } else {
+                    while (next < end && millis[next] >= millis[next - 1]) {
+                        next++;
+                    }
+                }
+                runs.add(new Run(items, millis, runs.size(), start, next));
+                start = next;
+            }
+            return runs;
+        }
+
+        private void reverse(int from, int to) {
+            for (int i = from, j = to - 1; i < j; i++, j--) {
+                Location item = items[i];
+                items[i] = items[j];
+                items[j] = item;
+                long time = millis[i];
+                millis[i] = millis[j];
+                millis[j] = time;
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.majboormajdoor.locationtracker.storage;
+
+import com.majboormajdoor.locationtracker.dto.Location;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One trackie's slice of the location store, with its own segment file and time index
+ * Not thread-safe, only used under the owning {@link LocationStore}'s lock or on a
+ * task that store is waiting for
+ */
+final class StorePartition {
+
+    static final String FILE_PREFIX = "trackie_";
+    static final String FILE_SUFFIX = ".bin";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    final String trackie;
+    final File file;
+    final Map<String, Location> records = new LinkedHashMap<>();
+    boolean dirty;
+
+    // Records sorted by time, rebuilt lazily after any modification
+    private long[] indexMillis;
+    private Location[] indexRecords;
+
+    StorePartition(File directory, String trackie) {
+        this.trackie = trackie;
+        this.file = new File(directory, fileName(trackie));
+    }
+
+    /**
+     * Partition a record belongs to, records without a trackie name share the "" partition
+     */
+    static String trackieOf(Location location) {
+        return location.getUserName() != null ? location.getUserName() : "";
+    }
+
+    /**
+     * Hex-encoded so any trackie name is a safe file name
+     */
+    static String fileName(String trackie) {
+        byte[] bytes = trackie.getBytes(StandardCharsets.UTF_8);
+        StringBuilder name = new StringBuilder(FILE_PREFIX.length() + bytes.length * 2 + FILE_SUFFIX.length());
+        name.append(FILE_PREFIX);
+        for (byte b : bytes) {
+            name.append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+        }
+        return name.append(FILE_SUFFIX).toString();
+    }
+
+    /**
+     * Trackie name encoded in a segment file name, or null for any other file
+     */
+    static String trackieOfFile(String fileName) {
+        if (!fileName.startsWith(FILE_PREFIX) || !fileName.endsWith(FILE_SUFFIX)) {
+            return null;
+        }
+        String hex = fileName.substring(FILE_PREFIX.length(), fileName.length() - FILE_SUFFIX.length());
+        if (hex.length() % 2 != 0) {
+            return null;
+        }
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(hex.charAt(2 * i), 16);
+            int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                return null;
+            }
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    Location put(String key, Location location) {
+        dirty = true;
+        indexMillis = null;
+        return records.put(key, location);
+    }
+
+    Location remove(String key) {
+        Location removed = records.remove(key);
+        if (removed != null) {
+            dirty = true;
+            indexMillis = null;
+        }
+        return removed;
+    }
+
+    void load() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            LocationCodec.read(in, records);
+        }
+    }
+
+    /**
+     * Write the segment if it changed, an empty partition deletes its file
+     */
+    void persist() throws IOException {
+        if (!dirty) {
+            return;
+        }
+        if (records.isEmpty()) {
+            if (file.exists() && !file.delete()) {
+                throw new IOException("Unable to delete " + file);
+            }
+            dirty = false;
+            return;
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            LocationCodec.write(out, records.values());
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Unable to replace " + file);
+        }
+        dirty = false;
+    }
+
+    boolean hasIndex() {
+        return indexMillis != null;
+    }
+
+    /**
+     * Sort the records by time, unparseable timestamps sort last
+     */
+    void buildIndex() {
+        // Records are mostly inserted in time order, so this is close to a linear pass
+        List<Location> sorted = SortedMerge.sort(records.values());
+        long[] sortedMillis = new long[sorted.size()];
+        for (int i = 0; i < sortedMillis.length; i++) {
+            sortedMillis[i] = Timestamps.parseMillis(sorted.get(i).getInsertionTimestamp());
+        }
+        indexRecords = sorted.toArray(new Location[0]);
+        indexMillis = sortedMillis;
+    }
+
+    /**
+     * Records with fromMillis <= time < toMillis, oldest first
+     */
+    List<Location> between(long fromMillis, long toMillis) {
+        if (!hasIndex()) {
+            buildIndex();
+        }
+        int from = lowerBound(fromMillis);
+        int to = lowerBound(toMillis);
+        List<Location> result = new ArrayList<>(Math.max(0, to - from));
+        result.addAll(Arrays.asList(indexRecords).subList(from, Math.max(from, to)));
+        return result;
+    }
+
+    /**
+     * Index position of the first record at or after the given time, needs {@link #buildIndex()}
+     */
+    int lowerBound(long time) {
+        int low = 0;
+        int high = indexMillis.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (indexMillis[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    long millisAt(int position) {
+        return indexMillis[position];
+    }
+
+    Location recordAt(int position) {
+        return indexRecords[position];
+    }
+}
@@ -0,0 +1,187 @@
+package com.majboormajdoor.locationtracker.storage;
+
+import java.util.TimeZone;
+
+/**
+ * Allocation-free parsing of the "yyyy-MM-dd HH:mm:ss" timestamps stored with each location
+ * The separator between date and time is ignored so ISO-8601 ("...T...Z") values also parse
+ */
+public final class Timestamps {
+
+    public static final long UNKNOWN = Long.MAX_VALUE;
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    private Timestamps() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    /**
+     * Epoch millis of a local-time timestamp, or {@link #UNKNOWN} when it cannot be parsed
+     */
+    public static long parseMillis(String timestamp) {
+        if (timestamp == null || timestamp.length() < 19) {
+            return UNKNOWN;
+        }
+        int year = digits(timestamp, 0, 4);
+        int month = digits(timestamp, 5, 2);
+        int day = digits(timestamp, 8, 2);
+        int hour = digits(timestamp, 11, 2);
+        int minute = digits(timestamp, 14, 2);
+        int second = digits(timestamp, 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 60) {
+            return UNKNOWN;
+        }
+        long utcMillis = daysFromCivil(year, month, day) * MILLIS_PER_DAY
+                + ((hour * 60L + minute) * 60L + second) * 1000L;
+        boolean utc = timestamp.length() > 19 && timestamp.charAt(19) == 'Z';
+        return utc ? utcMillis : fromLocal(utcMillis);
+    }
+
+    /**
+     * Epoch millis of an ISO-8601 date-time as found in GPX, KML and GeoJSON files, or {@link #UNKNOWN}
+     * Accepts fractional seconds and a "Z" or +hh:mm offset; without an offset the time is local
+     */
+    public static long parseIsoMillis(String timestamp) {
+        if (timestamp == null || timestamp.length() < 19) {
+            return UNKNOWN;
+        }
+        long wholeSeconds = parseMillis(timestamp.substring(0, 19) + "Z");
+        if (wholeSeconds == UNKNOWN) {
+            return UNKNOWN;
+        }
+        int i = 19;
+        int fractionMillis = 0;
+        if (i < timestamp.length() && timestamp.charAt(i) == '.') {
+            int scale = 100;
+            for (i++; i < timestamp.length() && Character.isDigit(timestamp.charAt(i)); i++) {
+                fractionMillis += (timestamp.charAt(i) - '0') * scale;
+                scale /= 10;
+            }
+        }
+        long utcMillis = wholeSeconds + fractionMillis;
+        if (i == timestamp.length()) {
+            return fromLocal(utcMillis);
+        }
+        char zone = timestamp.charAt(i);
+        if (zone == 'Z' && i == timestamp.length() - 1) {
+            return utcMillis;
+        }
+        if ((zone == '+' || zone == '-') && timestamp.length() >= i + 6 && timestamp.charAt(i + 3) == ':') {
+            int hours = digits(timestamp, i + 1, 2);
+            int minutes = digits(timestamp, i + 4, 2);
+            if (hours < 0 || minutes < 0) {
+                return UNKNOWN;
+            }
+            long offset = (hours * 60L + minutes) * 60_000L;
+            return zone == '+' ? utcMillis - offset : utcMillis + offset;
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Epoch millis of a wall-clock time in the default zone, given as if that wall time were UTC
+     * The offset is looked up at the first estimate of the real instant, not at the wall time itself,
+     * which is off by the offset itself and lands on the wrong side of a DST change near it
+     */
+    private static long fromLocal(long wallMillis) {
+        TimeZone zone = TimeZone.getDefault();
+        long estimate = wallMillis - zone.getOffset(wallMillis);
+        return wallMillis - zone.getOffset(estimate);
+    }
+
+    /**
+     * Day index since the epoch of the timestamp's calendar date, or -1 when unparseable
+     * Cheaper than {@link #parseMillis} when only the date matters
+     */
+    public static long parseEpochDay(String timestamp) {
+        if (timestamp == null || timestamp.length() < 10) {
+            return -1;
+        }
+        int year = digits(timestamp, 0, 4);
+        int month = digits(timestamp, 5, 2);
+        int day = digits(timestamp, 8, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31) {
+            return -1;
+        }
+        return daysFromCivil(year, month, day);
+    }
+
+    /**
+     * Local-time "yyyy-MM-dd HH:mm:ss" text of epoch millis, the format the tracking service writes
+     */
+    public static String format(long millis) {
+        return format(millis + TimeZone.getDefault().getOffset(millis), ' ', false);
+    }
+
+    /**
+     * ISO-8601 UTC text of epoch millis, "yyyy-MM-ddTHH:mm:ssZ"
+     */
+    public static String formatIso(long millis) {
+        return format(millis, 'T', true);
+    }
+
+    private static String format(long wallMillis, char separator, boolean utc) {
+        long epochDay = Math.floorDiv(wallMillis, MILLIS_PER_DAY);
+        int secondOfDay = (int) (Math.floorMod(wallMillis, MILLIS_PER_DAY) / 1000);
+        // Hinnant's civil_from_days
+        long z = epochDay + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        int dayOfEra = (int) (z - era * 146097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        char[] text = new char[utc ? 20 : 19];
+        putDigits(text, 0, (int) year, 4);
+        text[4] = '-';
+        putDigits(text, 5, month, 2);
+        text[7] = '-';
+        putDigits(text, 8, day, 2);
+        text[10] = separator;
+        putDigits(text, 11, secondOfDay / 3600, 2);
+        text[13] = ':';
+        putDigits(text, 14, (secondOfDay / 60) % 60, 2);
+        text[16] = ':';
+        putDigits(text, 17, secondOfDay % 60, 2);
+        if (utc) {
+            text[19] = 'Z';
+        }
+        return new String(text);
+    }
+
+    private static void putDigits(char[] text, int start, int value, int count) {
+        for (int i = start + count - 1; i >= start; i--) {
+            text[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static int digits(String text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Days since 1970-01-01 for a proleptic Gregorian date (Howard Hinnant's algorithm)
+     */
+    static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+}
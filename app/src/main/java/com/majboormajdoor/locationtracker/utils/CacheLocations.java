@@ -1,33 +1,68 @@
 package com.majboormajdoor.locationtracker.utils;
 
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.SharedPreferences;
-import android.util.Log;
+import android.content.res.Configuration;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
-import com.majboormajdoor.locationtracker.dto.Location;
+import androidx.annotation.NonNull;
 
-import java.lang.reflect.Type;
+import com.majboormajdoor.locationtracker.constants.AppConstants;
+import com.majboormajdoor.locationtracker.dto.Location;
+import com.majboormajdoor.locationtracker.logging.AppLog;
+import com.majboormajdoor.locationtracker.storage.DailyRollup;
+import com.majboormajdoor.locationtracker.storage.HotWindow;
+import com.majboormajdoor.locationtracker.storage.LocationCache;
+import com.majboormajdoor.locationtracker.storage.LocationStore;
+import com.majboormajdoor.locationtracker.workers.StoreCompactionWorker;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Local cache of location history fetched from the server, backed by {@link LocationStore}
+ * Safe to use from any thread: reads never block on disk and writes are persisted by a
+ * single background writer, see {@link LocationCache}
+ */
 public class CacheLocations {
     private static final String TAG = "LocationCacheManager";
-    private static final String KEY_LOCATIONS = "cached_locations";
+
+    // Where older versions kept the cache, inside the shared settings file
+    private static final String LEGACY_KEY_LOCATIONS = "cached_locations";
 
     private static CacheLocations instance;
     private static final Object lock = new Object();
 
-    private SharedPreferences preferences;
-    private Gson gson;
+    private final LocationStore store;
+    private final LocationCache cache;
 
     // Private constructor to prevent direct instantiation
     private CacheLocations(Context context) {
-        preferences = PreferenceManager.getInstance(context).getSharedPreferences();
-        gson = new Gson();
+        store = LocationStore.getInstance(context);
+        SharedPreferences preferences = context.getSharedPreferences(AppConstants.PREFS_NAME, Context.MODE_PRIVATE);
+        // The first caller is usually on the main thread, a large legacy blob is imported on the writer
+        cache = new LocationCache(store, TimeUnit.DAYS.toMillis(AppConstants.HOT_WINDOW_DAYS),
+                hotWindowCapacity(context), () -> migrateFromPreferences(preferences));
+        context.registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                cache.onTrimMemory(level);
+            }
+
+            @Override
+            @SuppressWarnings("deprecation") // Still delivered by releases before Android 14
+            public void onLowMemory() {
+                cache.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+            }
+
+            @Override
+            public void onConfigurationChanged(@NonNull Configuration newConfig) {
+            }
+        });
+        StoreCompactionWorker.schedule(context);
     }
 
     /**
@@ -46,47 +81,113 @@ public class CacheLocations {
     }
 
     public void cacheLocations(List<Location> locations) {
-        Map<String,Location> locationMap;
-        try {
-            locationMap = new ConcurrentHashMap<>();
-            Map<String,Location> cachedMap = getCachedLocations();
-            for(Location loc : cachedMap.values()) {
-                locationMap.put(loc.getUserId() + "_" + loc.getInsertionTimestamp(), loc);
-            }
-
-            for(Location loc : locations) {
-                locationMap.put(loc.getUserId() + "_" + loc.getInsertionTimestamp(), loc);
-            }
-            String json = gson.toJson(locationMap);
-            preferences.edit()
-                    .putString(KEY_LOCATIONS, json)
-                    .apply();
-            Log.d(TAG, "Cached " + locations.size() + " locations");
-        } catch (Exception e) {
-            Log.e(TAG, "Error caching locations", e);
+        if (locations == null) {
+            return;
         }
+        cache.putAll(locations);
+        AppLog.d(TAG, "Cached {} locations", locations.size());
     }
 
+    /**
+     * Immutable snapshot of the cache, includes every write made before this call
+     */
     public Map<String,Location> getCachedLocations() {
-        Map<String,Location> locationMap = new ConcurrentHashMap<>();
-        try {
-            String json = preferences.getString(KEY_LOCATIONS, null);
-            if (json != null) {
-                Type listType = new TypeToken<Map<String,Location>>(){}.getType();
-                locationMap = gson.fromJson(json, listType);
-                Log.d(TAG, "Retrieved " + locationMap.size() + " cached locations");
-                return locationMap;
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error retrieving cached locations", e);
-        }
-        return locationMap;
+        return cache.snapshot();
+    }
+
+    /**
+     * Locations from the last {@link AppConstants#HOT_WINDOW_DAYS} days, oldest first
+     * Served from memory without touching disk
+     */
+    public List<Location> getRecentLocations() {
+        long from = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(AppConstants.HOT_WINDOW_DAYS);
+        return cache.between(from, Long.MAX_VALUE);
+    }
+
+    /**
+     * Locations with fromMillis <= time < toMillis, oldest first
+     * Ranges outside the hot window wait behind queued writes, call it off the main thread
+     */
+    public List<Location> getLocationsBetween(long fromMillis, long toMillis) {
+        return cache.between(fromMillis, toMillis);
+    }
+
+    /**
+     * One trackie's locations with fromMillis <= time < toMillis, oldest first
+     */
+    public List<Location> getTrackieLocations(String trackie, long fromMillis, long toMillis) {
+        return cache.between(trackie, fromMillis, toMillis);
+    }
+
+    /**
+     * Names of the trackies with cached history
+     */
+    public List<String> getTrackies() {
+        return cache.trackies();
+    }
+
+    /**
+     * Per-day counts, extents and distances of the cached history, oldest day first
+     * No raw points are read for days already summarized, but it waits behind queued writes,
+     * so call it off the main thread
+     */
+    public List<DailyRollup> getDailyRollups() {
+        return cache.dailyRollups();
+    }
+
+    /**
+     * Bulk-load history, indexes and the saved file are brought up to date once at the end
+     *
+     * @return number of records imported
+     */
+    public int importHistory(LocationCache.BulkSource source) throws IOException {
+        return cache.importBulk(source);
     }
 
     public void clearCache() {
+        cache.clear();
+        AppLog.d(TAG, "Cache cleared");
+    }
+
+    /**
+     * Full retention pass, run through the cache so readers stop seeing removed records
+     *
+     * @return number of records removed
+     */
+    public int compact(long nowMillis) throws IOException {
+        return cache.compact(nowMillis);
+    }
+
+    /**
+     * Records the hot window may hold, a fixed share of the app's heap budget
+     */
+    private static int hotWindowCapacity(Context context) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int memoryClassMb = activityManager != null
+                ? activityManager.getMemoryClass()
+                : AppConstants.HOT_WINDOW_DEFAULT_MEMORY_CLASS_MB;
+        long budget = memoryClassMb * 1024L * 1024L / AppConstants.HOT_WINDOW_HEAP_DIVISOR;
+        return (int) Math.min(Integer.MAX_VALUE, budget / HotWindow.BYTES_PER_RECORD);
+    }
+
+    /**
+     * One-time move of the JSON blob out of the settings file, run on the cache's writer thread
+     * The key is only removed once the store has been written, so a failed run retries next launch
+     */
+    private void migrateFromPreferences(SharedPreferences preferences) {
+        String json = preferences.getString(LEGACY_KEY_LOCATIONS, null);
+        if (json == null) {
+            return;
+        }
+        try {
+            int migrated = store.importLegacyJson(json);
+            AppLog.i(TAG, "Migrated {} cached locations out of preferences", migrated);
+        } catch (IOException e) {
+            AppLog.e(TAG, "Legacy location cache could not be migrated, will retry", e);
+            return;
+        }
         preferences.edit()
-                .remove(KEY_LOCATIONS)
-                .apply();
-        Log.d(TAG, "Cache cleared");
+                .remove(LEGACY_KEY_LOCATIONS)
+                .commit();
     }
-}
\ No newline at end of file
+}
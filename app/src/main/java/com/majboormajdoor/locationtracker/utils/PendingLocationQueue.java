@@ -0,0 +1,352 @@
+package com.majboormajdoor.locationtracker.utils;
+
+import android.content.Context;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.majboormajdoor.locationtracker.constants.AppConstants;
+import com.majboormajdoor.locationtracker.dto.Location;
+import com.majboormajdoor.locationtracker.logging.AppLog;
+import com.majboormajdoor.locationtracker.metrics.Gauge;
+import com.majboormajdoor.locationtracker.metrics.MetricsRegistry;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Persistent FIFO of locations collected by the tracking service but not yet uploaded
+ * Survives process death so fixes taken while offline are flushed once the network is back
+ *
+ * The lean tracking process and the app process can both hold the queue, so every operation
+ * runs under a lock on a sibling file. That file also holds a generation counter bumped by every
+ * write, a process reloads whenever it differs from the generation it last saw. Upload passes
+ * hold a second lock, so only one process drains the queue at a time
+ */
+public class PendingLocationQueue {
+    private static final String TAG = "PendingLocationQueue";
+
+    private static PendingLocationQueue instance;
+    private static final Object lock = new Object();
+    // Upload passes of every queue in this process, the file lock only keeps other processes out
+    private static final Object uploadLock = new Object();
+
+    private final File file;
+    private final File lockFile;
+    private final File uploadLockFile;
+    private FileChannel lockChannel;
+    private FileChannel uploadLockChannel;
+    // Generation of the file as this process last read or wrote it
+    private long loadedGeneration = -1;
+    private final Gson gson = new Gson();
+    private final Deque<PendingLocation> queue = new ArrayDeque<>();
+    private final Gauge depthGauge = MetricsRegistry.getInstance().gauge(AppConstants.METRIC_UPLOAD_QUEUE_DEPTH);
+    // Depth after this process's last read or write, readable without the monitor or the file
+    private volatile int knownDepth;
+
+    /**
+     * Queued location plus the wall-clock time of the fix it came from
+     */
+    public static class PendingLocation {
+        public Location location;
+        public long fixTimeMillis;
+
+        public PendingLocation(Location location, long fixTimeMillis) {
+            this.location = location;
+            this.fixTimeMillis = fixTimeMillis;
+        }
+    }
+
+    private PendingLocationQueue(Context context) {
+        this(new File(context.getFilesDir(), AppConstants.PENDING_UPLOADS_FILE_NAME));
+    }
+
+    /**
+     * Queue backed by the given file, the app shares one through {@link #getInstance}
+     */
+    public PendingLocationQueue(File file) {
+        this.file = file;
+        this.lockFile = new File(file.getPath() + ".lock");
+        this.uploadLockFile = new File(file.getPath() + ".upload");
+        underLock(this::reloadIfChanged);
+    }
+
+    public static PendingLocationQueue getInstance(Context context) {
+        if (instance == null) {
+            synchronized (lock) {
+                if (instance == null) {
+                    instance = new PendingLocationQueue(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Append a location, dropping the oldest entry when the queue is full
+     */
+    public synchronized void enqueue(Location location, long fixTimeMillis) {
+        underLock(() -> {
+            reloadIfChanged();
+            queue.addLast(new PendingLocation(location, fixTimeMillis));
+            while (queue.size() > AppConstants.MAX_PENDING_UPLOADS) {
+                queue.removeFirst();
+                AppLog.w(TAG, "Pending upload queue full, dropped oldest location");
+            }
+            persist();
+        });
+    }
+
+    /**
+     * Oldest entries first, without removing them
+     */
+    public synchronized List<PendingLocation> peek(int max) {
+        return underLock(() -> {
+            reloadIfChanged();
+            List<PendingLocation> batch = new ArrayList<>(Math.min(max, queue.size()));
+            for (PendingLocation pending : queue) {
+                if (batch.size() >= max) break;
+                batch.add(pending);
+            }
+            return batch;
+        }, Collections.emptyList());
+    }
+
+    /**
+     * Remove an entry once it has been uploaded
+     */
+    public void remove(PendingLocation pending) {
+        removeAll(Collections.singletonList(pending));
+    }
+
+    /**
+     * Remove uploaded entries with a single write
+     * Entries are matched by content, a peek from before a reload still finds its entry
+     */
+    public synchronized void removeAll(List<PendingLocation> uploaded) {
+        if (uploaded.isEmpty()) {
+            return;
+        }
+        underLock(() -> {
+            reloadIfChanged();
+            boolean removed = false;
+            for (PendingLocation pending : uploaded) {
+                Iterator<PendingLocation> iterator = queue.iterator();
+                while (iterator.hasNext()) {
+                    if (sameEntry(iterator.next(), pending)) {
+                        iterator.remove();
+                        removed = true;
+                        break;
+                    }
+                }
+            }
+            if (removed) {
+                persist();
+            }
+        });
+    }
+
+    public synchronized int size() {
+        return underLock(() -> {
+            reloadIfChanged();
+            return queue.size();
+        }, queue.size());
+    }
+
+    /**
+     * Depth as of this process's last read or write, without taking the file lock
+     * For logs and status, a write from the other process since then is not seen
+     */
+    public int lastKnownSize() {
+        return knownDepth;
+    }
+
+    public synchronized void clear() {
+        underLock(() -> {
+            queue.clear();
+            persist();
+        });
+    }
+
+    /**
+     * Run an upload pass as the only one in any process, so two never send the same entry
+     * Waits for a pass already running elsewhere to finish its request
+     */
+    public <T> T runUploadPass(Supplier<T> pass) {
+        synchronized (uploadLock) {
+            FileLock fileLock = null;
+            try {
+                if (uploadLockChannel == null) {
+                    uploadLockChannel = new RandomAccessFile(uploadLockFile, "rw").getChannel();
+                }
+                fileLock = uploadLockChannel.lock();
+            } catch (IOException e) {
+                // Uploading unguarded beats not uploading, a duplicate is the worst case
+                AppLog.e(TAG, "Error locking upload pass", e);
+            }
+            try {
+                return pass.get();
+            } finally {
+                release(fileLock);
+            }
+        }
+    }
+
+    private static boolean sameEntry(PendingLocation a, PendingLocation b) {
+        if (a == b) {
+            return true;
+        }
+        return a.fixTimeMillis == b.fixTimeMillis
+                && a.location.getLatitude() == b.location.getLatitude()
+                && a.location.getLongitude() == b.location.getLongitude()
+                && Objects.equals(a.location.getInsertionTimestamp(), b.location.getInsertionTimestamp());
+    }
+
+    private void underLock(Runnable action) {
+        underLock(() -> {
+            action.run();
+            return null;
+        }, null);
+    }
+
+    /**
+     * Exclusive across processes, threads of this process are already kept out by the monitor
+     * @return failed when the lock could not be taken, the action is then skipped
+     */
+    private <T> T underLock(Supplier<T> action, T failed) {
+        FileLock fileLock;
+        try {
+            if (lockChannel == null) {
+                lockChannel = new RandomAccessFile(lockFile, "rw").getChannel();
+            }
+            fileLock = lockChannel.lock();
+        } catch (IOException e) {
+            AppLog.e(TAG, "Error locking pending uploads", e);
+            return failed;
+        }
+        try {
+            return action.get();
+        } finally {
+            release(fileLock);
+        }
+    }
+
+    private static void release(FileLock fileLock) {
+        if (fileLock == null) {
+            return;
+        }
+        try {
+            fileLock.release();
+        } catch (IOException e) {
+            AppLog.e(TAG, "Error unlocking pending uploads", e);
+        }
+    }
+
+    /**
+     * Pick up writes made by the other process since this one last read or wrote the file
+     * Called under the lock
+     */
+    private void reloadIfChanged() {
+        long generation;
+        try {
+            generation = readGeneration();
+        } catch (IOException e) {
+            // Unknown, so reload now and next time too
+            AppLog.e(TAG, "Error reading pending uploads generation", e);
+            generation = -1;
+        }
+        if (generation != -1 && generation == loadedGeneration) {
+            return;
+        }
+        queue.clear();
+        load();
+        loadedGeneration = generation;
+    }
+
+    /**
+     * Counter at the start of the lock file, 0 for a lock file that was never written
+     */
+    private long readGeneration() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        while (buffer.hasRemaining() && lockChannel.read(buffer, buffer.position()) > 0) {
+            // A short read only happens mid-file, keep going
+        }
+        return buffer.hasRemaining() ? 0 : buffer.getLong(0);
+    }
+
+    private void writeGeneration(long generation) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES).putLong(0, generation);
+        while (buffer.hasRemaining()) {
+            lockChannel.write(buffer, buffer.position());
+        }
+    }
+
+    private void setDepth(int depth) {
+        knownDepth = depth;
+        depthGauge.set(depth);
+    }
+
+    private void load() {
+        if (!file.exists()) {
+            setDepth(0);
+            return;
+        }
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            Type listType = new TypeToken<List<PendingLocation>>(){}.getType();
+            List<PendingLocation> stored = gson.fromJson(reader, listType);
+            if (stored != null) {
+                queue.addAll(stored);
+            }
+            setDepth(queue.size());
+            AppLog.d(TAG, "Loaded {} pending uploads", queue.size());
+        } catch (Exception e) {
+            AppLog.e(TAG, "Error loading pending uploads", e);
+        }
+    }
+
+    /**
+     * Called under the lock
+     */
+    private void persist() {
+        setDepth(queue.size());
+        File temp = new File(file.getPath() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8)) {
+            gson.toJson(new ArrayList<>(queue), writer);
+        } catch (Exception e) {
+            AppLog.e(TAG, "Error saving pending uploads", e);
+            return;
+        }
+        try {
+            // Bumped before the file is replaced, dying in between costs the other process a
+            // needless reload rather than a missed write
+            long generation = readGeneration() + 1;
+            writeGeneration(generation);
+            loadedGeneration = generation;
+        } catch (IOException e) {
+            AppLog.e(TAG, "Error writing pending uploads generation", e);
+            loadedGeneration = -1;
+        }
+        if (!temp.renameTo(file)) {
+            AppLog.e(TAG, "Error replacing pending uploads file");
+        }
+    }
+}
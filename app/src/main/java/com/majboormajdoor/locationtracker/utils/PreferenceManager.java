@@ -3,23 +3,49 @@ package com.majboormajdoor.locationtracker.utils;
 import android.content.Context;
 import android.content.SharedPreferences;
 import com.majboormajdoor.locationtracker.constants.AppConstants;
+import com.majboormajdoor.locationtracker.logging.AppLog;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Utility class for managing SharedPreferences operations
  * Centralizes all preference-related operations for better maintainability
+ *
+ * Reads come from an immutable {@link Settings} snapshot held in memory, writes publish a
+ * new snapshot and hand the changed keys to {@link SharedPreferences.Editor#apply()} in one batch,
+ * so the platform flushes them before the process can be stopped
  */
 public class PreferenceManager {
 
+    private static final String TAG = "PreferenceManager";
+
+    /**
+     * Notified on the thread that applied a batch, after the new snapshot is visible
+     */
+    public interface SettingsListener {
+        void onSettingsChanged(Settings previous, Settings current, Set<String> changedKeys);
+    }
+
     private static PreferenceManager instance;
-    private SharedPreferences sharedPreferences;
+    private final Context context;
+    private final SharedPreferences sharedPreferences;
 
-    private PreferenceManager(Context context) {
+    private volatile Settings settings;
+    private final Object writeLock = new Object();
+    private final List<SettingsListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * The app shares one through {@link #getInstance(Context)}
+     */
+    public PreferenceManager(Context context) {
+        this.context = context;
         sharedPreferences = context.getSharedPreferences(AppConstants.PREFS_NAME, Context.MODE_PRIVATE);
+        settings = Settings.from(sharedPreferences);
     }
 
-    public SharedPreferences getSharedPreferences() {
-        return sharedPreferences;
-    }
     /**
      * Singleton pattern to ensure single instance
      */
@@ -30,94 +56,161 @@ public class PreferenceManager {
         return instance;
     }
 
+    /**
+     * Current settings, never blocks
+     */
+    public Settings getSettings() {
+        return settings;
+    }
+
+    /**
+     * Start a batch of changes, nothing is visible until {@link Settings.Editor#apply()}
+     */
+    public Settings.Editor edit() {
+        return new Settings.Editor(this);
+    }
+
+    public void addListener(SettingsListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(SettingsListener listener) {
+        listeners.remove(listener);
+    }
+
+    void apply(Settings.Editor editor) {
+        Settings previous;
+        Settings current;
+        Set<String> changed;
+        synchronized (writeLock) {
+            previous = settings;
+            current = editor.applyTo(previous);
+            changed = previous.diff(current);
+            if (changed.isEmpty()) {
+                return;
+            }
+            settings = current;
+            // apply() updates the in-memory map at once, so snapshot and preferences never disagree
+            SharedPreferences.Editor preferencesEditor = sharedPreferences.edit();
+            current.writeTo(preferencesEditor, changed);
+            preferencesEditor.apply();
+        }
+        notifyListeners(previous, current, changed);
+    }
+
+    /**
+     * Pick up settings another process wrote, such as the app process for the lean tracker
+     * Cheap when nothing changed, the platform only re-reads the file when it was modified behind us
+     */
+    public void reloadIfChanged() {
+        Settings previous;
+        Settings current;
+        Set<String> changed;
+        synchronized (writeLock) {
+            current = Settings.from(reopenPreferences());
+            previous = settings;
+            changed = previous.diff(current);
+            if (changed.isEmpty()) {
+                return;
+            }
+            settings = current;
+        }
+        AppLog.d(TAG, "Settings changed on disk: {}", changed);
+        notifyListeners(previous, current, changed);
+    }
+
+    /**
+     * Same instance as {@link #sharedPreferences}, MODE_MULTI_PROCESS makes the platform reload it
+     * when the file changed on disk, there is no non-deprecated way to ask for that
+     */
+    @SuppressWarnings("deprecation")
+    private SharedPreferences reopenPreferences() {
+        return context.getSharedPreferences(AppConstants.PREFS_NAME, Context.MODE_MULTI_PROCESS);
+    }
+
+    private void notifyListeners(Settings previous, Settings current, Set<String> changed) {
+        Set<String> changedKeys = Collections.unmodifiableSet(changed);
+        for (SettingsListener listener : listeners) {
+            listener.onSettingsChanged(previous, current, changedKeys);
+        }
+    }
+
     /**
      * Save user PIN
      */
     public void savePin(String pin) {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putString(AppConstants.PREF_PIN_KEY, pin);
-        editor.apply();
+        edit().setPin(pin).apply();
     }
 
     /**
      * Get saved PIN
      */
     public String getPin() {
-        return sharedPreferences.getString(AppConstants.PREF_PIN_KEY, AppConstants.DEFAULT_PIN);
+        return settings.pin;
     }
 
     /**
      * Check if this is first app launch
      */
     public boolean isFirstLaunch() {
-        return sharedPreferences.getBoolean(AppConstants.PREF_IS_FIRST_LAUNCH, true);
+        return settings.firstLaunch;
     }
 
     /**
      * Set first launch flag to false
      */
     public void setFirstLaunchCompleted() {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putBoolean(AppConstants.PREF_IS_FIRST_LAUNCH, false);
-        editor.apply();
+        edit().setFirstLaunch(false).apply();
     }
 
     /**
      * Save phone number
      */
     public void savePhoneNumber(String phoneNumber) {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putString(AppConstants.PREF_PHONE_NUMBER, phoneNumber);
-        editor.apply();
+        edit().setPhoneNumber(phoneNumber).apply();
     }
 
     /**
      * Get saved phone number
      */
     public String getPhoneNumber() {
-        return sharedPreferences.getString(AppConstants.PREF_PHONE_NUMBER, "");
+        return settings.phoneNumber;
     }
 
     /**
      * Save email address
      */
     public void saveTrackieName(String emailAddress) {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putString(AppConstants.PREF_EMAIL_ADDRESS, emailAddress);
-        editor.apply();
+        edit().setTrackieName(emailAddress).apply();
     }
 
     /**
      * Get saved email address
      */
     public String getTrackieName() {
-        return sharedPreferences.getString(AppConstants.PREF_EMAIL_ADDRESS, "");
+        return settings.trackieName;
     }
 
     /**
      * Save time interval
      */
     public void saveTimeInterval(int intervalMinutes) {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putInt(AppConstants.PREF_TIME_INTERVAL, intervalMinutes);
-        editor.apply();
+        edit().setTimeIntervalMinutes(intervalMinutes).apply();
     }
 
     /**
      * Get saved time interval
      */
     public int getTimeInterval() {
-        return sharedPreferences.getInt(AppConstants.PREF_TIME_INTERVAL, AppConstants.DEFAULT_TIME_INTERVAL_MINUTES);
+        return settings.timeIntervalMinutes;
     }
 
     public void saveUserId(String userId) {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putString("userId", userId);
-        editor.apply();
+        edit().setUserId(userId).apply();
     }
 
     public String getUserId() {
-        return sharedPreferences.getString("userId", "");
+        return settings.userId;
     }
     /**
      * Check if PIN is set
@@ -131,27 +224,43 @@ public class PreferenceManager {
      * Clear all preferences (for testing or reset purposes)
      */
     public void clearAllPreferences() {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.clear();
-        editor.apply();
+        Settings previous;
+        Settings current = Settings.defaults();
+        Set<String> changed;
+        synchronized (writeLock) {
+            previous = settings;
+            changed = previous.diff(current);
+            settings = current;
+            sharedPreferences.edit().clear().apply();
+        }
+        if (!changed.isEmpty()) {
+            notifyListeners(previous, current, changed);
+        }
     }
 
     public boolean getUserSubscriptionStatus() {
-        return sharedPreferences.getBoolean(AppConstants.PREF_HAS_SUBSCRIPTION, false);
+        return settings.hasSubscription;
     }
     public void setUserSubscriptionStatus(boolean status) {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putBoolean(AppConstants.PREF_HAS_SUBSCRIPTION, status);
-        editor.apply();
+        edit().setHasSubscription(status).apply();
     }
 
     public void setTrackingStatus(boolean status) {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putBoolean(AppConstants.TRACKING_STATUS, status);
-        editor.apply();
+        edit().setTrackingStatus(status).apply();
     }
 
     public boolean getTrackingStatus() {
-        return sharedPreferences.getBoolean(AppConstants.TRACKING_STATUS, false);
+        return settings.trackingStatus;
+    }
+
+    /**
+     * Whether tracking runs in its own lightweight process, takes effect at the next start
+     */
+    public boolean isLeanTrackingProcess() {
+        return settings.leanTrackingProcess;
+    }
+
+    public void setLeanTrackingProcess(boolean lean) {
+        edit().setLeanTrackingProcess(lean).apply();
     }
 }
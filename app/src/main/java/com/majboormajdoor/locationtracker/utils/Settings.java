@@ -0,0 +1,171 @@
+package com.majboormajdoor.locationtracker.utils;
+
+import android.content.SharedPreferences;
+
+import com.majboormajdoor.locationtracker.constants.AppConstants;
+
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of every app setting
+ * Obtained from {@link PreferenceManager#getSettings()}, safe to read from any thread
+ */
+public final class Settings {
+
+    public final String pin;
+    public final boolean firstLaunch;
+    public final boolean showInfoOnLaunch;
+    public final String phoneNumber;
+    public final String trackieName;
+    public final int timeIntervalMinutes;
+    public final String userId;
+    public final boolean hasSubscription;
+    public final boolean trackingStatus;
+    public final boolean leanTrackingProcess;
+
+    private Settings(String pin, boolean firstLaunch, boolean showInfoOnLaunch, String phoneNumber,
+                     String trackieName, int timeIntervalMinutes, String userId,
+                     boolean hasSubscription, boolean trackingStatus, boolean leanTrackingProcess) {
+        this.pin = pin;
+        this.firstLaunch = firstLaunch;
+        this.showInfoOnLaunch = showInfoOnLaunch;
+        this.phoneNumber = phoneNumber;
+        this.trackieName = trackieName;
+        this.timeIntervalMinutes = timeIntervalMinutes;
+        this.userId = userId;
+        this.hasSubscription = hasSubscription;
+        this.trackingStatus = trackingStatus;
+        this.leanTrackingProcess = leanTrackingProcess;
+    }
+
+    static Settings defaults() {
+        return new Settings(AppConstants.DEFAULT_PIN, true, true, "", "",
+                AppConstants.DEFAULT_TIME_INTERVAL_MINUTES, "", false, false, false);
+    }
+
+    static Settings from(SharedPreferences preferences) {
+        return new Settings(
+                preferences.getString(AppConstants.PREF_PIN_KEY, AppConstants.DEFAULT_PIN),
+                preferences.getBoolean(AppConstants.PREF_IS_FIRST_LAUNCH, true),
+                preferences.getBoolean(AppConstants.PREF_SHOW_INFO_ON_LAUNCH, true),
+                preferences.getString(AppConstants.PREF_PHONE_NUMBER, ""),
+                preferences.getString(AppConstants.PREF_EMAIL_ADDRESS, ""),
+                preferences.getInt(AppConstants.PREF_TIME_INTERVAL, AppConstants.DEFAULT_TIME_INTERVAL_MINUTES),
+                preferences.getString(AppConstants.PREF_USER_ID, ""),
+                preferences.getBoolean(AppConstants.PREF_HAS_SUBSCRIPTION, false),
+                preferences.getBoolean(AppConstants.TRACKING_STATUS, false),
+                preferences.getBoolean(AppConstants.PREF_LEAN_TRACKING_PROCESS, false));
+    }
+
+    /**
+     * Preference keys whose values differ between the two snapshots
+     */
+    public Set<String> diff(Settings other) {
+        Set<String> changed = new HashSet<>();
+        if (!Objects.equals(pin, other.pin)) changed.add(AppConstants.PREF_PIN_KEY);
+        if (firstLaunch != other.firstLaunch) changed.add(AppConstants.PREF_IS_FIRST_LAUNCH);
+        if (showInfoOnLaunch != other.showInfoOnLaunch) changed.add(AppConstants.PREF_SHOW_INFO_ON_LAUNCH);
+        if (!Objects.equals(phoneNumber, other.phoneNumber)) changed.add(AppConstants.PREF_PHONE_NUMBER);
+        if (!Objects.equals(trackieName, other.trackieName)) changed.add(AppConstants.PREF_EMAIL_ADDRESS);
+        if (timeIntervalMinutes != other.timeIntervalMinutes) changed.add(AppConstants.PREF_TIME_INTERVAL);
+        if (!Objects.equals(userId, other.userId)) changed.add(AppConstants.PREF_USER_ID);
+        if (hasSubscription != other.hasSubscription) changed.add(AppConstants.PREF_HAS_SUBSCRIPTION);
+        if (trackingStatus != other.trackingStatus) changed.add(AppConstants.TRACKING_STATUS);
+        if (leanTrackingProcess != other.leanTrackingProcess) changed.add(AppConstants.PREF_LEAN_TRACKING_PROCESS);
+        return changed;
+    }
+
+    /**
+     * Copy the given keys into a SharedPreferences editor
+     */
+    void writeTo(SharedPreferences.Editor editor, Set<String> keys) {
+        for (String key : keys) {
+            switch (key) {
+                case AppConstants.PREF_PIN_KEY: editor.putString(key, pin); break;
+                case AppConstants.PREF_IS_FIRST_LAUNCH: editor.putBoolean(key, firstLaunch); break;
+                case AppConstants.PREF_SHOW_INFO_ON_LAUNCH: editor.putBoolean(key, showInfoOnLaunch); break;
+                case AppConstants.PREF_PHONE_NUMBER: editor.putString(key, phoneNumber); break;
+                case AppConstants.PREF_EMAIL_ADDRESS: editor.putString(key, trackieName); break;
+                case AppConstants.PREF_TIME_INTERVAL: editor.putInt(key, timeIntervalMinutes); break;
+                case AppConstants.PREF_USER_ID: editor.putString(key, userId); break;
+                case AppConstants.PREF_HAS_SUBSCRIPTION: editor.putBoolean(key, hasSubscription); break;
+                case AppConstants.TRACKING_STATUS: editor.putBoolean(key, trackingStatus); break;
+                case AppConstants.PREF_LEAN_TRACKING_PROCESS: editor.putBoolean(key, leanTrackingProcess); break;
+                default: break;
+            }
+        }
+    }
+
+    /**
+     * Batch of changes applied together by {@link #apply()}
+     * Only fields that were set are changed, so concurrent batches never undo each other
+     * Get one from {@link PreferenceManager#edit()}
+     */
+    public static final class Editor {
+        private static final int PIN = 1;
+        private static final int FIRST_LAUNCH = 1 << 1;
+        private static final int SHOW_INFO_ON_LAUNCH = 1 << 2;
+        private static final int PHONE_NUMBER = 1 << 3;
+        private static final int TRACKIE_NAME = 1 << 4;
+        private static final int TIME_INTERVAL = 1 << 5;
+        private static final int USER_ID = 1 << 6;
+        private static final int HAS_SUBSCRIPTION = 1 << 7;
+        private static final int TRACKING_STATUS = 1 << 8;
+        private static final int LEAN_TRACKING_PROCESS = 1 << 9;
+
+        private final PreferenceManager owner;
+        private int changed;
+
+        private String pin;
+        private boolean firstLaunch;
+        private boolean showInfoOnLaunch;
+        private String phoneNumber;
+        private String trackieName;
+        private int timeIntervalMinutes;
+        private String userId;
+        private boolean hasSubscription;
+        private boolean trackingStatus;
+        private boolean leanTrackingProcess;
+
+        Editor(PreferenceManager owner) {
+            this.owner = owner;
+        }
+
+        public Editor setPin(String value) { pin = value; changed |= PIN; return this; }
+        public Editor setFirstLaunch(boolean value) { firstLaunch = value; changed |= FIRST_LAUNCH; return this; }
+        public Editor setShowInfoOnLaunch(boolean value) { showInfoOnLaunch = value; changed |= SHOW_INFO_ON_LAUNCH; return this; }
+        public Editor setPhoneNumber(String value) { phoneNumber = value; changed |= PHONE_NUMBER; return this; }
+        public Editor setTrackieName(String value) { trackieName = value; changed |= TRACKIE_NAME; return this; }
+        public Editor setTimeIntervalMinutes(int value) { timeIntervalMinutes = value; changed |= TIME_INTERVAL; return this; }
+        public Editor setUserId(String value) { userId = value; changed |= USER_ID; return this; }
+        public Editor setHasSubscription(boolean value) { hasSubscription = value; changed |= HAS_SUBSCRIPTION; return this; }
+        public Editor setTrackingStatus(boolean value) { trackingStatus = value; changed |= TRACKING_STATUS; return this; }
+        public Editor setLeanTrackingProcess(boolean value) { leanTrackingProcess = value; changed |= LEAN_TRACKING_PROCESS; return this; }
+
+        /**
+         * New snapshot with this batch laid over the given one
+         */
+        Settings applyTo(Settings base) {
+            return new Settings(
+                    (changed & PIN) != 0 ? pin : base.pin,
+                    (changed & FIRST_LAUNCH) != 0 ? firstLaunch : base.firstLaunch,
+                    (changed & SHOW_INFO_ON_LAUNCH) != 0 ? showInfoOnLaunch : base.showInfoOnLaunch,
+                    (changed & PHONE_NUMBER) != 0 ? phoneNumber : base.phoneNumber,
+                    (changed & TRACKIE_NAME) != 0 ? trackieName : base.trackieName,
+                    (changed & TIME_INTERVAL) != 0 ? timeIntervalMinutes : base.timeIntervalMinutes,
+                    (changed & USER_ID) != 0 ? userId : base.userId,
+                    (changed & HAS_SUBSCRIPTION) != 0 ? hasSubscription : base.hasSubscription,
+                    (changed & TRACKING_STATUS) != 0 ? trackingStatus : base.trackingStatus,
+                    (changed & LEAN_TRACKING_PROCESS) != 0 ? leanTrackingProcess : base.leanTrackingProcess);
+        }
+
+        /**
+         * Publish the new snapshot and write the changed keys with SharedPreferences.apply()
+         */
+        public void apply() {
+            owner.apply(this);
+        }
+    }
+}
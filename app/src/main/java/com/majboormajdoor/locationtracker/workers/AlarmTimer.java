@@ -0,0 +1,41 @@
+package com.majboormajdoor.locationtracker.workers;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.os.Build;
+
+import com.majboormajdoor.locationtracker.logging.AppLog;
+
+/**
+ * {@link UploadCadence.Timer} backed by while-idle alarms, which still fire during Doze
+ *
+ * Exact alarms are used where the app may schedule them; from Android 12 that needs the
+ * user-granted exact alarm permission, without it the alarm is inexact but still allowed while idle
+ */
+public class AlarmTimer implements UploadCadence.Timer {
+    private static final String TAG = "AlarmTimer";
+
+    private final AlarmManager alarmManager;
+    private final PendingIntent operation;
+
+    public AlarmTimer(Context context, PendingIntent operation) {
+        this.alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        this.operation = operation;
+    }
+
+    @Override
+    public void arm(long triggerAtMillis) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && !alarmManager.canScheduleExactAlarms()) {
+            alarmManager.setAndAllowWhileIdle(AlarmManager.ELAPSED_REALTIME_WAKEUP, triggerAtMillis, operation);
+            AppLog.d(TAG, "Inexact alarm armed, exact alarms not permitted");
+        } else {
+            alarmManager.setExactAndAllowWhileIdle(AlarmManager.ELAPSED_REALTIME_WAKEUP, triggerAtMillis, operation);
+        }
+    }
+
+    @Override
+    public void cancel() {
+        alarmManager.cancel(operation);
+    }
+}
@@ -0,0 +1,107 @@
+package com.majboormajdoor.locationtracker.workers;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.core.app.NotificationCompat;
+import androidx.work.ForegroundInfo;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.majboormajdoor.locationtracker.R;
+import com.majboormajdoor.locationtracker.constants.AppConstants;
+import com.majboormajdoor.locationtracker.logging.AppLog;
+import com.majboormajdoor.locationtracker.utils.PendingLocationQueue;
+import com.majboormajdoor.locationtracker.utils.PreferenceManager;
+
+/**
+ * Uploads queued locations, oldest first, while the device has network
+ * Stops at the first failed upload and lets WorkManager retry with backoff
+ */
+public class LocationUploadWorker extends Worker {
+
+    private static final String TAG = "LocationUploadWorker";
+
+    public LocationUploadWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        PreferenceManager preferences = PreferenceManager.getInstance(context);
+        if (preferences.getTrackingStatus() && preferences.isLeanTrackingProcess()) {
+            // The tracking process uploads by itself, two drainers would only race
+            AppLog.d(TAG, "Lean tracking process active, skipping flush");
+            return Result.success();
+        }
+
+        PendingLocationQueue queue = PendingLocationQueue.getInstance(context);
+        LocationUploader uploader = new LocationUploader(context);
+        do {
+            switch (uploader.flush(this::isStopped)) {
+                case STOPPED:
+                    return Result.retry();
+                case FAILED:
+                    return retryOrGiveUp(queue);
+                default:
+                    break;
+            }
+            // Flushes are kept, not appended, so one requested while this run was draining
+            // was dropped, its location is picked up here
+        } while (queue.size() > 0);
+
+        if (!preferences.getTrackingStatus()) {
+            // Nothing left to send and nothing new coming, no reason to keep waking up
+            UploadScheduler.cancelPeriodicFlush(context);
+        }
+        AppLog.d(TAG, "Upload flush finished");
+        return Result.success();
+    }
+
+    /**
+     * Required for expedited work on Android 11 and below, where it runs as a foreground service
+     */
+    @NonNull
+    @Override
+    public ForegroundInfo getForegroundInfo() {
+        return new ForegroundInfo(AppConstants.UPLOAD_NOTIFICATION_ID, createNotification());
+    }
+
+    /**
+     * Locations stay queued either way, the periodic flush picks them up after a give-up
+     */
+    private Result retryOrGiveUp(PendingLocationQueue queue) {
+        if (getRunAttemptCount() + 1 >= AppConstants.UPLOAD_MAX_ATTEMPTS) {
+            AppLog.w(TAG, "Giving up upload flush after {} attempts, {} pending",
+                    getRunAttemptCount() + 1, queue.lastKnownSize());
+            return Result.failure();
+        }
+        return Result.retry();
+    }
+
+    private Notification createNotification() {
+        Context context = getApplicationContext();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(
+                AppConstants.NOTIFICATION_CHANNEL_ID,
+                AppConstants.NOTIFICATION_CHANNEL_NAME,
+                NotificationManager.IMPORTANCE_LOW
+            );
+            NotificationManager notificationManager = context.getSystemService(NotificationManager.class);
+            notificationManager.createNotificationChannel(channel);
+        }
+
+        return new NotificationCompat.Builder(context, AppConstants.NOTIFICATION_CHANNEL_ID)
+            .setContentTitle("Location Tracker")
+            .setContentText("Uploading location updates")
+            .setSmallIcon(R.drawable.ic_launcher_foreground)
+            .setOngoing(true)
+            .build();
+    }
+}
@@ -0,0 +1,129 @@
+package com.majboormajdoor.locationtracker.workers;
+
+import android.content.Context;
+
+import com.majboormajdoor.locationtracker.constants.AppConstants;
+import com.majboormajdoor.locationtracker.logging.AppLog;
+import com.majboormajdoor.locationtracker.metrics.Counter;
+import com.majboormajdoor.locationtracker.metrics.LatencyHistogram;
+import com.majboormajdoor.locationtracker.metrics.MetricsRegistry;
+import com.majboormajdoor.locationtracker.services.ApiService;
+import com.majboormajdoor.locationtracker.utils.PendingLocationQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Drains the pending queue oldest first, blocking the calling thread
+ * Shared by {@link LocationUploadWorker} and the lean tracking process, which has no WorkManager
+ */
+public class LocationUploader {
+
+    private static final String TAG = "LocationUploader";
+
+    public enum Outcome {
+        DRAINED,
+        STOPPED,
+        FAILED
+    }
+
+    private final Context context;
+    private final PendingLocationQueue queue;
+    // Built on the first upload, it brings up the auth stack
+    private ApiService apiService;
+
+    private final Counter uploadSuccess = MetricsRegistry.getInstance().counter(AppConstants.METRIC_UPLOAD_SUCCESS);
+    private final Counter uploadFailure = MetricsRegistry.getInstance().counter(AppConstants.METRIC_UPLOAD_FAILURE);
+    private final LatencyHistogram fixToUpload = MetricsRegistry.getInstance().histogram(AppConstants.METRIC_FIX_TO_UPLOAD);
+
+    public LocationUploader(Context context) {
+        this.context = context.getApplicationContext();
+        this.queue = PendingLocationQueue.getInstance(this.context);
+    }
+
+    /**
+     * Upload until the queue is empty, the first failure, or the caller asks to stop
+     * Locations stay queued unless the server took them. A flush running in the other process
+     * is waited for, so the two never send the same entry
+     */
+    public Outcome flush(BooleanSupplier stopped) {
+        return queue.runUploadPass(() -> drain(stopped));
+    }
+
+    private Outcome drain(BooleanSupplier stopped) {
+        while (!stopped.getAsBoolean()) {
+            List<PendingLocationQueue.PendingLocation> batch = queue.peek(AppConstants.UPLOAD_BATCH_SIZE);
+            if (batch.isEmpty()) {
+                return Outcome.DRAINED;
+            }
+            // Sent entries leave the queue in one write per batch, not one per upload
+            List<PendingLocationQueue.PendingLocation> sent = new ArrayList<>(batch.size());
+            try {
+                for (PendingLocationQueue.PendingLocation pending : batch) {
+                    if (stopped.getAsBoolean()) {
+                        return Outcome.STOPPED;
+                    }
+                    if (!upload(pending)) {
+                        return Outcome.FAILED;
+                    }
+                    sent.add(pending);
+                }
+            } finally {
+                queue.removeAll(sent);
+            }
+        }
+        return Outcome.STOPPED;
+    }
+
+    /**
+     * Post a single location and block until the API callback arrives
+     */
+    private boolean upload(PendingLocationQueue.PendingLocation pending) {
+        if (apiService == null) {
+            apiService = new ApiService(context);
+        }
+        CountDownLatch latch = new CountDownLatch(1);
+        boolean[] succeeded = new boolean[1];
+
+        ApiService.UploadCall call = apiService.postLocation(pending.location, new ApiService.ApiCallback() {
+            @Override
+            public void onSuccess(String message) {
+                succeeded[0] = true;
+                latch.countDown();
+            }
+
+            @Override
+            public void onError(String error) {
+                AppLog.e(TAG, "Failed to send location to API: {}", error);
+                latch.countDown();
+            }
+        });
+
+        try {
+            if (!latch.await(AppConstants.UPLOAD_CALL_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                // The entry stays queued, a post that went on to succeed would send it twice
+                call.cancel();
+                AppLog.w(TAG, "Timed out waiting for location upload");
+                uploadFailure.inc();
+                return false;
+            }
+        } catch (InterruptedException e) {
+            call.cancel();
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        if (succeeded[0]) {
+            uploadSuccess.inc();
+            fixToUpload.recordMillis(System.currentTimeMillis() - pending.fixTimeMillis);
+            AppLog.d(TAG, "Location sent to API successfully: {pii}, {pii}",
+                    pending.location.getLatitude(), pending.location.getLongitude());
+        } else {
+            uploadFailure.inc();
+        }
+        return succeeded[0];
+    }
+}
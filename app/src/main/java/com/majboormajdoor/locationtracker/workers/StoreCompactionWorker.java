@@ -0,0 +1,58 @@
+package com.majboormajdoor.locationtracker.workers;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.majboormajdoor.locationtracker.constants.AppConstants;
+import com.majboormajdoor.locationtracker.logging.AppLog;
+import com.majboormajdoor.locationtracker.utils.CacheLocations;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Daily retention pass over the location store, including downsampling of older days
+ * Runs only while the device is idle and the battery is not low
+ */
+public class StoreCompactionWorker extends Worker {
+
+    private static final String TAG = "StoreCompactionWorker";
+
+    public StoreCompactionWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    public static void schedule(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiresDeviceIdle(true)
+                .setRequiresBatteryNotLow(true)
+                .build();
+
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(StoreCompactionWorker.class,
+                AppConstants.COMPACTION_INTERVAL_HOURS, TimeUnit.HOURS)
+                .setConstraints(constraints)
+                .build();
+
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(
+                AppConstants.WORK_COMPACTION_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        try {
+            CacheLocations.getInstance(getApplicationContext()).compact(System.currentTimeMillis());
+            return Result.success();
+        } catch (IOException e) {
+            AppLog.e(TAG, "Location store compaction failed", e);
+            return Result.retry();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.majboormajdoor.locationtracker.workers;
+
+import com.majboormajdoor.locationtracker.constants.AppConstants;
+import com.majboormajdoor.locationtracker.logging.AppLog;
+import com.majboormajdoor.locationtracker.metrics.Counter;
+import com.majboormajdoor.locationtracker.metrics.LatencyHistogram;
+import com.majboormajdoor.locationtracker.metrics.MetricsRegistry;
+
+/**
+ * Fixed-rate upload ticks on top of a one-shot platform timer
+ *
+ * Each tick arms the next one from the time it was due, not from when it ran, so the cadence
+ * does not drift. How late every tick fired is recorded; ticks missed while the device was
+ * dozing are counted and dropped instead of being fired back to back
+ */
+public class UploadCadence {
+    private static final String TAG = "UploadCadence";
+    private static final long NOT_SCHEDULED = -1;
+
+    /**
+     * One pending wake-up at most, times on the {@link Clock#elapsedRealtime()} base
+     */
+    public interface Timer {
+        void arm(long triggerAtMillis);
+
+        void cancel();
+    }
+
+    public interface Clock {
+        long elapsedRealtime();
+    }
+
+    private final Timer timer;
+    private final Clock clock;
+    private final Runnable task;
+
+    private long intervalMillis;
+    private long nextTickAt = NOT_SCHEDULED;
+    private long lastTickAt = NOT_SCHEDULED;
+
+    private final LatencyHistogram lateness = MetricsRegistry.getInstance().histogram(AppConstants.METRIC_UPLOAD_TICK_LATENESS);
+    private final Counter missedTicks = MetricsRegistry.getInstance().counter(AppConstants.METRIC_UPLOAD_TICK_MISSED);
+
+    public UploadCadence(Timer timer, Clock clock, Runnable task) {
+        this.timer = timer;
+        this.clock = clock;
+        this.task = task;
+    }
+
+    /**
+     * Start ticking, replacing any previous schedule
+     */
+    public synchronized void start(long intervalMillis, long firstDelayMillis) {
+        this.intervalMillis = Math.max(1, intervalMillis);
+        lastTickAt = NOT_SCHEDULED;
+        schedule(clock.elapsedRealtime() + firstDelayMillis);
+        AppLog.d(TAG, "Upload cadence started, every {} ms", this.intervalMillis);
+    }
+
+    /**
+     * Change the interval of a running cadence, the next tick moves to last tick + new interval
+     */
+    public synchronized void setInterval(long intervalMillis) {
+        intervalMillis = Math.max(1, intervalMillis);
+        if (intervalMillis == this.intervalMillis) {
+            return;
+        }
+        this.intervalMillis = intervalMillis;
+        if (nextTickAt == NOT_SCHEDULED || lastTickAt == NOT_SCHEDULED) {
+            // Still waiting for the first tick, keep its delay
+            return;
+        }
+        long now = clock.elapsedRealtime();
+        schedule(Math.max(now, lastTickAt + intervalMillis));
+        AppLog.d(TAG, "Upload interval changed to {} ms", intervalMillis);
+    }
+
+    public synchronized void stop() {
+        timer.cancel();
+        nextTickAt = NOT_SCHEDULED;
+        lastTickAt = NOT_SCHEDULED;
+    }
+
+    public synchronized boolean isRunning() {
+        return nextTickAt != NOT_SCHEDULED;
+    }
+
+    /**
+     * Scheduled-versus-actual delay of each tick
+     */
+    public LatencyHistogram getLateness() {
+        return lateness;
+    }
+
+    /**
+     * The timer went off: record how late, arm the next tick, then run the task on this thread
+     */
+    public void onTimer() {
+        synchronized (this) {
+            if (nextTickAt == NOT_SCHEDULED) {
+                // Stopped while the wake-up was in flight
+                return;
+            }
+            long now = clock.elapsedRealtime();
+            long late = now - nextTickAt;
+            if (late < 0) {
+                // A stale wake-up from before the last re-arm
+                timer.arm(nextTickAt);
+                return;
+            }
+            lateness.recordMillis(late);
+            long next = nextTickAt + intervalMillis;
+            if (next <= now) {
+                long missed = late / intervalMillis;
+                missedTicks.add(missed);
+                AppLog.d(TAG, "Tick due at {} ran at {}, {} missed", nextTickAt, now, missed);
+                next = now + intervalMillis;
+            }
+            lastTickAt = now;
+            schedule(next);
+        }
+        task.run();
+    }
+
+    private void schedule(long triggerAtMillis) {
+        nextTickAt = triggerAtMillis;
+        timer.arm(triggerAtMillis);
+    }
+}
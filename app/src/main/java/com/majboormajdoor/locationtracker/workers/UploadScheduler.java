@@ -0,0 +1,82 @@
+package com.majboormajdoor.locationtracker.workers;
+
+import android.content.Context;
+
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.OutOfQuotaPolicy;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+
+import com.majboormajdoor.locationtracker.constants.AppConstants;
+import com.majboormajdoor.locationtracker.logging.AppLog;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enqueues {@link LocationUploadWorker} runs through WorkManager
+ * Flushes are unique work, a request made while one is pending or running is folded into it
+ */
+public final class UploadScheduler {
+
+    private static final String TAG = "UploadScheduler";
+
+    private UploadScheduler() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    /**
+     * Flush fresh locations as soon as the network is available
+     * Runs expedited when quota allows and falls back to regular work otherwise
+     */
+    public static void requestFlush(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .build();
+
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(LocationUploadWorker.class)
+                .setConstraints(constraints)
+                .setExpedited(OutOfQuotaPolicy.RUN_AS_NON_EXPEDITED_WORK_REQUEST)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, AppConstants.UPLOAD_BACKOFF_SECONDS, TimeUnit.SECONDS)
+                .addTag(AppConstants.WORK_UPLOAD_TAG)
+                .build();
+
+        // Kept rather than appended: offline, every fix would chain another run behind the one
+        // waiting for network. A run that is finishing checks the queue again before it
+        // succeeds, so this location is not left behind
+        WorkManager.getInstance(context).enqueueUniqueWork(
+                AppConstants.WORK_UPLOAD_NAME, ExistingWorkPolicy.KEEP, request);
+        AppLog.d(TAG, "Upload flush requested");
+    }
+
+    /**
+     * Periodic safety net for locations left behind after a flush gave up
+     * Only runs with network and when the battery is not low
+     */
+    public static void schedulePeriodicFlush(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .setRequiresBatteryNotLow(true)
+                .build();
+
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(LocationUploadWorker.class,
+                AppConstants.UPLOAD_PERIODIC_INTERVAL_MINUTES, TimeUnit.MINUTES)
+                .setConstraints(constraints)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, AppConstants.UPLOAD_BACKOFF_SECONDS, TimeUnit.SECONDS)
+                .addTag(AppConstants.WORK_UPLOAD_TAG)
+                .build();
+
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(
+                AppConstants.WORK_UPLOAD_PERIODIC_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+        AppLog.d(TAG, "Periodic upload flush scheduled");
+    }
+
+    public static void cancelPeriodicFlush(Context context) {
+        WorkManager.getInstance(context).cancelUniqueWork(AppConstants.WORK_UPLOAD_PERIODIC_NAME);
+        AppLog.d(TAG, "Periodic upload flush cancelled");
+    }
+}
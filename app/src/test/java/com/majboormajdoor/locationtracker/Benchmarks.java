@@ -0,0 +1,37 @@
+package com.majboormajdoor.locationtracker;
+
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Opt-in switch for the timing and memory benchmarks that sit next to the functional tests
+ *
+ * They are skipped in the default run, enable them with
+ * ./gradlew testDebugUnitTest -Pbenchmark.enabled=true
+ */
+final class Benchmarks {
+
+    static final String PROPERTY_ENABLED = "benchmark.enabled";
+
+    private Benchmarks() {
+    }
+
+    static boolean isEnabled() {
+        return Boolean.getBoolean(PROPERTY_ENABLED);
+    }
+
+    /**
+     * Skip the calling test unless benchmarks were asked for
+     */
+    static void assumeEnabled() {
+        assumeTrue("benchmarks are opt-in, set -P" + PROPERTY_ENABLED + "=true", isEnabled());
+    }
+
+    /**
+     * Print a result line, only when benchmarks were asked for
+     */
+    static void report(String format, Object... args) {
+        if (isEnabled()) {
+            System.out.printf(format, args);
+        }
+    }
+}
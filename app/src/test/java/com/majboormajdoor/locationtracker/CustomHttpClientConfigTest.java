@@ -0,0 +1,136 @@
+package com.majboormajdoor.locationtracker;
+
+import com.majboormajdoor.locationtracker.constants.AppConstants;
+import com.majboormajdoor.locationtracker.services.CustomHttpClientConfig;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class CustomHttpClientConfigTest {
+
+    private static final long RESPONSE_TIMEOUT_MS = 1_000;
+    private static final long CONNECTION_REQUEST_TIMEOUT_MS = 200;
+
+    private ServerSocket server;
+    private CountDownLatch stalled;
+    private ExecutorService callers;
+
+    @Before
+    public void setUp() throws IOException {
+        stalled = new CountDownLatch(AppConstants.HTTP_MAX_CONNECTIONS_PER_ROUTE);
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    Thread connection = new Thread(() -> serve(socket));
+                    connection.setDaemon(true);
+                    connection.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+        callers = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        callers.shutdownNow();
+        server.close();
+    }
+
+    @Test
+    public void testStalledServer_ShouldNotBlockTheNextRequest() throws Exception {
+        try (CloseableHttpClient client = CustomHttpClientConfig.createHttpClient(
+                RESPONSE_TIMEOUT_MS, CONNECTION_REQUEST_TIMEOUT_MS)) {
+            // Every pooled connection to the route is held by a call the server never answers
+            List<Future<Integer>> hung = new ArrayList<>();
+            for (int i = 0; i < AppConstants.HTTP_MAX_CONNECTIONS_PER_ROUTE; i++) {
+                hung.add(callers.submit(() -> get(client, "/stall")));
+            }
+            assertTrue(stalled.await(5, TimeUnit.SECONDS));
+
+            // The next caller gives up waiting for a connection instead of blocking behind them
+            long start = System.nanoTime();
+            try {
+                get(client, "/ok");
+                fail("Pool should have been exhausted");
+            } catch (IOException e) {
+                assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < RESPONSE_TIMEOUT_MS);
+            }
+
+            // The hung calls time out and hand their connections back
+            for (Future<Integer> call : hung) {
+                try {
+                    call.get(5, TimeUnit.SECONDS);
+                    fail("Stalled call should have timed out");
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof IOException);
+                }
+            }
+            assertEquals(200, get(client, "/ok"));
+        }
+    }
+
+    private int get(CloseableHttpClient client, String path) throws IOException {
+        return client.execute(new HttpGet("http://localhost:" + server.getLocalPort() + path), response -> {
+            EntityUtils.consume(response.getEntity());
+            return response.getCode();
+        });
+    }
+
+    /**
+     * Answers /ok with an empty 200 and never answers anything else
+     */
+    private void serve(Socket socket) {
+        byte[] response = "HTTP/1.1 200 OK\r\nContent-Length: 0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+        try (Socket connection = socket) {
+            InputStream in = connection.getInputStream();
+            OutputStream out = connection.getOutputStream();
+            StringBuilder request = new StringBuilder();
+            int b;
+            while ((b = in.read()) != -1) {
+                request.append((char) b);
+                if (request.toString().endsWith("\r\n\r\n")) {
+                    if (!request.toString().startsWith("GET /ok ")) {
+                        stalled.countDown();
+                        // Hold the connection open until the client gives up on it
+                        while (in.read() != -1) {
+                            // Drain
+                        }
+                        return;
+                    }
+                    out.write(response);
+                    out.flush();
+                    request.setLength(0);
+                }
+            }
+        } catch (IOException e) {
+            // Client went away
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.majboormajdoor.locationtracker;
+
+import com.android.billingclient.api.Purchase;
+import com.majboormajdoor.locationtracker.billing.BillingManager;
+import com.majboormajdoor.locationtracker.billing.EntitlementCache;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class EntitlementCacheTest {
+
+    private static final long MINUTE = 60_000L;
+
+    private EntitlementCache cache;
+    private ManualQuery query;
+    private final List<List<Purchase>> changes = new ArrayList<>();
+    private final EntitlementCache.Observer observer = changes::add;
+
+    @Before
+    public void setUp() {
+        cache = EntitlementCache.getInstance();
+        cache.clear();
+        cache.addObserver(observer);
+        query = new ManualQuery();
+    }
+
+    @After
+    public void tearDown() {
+        cache.removeObserver(observer);
+        cache.clear();
+    }
+
+    @Test
+    public void testGet_WhileQueryInFlight_ShouldShareOneQuery() {
+        List<List<Purchase>> answers = new ArrayList<>();
+        cache.get(5 * MINUTE, query, answers::add);
+        cache.get(5 * MINUTE, query, answers::add);
+        cache.refresh(query, answers::add);
+
+        assertEquals(1, query.runs);
+
+        List<Purchase> purchases = Collections.singletonList(purchase("token1", Purchase.PurchaseState.PURCHASED, true));
+        query.answer(purchases);
+
+        assertEquals(3, answers.size());
+        for (List<Purchase> answer : answers) {
+            assertEquals(purchases, answer);
+        }
+        assertEquals(1, changes.size());
+    }
+
+    @Test
+    public void testGet_WhenFresh_ShouldAnswerFromMemory() {
+        cache.get(5 * MINUTE, query, list -> { });
+        query.answer(Collections.singletonList(purchase("token1", Purchase.PurchaseState.PURCHASED, true)));
+
+        List<List<Purchase>> answers = new ArrayList<>();
+        cache.get(5 * MINUTE, query, answers::add);
+
+        assertEquals(1, query.runs);
+        assertEquals(1, answers.size());
+        assertTrue(BillingManager.hasSubscription(answers.get(0), true));
+
+        // A refresh always goes back to Play
+        cache.refresh(query, list -> { });
+        assertEquals(2, query.runs);
+        query.answer(Collections.emptyList());
+    }
+
+    @Test
+    public void testGet_WhenQueryFails_ShouldAnswerNullAndAskAgainNextTime() {
+        List<List<Purchase>> answers = new ArrayList<>();
+        cache.get(5 * MINUTE, query, answers::add);
+        query.answer(null);
+
+        assertEquals(Collections.singletonList((List<Purchase>) null), answers);
+        assertNull(cache.getPurchases());
+        assertTrue(changes.isEmpty());
+
+        cache.get(5 * MINUTE, query, answers::add);
+        assertEquals(2, query.runs);
+        query.answer(Collections.emptyList());
+    }
+
+    @Test
+    public void testAbandon_ShouldFailWaitersAndIgnoreLateAnswer() {
+        List<List<Purchase>> answers = new ArrayList<>();
+        cache.get(5 * MINUTE, query, answers::add);
+        cache.get(5 * MINUTE, query, answers::add);
+        Consumer<List<Purchase>> lateAnswer = query.done;
+
+        // Another manager's client going away leaves this query alone
+        cache.abandon(new ManualQuery());
+        assertTrue(answers.isEmpty());
+
+        cache.abandon(query);
+        assertEquals(Arrays.asList(null, null), answers);
+
+        // The next caller starts a fresh query, the abandoned one can no longer answer it
+        cache.get(5 * MINUTE, query, answers::add);
+        assertEquals(2, query.runs);
+        lateAnswer.accept(Collections.singletonList(purchase("token1", Purchase.PurchaseState.PURCHASED, true)));
+        assertEquals(2, answers.size());
+        assertNull(cache.getPurchases());
+
+        query.answer(Collections.emptyList());
+        assertEquals(3, answers.size());
+        assertEquals(Collections.emptyList(), answers.get(2));
+    }
+
+    @Test
+    public void testObservers_ShouldOnlyHearRealChanges() {
+        Purchase pending = purchase("token1", Purchase.PurchaseState.PENDING, false);
+        cache.refresh(query, list -> { });
+        query.answer(Collections.singletonList(pending));
+        cache.refresh(query, list -> { });
+        query.answer(Collections.singletonList(purchase("token1", Purchase.PurchaseState.PENDING, false)));
+
+        assertEquals(1, changes.size());
+
+        // Play pushing the completed purchase replaces the pending one by token
+        cache.onPurchasesUpdated(Collections.singletonList(purchase("token1", Purchase.PurchaseState.PURCHASED, false)));
+
+        assertEquals(2, changes.size());
+        assertEquals(1, cache.getPurchases().size());
+        assertTrue(BillingManager.hasSubscription(cache.getPurchases(), false));
+        assertFalse(BillingManager.hasSubscription(cache.getPurchases(), true));
+    }
+
+    @Test
+    public void testMarkGranted_ShouldClaimEachPurchaseOnceUntilReleased() {
+        assertTrue(cache.markGranted("token1"));
+        assertFalse(cache.markGranted("token1"));
+        assertTrue(cache.markGranted("token2"));
+
+        cache.unmarkGranted("token1");
+        assertTrue(cache.markGranted("token1"));
+    }
+
+    private static Purchase purchase(String token, int state, boolean acknowledged) {
+        Purchase purchase = mock(Purchase.class);
+        when(purchase.getPurchaseToken()).thenReturn(token);
+        when(purchase.getPurchaseState()).thenReturn(state);
+        when(purchase.isAcknowledged()).thenReturn(acknowledged);
+        when(purchase.getProducts()).thenReturn(Arrays.asList("com.majboormajdoor.monthly_sub"));
+        return purchase;
+    }
+
+    /**
+     * Counts queries and answers only when the test says so
+     */
+    private static final class ManualQuery implements EntitlementCache.PurchaseQuery {
+        int runs;
+        Consumer<List<Purchase>> done;
+
+        @Override
+        public void run(Consumer<List<Purchase>> done) {
+            runs++;
+            this.done = done;
+        }
+
+        void answer(List<Purchase> purchases) {
+            done.accept(purchases);
+        }
+    }
+}
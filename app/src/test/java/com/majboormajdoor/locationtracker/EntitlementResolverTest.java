@@ -0,0 +1,220 @@
+package com.majboormajdoor.locationtracker;
+
+import android.util.Log;
+
+import com.majboormajdoor.locationtracker.billing.BillingManager;
+import com.majboormajdoor.locationtracker.billing.EntitlementResolver;
+import com.majboormajdoor.locationtracker.billing.EntitlementVerdict;
+import com.majboormajdoor.locationtracker.logging.AppLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockedStatic;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class EntitlementResolverTest {
+
+    private static final long HOUR = 60L * 60 * 1000;
+    private static final SecretKey KEY = new SecretKeySpec("test-key".getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+
+    private MockedStatic<Log> logMock;
+    private ManualCheck play;
+    private ManualCheck server;
+    private MemoryStore store;
+    private final List<EntitlementVerdict> verdicts = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        logMock = mockStatic(Log.class);
+        // The static mock only covers this thread, keep the timeout thread away from logcat
+        AppLog.setMinLevel(Integer.MAX_VALUE);
+        play = new ManualCheck();
+        server = new ManualCheck();
+        store = new MemoryStore();
+    }
+
+    @After
+    public void tearDown() {
+        AppLog.setMinLevel(BuildConfig.DEBUG ? Log.DEBUG : Log.INFO);
+        logMock.close();
+    }
+
+    @Test
+    public void testResolve_ShouldStartBothChecksAndTakeFirstYes() {
+        EntitlementResolver resolver = resolver("user1", 10_000);
+        resolver.resolve(verdicts::add);
+
+        // Both are in flight before either answered
+        assertNotNull(play.callback);
+        assertNotNull(server.callback);
+
+        server.callback.onResult(true);
+        play.callback.onResult(false);
+
+        assertEquals(1, verdicts.size());
+        assertTrue(verdicts.get(0).entitled);
+        assertEquals(EntitlementVerdict.Source.SERVER, verdicts.get(0).source);
+        assertTrue(resolver.isSettled());
+        assertNotNull(EntitlementVerdict.decode(store.value, KEY));
+    }
+
+    @Test
+    public void testResolve_WhenBothSayNo_ShouldDenyAndClearCache() {
+        long now = System.currentTimeMillis();
+        store.value = encode(new EntitlementVerdict("user1", true, now, now + HOUR, EntitlementVerdict.Source.PLAY));
+        EntitlementResolver resolver = resolver("user1", 10_000);
+        resolver.resolve(verdicts::add);
+
+        play.callback.onResult(false);
+        assertFalse(resolver.isSettled());
+        server.callback.onResult(false);
+
+        // The cached yes answered first, revalidation then drops it for the next launch
+        assertEquals(1, verdicts.size());
+        assertEquals(EntitlementVerdict.Source.CACHE, verdicts.get(0).source);
+        assertNull(store.value);
+    }
+
+    @Test
+    public void testResolve_WithFreshCache_ShouldAnswerBeforeChecksAndRevalidate() {
+        long now = System.currentTimeMillis();
+        store.value = encode(new EntitlementVerdict("user1", true, now - HOUR, now + HOUR, EntitlementVerdict.Source.PLAY));
+        EntitlementResolver resolver = resolver("user1", 10_000);
+
+        resolver.resolve(verdicts::add);
+
+        assertEquals(1, verdicts.size());
+        assertEquals(EntitlementVerdict.Source.CACHE, verdicts.get(0).source);
+        assertFalse(resolver.isSettled());
+
+        play.callback.onResult(true);
+
+        assertEquals(1, verdicts.size());
+        EntitlementVerdict refreshed = EntitlementVerdict.decode(store.value, KEY);
+        assertEquals(EntitlementVerdict.Source.PLAY, refreshed.source);
+        assertTrue(refreshed.checkedAtMillis >= now);
+    }
+
+    @Test
+    public void testResolve_ShouldIgnoreTamperedForeignOrExpiredCache() {
+        long now = System.currentTimeMillis();
+        String valid = encode(new EntitlementVerdict("user1", true, now, now + HOUR, EntitlementVerdict.Source.PLAY));
+        String[] rejected = {
+                valid.replace("|user1|", "|user2|"),
+                encode(new EntitlementVerdict("user2", true, now, now + HOUR, EntitlementVerdict.Source.PLAY)),
+                encode(new EntitlementVerdict("user1", true, now - 2 * HOUR, now - HOUR, EntitlementVerdict.Source.PLAY)),
+                "garbage"
+        };
+        assertNull(EntitlementVerdict.decode(rejected[0], KEY));
+
+        for (String cached : rejected) {
+            store.value = cached;
+            verdicts.clear();
+            resolver("user1", 10_000).resolve(verdicts::add);
+            assertTrue(cached, verdicts.isEmpty());
+        }
+    }
+
+    @Test
+    public void testResolve_ShouldLoadKeyAndCacheOnlyOnKeyExecutor() {
+        long now = System.currentTimeMillis();
+        store.value = encode(new EntitlementVerdict("user1", true, now, now + HOUR, EntitlementVerdict.Source.SERVER));
+        List<Runnable> pending = new ArrayList<>();
+        int[] keyLoads = new int[1];
+        EntitlementResolver resolver = new EntitlementResolver(play, server, store, () -> {
+            keyLoads[0]++;
+            return KEY;
+        }, pending::add, "user1", HOUR, 10_000);
+
+        resolver.resolve(verdicts::add);
+
+        // The checks are already running, the Keystore has not been touched on this thread
+        assertNotNull(play.callback);
+        assertEquals(0, keyLoads[0]);
+        assertTrue(verdicts.isEmpty());
+
+        play.callback.onResult(true);
+        assertEquals(EntitlementVerdict.Source.PLAY, verdicts.get(0).source);
+        assertEquals(0, keyLoads[0]);
+
+        for (Runnable task : pending) {
+            task.run();
+        }
+        assertEquals(1, keyLoads[0]);
+        assertEquals(1, verdicts.size());
+        // Signed and saved behind the cache load
+        assertEquals(EntitlementVerdict.Source.PLAY, EntitlementVerdict.decode(store.value, KEY).source);
+    }
+
+    @Test
+    public void testResolve_OnTimeout_ShouldDenyButKeepCache() throws InterruptedException {
+        CountDownLatch settled = new CountDownLatch(1);
+        EntitlementResolver resolver = resolver("user1", 50);
+        resolver.resolve(verdicts::add);
+        resolver.runWhenSettled(settled::countDown);
+
+        assertTrue(settled.await(5, TimeUnit.SECONDS));
+        assertEquals(1, verdicts.size());
+        assertFalse(verdicts.get(0).entitled);
+        assertEquals(EntitlementVerdict.Source.NONE, verdicts.get(0).source);
+
+        // A yes arriving after the timeout still speeds up the next launch
+        play.callback.onResult(true);
+        assertEquals(1, verdicts.size());
+        assertNotNull(EntitlementVerdict.decode(store.value, KEY));
+    }
+
+    private EntitlementResolver resolver(String userId, long timeoutMillis) {
+        return new EntitlementResolver(play, server, store, KEY, userId, HOUR, timeoutMillis);
+    }
+
+    private static String encode(EntitlementVerdict verdict) {
+        try {
+            return verdict.encode(KEY);
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Answers only when the test says so
+     */
+    private static final class ManualCheck implements EntitlementResolver.Check {
+        BillingManager.SubscriptionStatusCallback callback;
+
+        @Override
+        public void start(BillingManager.SubscriptionStatusCallback callback) {
+            this.callback = callback;
+        }
+    }
+
+    private static final class MemoryStore implements EntitlementResolver.VerdictStore {
+        String value;
+
+        @Override
+        public String load() {
+            return value;
+        }
+
+        @Override
+        public void save(String encoded) {
+            value = encoded;
+        }
+
+        @Override
+        public void clear() {
+            value = null;
+        }
+    }
+}
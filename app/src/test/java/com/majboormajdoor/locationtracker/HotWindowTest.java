@@ -0,0 +1,118 @@
+package com.majboormajdoor.locationtracker;
+
+import com.majboormajdoor.locationtracker.dto.Location;
+import com.majboormajdoor.locationtracker.storage.HotWindow;
+import com.majboormajdoor.locationtracker.storage.LocationStore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class HotWindowTest {
+
+    // 2024-01-01 00:00:00Z, timestamps below are written in UTC
+    private static final long BASE = 1_704_067_200_000L;
+    private static final long MINUTE = 60_000L;
+
+    @Test
+    public void testBuild_ShouldKeepWindowSortedOldestFirst() {
+        List<Location> locations = new ArrayList<>();
+        for (int i = 9; i >= 0; i--) {
+            locations.add(locationAt(i, "user123"));
+        }
+        locations.add(locationWithTimestamp("not a timestamp"));
+
+        HotWindow window = HotWindow.build(locations, BASE + 5 * MINUTE, 100);
+
+        assertEquals(5, window.size());
+        for (int i = 0; i < window.size(); i++) {
+            assertEquals(BASE + (5 + i) * MINUTE, window.getMillis(i));
+        }
+        assertTrue(window.covers(BASE + 5 * MINUTE));
+        assertFalse(window.covers(BASE + 4 * MINUTE));
+    }
+
+    @Test
+    public void testPlus_ShouldMergeAndReplaceSameKey() {
+        HotWindow window = HotWindow.build(List.of(locationAt(1, "a"), locationAt(3, "a")), BASE, 100);
+        Location moved = locationAt(3, "a");
+        moved.setLatitude(1.0);
+
+        HotWindow next = window.plus(List.of(locationAt(2, "a"), moved, locationAt(3, "b")), BASE);
+
+        assertEquals(2, window.size());
+        assertEquals(4, next.size());
+        assertEquals(BASE + MINUTE, next.getMillis(0));
+        assertEquals(BASE + 2 * MINUTE, next.getMillis(1));
+        int replaced = next.getUserId(2).equals("a") ? 2 : 3;
+        assertEquals(1.0, next.getLatitude(replaced), 0.0);
+    }
+
+    @Test
+    public void testPlus_OverCapacity_ShouldDropOldestAndMoveCoverage() {
+        List<Location> locations = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            locations.add(locationAt(i, "user123"));
+        }
+
+        HotWindow window = HotWindow.build(locations, BASE, 4);
+
+        assertEquals(4, window.size());
+        assertEquals(BASE + 6 * MINUTE, window.getCoverageStart());
+        assertEquals(4, window.between(BASE + 6 * MINUTE, Long.MAX_VALUE).size());
+        assertSame(window, window.plus(List.of(locationAt(2, "user123")), BASE));
+    }
+
+    @Test
+    public void testMinus_ShouldRemoveKeysAndKeepCoverage() {
+        Location first = locationAt(1, "user123");
+        HotWindow window = HotWindow.build(List.of(first, locationAt(2, "user123")), BASE, 100);
+
+        HotWindow next = window.minus(Collections.singleton(LocationStore.keyOf(first)));
+
+        assertEquals(1, next.size());
+        assertEquals(BASE + 2 * MINUTE, next.getMillis(0));
+        assertEquals(window.getCoverageStart(), next.getCoverageStart());
+        assertSame(next, next.minus(Collections.singleton("missing")));
+    }
+
+    @Test
+    public void testBetween_ShouldExcludeUpperBound() {
+        List<Location> locations = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            locations.add(locationAt(i, "user123"));
+        }
+        HotWindow window = HotWindow.build(locations, BASE, 100);
+
+        List<Location> result = window.between(BASE + 2 * MINUTE, BASE + 5 * MINUTE);
+
+        assertEquals(3, result.size());
+        assertEquals("2024-01-01T00:02:00Z", result.get(0).getInsertionTimestamp());
+        assertEquals("user123", result.get(0).getUserId());
+    }
+
+    @Test
+    public void testBetween_WithTrackie_ShouldFilterByUserName() {
+        Location other = locationAt(2, "user456");
+        other.setUserName("other@example.com");
+        HotWindow window = HotWindow.build(List.of(locationAt(1, "user123"), other), BASE, 100);
+
+        List<Location> result = window.between("other@example.com", BASE, Long.MAX_VALUE);
+
+        assertEquals(1, result.size());
+        assertEquals("user456", result.get(0).getUserId());
+    }
+
+    private Location locationAt(int minute, String userId) {
+        Location location = locationWithTimestamp(String.format("2024-01-01T00:%02d:00Z", minute));
+        location.setUserId(userId);
+        return location;
+    }
+
+    private Location locationWithTimestamp(String timestamp) {
+        return new Location(37.7749, -122.4194, "test@example.com", timestamp);
+    }
+}
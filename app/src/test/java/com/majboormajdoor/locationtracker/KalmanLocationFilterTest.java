@@ -0,0 +1,123 @@
+package com.majboormajdoor.locationtracker;
+
+import com.majboormajdoor.locationtracker.pipeline.KalmanLocationFilter;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class KalmanLocationFilterTest {
+
+    private static final double METERS_PER_DEGREE = 6371008.8 * Math.PI / 180.0;
+    private static final double START_LATITUDE = 52.52;
+    private static final double START_LONGITUDE = 13.405;
+    private static final long STEP_NANOS = 1_000_000_000L;
+
+    @Test
+    public void testFirstFixPassesThrough() {
+        KalmanLocationFilter filter = new KalmanLocationFilter(3.0, 60_000);
+
+        filter.update(START_LATITUDE, START_LONGITUDE, 10f, STEP_NANOS);
+
+        assertTrue(filter.isInitialized());
+        assertEquals(START_LATITUDE, filter.getLatitude(), 1e-9);
+        assertEquals(START_LONGITUDE, filter.getLongitude(), 1e-9);
+        assertEquals(10.0, filter.getAccuracy(), 1e-6);
+        assertEquals(0.0, filter.getSpeed(), 1e-9);
+    }
+
+    @Test
+    public void testSmoothingReducesNoiseOnStraightTrack() {
+        KalmanLocationFilter filter = new KalmanLocationFilter(1.0, 60_000);
+        Random random = new Random(42);
+        double speed = 10.0; // m/s heading north
+        double noise = 15.0;
+
+        double rawSquaredError = 0;
+        double smoothedSquaredError = 0;
+        double speedSum = 0;
+        int measured = 0;
+        for (int i = 0; i < 600; i++) {
+            double trueNorth = speed * i;
+            double measuredNorth = trueNorth + random.nextGaussian() * noise;
+            double measuredEast = random.nextGaussian() * noise;
+            filter.update(START_LATITUDE + measuredNorth / METERS_PER_DEGREE,
+                    START_LONGITUDE + measuredEast / (METERS_PER_DEGREE * Math.cos(Math.toRadians(START_LATITUDE))),
+                    (float) noise, i * STEP_NANOS);
+
+            if (i >= 60) {
+                double errorNorth = (filter.getLatitude() - START_LATITUDE) * METERS_PER_DEGREE - trueNorth;
+                double errorEast = (filter.getLongitude() - START_LONGITUDE)
+                        * METERS_PER_DEGREE * Math.cos(Math.toRadians(START_LATITUDE));
+                smoothedSquaredError += errorNorth * errorNorth + errorEast * errorEast;
+                rawSquaredError += (measuredNorth - trueNorth) * (measuredNorth - trueNorth) + measuredEast * measuredEast;
+                speedSum += filter.getSpeed();
+                measured++;
+            }
+        }
+
+        double rawRms = Math.sqrt(rawSquaredError / measured);
+        double smoothedRms = Math.sqrt(smoothedSquaredError / measured);
+        assertTrue("smoothed " + smoothedRms + " vs raw " + rawRms, smoothedRms < rawRms * 0.6);
+        assertEquals(speed, speedSum / measured, 1.0);
+        assertTrue(filter.getBearing() < 10 || filter.getBearing() > 350);
+    }
+
+    @Test
+    public void testLongGapRestartsFilter() {
+        KalmanLocationFilter filter = new KalmanLocationFilter(3.0, 60_000);
+        filter.update(START_LATITUDE, START_LONGITUDE, 10f, 0);
+        filter.update(START_LATITUDE + 0.0001, START_LONGITUDE, 10f, STEP_NANOS);
+
+        double farLatitude = START_LATITUDE + 1.0;
+        filter.update(farLatitude, START_LONGITUDE, 10f, 120 * STEP_NANOS);
+
+        assertEquals(farLatitude, filter.getLatitude(), 1e-9);
+        assertEquals(0.0, filter.getSpeed(), 1e-9);
+    }
+
+    @Test
+    public void testInaccurateFixAfterGoodFixes_ShouldBeDroppedBeforeTheEstimate() {
+        KalmanLocationFilter filter = new KalmanLocationFilter(3.0, 60_000, 100f);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(filter.update(START_LATITUDE, START_LONGITUDE, 10f, i * STEP_NANOS));
+        }
+        double latitude = filter.getLatitude();
+        double accuracy = filter.getAccuracy();
+
+        // A 300 m outlier reporting 300 m accuracy
+        assertFalse(filter.update(START_LATITUDE + 0.0027, START_LONGITUDE, 300f, 10 * STEP_NANOS));
+
+        assertEquals(latitude, filter.getLatitude(), 0.0);
+        assertEquals(accuracy, filter.getAccuracy(), 0.0);
+        // The next good fix is taken as usual
+        assertTrue(filter.update(START_LATITUDE, START_LONGITUDE, 10f, 11 * STEP_NANOS));
+    }
+
+    @Test
+    public void testUpdateThroughput() {
+        Benchmarks.assumeEnabled();
+        KalmanLocationFilter filter = new KalmanLocationFilter(3.0, 60_000);
+        int iterations = 2_000_000;
+        double sink = 0;
+
+        // Warm up the JIT before measuring
+        for (int i = 0; i < 200_000; i++) {
+            filter.update(START_LATITUDE + (i & 15) * 1e-6, START_LONGITUDE, 12f, i * STEP_NANOS);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            filter.update(START_LATITUDE + (i & 15) * 1e-6, START_LONGITUDE + (i & 7) * 1e-6, 12f, i * STEP_NANOS);
+            sink += filter.getLatitude();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        double nanosPerUpdate = (double) elapsed / iterations;
+        Benchmarks.report("KalmanLocationFilter: %.1f ns/update, %.0f updates/s%n",
+                nanosPerUpdate, 1e9 / nanosPerUpdate);
+        assertFalse(Double.isNaN(sink));
+        assertFalse(Double.isNaN(filter.getAccuracy()));
+    }
+}
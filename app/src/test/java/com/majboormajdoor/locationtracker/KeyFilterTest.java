@@ -0,0 +1,140 @@
+package com.majboormajdoor.locationtracker;
+
+import com.majboormajdoor.locationtracker.storage.KeyFilter;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class KeyFilterTest {
+
+    private static final int STORED = 1_000_000;
+    private static final int PARTITIONS = 4;
+
+    @Test
+    public void testMightContain_ShouldNeverMissAddedKeys() {
+        KeyFilter filter = new KeyFilter(100_000, 0.01);
+        for (int i = 0; i < 100_000; i++) {
+            filter.add(userId(i), timestamp(i));
+        }
+        filter.add(null, null);
+
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(filter.mightContain(userId(i), timestamp(i)));
+        }
+        assertTrue(filter.mightContain(null, null));
+        assertTrue("null userId matches the \"null\" key", filter.mightContain("null", "null"));
+    }
+
+    @Test
+    public void testMightContain_ShouldMatchConcatenatedKeyEquality() {
+        KeyFilter filter = new KeyFilter(10, 0.01);
+
+        filter.add("a_b", "c");
+
+        // keyOf gives "a_b_c" for both, so the store treats them as the same record
+        assertTrue(filter.mightContain("a", "b_c"));
+    }
+
+    @Test
+    public void testFalsePositiveRateAndThroughput_AtOneMillionRecords() {
+        Benchmarks.assumeEnabled();
+        KeyFilter filter = new KeyFilter(2 * STORED, 0.01);
+        List<Map<String, Boolean>> partitions = new ArrayList<>();
+        for (int p = 0; p < PARTITIONS; p++) {
+            partitions.add(new HashMap<>(STORED / PARTITIONS * 2));
+        }
+        for (int i = 0; i < STORED; i++) {
+            filter.add(userId(i), timestamp(i));
+            partitions.get(i % PARTITIONS).put(userId(i) + "_" + timestamp(i), Boolean.TRUE);
+        }
+
+        // Incoming merge: 90% new records, 10% already stored
+        int incoming = 200_000;
+        String[] userIds = new String[incoming];
+        String[] timestamps = new String[incoming];
+        for (int i = 0; i < incoming; i++) {
+            int record = i % 10 == 0 ? i : STORED + i;
+            userIds[i] = userId(record);
+            timestamps[i] = timestamp(record);
+        }
+
+        long probeNanos = Long.MAX_VALUE;
+        long filterNanos = Long.MAX_VALUE;
+        int probeFound = 0;
+        int filterFound = 0;
+        int falsePositives = 0;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            probeFound = 0;
+            for (int i = 0; i < incoming; i++) {
+                if (probeAll(partitions, userIds[i], timestamps[i])) {
+                    probeFound++;
+                }
+            }
+            probeNanos = Math.min(probeNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            filterFound = 0;
+            falsePositives = 0;
+            for (int i = 0; i < incoming; i++) {
+                if (filter.mightContain(userIds[i], timestamps[i])) {
+                    if (probeAll(partitions, userIds[i], timestamps[i])) {
+                        filterFound++;
+                    } else {
+                        falsePositives++;
+                    }
+                }
+            }
+            filterNanos = Math.min(filterNanos, System.nanoTime() - start);
+        }
+
+        int newRecords = incoming - probeFound;
+        double falsePositiveRate = (double) falsePositives / newRecords;
+        Benchmarks.report("KeyFilter: %d stored, false positives %.3f%% (expected %.3f%%), "
+                        + "string-key probe %.0f records/s, filter first %.0f records/s%n",
+                STORED, falsePositiveRate * 100, filter.expectedFalsePositiveRate() * 100,
+                incoming * 1e9 / probeNanos, incoming * 1e9 / filterNanos);
+        assertEquals(incoming / 10, probeFound);
+        assertEquals(probeFound, filterFound);
+        assertTrue("false-positive rate " + falsePositiveRate, falsePositiveRate < 0.01);
+    }
+
+    // Helper methods
+
+    /**
+     * The lookup LocationStore does without the filter: build the key, try every partition
+     */
+    private boolean probeAll(List<Map<String, Boolean>> partitions, String userId, String timestamp) {
+        String key = userId + "_" + timestamp;
+        for (Map<String, Boolean> partition : partitions) {
+            if (partition.containsKey(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String userId(int record) {
+        return "user" + (record % 7);
+    }
+
+    private String timestamp(int record) {
+        int second = record % 86_400;
+        int day = record / 86_400;
+        return new StringBuilder(19)
+                .append(2000 + day).append("-01-01 ")
+                .append(twoDigits(second / 3600)).append(':')
+                .append(twoDigits((second / 60) % 60)).append(':')
+                .append(twoDigits(second % 60))
+                .toString();
+    }
+
+    private String twoDigits(int value) {
+        return value < 10 ? "0" + value : Integer.toString(value);
+    }
+}
@@ -0,0 +1,147 @@
+package com.majboormajdoor.locationtracker;
+
+import com.majboormajdoor.locationtracker.metrics.Counter;
+import com.majboormajdoor.locationtracker.metrics.LatencyHistogram;
+import com.majboormajdoor.locationtracker.metrics.MetricsRegistry;
+import com.majboormajdoor.locationtracker.metrics.MetricsSnapshot;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    private boolean metricsEnabled;
+    private LatencyHistogram histogram;
+
+    @Before
+    public void setUp() {
+        metricsEnabled = MetricsRegistry.isEnabled();
+        MetricsRegistry.setEnabled(true);
+        MetricsRegistry.getInstance().reset();
+        histogram = MetricsRegistry.getInstance().histogram("test.latency");
+    }
+
+    @After
+    public void tearDown() {
+        MetricsRegistry.getInstance().reset();
+        MetricsRegistry.setEnabled(metricsEnabled);
+    }
+
+    @Test
+    public void testPercentile_WhenEmpty_ShouldBeZero() {
+        assertEquals(0L, histogram.percentileNanos(50));
+        assertEquals(0L, histogram.snapshot().count);
+        assertEquals(0.0, histogram.snapshot().p99Ms, 0.0);
+    }
+
+    @Test
+    public void testPercentile_BelowFirstPowerOfTwo_ShouldBeExact() {
+        // Values under 16 each get a bucket of their own
+        for (long value = 0; value < 16; value++) {
+            histogram.recordNanos(value);
+        }
+
+        assertEquals(16, histogram.getCount());
+        assertEquals(0L, histogram.percentileNanos(0));
+        assertEquals(7L, histogram.percentileNanos(50));
+        assertEquals(15L, histogram.percentileNanos(100));
+    }
+
+    @Test
+    public void testPercentile_AtBucketEdges_ShouldReportBucketUpperBound() {
+        // From 32 up buckets are two wide: 32 and 33 share one, 34 starts the next
+        histogram.recordNanos(32);
+        histogram.recordNanos(34);
+
+        assertEquals(33L, histogram.percentileNanos(50));
+        assertEquals(34L, histogram.percentileNanos(100));
+    }
+
+    @Test
+    public void testPercentile_ShouldNeverExceedRecordedMax() {
+        histogram.recordNanos(32);
+
+        assertEquals(32L, histogram.percentileNanos(50));
+    }
+
+    @Test
+    public void testRecord_AtExtremes_ShouldUseFirstAndLastBucket() {
+        histogram.recordNanos(-5);
+        histogram.recordNanos(Long.MAX_VALUE);
+
+        assertEquals(2, histogram.getCount());
+        // Negative durations are clamped into bucket 0
+        assertEquals(0L, histogram.percentileNanos(50));
+        // Long.MAX_VALUE lands in index 959, the last one
+        assertEquals(Long.MAX_VALUE, histogram.percentileNanos(100));
+    }
+
+    @Test
+    public void testPercentile_ShouldStayWithinRelativeErrorBound() {
+        long[] values = {17, 100, 999, 12_345, 1_000_000, 7_654_321, 250_000_000L, 3_600_000_000_000L};
+        for (long value : values) {
+            LatencyHistogram histogram = MetricsRegistry.getInstance().histogram("test.latency." + value);
+            histogram.recordNanos(value);
+            histogram.recordNanos(value * 4);
+
+            long reported = histogram.percentileNanos(50);
+            assertTrue(value + " reported as " + reported, reported >= value);
+            assertTrue(value + " reported as " + reported, reported - value <= value / 16);
+        }
+    }
+
+    @Test
+    public void testPercentile_OverUniformRange_ShouldTrackTrueQuantiles() {
+        for (long millis = 1; millis <= 1000; millis++) {
+            histogram.recordMillis(millis);
+        }
+
+        MetricsSnapshot.HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.count);
+        assertEquals(1.0, snapshot.minMs, 0.0);
+        assertEquals(1000.0, snapshot.maxMs, 0.0);
+        assertEquals(500.5, snapshot.meanMs, 1e-9);
+        assertEquals(500.0, snapshot.p50Ms, 500.0 / 16);
+        assertEquals(900.0, snapshot.p90Ms, 900.0 / 16);
+        assertEquals(990.0, snapshot.p99Ms, 990.0 / 16);
+    }
+
+    @Test
+    public void testRecord_FromManyThreads_ShouldLoseNoCounts() throws InterruptedException {
+        Counter counter = MetricsRegistry.getInstance().counter("test.counter");
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    histogram.recordNanos(i);
+                    counter.inc();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(40_000, histogram.getCount());
+        assertEquals(40_000, counter.get());
+        assertEquals(9_999.0 / 1_000_000.0, histogram.snapshot().maxMs, 0.0);
+    }
+
+    @Test
+    public void testRecord_WhenDisabled_ShouldSkipClockAndCounts() {
+        MetricsRegistry.setEnabled(false);
+
+        assertEquals(0L, histogram.start());
+        histogram.recordSince(histogram.start());
+        histogram.recordNanos(100);
+
+        assertEquals(0, histogram.getCount());
+    }
+}
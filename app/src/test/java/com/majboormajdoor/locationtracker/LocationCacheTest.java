@@ -0,0 +1,346 @@
+package com.majboormajdoor.locationtracker;
+
+import android.content.ComponentCallbacks2;
+import android.util.Log;
+
+import com.majboormajdoor.locationtracker.constants.AppConstants;
+import com.majboormajdoor.locationtracker.dto.Location;
+import com.majboormajdoor.locationtracker.logging.AppLog;
+import com.majboormajdoor.locationtracker.metrics.Counter;
+import com.majboormajdoor.locationtracker.metrics.MetricsRegistry;
+import com.majboormajdoor.locationtracker.storage.LocationCache;
+import com.majboormajdoor.locationtracker.storage.LocationStore;
+import com.majboormajdoor.locationtracker.storage.RetentionPolicy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.MockedStatic;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class LocationCacheTest {
+
+    private static final int WRITERS = 8;
+    private static final int BATCHES_PER_WRITER = 50;
+    private static final int BATCH_SIZE = 20;
+    private static final int READERS = 4;
+    private static final long HOUR = 60L * 60 * 1000;
+    private static final long WINDOW = 24 * HOUR;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private MockedStatic<Log> logMock;
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        logMock = mockStatic(Log.class);
+        // The static mock only covers this thread, keep the writer thread away from logcat
+        AppLog.setMinLevel(Integer.MAX_VALUE);
+        directory = temporaryFolder.newFolder("store");
+    }
+
+    @After
+    public void tearDown() {
+        AppLog.setMinLevel(BuildConfig.DEBUG ? Log.DEBUG : Log.INFO);
+        logMock.close();
+    }
+
+    @Test
+    public void testPutAll_ShouldBeVisibleBeforePersisted() throws InterruptedException {
+        LocationCache cache = newCache(RetentionPolicy.unlimited());
+        List<Location> batch = batch(0, 0);
+
+        cache.putAll(batch);
+
+        assertTrue(cache.snapshot().containsKey(LocationStore.keyOf(batch.get(0))));
+        cache.flush();
+        assertEquals(BATCH_SIZE, newStore(RetentionPolicy.unlimited()).size());
+    }
+
+    @Test
+    public void testPrepare_ShouldRunOnWriterBeforeFirstLoad() {
+        LocationStore store = newStore(RetentionPolicy.unlimited());
+        Location legacy = locationAt(System.currentTimeMillis() - HOUR);
+        AtomicReference<String> preparedOn = new AtomicReference<>();
+
+        // Stands in for the legacy preferences import, it writes to the store the cache then loads
+        LocationCache cache = new LocationCache(store, WINDOW, 100_000, () -> {
+            preparedOn.set(Thread.currentThread().getName());
+            try {
+                store.putAll(List.of(legacy));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        assertTrue(cache.snapshot().containsKey(LocationStore.keyOf(legacy)));
+        assertEquals("location-cache-writer", preparedOn.get());
+    }
+
+    @Test
+    public void testSnapshot_ShouldBeImmutable() {
+        LocationCache cache = newCache(RetentionPolicy.unlimited());
+        cache.putAll(batch(0, 0));
+
+        Map<String, Location> snapshot = cache.snapshot();
+
+        assertThrows(UnsupportedOperationException.class, snapshot::clear);
+    }
+
+    @Test
+    public void testClear_ShouldDropEarlierQueuedWrites() throws InterruptedException {
+        LocationCache cache = newCache(RetentionPolicy.unlimited());
+        cache.putAll(batch(0, 0));
+        cache.clear();
+        cache.putAll(batch(1, 0));
+
+        cache.flush();
+
+        assertEquals(BATCH_SIZE, cache.snapshot().size());
+        assertEquals(BATCH_SIZE, newStore(RetentionPolicy.unlimited()).size());
+    }
+
+    @Test
+    public void testPutAll_WithEviction_ShouldPruneSnapshot() throws InterruptedException {
+        LocationCache cache = newCache(new RetentionPolicy(0, 30, 0, 0, 0));
+
+        for (int i = 0; i < 5; i++) {
+            cache.putAll(batch(0, i));
+        }
+        cache.flush();
+
+        assertEquals(30, cache.snapshot().size());
+        assertEquals(30, newStore(RetentionPolicy.unlimited()).size());
+    }
+
+    @Test
+    public void testBetween_WithinHotWindow_ShouldHit() {
+        LocationCache cache = newCache(RetentionPolicy.unlimited());
+        long now = System.currentTimeMillis();
+        List<Location> locations = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            locations.add(locationAt(now - i * HOUR));
+        }
+        cache.putAll(locations);
+        cache.between(now - 2 * HOUR, Long.MAX_VALUE);
+        Counter hits = MetricsRegistry.getInstance().counter(AppConstants.METRIC_CACHE_HOT_HIT);
+        long hitsBefore = hits.get();
+
+        List<Location> recent = cache.between(now - 3 * HOUR - 1000, Long.MAX_VALUE);
+
+        assertEquals(hitsBefore + 1, hits.get());
+        assertEquals(4, recent.size());
+        assertEquals(locations.get(3).getInsertionTimestamp(), recent.get(0).getInsertionTimestamp());
+        assertEquals(locations.get(0).getInsertionTimestamp(), recent.get(3).getInsertionTimestamp());
+    }
+
+    @Test
+    public void testBetween_BeforeHotWindow_ShouldMissAndScanSnapshot() {
+        LocationCache cache = newCache(RetentionPolicy.unlimited());
+        long now = System.currentTimeMillis();
+        cache.putAll(List.of(locationAt(now - 3 * WINDOW), locationAt(now - HOUR)));
+        cache.between(now - HOUR - 1000, Long.MAX_VALUE);
+        Counter misses = MetricsRegistry.getInstance().counter(AppConstants.METRIC_CACHE_HOT_MISS);
+        long missesBefore = misses.get();
+
+        List<Location> all = cache.between(now - 4 * WINDOW, Long.MAX_VALUE);
+
+        assertEquals(missesBefore + 1, misses.get());
+        assertEquals(2, all.size());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testOnTrimMemory_ShouldReloadFromStore() throws InterruptedException {
+        LocationCache cache = newCache(RetentionPolicy.unlimited());
+        long now = System.currentTimeMillis();
+        cache.putAll(List.of(locationAt(now - HOUR), locationAt(now - 2 * HOUR)));
+        cache.flush();
+
+        cache.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        cache.flush();
+
+        assertEquals(2, cache.between(now - WINDOW, Long.MAX_VALUE).size());
+        assertEquals(2, cache.snapshot().size());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testOnTrimMemory_WhenOnlyHidden_ShouldKeepBothTiers() throws InterruptedException {
+        LocationCache cache = newCache(RetentionPolicy.unlimited());
+        long now = System.currentTimeMillis();
+        cache.putAll(List.of(locationAt(now - HOUR)));
+        cache.flush();
+        Map<String, Location> before = cache.snapshot();
+
+        cache.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        cache.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+        cache.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        cache.flush();
+
+        assertSame(before, cache.snapshot());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testOnTrimMemory_WritesWhileReleased_ShouldBeReplayed() throws InterruptedException {
+        LocationCache cache = newCache(RetentionPolicy.unlimited());
+        long now = System.currentTimeMillis();
+        cache.putAll(List.of(locationAt(now - HOUR)));
+        cache.flush();
+
+        cache.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        cache.flush();
+        cache.putAll(List.of(locationAt(now - 2 * HOUR), locationAt(now - 3 * HOUR)));
+
+        assertEquals(3, cache.between(now - WINDOW, Long.MAX_VALUE).size());
+        assertEquals(3, cache.snapshot().size());
+    }
+
+    @Test
+    public void testConcurrentWriters_ShouldNotLoseRecords() throws Exception {
+        LocationCache cache = newCache(RetentionPolicy.unlimited());
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch startGate = new CountDownLatch(1);
+
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < READERS; r++) {
+            Thread reader = new Thread(() -> {
+                int lastSize = 0;
+                while (!done.get()) {
+                    int size = cache.snapshot().size();
+                    if (size < lastSize) {
+                        failure.compareAndSet(null, new AssertionError("Snapshot shrank from " + lastSize + " to " + size));
+                        return;
+                    }
+                    lastSize = size;
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+
+        long elapsed = runWriters(startGate, failure, (writer, b) -> cache.putAll(batch(writer, b)));
+        cache.flush();
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertNull(String.valueOf(failure.get()), failure.get());
+        int expected = WRITERS * BATCHES_PER_WRITER * BATCH_SIZE;
+        assertEquals(expected, cache.snapshot().size());
+        assertEquals(expected, newStore(RetentionPolicy.unlimited()).size());
+        report("LocationCache", elapsed);
+    }
+
+    @Test
+    public void testSynchronizedStoreBaseline() throws Exception {
+        Benchmarks.assumeEnabled();
+        // What CacheLocations did before: a locked store write plus a full copy per read
+        LocationStore store = newStore(RetentionPolicy.unlimited());
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        long elapsed = runWriters(new CountDownLatch(1), failure, (writer, b) -> {
+            store.putAll(batch(writer, b));
+            store.readAll();
+        });
+
+        assertNull(String.valueOf(failure.get()), failure.get());
+        assertEquals(WRITERS * BATCHES_PER_WRITER * BATCH_SIZE, store.size());
+        report("Synchronized LocationStore", elapsed);
+    }
+
+    // Helper methods
+
+    private interface BatchWriter {
+        void write(int writer, int batch) throws Exception;
+    }
+
+    /**
+     * Run every writer thread to completion, returns elapsed nanos
+     */
+    private long runWriters(CountDownLatch startGate, AtomicReference<Throwable> failure,
+                            BatchWriter batchWriter) throws InterruptedException {
+        List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            int writer = w;
+            Thread thread = new Thread(() -> {
+                try {
+                    startGate.await();
+                    for (int b = 0; b < BATCHES_PER_WRITER; b++) {
+                        batchWriter.write(writer, b);
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            });
+            thread.start();
+            writers.add(thread);
+        }
+        long start = System.nanoTime();
+        startGate.countDown();
+        for (Thread thread : writers) {
+            thread.join();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private void report(String name, long elapsedNanos) {
+        int batches = WRITERS * BATCHES_PER_WRITER;
+        Benchmarks.report("%s: %d batches in %.1f ms, %.0f batches/s%n",
+                name, batches, elapsedNanos / 1e6, batches * 1e9 / elapsedNanos);
+    }
+
+    private LocationCache newCache(RetentionPolicy policy) {
+        return new LocationCache(newStore(policy), WINDOW, 100_000);
+    }
+
+    private LocationStore newStore(RetentionPolicy policy) {
+        LocationStore store = new LocationStore(directory);
+        store.setRetentionPolicy(policy);
+        return store;
+    }
+
+    /**
+     * Records with keys unique to the writer and batch
+     */
+    private List<Location> batch(int writer, int batch) {
+        List<Location> locations = new ArrayList<>();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            int second = batch * BATCH_SIZE + i;
+            String timestamp = String.format(Locale.US, "2023-01-01 %02d:%02d:%02d",
+                    second / 3600, (second / 60) % 60, second % 60);
+            Location location = new Location(37.7749, -122.4194, "test@example.com", timestamp);
+            location.setUserId("writer" + writer);
+            locations.add(location);
+        }
+        return locations;
+    }
+
+    private Location locationAt(long millis) {
+        String timestamp = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US).format(new Date(millis));
+        Location location = new Location(37.7749, -122.4194, "test@example.com", timestamp);
+        location.setUserId("user123");
+        return location;
+    }
+}
@@ -0,0 +1,176 @@
+package com.majboormajdoor.locationtracker;
+
+import com.majboormajdoor.locationtracker.dto.Location;
+import com.majboormajdoor.locationtracker.pipeline.LocationFilter;
+import com.majboormajdoor.locationtracker.storage.LocationColumns;
+import com.majboormajdoor.locationtracker.storage.Timestamps;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class LocationColumnsTest {
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    @Test
+    public void testRoundTrip_ShouldReproduceEveryField() {
+        List<Location> locations = new ArrayList<>();
+        locations.add(locationAt(0, "alice", "user123"));
+        locations.add(locationAt(60, null, "user123"));
+        Location iso = new Location(1.5, 2.5, "bob", "2024-01-01T00:02:00Z");
+        iso.setUserId("user456");
+        locations.add(iso);
+        locations.add(new Location(3.0, 4.0, "bob", "not a time"));
+
+        LocationColumns columns = LocationColumns.from(locations);
+
+        assertEquals(4, columns.size());
+        for (int row = 0; row < locations.size(); row++) {
+            Location expected = locations.get(row);
+            Location actual = columns.toLocation(row);
+            assertEquals(expected.getLatitude(), actual.getLatitude(), 0);
+            assertEquals(expected.getLongitude(), actual.getLongitude(), 0);
+            assertEquals(expected.getUserName(), actual.getUserName());
+            assertEquals(expected.getUserId(), actual.getUserId());
+            assertEquals(expected.getInsertionTimestamp(), actual.getInsertionTimestamp());
+        }
+        assertTrue(Float.isNaN(columns.getAccuracy(0)));
+        assertEquals(Timestamps.UNKNOWN, columns.getMillis(3));
+    }
+
+    @Test
+    public void testSliceAndSelect_ShouldKeepRowsAndTimestamps() {
+        List<Location> locations = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            locations.add(locationAt(i * 60, i % 2 == 0 ? "alice" : "bob", "user123"));
+        }
+        LocationColumns columns = LocationColumns.from(locations);
+
+        LocationColumns slice = columns.slice(2, 8);
+        LocationColumns alice = slice.select(slice.ofTrackie("alice"));
+
+        assertEquals(6, slice.size());
+        assertEquals(locations.get(2).getInsertionTimestamp(), slice.getTimestamp(0));
+        assertEquals(3, alice.size());
+        assertEquals(locations.get(6).getInsertionTimestamp(), alice.getTimestamp(2));
+        assertEquals("alice", alice.getTrackie(1));
+        assertEquals(0, slice.ofTrackie("carol").cardinality());
+
+        BitSet early = columns.timeBetween(columns.getMillis(0), columns.getMillis(5));
+        early.and(columns.ofTrackie("bob"));
+        assertEquals(2, early.cardinality());
+    }
+
+    @Test
+    public void testAccurateTo_ShouldKeepUnknownAccuracy() {
+        LocationColumns columns = new LocationColumns.Builder(3)
+                .add(0, 0, 0, 5f, "alice", "user123")
+                .add(0, 0, 1000, 50f, "alice", "user123")
+                .add(0, 0, 2000, Float.NaN, "alice", "user123")
+                .build();
+
+        BitSet accurate = columns.accurateTo(10f);
+
+        assertTrue(accurate.get(0));
+        assertFalse(accurate.get(1));
+        assertTrue(accurate.get(2));
+    }
+
+    @Test
+    public void testDistanceAndDaily_ShouldSumStepsPerTrackie() {
+        long day = 24L * 60 * 60 * 1000;
+        // alice walks one degree of latitude a day, bob stands still; their rows interleave
+        LocationColumns.Builder builder = new LocationColumns.Builder(8);
+        for (int i = 0; i < 4; i++) {
+            builder.add(i, 0, i * day / 2, Float.NaN, "alice", "user123");
+            builder.add(50, 50, i * day / 2 + 1000, Float.NaN, "bob", "user456");
+        }
+        LocationColumns columns = builder.build();
+        double step = LocationFilter.distanceMeters(0, 0, 1, 0);
+
+        LocationColumns.Daily daily = columns.daily(UTC);
+
+        assertEquals(3 * step, columns.distanceMeters(), 1e-6);
+        assertEquals(2, daily.size());
+        assertEquals(0, daily.getEpochDay(0));
+        assertEquals(4, daily.getCount(0));
+        assertEquals(step, daily.getDistanceMeters(0), 1e-6);
+        assertEquals(1, daily.getEpochDay(1));
+        assertEquals(2 * step, daily.getDistanceMeters(1), 1e-6);
+    }
+
+    @Test
+    public void testMemoryPerPointAndScan_AgainstLocationList() {
+        Benchmarks.assumeEnabled();
+        int points = 200_000;
+
+        long before = usedHeap();
+        List<Location> locations = new ArrayList<>(points);
+        for (int i = 0; i < points; i++) {
+            // Fresh strings per record, as LocationCodec decodes them
+            locations.add(locationAt(i, new String("alice"), new String("user123")));
+        }
+        long listBytes = usedHeap() - before;
+
+        before = usedHeap();
+        LocationColumns columns = LocationColumns.from(locations);
+        long columnBytes = usedHeap() - before;
+
+        long listNanos = Long.MAX_VALUE;
+        long columnNanos = Long.MAX_VALUE;
+        double listDistance = 0;
+        double columnDistance = 0;
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            listDistance = listDistance(locations);
+            listNanos = Math.min(listNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            columnDistance = columns.distanceMeters();
+            columnNanos = Math.min(columnNanos, System.nanoTime() - start);
+        }
+
+        Benchmarks.report("LocationColumns: %d points, List<Location> %.0f B/point, columns %.0f B/point "
+                        + "(%d estimated), distance scan %.1f ms vs %.1f ms%n",
+                points, (double) listBytes / points, (double) columnBytes / points,
+                LocationColumns.BYTES_PER_POINT, listNanos / 1e6, columnNanos / 1e6);
+        assertEquals(listDistance, columnDistance, 1e-3);
+        assertEquals(points, columns.size());
+        assertTrue("columns " + columnBytes + " vs list " + listBytes, columnBytes * 3 < listBytes);
+    }
+
+    // Helper methods
+
+    private double listDistance(List<Location> locations) {
+        double total = 0;
+        for (int i = 1; i < locations.size(); i++) {
+            Location a = locations.get(i - 1);
+            Location b = locations.get(i);
+            total += LocationFilter.distanceMeters(a.getLatitude(), a.getLongitude(), b.getLatitude(), b.getLongitude());
+        }
+        return total;
+    }
+
+    private long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * One record per second, local time, 1e-4 degrees north per record
+     */
+    private Location locationAt(int second, String trackie, String userId) {
+        long millis = Timestamps.parseMillis("2024-01-01 00:00:00") + second * 1000L;
+        Location location = new Location(37.0 + second * 1e-4, -122.0, trackie, Timestamps.format(millis));
+        location.setUserId(userId);
+        return location;
+    }
+}
@@ -0,0 +1,316 @@
+package com.majboormajdoor.locationtracker;
+
+import android.util.Log;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.majboormajdoor.locationtracker.dto.Location;
+import com.majboormajdoor.locationtracker.export.ExportFormat;
+import com.majboormajdoor.locationtracker.export.ExportRequest;
+import com.majboormajdoor.locationtracker.export.LocationExporter;
+import com.majboormajdoor.locationtracker.storage.DailyRollup;
+import com.majboormajdoor.locationtracker.storage.Timestamps;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockedStatic;
+import org.w3c.dom.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class LocationExporterTest {
+
+    private static final long DAY = 24L * 60 * 60 * 1000;
+    private static final long START = Timestamps.parseMillis("2024-01-01T00:00:00Z");
+
+    private MockedStatic<Log> logMock;
+
+    @Before
+    public void setUp() {
+        logMock = mockStatic(Log.class);
+    }
+
+    @After
+    public void tearDown() {
+        logMock.close();
+    }
+
+    @Test
+    public void testExportGpx_ShouldWriteOneTrackPerTrackie() throws Exception {
+        // Chunks of two records split the first trackie's day into two reads
+        Document document = parseXml(export(ExportRequest.everything(ExportFormat.GPX), 2));
+
+        assertEquals(2, document.getElementsByTagName("trk").getLength());
+        assertEquals(5, document.getElementsByTagName("trkpt").getLength());
+        assertEquals("A&B, Co", document.getElementsByTagName("name").item(0).getTextContent());
+        assertEquals("0.0000100", document.getElementsByTagName("trkpt").item(1).getAttributes()
+                .getNamedItem("lat").getNodeValue());
+    }
+
+    @Test
+    public void testExportKml_ShouldBeWellFormed() throws Exception {
+        Document document = parseXml(export(ExportRequest.everything(ExportFormat.KML), 1000));
+
+        assertEquals(2, document.getElementsByTagName("Folder").getLength());
+        assertEquals(5, document.getElementsByTagName("Placemark").getLength());
+        assertEquals("2024-01-01T00:00:00Z", document.getElementsByTagName("when").item(0).getTextContent());
+    }
+
+    @Test
+    public void testExportGeoJson_WithTrackieAndRange_ShouldOnlyWriteMatches() throws IOException {
+        LocationExporter exporter = new LocationExporter(new ListSource(sampleLocations()));
+        ExportRequest request = new ExportRequest(ExportFormat.GEOJSON, START, START + DAY, "walker", false);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        int written = exporter.export(request, out);
+
+        JsonObject collection = JsonParser.parseString(out.toString("UTF-8")).getAsJsonObject();
+        assertEquals(2, written);
+        assertEquals(2, collection.getAsJsonArray("features").size());
+        JsonObject feature = collection.getAsJsonArray("features").get(1).getAsJsonObject();
+        assertEquals("walker", feature.getAsJsonObject("properties").get("trackie").getAsString());
+        assertEquals(-122.0, feature.getAsJsonObject("geometry").getAsJsonArray("coordinates").get(0).getAsDouble(), 0);
+    }
+
+    @Test
+    public void testExportCsv_Zipped_ShouldHoldOneQuotedEntry() throws IOException {
+        LocationExporter exporter = new LocationExporter(new ListSource(sampleLocations()));
+        ExportRequest request = new ExportRequest(ExportFormat.CSV, Long.MIN_VALUE, Long.MAX_VALUE, null, true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        exporter.export(request, out);
+
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry entry = zip.getNextEntry();
+            assertEquals("locations.csv", entry.getName());
+            String[] lines = new String(zip.readAllBytes(), StandardCharsets.UTF_8).split("\n");
+            assertEquals(6, lines.length);
+            assertEquals("trackie,user_id,time_utc,latitude,longitude", lines[0]);
+            assertTrue(lines[1], lines[1].startsWith("\"A&B, Co\",user1,2024-01-01T00:00:00Z,"));
+            assertNull(zip.getNextEntry());
+        }
+    }
+
+    @Test
+    public void testExport_LongHistory_ShouldReadInBoundedChunks() throws IOException {
+        GeneratedSource source = new GeneratedSource(2, 10, 500);
+
+        int written = new LocationExporter(source)
+                .export(new ExportRequest(ExportFormat.CSV, Long.MIN_VALUE, Long.MAX_VALUE, null, false),
+                        new CountingOutputStream());
+
+        assertEquals(10_000, written);
+        assertTrue("largest read " + source.largestRead, source.largestRead <= 500);
+    }
+
+    @Test
+    public void testExportBenchmark_OneMillionPoints() throws IOException {
+        Benchmarks.assumeEnabled();
+        GeneratedSource source = new GeneratedSource(2, 100, 5_000);
+        LocationExporter exporter = new LocationExporter(source);
+        CountingOutputStream out = new CountingOutputStream();
+
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                heapPools.add(pool);
+            }
+        }
+        long start = System.nanoTime();
+        int written = exporter.export(new ExportRequest(ExportFormat.GPX, Long.MIN_VALUE, Long.MAX_VALUE, null, true), out);
+        long elapsed = System.nanoTime() - start;
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            peakHeap += pool.getPeakUsage().getUsed();
+        }
+
+        Benchmarks.report("LocationExporter: %d points as zipped GPX in %.0f ms, %.0f points/s, %.1f MB written, "
+                        + "largest read %d records, peak heap %.0f MB%n",
+                written, elapsed / 1e6, written * 1e9 / elapsed, out.count / 1e6,
+                source.largestRead, peakHeap / 1e6);
+        assertEquals(1_000_000, written);
+        assertTrue("largest read " + source.largestRead, source.largestRead <= 5_000);
+    }
+
+    // Helper methods
+
+    private String export(ExportRequest request, int chunkRecords) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new LocationExporter(new ListSource(sampleLocations()), chunkRecords).export(request, out);
+        return out.toString("UTF-8");
+    }
+
+    private Document parseXml(String xml) throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Three points for a trackie whose name needs escaping and two for "walker", all on one day
+     */
+    private List<Location> sampleLocations() {
+        List<Location> locations = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            locations.add(location(START + i * 60_000L, i * 0.00001, -122.0, "A&B, Co", "user1"));
+        }
+        locations.add(location(START + 3_600_000L, 37.0, -122.0, "walker", "user2"));
+        locations.add(location(START + 7_200_000L, 37.1, -122.0, "walker", "user2"));
+        return locations;
+    }
+
+    private static Location location(long millis, double latitude, double longitude, String trackie, String userId) {
+        Location location = new Location(latitude, longitude, trackie, Timestamps.formatIso(millis));
+        location.setUserId(userId);
+        return location;
+    }
+
+    /**
+     * Per-UTC-day rollups with a per-trackie breakdown, counts and time bounds only
+     */
+    private static List<DailyRollup> rollupsOf(Map<Long, Map<String, long[]>> byDay) {
+        List<DailyRollup> rollups = new ArrayList<>();
+        for (Map.Entry<Long, Map<String, long[]>> day : byDay.entrySet()) {
+            Map<String, DailyRollup> trackies = new LinkedHashMap<>();
+            int count = 0;
+            long first = Long.MAX_VALUE;
+            long last = Long.MIN_VALUE;
+            for (Map.Entry<String, long[]> trackie : day.getValue().entrySet()) {
+                long[] stats = trackie.getValue(); // count, first, last
+                trackies.put(trackie.getKey(), new DailyRollup(day.getKey(), (int) stats[0], stats[1], stats[2],
+                        0, 0, 0, 0, 0, new HashMap<>()));
+                count += (int) stats[0];
+                first = Math.min(first, stats[1]);
+                last = Math.max(last, stats[2]);
+            }
+            rollups.add(new DailyRollup(day.getKey(), count, first, last, 0, 0, 0, 0, 0, trackies));
+        }
+        return rollups;
+    }
+
+    /**
+     * In-memory records, oldest first
+     */
+    private static final class ListSource implements LocationExporter.LocationSource {
+        private final List<Location> locations;
+
+        ListSource(List<Location> locations) {
+            this.locations = locations;
+        }
+
+        @Override
+        public List<DailyRollup> dailyRollups() {
+            Map<Long, Map<String, long[]>> byDay = new TreeMap<>();
+            for (Location location : locations) {
+                long millis = Timestamps.parseMillis(location.getInsertionTimestamp());
+                Map<String, long[]> trackies = byDay.computeIfAbsent(Math.floorDiv(millis, DAY), d -> new TreeMap<>());
+                long[] stats = trackies.computeIfAbsent(location.getUserName(), t -> new long[]{0, Long.MAX_VALUE, Long.MIN_VALUE});
+                stats[0]++;
+                stats[1] = Math.min(stats[1], millis);
+                stats[2] = Math.max(stats[2], millis);
+            }
+            return rollupsOf(byDay);
+        }
+
+        @Override
+        public List<Location> read(String trackie, long fromMillis, long toMillis) {
+            List<Location> result = new ArrayList<>();
+            for (Location location : locations) {
+                long millis = Timestamps.parseMillis(location.getInsertionTimestamp());
+                if (trackie.equals(location.getUserName()) && millis >= fromMillis && millis < toMillis) {
+                    result.add(location);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Evenly spaced points created on demand, so the benchmark itself holds no history
+     */
+    private static final class GeneratedSource implements LocationExporter.LocationSource {
+        private final int trackies;
+        private final int days;
+        private final int perDay;
+        private final long step;
+        int largestRead;
+
+        GeneratedSource(int trackies, int days, int perDay) {
+            this.trackies = trackies;
+            this.days = days;
+            this.perDay = perDay;
+            this.step = DAY / perDay;
+        }
+
+        @Override
+        public List<DailyRollup> dailyRollups() {
+            Map<Long, Map<String, long[]>> byDay = new TreeMap<>();
+            long startDay = Math.floorDiv(START, DAY);
+            for (int d = 0; d < days; d++) {
+                Map<String, long[]> byTrackie = new TreeMap<>();
+                for (int t = 0; t < trackies; t++) {
+                    long first = START + d * DAY + t * 1000L;
+                    byTrackie.put("trackie" + t, new long[]{perDay, first, first + (perDay - 1) * step});
+                }
+                byDay.put(startDay + d, byTrackie);
+            }
+            return rollupsOf(byDay);
+        }
+
+        @Override
+        public List<Location> read(String trackie, long fromMillis, long toMillis) {
+            int t = Integer.parseInt(trackie.substring("trackie".length()));
+            long offset = START + t * 1000L;
+            long firstIndex = Math.max(0, ceilDiv(fromMillis - offset, step));
+            long lastIndex = Math.min((long) days * perDay, ceilDiv(toMillis - offset, step));
+            List<Location> result = new ArrayList<>((int) Math.max(0, lastIndex - firstIndex));
+            for (long i = firstIndex; i < lastIndex; i++) {
+                long millis = offset + (i / perDay) * DAY + (i % perDay) * step;
+                result.add(location(millis, 37.0 + (i % 1000) * 1e-5, -122.0, trackie, "user" + t));
+            }
+            largestRead = Math.max(largestRead, result.size());
+            return result;
+        }
+
+        private static long ceilDiv(long value, long divisor) {
+            return -Math.floorDiv(-value, divisor);
+        }
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.majboormajdoor.locationtracker;
+
+import com.majboormajdoor.locationtracker.pipeline.LocationFilter;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LocationFilterTest {
+
+    private static final long MINUTE = 60_000L;
+    private static final double LATITUDE = 51.5;
+    private static final double LONGITUDE = -0.12;
+    // About 11 m of latitude
+    private static final double ELEVEN_METERS = 0.0001;
+
+    private LocationFilter filter;
+    private long now;
+
+    @Before
+    public void setUp() {
+        filter = new LocationFilter(10f, 100f, 30 * MINUTE);
+        now = 1_700_000_000_000L;
+    }
+
+    @Test
+    public void testEvaluate_FirstFix_ShouldBeAccepted() {
+        assertEquals(LocationFilter.Decision.ACCEPT, filter.evaluate(LATITUDE, LONGITUDE, 5f, now));
+    }
+
+    @Test
+    public void testEvaluate_SamePositionOrSameTime_ShouldBeDuplicate() {
+        filter.evaluate(LATITUDE, LONGITUDE, 5f, now);
+
+        assertEquals(LocationFilter.Decision.DUPLICATE, filter.evaluate(LATITUDE, LONGITUDE, 5f, now + MINUTE));
+        assertEquals(LocationFilter.Decision.DUPLICATE, filter.evaluate(LATITUDE + 0.01, LONGITUDE, 5f, now));
+    }
+
+    @Test
+    public void testEvaluate_PoorAccuracy_ShouldBeDroppedEvenAsFirstFix() {
+        assertEquals(LocationFilter.Decision.LOW_ACCURACY, filter.evaluate(LATITUDE, LONGITUDE, 150f, now));
+        // The rejected fix did not become the reference point
+        assertEquals(LocationFilter.Decision.ACCEPT, filter.evaluate(LATITUDE, LONGITUDE, 100f, now + MINUTE));
+        assertEquals(LocationFilter.Decision.LOW_ACCURACY,
+                filter.evaluate(LATITUDE + 0.1, LONGITUDE, 300f, now + 2 * MINUTE));
+    }
+
+    @Test
+    public void testEvaluate_UnknownAccuracy_ShouldPassAccuracyGate() {
+        assertEquals(LocationFilter.Decision.ACCEPT, filter.evaluate(LATITUDE, LONGITUDE, 0f, now));
+    }
+
+    @Test
+    public void testEvaluate_MovementBelowMinimumDistance_ShouldBeStationary() {
+        filter.evaluate(LATITUDE, LONGITUDE, 0f, now);
+
+        assertEquals(LocationFilter.Decision.STATIONARY,
+                filter.evaluate(LATITUDE + ELEVEN_METERS / 2, LONGITUDE, 0f, now + MINUTE));
+        assertEquals(LocationFilter.Decision.ACCEPT,
+                filter.evaluate(LATITUDE + ELEVEN_METERS, LONGITUDE, 0f, now + 2 * MINUTE));
+    }
+
+    @Test
+    public void testEvaluate_MovementInsideAccuracyRadius_ShouldBeStationary() {
+        // 11 m clears the 10 m minimum but not a 40 m accuracy radius on either fix
+        filter.evaluate(LATITUDE, LONGITUDE, 40f, now);
+        assertEquals(LocationFilter.Decision.STATIONARY,
+                filter.evaluate(LATITUDE + ELEVEN_METERS, LONGITUDE, 5f, now + MINUTE));
+
+        filter.reset();
+        filter.evaluate(LATITUDE, LONGITUDE, 5f, now);
+        assertEquals(LocationFilter.Decision.STATIONARY,
+                filter.evaluate(LATITUDE + ELEVEN_METERS, LONGITUDE, 40f, now + MINUTE));
+        assertEquals(LocationFilter.Decision.ACCEPT,
+                filter.evaluate(LATITUDE + 5 * ELEVEN_METERS, LONGITUDE, 40f, now + 2 * MINUTE));
+    }
+
+    @Test
+    public void testEvaluate_StationaryLongEnough_ShouldSendHeartbeat() {
+        filter.evaluate(LATITUDE, LONGITUDE, 5f, now);
+
+        assertEquals(LocationFilter.Decision.DUPLICATE, filter.evaluate(LATITUDE, LONGITUDE, 5f, now + 29 * MINUTE));
+        assertEquals(LocationFilter.Decision.HEARTBEAT, filter.evaluate(LATITUDE, LONGITUDE, 5f, now + 30 * MINUTE));
+        // The heartbeat is the new reference, the next one is another full interval away
+        assertEquals(LocationFilter.Decision.STATIONARY,
+                filter.evaluate(LATITUDE + ELEVEN_METERS / 4, LONGITUDE, 5f, now + 59 * MINUTE));
+        assertEquals(LocationFilter.Decision.HEARTBEAT,
+                filter.evaluate(LATITUDE + ELEVEN_METERS / 4, LONGITUDE, 5f, now + 60 * MINUTE));
+    }
+
+    @Test
+    public void testEvaluate_WithHeartbeatDisabled_ShouldStaySuppressed() {
+        filter = new LocationFilter(10f, 0f, 0L);
+        filter.evaluate(LATITUDE, LONGITUDE, 500f, now);
+
+        assertEquals(LocationFilter.Decision.DUPLICATE, filter.evaluate(LATITUDE, LONGITUDE, 500f, now + 600 * MINUTE));
+    }
+
+    @Test
+    public void testDistanceMeters_ShouldMatchKnownDistance() {
+        // London to Paris, about 343.5 km
+        assertEquals(343_500, LocationFilter.distanceMeters(51.5074, -0.1278, 48.8566, 2.3522), 1_000);
+        assertEquals(0.0, LocationFilter.distanceMeters(LATITUDE, LONGITUDE, LATITUDE, LONGITUDE), 0.0);
+    }
+}
@@ -0,0 +1,284 @@
+package com.majboormajdoor.locationtracker;
+
+import android.util.Log;
+
+import com.majboormajdoor.locationtracker.dto.Location;
+import com.majboormajdoor.locationtracker.export.ExportFormat;
+import com.majboormajdoor.locationtracker.export.ImportRequest;
+import com.majboormajdoor.locationtracker.export.LocationImporter;
+import com.majboormajdoor.locationtracker.logging.AppLog;
+import com.majboormajdoor.locationtracker.storage.DailyRollup;
+import com.majboormajdoor.locationtracker.storage.LocationCache;
+import com.majboormajdoor.locationtracker.storage.LocationStore;
+import com.majboormajdoor.locationtracker.storage.RetentionPolicy;
+import com.majboormajdoor.locationtracker.storage.Timestamps;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.MockedStatic;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class LocationImporterTest {
+
+    private static final long START = Timestamps.parseMillis("2024-01-01T00:00:00Z");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private MockedStatic<Log> logMock;
+
+    @Before
+    public void setUp() {
+        logMock = mockStatic(Log.class);
+        // The static mock only covers this thread, keep the cache's writer thread away from logcat
+        AppLog.setMinLevel(Integer.MAX_VALUE);
+    }
+
+    @After
+    public void tearDown() {
+        AppLog.setMinLevel(BuildConfig.DEBUG ? Log.DEBUG : Log.INFO);
+        logMock.close();
+    }
+
+    @Test
+    public void testParseIsoMillis_ShouldHandleFractionsAndOffsets() {
+        assertEquals(START, Timestamps.parseIsoMillis("2024-01-01T00:00:00Z"));
+        assertEquals(START + 250, Timestamps.parseIsoMillis("2024-01-01T00:00:00.25Z"));
+        assertEquals(START - 2 * 3_600_000L, Timestamps.parseIsoMillis("2024-01-01T00:00:00+02:00"));
+        assertEquals(Timestamps.parseMillis("2024-01-01 00:00:00"), Timestamps.parseIsoMillis("2024-01-01T00:00:00"));
+        assertEquals(Timestamps.UNKNOWN, Timestamps.parseIsoMillis("yesterday"));
+    }
+
+    @Test
+    public void testFeedGpx_ShouldNameTrackiesAfterTracks() throws IOException {
+        String gpx = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<gpx version=\"1.1\" xmlns=\"http://www.topografix.com/GPX/1/1\">"
+                + "<trk><name>A&amp;B</name><trkseg>"
+                + "<trkpt lat=\"37.0\" lon=\"-122.0\"><time>2024-01-01T00:01:00Z</time></trkpt>"
+                + "<trkpt lat=\"37.1\" lon=\"-122.1\"><time>2024-01-01T00:00:00Z</time></trkpt>"
+                + "<trkpt lat=\"37.2\" lon=\"-122.2\"></trkpt>"
+                + "</trkseg></trk>"
+                + "<wpt lat=\"1.5\" lon=\"2.5\"><name>cafe</name><time>2024-01-02T00:00:00Z</time></wpt>"
+                + "</gpx>";
+
+        List<Location> locations = feed(ExportFormat.GPX, gpx);
+
+        assertEquals(3, locations.size());
+        // Sorted by time within the batch, the point without a time is skipped
+        assertEquals(37.1, locations.get(0).getLatitude(), 0);
+        assertEquals("A&B", locations.get(0).getUserName());
+        assertEquals(START, Timestamps.parseMillis(locations.get(0).getInsertionTimestamp()));
+        assertEquals("imported", locations.get(2).getUserName());
+        assertEquals("me", locations.get(2).getUserId());
+    }
+
+    @Test
+    public void testFeedKml_ShouldReadTimedPointPlacemarks() throws IOException {
+        String kml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<kml xmlns=\"http://www.opengis.net/kml/2.2\"><Document><name>export</name>"
+                + "<Folder><name>walker</name>"
+                + "<Placemark><TimeStamp><when>2024-01-01T00:00:00Z</when></TimeStamp>"
+                + "<Point><coordinates>-122.0000000,37.0000000</coordinates></Point></Placemark>"
+                + "<Placemark><LineString><coordinates>1,2 3,4</coordinates></LineString></Placemark>"
+                + "</Folder></Document></kml>";
+
+        List<Location> locations = feed(ExportFormat.KML, kml);
+
+        assertEquals(1, locations.size());
+        assertEquals("walker", locations.get(0).getUserName());
+        assertEquals(-122.0, locations.get(0).getLongitude(), 0);
+    }
+
+    @Test
+    public void testFeedGpx_WithDoctype_ShouldRefuseEntities() throws IOException {
+        File secret = temporaryFolder.newFile("secret.txt");
+        Files.write(secret.toPath(), "leaked".getBytes(StandardCharsets.UTF_8));
+        String gpx = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<!DOCTYPE gpx [<!ENTITY xxe SYSTEM \"" + secret.toURI() + "\">]>"
+                + "<gpx version=\"1.1\" xmlns=\"http://www.topografix.com/GPX/1/1\">"
+                + "<wpt lat=\"1.5\" lon=\"2.5\"><name>&xxe;</name><time>2024-01-02T00:00:00Z</time></wpt>"
+                + "</gpx>";
+
+        try {
+            feed(ExportFormat.GPX, gpx);
+            fail("DOCTYPE was accepted");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().startsWith("Unreadable GPX"));
+        }
+    }
+
+    @Test
+    public void testFeedGeoJsonAndCsv_ShouldReadProperties() throws IOException {
+        String geoJson = "{\"type\":\"FeatureCollection\",\"features\":["
+                + "{\"type\":\"Feature\",\"properties\":{\"trackie\":\"walker\",\"userId\":\"user2\","
+                + "\"time\":\"2024-01-01T01:00:00Z\"},\"geometry\":{\"type\":\"Point\",\"coordinates\":[-122.0,37.0]}},"
+                + "{\"type\":\"Feature\",\"geometry\":{\"type\":\"LineString\",\"coordinates\":[[0,0],[1,1]]}}]}";
+        String csv = "latitude,longitude,time_utc,trackie\n"
+                + "37.0,-122.0,2024-01-01T00:00:00Z,\"A&B, Co\"\n"
+                + "not a number,-122.0,2024-01-01T00:00:00Z,x\n"
+                + "91.0,-122.0,2024-01-01T00:00:00Z,x\n";
+
+        List<Location> fromJson = feed(ExportFormat.GEOJSON, geoJson);
+        List<Location> fromCsv = feed(ExportFormat.CSV, csv);
+
+        assertEquals(1, fromJson.size());
+        assertEquals("walker", fromJson.get(0).getUserName());
+        assertEquals("user2", fromJson.get(0).getUserId());
+        assertEquals(1, fromCsv.size());
+        assertEquals("A&B, Co", fromCsv.get(0).getUserName());
+        assertEquals("me", fromCsv.get(0).getUserId());
+    }
+
+    @Test
+    public void testImportInto_ShouldLoadStoreAndRollupsOnce() throws Exception {
+        LocationStore store = new LocationStore(temporaryFolder.newFolder("store"));
+        // The generated history is older than the default retention keeps
+        store.setRetentionPolicy(RetentionPolicy.unlimited());
+        LocationCache cache = new LocationCache(store, 24L * 60 * 60 * 1000, 100_000);
+        int records = 100_000;
+        List<Integer> progress = new ArrayList<>();
+        LocationImporter importer = new LocationImporter(new ImportRequest(ExportFormat.CSV, "imported", "me"),
+                10_000, (count, bytes) -> progress.add(count));
+
+        long start = System.nanoTime();
+        int imported = importer.importInto(cache, new GeneratedCsv(records, 2));
+        long elapsed = System.nanoTime() - start;
+
+        Benchmarks.report("LocationImporter: %d records into the store in %.0f ms, %.0f records/s%n",
+                imported, elapsed / 1e6, imported * 1e9 / elapsed);
+        assertEquals(records, imported);
+        assertEquals(10, progress.size());
+        assertEquals(records, cache.snapshot().size());
+        int rolledUp = 0;
+        for (DailyRollup day : cache.dailyRollups()) {
+            rolledUp += day.getCount();
+        }
+        assertEquals(records, rolledUp);
+
+        // Saved once at the end, a fresh store loads everything back
+        LocationStore reloaded = new LocationStore(new File(temporaryFolder.getRoot(), "store"));
+        reloaded.setRetentionPolicy(RetentionPolicy.unlimited());
+        assertEquals(records, reloaded.size());
+    }
+
+    @Test
+    public void testFeedBenchmark_OneMillionCsvRows() throws IOException {
+        Benchmarks.assumeEnabled();
+        int records = 1_000_000;
+        int[] largestBatch = new int[1];
+        int[] received = new int[1];
+        LocationImporter importer = new LocationImporter(new ImportRequest(ExportFormat.CSV, "imported", "me"), null);
+
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                heapPools.add(pool);
+            }
+        }
+        GeneratedCsv csv = new GeneratedCsv(records, 4);
+        long start = System.nanoTime();
+        int parsed = importer.feed(csv, batch -> {
+            largestBatch[0] = Math.max(largestBatch[0], batch.size());
+            received[0] += batch.size();
+        });
+        long elapsed = System.nanoTime() - start;
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            peakHeap += pool.getPeakUsage().getUsed();
+        }
+
+        Benchmarks.report("LocationImporter: %d CSV rows parsed in %.0f ms, %.0f records/s, %.1f MB read, "
+                        + "largest batch %d records, peak heap %.0f MB%n",
+                parsed, elapsed / 1e6, parsed * 1e9 / elapsed, csv.bytes / 1e6, largestBatch[0], peakHeap / 1e6);
+        assertEquals(records, parsed);
+        assertEquals(records, received[0]);
+        assertTrue("largest batch " + largestBatch[0], largestBatch[0] <= 50_000);
+    }
+
+    // Helper methods
+
+    private List<Location> feed(ExportFormat format, String content) throws IOException {
+        List<Location> locations = new ArrayList<>();
+        new LocationImporter(new ImportRequest(format, "imported", "me"), null)
+                .feed(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), locations::addAll);
+        return locations;
+    }
+
+    /**
+     * CSV export of evenly spaced points, produced line by line so the test holds no history
+     */
+    private static final class GeneratedCsv extends InputStream {
+        private final int records;
+        private final int trackies;
+        private final StringBuilder line = new StringBuilder();
+        private byte[] buffer = "trackie,user_id,time_utc,latitude,longitude\n".getBytes(StandardCharsets.US_ASCII);
+        private int position;
+        private int next;
+        long bytes;
+
+        GeneratedCsv(int records, int trackies) {
+            this.records = records;
+            this.trackies = trackies;
+        }
+
+        @Override
+        public int read() {
+            if (!fill()) {
+                return -1;
+            }
+            bytes++;
+            return buffer[position++];
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) {
+            if (!fill()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.length - position);
+            System.arraycopy(buffer, position, target, offset, count);
+            position += count;
+            bytes += count;
+            return count;
+        }
+
+        private boolean fill() {
+            if (position < buffer.length) {
+                return true;
+            }
+            if (next >= records) {
+                return false;
+            }
+            // One point a second per trackie
+            line.setLength(0);
+            int t = next % trackies;
+            line.append("trackie").append(t).append(",user").append(t).append(',')
+                    .append(Timestamps.formatIso(START + (next / trackies) * 1000L)).append(',')
+                    .append(37.0 + (next % 1000) * 1e-5).append(",-122.0\n");
+            buffer = line.toString().getBytes(StandardCharsets.US_ASCII);
+            position = 0;
+            next++;
+            return true;
+        }
+    }
+}
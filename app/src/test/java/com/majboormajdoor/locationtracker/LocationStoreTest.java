@@ -0,0 +1,555 @@
+package com.majboormajdoor.locationtracker;
+
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.majboormajdoor.locationtracker.constants.AppConstants;
+import com.majboormajdoor.locationtracker.dto.Location;
+import com.majboormajdoor.locationtracker.pipeline.LocationFilter;
+import com.majboormajdoor.locationtracker.storage.DailyRollup;
+import com.majboormajdoor.locationtracker.storage.LocationCodec;
+import com.majboormajdoor.locationtracker.storage.LocationStore;
+import com.majboormajdoor.locationtracker.storage.RetentionPolicy;
+import com.majboormajdoor.locationtracker.storage.Timestamps;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.MockedStatic;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class LocationStoreTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private MockedStatic<Log> logMock;
+    private File directory;
+    private Gson gson;
+
+    @Before
+    public void setUp() throws IOException {
+        logMock = mockStatic(Log.class);
+        directory = temporaryFolder.newFolder("store");
+        gson = new Gson();
+    }
+
+    @After
+    public void tearDown() {
+        logMock.close();
+    }
+
+    @Test
+    public void testPutAll_WithValidLocations_ShouldPersistOneSegmentPerTrackie() throws IOException {
+        // Arrange
+        LocationStore store = newStore();
+
+        // Act
+        store.putAll(createTestLocations());
+
+        // Assert
+        assertEquals(2, segmentFiles().length);
+        assertFalse(new File(directory, AppConstants.LOCATION_STORE_FILE_NAME).exists());
+        Map<String, Location> reloaded = newStore().readAll();
+        assertEquals(2, reloaded.size());
+        Location location = reloaded.get("user123_2023-01-01T12:00:00Z");
+        assertNotNull(location);
+        assertEquals(37.7749, location.getLatitude(), 0.0);
+        assertEquals(-122.4194, location.getLongitude(), 0.0);
+        assertEquals("test1@example.com", location.getUserName());
+    }
+
+    @Test
+    public void testPutAll_WithEmptyList_ShouldKeepStoreEmpty() throws IOException {
+        LocationStore store = newStore();
+
+        store.putAll(new ArrayList<>());
+
+        assertTrue(newStore().readAll().isEmpty());
+    }
+
+    @Test
+    public void testPutAll_WithExistingData_ShouldMergeLocations() throws IOException {
+        LocationStore store = newStore();
+        List<Location> locations = createTestLocations();
+        store.putAll(locations.subList(0, 1));
+
+        newStore().putAll(locations.subList(1, 2));
+
+        assertEquals(2, newStore().size());
+    }
+
+    @Test
+    public void testPutAll_WithDuplicateKeys_ShouldOverwriteExisting() throws IOException {
+        LocationStore store = newStore();
+        List<Location> locations = new ArrayList<>();
+        Location location1 = new Location(37.7749, -122.4194, "test@example.com", "2023-01-01T12:00:00Z");
+        location1.setUserId("user123");
+        Location location2 = new Location(37.7750, -122.4195, "test@example.com", "2023-01-01T12:00:00Z");
+        location2.setUserId("user123"); // Same userId and timestamp
+        locations.add(location1);
+        locations.add(location2);
+
+        store.putAll(locations);
+
+        Map<String, Location> result = newStore().readAll();
+        assertEquals(1, result.size());
+        assertEquals(37.7750, result.get("user123_2023-01-01T12:00:00Z").getLatitude(), 0.0);
+    }
+
+    @Test
+    public void testPutAll_WithNullAndSpecialCharacters_ShouldRoundTrip() throws IOException {
+        LocationStore store = newStore();
+        Location special = new Location(37.7749, -122.4194, "test+special@example.com", "2023-01-01T12:00:00Z");
+        special.setUserId("user@#$%\u00e9");
+        Location nulls = new Location(1.0, 2.0, null, "2023-01-02T12:00:00Z");
+        List<Location> locations = new ArrayList<>();
+        locations.add(special);
+        locations.add(nulls);
+
+        store.putAll(locations);
+
+        Map<String, Location> result = newStore().readAll();
+        assertEquals("test+special@example.com", result.get("user@#$%\u00e9_2023-01-01T12:00:00Z").getUserName());
+        Location reloaded = result.get("null_2023-01-02T12:00:00Z");
+        assertNull(reloaded.getUserName());
+        assertNull(reloaded.getUserId());
+    }
+
+    @Test
+    public void testReadAll_WithNoFile_ShouldReturnEmptyMap() {
+        Map<String, Location> result = newStore().readAll();
+
+        assertNotNull(result);
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    public void testReadAll_WithCorruptFile_ShouldReturnEmptyMap() throws IOException {
+        try (FileOutputStream out = new FileOutputStream(new File(directory, AppConstants.LOCATION_STORE_FILE_NAME))) {
+            out.write("invalid data".getBytes());
+        }
+
+        Map<String, Location> result = newStore().readAll();
+
+        assertNotNull(result);
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    public void testClear_ShouldRemoveAllStoredData() throws IOException {
+        LocationStore store = newStore();
+        store.putAll(createTestLocations());
+
+        store.clear();
+
+        assertEquals(0, store.size());
+        assertTrue(newStore().readAll().isEmpty());
+    }
+
+    @Test
+    public void testLoad_WhenInterrupted_ShouldStillLoadEveryPartition() throws IOException {
+        List<Location> locations = locationsEvery(60_000, 10);
+        for (int i = 0; i < locations.size(); i++) {
+            locations.get(i).setUserName("trackie" + (i % 3));
+        }
+        newStore().putAll(locations);
+
+        LocationStore store = newStore();
+        Thread.currentThread().interrupt();
+        try {
+            assertEquals(10, store.readOrdered(0, Long.MAX_VALUE).size());
+            assertEquals(3, store.getTrackies().size());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    public void testImportLegacyJson_ShouldMigratePreferencesBlob() throws IOException {
+        LocationStore store = newStore();
+        Map<String, Location> legacy = new HashMap<>();
+        for (Location location : createTestLocations()) {
+            legacy.put(location.getUserId() + "_" + location.getInsertionTimestamp(), location);
+        }
+
+        int migrated = store.importLegacyJson(gson.toJson(legacy));
+
+        assertEquals(2, migrated);
+        assertEquals(legacy.keySet(), newStore().readAll().keySet());
+    }
+
+    @Test
+    public void testImportLegacyJson_WithInvalidJson_ShouldImportNothing() throws IOException {
+        LocationStore store = newStore();
+
+        assertEquals(0, store.importLegacyJson("invalid json"));
+        assertTrue(store.readAll().isEmpty());
+    }
+
+    @Test
+    public void testReadAll_PerformanceTest_ShouldHandleLargeDataset() throws IOException {
+        List<Location> locations = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Location location = new Location(37.7749 + i, -122.4194 + i, "test" + i + "@example.com", "2023-01-01T12:00:0" + i + "Z");
+            location.setUserId("user" + i);
+            locations.add(location);
+        }
+        newStore().putAll(locations);
+
+        long startTime = System.currentTimeMillis();
+        Map<String, Location> result = newStore().readAll();
+        long endTime = System.currentTimeMillis();
+
+        assertEquals(1000, result.size());
+        assertTrue("Performance test: Should complete within reasonable time", (endTime - startTime) < 5000);
+    }
+
+    @Test
+    public void testConcurrentAccess_ShouldNotThrow() throws InterruptedException {
+        LocationStore store = newStore();
+        List<Location> locations = createTestLocations();
+        List<Throwable> errors = new ArrayList<>();
+
+        Thread thread1 = new Thread(() -> {
+            try {
+                store.putAll(locations);
+            } catch (Throwable t) {
+                synchronized (errors) { errors.add(t); }
+            }
+        });
+        Thread thread2 = new Thread(store::readAll);
+        Thread thread3 = new Thread(store::clear);
+        thread1.start();
+        thread2.start();
+        thread3.start();
+        thread1.join();
+        thread2.join();
+        thread3.join();
+
+        assertTrue(errors.toString(), errors.isEmpty());
+    }
+
+    @Test
+    public void testPutAll_WithMaxAge_ShouldEvictOldRecords() throws IOException {
+        LocationStore store = newStore(new RetentionPolicy(10 * DAY, 0, 0, 0, 0));
+
+        store.putAll(locationsEvery(DAY, 20));
+
+        assertEquals(10, store.size());
+        assertEquals(10, newStore().size());
+    }
+
+    @Test
+    public void testPutAll_WithMaxRecords_ShouldKeepNewest() throws IOException {
+        LocationStore store = newStore(new RetentionPolicy(0, 5, 0, 0, 0));
+        List<Location> locations = locationsEvery(60_000, 8);
+
+        store.putAll(locations);
+
+        Map<String, Location> result = store.readAll();
+        assertEquals(5, result.size());
+        assertTrue(result.containsKey(LocationStore.keyOf(locations.get(0))));
+        assertFalse(result.containsKey(LocationStore.keyOf(locations.get(7))));
+    }
+
+    @Test
+    public void testPutAll_AtMaxRecords_ShouldEvictOldestAcrossPartitions() throws IOException {
+        LocationStore store = newStore(new RetentionPolicy(0, 6, 0, 0, 0));
+        long now = System.currentTimeMillis();
+        List<Location> locations = new ArrayList<>();
+        for (int i = 0; i < 9; i++) {
+            Location location = locationAt(now - (9 - i) * 60_000L, "user" + i);
+            location.setUserName(i % 2 == 0 ? "even" : "odd");
+            locations.add(location);
+        }
+
+        // One write at a time, each one at the cap evicts just the oldest record left
+        for (Location location : locations) {
+            List<String> evicted = store.putAll(List.of(location));
+            assertTrue(evicted.size() <= 1);
+        }
+
+        Map<String, Location> result = store.readAll();
+        assertEquals(6, result.size());
+        for (int i = 0; i < 9; i++) {
+            assertEquals(i >= 3, result.containsKey(LocationStore.keyOf(locations.get(i))));
+        }
+        assertEquals(6, newStore().size());
+    }
+
+    @Test
+    public void testParseMillis_NearDstChange_ShouldUseOffsetOfThatWallTime() throws Exception {
+        TimeZone previous = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("Australia/Sydney"));
+        try {
+            SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+            // Within eleven hours after midnight of the days clocks go forward and back
+            String[] timestamps = {"2024-10-06 00:30:00", "2024-10-06 01:59:59", "2024-10-06 04:00:00",
+                    "2024-04-07 00:30:00", "2024-04-07 01:30:00", "2024-04-07 09:00:00"};
+            for (String timestamp : timestamps) {
+                assertEquals(timestamp, format.parse(timestamp).getTime(), Timestamps.parseMillis(timestamp));
+                assertEquals(timestamp, Timestamps.format(Timestamps.parseMillis(timestamp)));
+            }
+        } finally {
+            TimeZone.setDefault(previous);
+        }
+    }
+
+    @Test
+    public void testPutAll_WithMaxBytes_ShouldStayUnderLimit() throws IOException {
+        LocationStore store = newStore(new RetentionPolicy(0, 0, 2_000, 0, 0));
+
+        store.putAll(locationsEvery(60_000, 100));
+
+        assertTrue(store.getEstimatedBytes() <= 2_000);
+        assertTrue(store.size() > 0);
+    }
+
+    @Test
+    public void testCompact_ShouldDownsampleOlderDays() throws IOException {
+        // One fix per minute for three hours, two days ago, plus the last hour at full resolution
+        List<Location> locations = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 180; i++) {
+            locations.add(locationAt(now - 2 * DAY - i * 60_000L, "user123"));
+        }
+        for (int i = 0; i < 60; i++) {
+            locations.add(locationAt(now - i * 60_000L, "user123"));
+        }
+        LocationStore store = newStore(new RetentionPolicy(0, 0, 0, DAY, 10 * 60_000L));
+        store.putAll(locations);
+        assertEquals(240, store.size());
+
+        int removed = store.compact(now).size();
+
+        // 180 old minutes collapse to one point per 10-minute bucket
+        assertTrue("removed " + removed, removed >= 160 && removed <= 162);
+        assertEquals(240 - removed, newStore().size());
+    }
+
+    @Test
+    public void testCompact_TwoTrackiesInOneBucket_ShouldKeepBothHistories() throws IOException {
+        // One account following two trackies, both reporting inside the same 10-minute bucket
+        long now = System.currentTimeMillis();
+        long bucketStart = (now - 2 * DAY) / (10 * 60_000L) * (10 * 60_000L);
+        List<Location> locations = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            locations.add(locationAt(bucketStart + i * 60_000L, "user123", "first@example.com"));
+            locations.add(locationAt(bucketStart + i * 60_000L + 1_000L, "user123", "second@example.com"));
+        }
+        LocationStore store = newStore(new RetentionPolicy(0, 0, 0, DAY, 10 * 60_000L));
+        store.putAll(locations);
+
+        assertEquals(8, store.compact(now).size());
+
+        LocationStore reloaded = newStore();
+        assertEquals(1, reloaded.read("first@example.com", Long.MIN_VALUE, Long.MAX_VALUE).size());
+        assertEquals(1, reloaded.read("second@example.com", Long.MIN_VALUE, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    public void testLoad_WithLegacySingleFile_ShouldSplitIntoPartitions() throws IOException {
+        File legacy = new File(directory, AppConstants.LOCATION_STORE_FILE_NAME);
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(legacy))) {
+            LocationCodec.write(out, createTestLocations());
+        }
+
+        Map<String, Location> result = newStore().readAll();
+
+        assertEquals(2, result.size());
+        assertFalse(legacy.exists());
+        assertEquals(2, segmentFiles().length);
+        assertEquals(2, newStore().size());
+    }
+
+    @Test
+    public void testRead_ShouldOnlyReturnThatTrackie() throws IOException {
+        LocationStore store = newStore();
+        store.putAll(createTestLocations());
+
+        List<Location> result = newStore().read("test2@example.com", Long.MIN_VALUE, Long.MAX_VALUE);
+
+        assertEquals(1, result.size());
+        assertEquals("user456", result.get(0).getUserId());
+        assertTrue(store.read("nobody", Long.MIN_VALUE, Long.MAX_VALUE).isEmpty());
+        assertEquals(2, store.getTrackies().size());
+    }
+
+    @Test
+    public void testReadOrdered_ShouldMergePartitionsByTime() throws IOException {
+        List<Location> locations = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 30; i++) {
+            Location location = locationAt(now - i * 60_000L, "user" + i);
+            location.setUserName("trackie" + (i % 3));
+            locations.add(location);
+        }
+        newStore().putAll(locations);
+
+        List<Location> result = newStore().readOrdered(now - 10 * 60_000L - 1000, Long.MAX_VALUE);
+
+        assertEquals(11, result.size());
+        for (int i = 0; i < result.size(); i++) {
+            assertEquals(locations.get(10 - i).getUserId(), result.get(i).getUserId());
+        }
+    }
+
+    @Test
+    public void testPutAll_WithTrackieRenamed_ShouldMoveRecord() throws IOException {
+        LocationStore store = newStore();
+        Location original = new Location(1.0, 2.0, "old@example.com", "2023-01-01T12:00:00Z");
+        original.setUserId("user123");
+        store.putAll(List.of(original));
+        Location renamed = new Location(1.0, 2.0, "new@example.com", "2023-01-01T12:00:00Z");
+        renamed.setUserId("user123");
+
+        store.putAll(List.of(renamed));
+
+        LocationStore reloaded = newStore();
+        assertEquals(1, reloaded.size());
+        assertEquals(List.of("new@example.com"), reloaded.getTrackies());
+        assertEquals(1, segmentFiles().length);
+    }
+
+    @Test
+    public void testGetDailyRollups_InOrder_ShouldSummarizeEachDay() throws IOException {
+        LocationStore store = newStore();
+        long midnight = Timestamps.parseMillis("2024-01-10 00:00:00");
+        List<Location> locations = new ArrayList<>();
+        for (int hour = 0; hour < 48; hour++) {
+            Location walker = locationAt(midnight + hour * 3_600_000L, "user123");
+            walker.setLatitude(hour * 0.001);
+            walker.setUserName("walker");
+            locations.add(walker);
+            if (hour < 24) {
+                Location sitter = locationAt(midnight + hour * 3_600_000L + 1000, "user456");
+                sitter.setUserName("sitter");
+                locations.add(sitter);
+            }
+        }
+
+        store.putAll(locations);
+        List<DailyRollup> rollups = store.getDailyRollups();
+
+        double step = LocationFilter.distanceMeters(0, -122.4194, 0.001, -122.4194);
+        assertEquals(2, rollups.size());
+        DailyRollup first = rollups.get(0);
+        assertEquals(Timestamps.parseEpochDay("2024-01-10"), first.getEpochDay());
+        assertEquals(48, first.getCount());
+        assertEquals(midnight, first.getFirstMillis());
+        assertEquals(0.0, first.getMinLatitude(), 0);
+        assertEquals(37.7749, first.getMaxLatitude(), 0);
+        assertEquals(2, first.getTrackies().size());
+        assertEquals(23 * step, first.getTrackies().get("walker").getDistanceMeters(), 1e-6);
+        assertEquals(0.0, first.getTrackies().get("sitter").getDistanceMeters(), 0);
+        assertEquals(24, rollups.get(1).getCount());
+        assertEquals(List.of("walker"), new ArrayList<>(rollups.get(1).getTrackies().keySet()));
+    }
+
+    @Test
+    public void testGetDailyRollups_OutOfOrderAndEvicted_ShouldMatchRebuild() throws IOException {
+        LocationStore store = newStore(new RetentionPolicy(0, 100, 0, 0, 0));
+        long midnight = Timestamps.parseMillis("2024-01-10 00:00:00");
+        List<Location> locations = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            Location location = locationAt(midnight + i * 1_800_000L, "user" + (i % 3));
+            location.setLatitude(i * 0.01);
+            location.setUserName("trackie" + (i % 2));
+            locations.add(location);
+        }
+        // Newest batch first, then the older ones, then a replacement of an existing record
+        store.putAll(locations.subList(60, 120));
+        store.getDailyRollups();
+        store.putAll(locations.subList(0, 60));
+        Location moved = locationAt(midnight + 100 * 1_800_000L, "user1");
+        moved.setUserName("trackie0");
+        store.putAll(List.of(moved));
+
+        List<DailyRollup> incremental = store.getDailyRollups();
+        List<DailyRollup> rebuilt = newStore().getDailyRollups();
+
+        assertEquals(100, store.size());
+        assertEquals(rebuilt.size(), incremental.size());
+        int total = 0;
+        for (int i = 0; i < rebuilt.size(); i++) {
+            DailyRollup expected = rebuilt.get(i);
+            DailyRollup actual = incremental.get(i);
+            assertEquals(expected.getEpochDay(), actual.getEpochDay());
+            assertEquals(expected.getCount(), actual.getCount());
+            assertEquals(expected.getFirstMillis(), actual.getFirstMillis());
+            assertEquals(expected.getLastMillis(), actual.getLastMillis());
+            assertEquals(expected.getDistanceMeters(), actual.getDistanceMeters(), 1e-6);
+            assertEquals(expected.getTrackies().keySet(), actual.getTrackies().keySet());
+            total += actual.getCount();
+        }
+        assertEquals(100, total);
+    }
+
+    // Helper methods
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    private File[] segmentFiles() {
+        return directory.listFiles((dir, name) -> name.startsWith("trackie_") && name.endsWith(".bin"));
+    }
+
+    private LocationStore newStore() {
+        return newStore(RetentionPolicy.unlimited());
+    }
+
+    private LocationStore newStore(RetentionPolicy policy) {
+        LocationStore store = new LocationStore(directory);
+        store.setRetentionPolicy(policy);
+        return store;
+    }
+
+    /**
+     * Newest first, spaced by the given step back from now
+     */
+    private List<Location> locationsEvery(long stepMillis, int count) {
+        List<Location> locations = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            locations.add(locationAt(now - i * stepMillis - 1000, "user123"));
+        }
+        return locations;
+    }
+
+    private Location locationAt(long millis, String userId) {
+        return locationAt(millis, userId, "test@example.com");
+    }
+
+    private Location locationAt(long millis, String userId, String trackie) {
+        String timestamp = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US).format(new Date(millis));
+        Location location = new Location(37.7749, -122.4194, trackie, timestamp);
+        location.setUserId(userId);
+        return location;
+    }
+
+    private List<Location> createTestLocations() {
+        List<Location> locations = new ArrayList<>();
+        Location location1 = new Location(37.7749, -122.4194, "test1@example.com", "2023-01-01T12:00:00Z");
+        location1.setUserId("user123");
+        Location location2 = new Location(40.7128, -74.0060, "test2@example.com", "2023-01-01T13:00:00Z");
+        location2.setUserId("user456");
+        locations.add(location1);
+        locations.add(location2);
+        return locations;
+    }
+}
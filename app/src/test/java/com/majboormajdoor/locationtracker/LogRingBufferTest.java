@@ -0,0 +1,149 @@
+package com.majboormajdoor.locationtracker;
+
+import android.util.Log;
+
+import com.majboormajdoor.locationtracker.logging.AppLog;
+import com.majboormajdoor.locationtracker.logging.LogRingBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.MockedStatic;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class LogRingBufferTest {
+
+    private MockedStatic<Log> logMock;
+    private LogRingBuffer buffer;
+
+    @Before
+    public void setUp() {
+        logMock = mockStatic(Log.class);
+        // Ring buffer only, nothing goes to logcat
+        AppLog.setMinLevel(Log.ASSERT + 1);
+        AppLog.setRedactPii(false);
+        buffer = new LogRingBuffer(64 * 1024, Log.DEBUG);
+        AppLog.setRingBuffer(buffer);
+    }
+
+    @After
+    public void tearDown() {
+        AppLog.setRingBuffer(null);
+        AppLog.setRedactPii(false);
+        AppLog.setMinLevel(Log.DEBUG);
+        logMock.close();
+    }
+
+    @Test
+    public void testDump_ShouldDecodeEveryArgumentType() throws IOException {
+        AppLog.d("RoundTrip", "long {} double {} bool {} text {} none {}", 42, 1.5, true, "hello", null);
+        AppLog.w("RoundTrip", "plain warning");
+
+        String[] lines = dump();
+        assertEquals(2, lines.length);
+        assertTrue(lines[0], lines[0].endsWith(" D/RoundTrip: long 42 double 1.5 bool true text hello none null"));
+        assertTrue(lines[1], lines[1].endsWith(" W/RoundTrip: plain warning"));
+    }
+
+    @Test
+    public void testError_WithRedaction_ShouldDropExceptionMessagesFromTheTrace() {
+        AppLog.setMinLevel(Log.DEBUG);
+        AppLog.setRedactPii(true);
+        IOException failure = new IOException("POST https://majboormajdoor.com/location/user-123 failed",
+                new IllegalStateException("No session for alice@example.com"));
+
+        AppLog.e("Trace", "Upload failed: {}", "timeout", failure);
+
+        ArgumentCaptor<String> message = ArgumentCaptor.forClass(String.class);
+        logMock.verify(() -> Log.println(eq(Log.ERROR), eq("Trace"), message.capture()));
+        String logged = message.getValue();
+        assertTrue(logged, logged.startsWith("Upload failed: timeout\njava.io.IOException\n\tat "));
+        assertTrue(logged, logged.contains("Caused by: java.lang.IllegalStateException\n"));
+        assertFalse(logged, logged.contains("user-123"));
+        assertFalse(logged, logged.contains("alice"));
+    }
+
+    @Test
+    public void testDump_WithRedaction_ShouldNeverStorePiiValues() throws IOException {
+        AppLog.setRedactPii(true);
+        AppLog.d("Redact", "Location updated: {pii}, {pii} for {}", 51.5, -0.12, "trackie");
+        AppLog.setRedactPii(false);
+        AppLog.d("Redact", "Location updated: {pii}, {pii} for {}", 51.5, -0.12, "trackie");
+
+        String[] lines = dump();
+        assertTrue(lines[0], lines[0].endsWith("Location updated: <redacted>, <redacted> for trackie"));
+        assertTrue(lines[1], lines[1].endsWith("Location updated: 51.5, -0.12 for trackie"));
+    }
+
+    @Test
+    public void testRateLimit_ShouldCapDebugButKeepWarnings() throws IOException {
+        AppLog.setRateLimit("Limited", 3);
+        for (int i = 0; i < 10; i++) {
+            AppLog.d("Limited", "debug {}", i);
+        }
+        AppLog.w("Limited", "warning {}", 10);
+
+        String[] lines = dump();
+        assertEquals(4, lines.length);
+        assertTrue(lines[2], lines[2].endsWith("debug 2"));
+        assertTrue(lines[3], lines[3].endsWith("warning 10"));
+    }
+
+    @Test
+    public void testAppend_WhenFull_ShouldOverwriteOldestRecords() throws IOException {
+        buffer = new LogRingBuffer(1024, Log.DEBUG);
+        AppLog.setRingBuffer(buffer);
+        for (int i = 0; i < 200; i++) {
+            AppLog.d("Wrap", "record {}", i);
+        }
+
+        String[] lines = dump();
+        assertTrue(buffer.getDroppedCount() > 0);
+        assertEquals(200, buffer.getDroppedCount() + lines.length);
+        assertTrue(lines[lines.length - 1], lines[lines.length - 1].endsWith("record 199"));
+        assertTrue(lines[0], lines[0].endsWith("record " + buffer.getDroppedCount()));
+    }
+
+    @Test
+    public void testAppend_PastDictionaryCap_ShouldNeverDecodeWrongTemplate() throws IOException {
+        buffer = new LogRingBuffer(1024 * 1024, Log.DEBUG);
+        AppLog.setRingBuffer(buffer);
+        // Distinct templates well past the dictionary size and the two-byte id space
+        for (int i = 0; i < 70_000; i++) {
+            AppLog.d("Templates", "template " + i + " arg {}", i);
+        }
+
+        String[] lines = dump();
+        assertTrue(lines.length > 0);
+        assertTrue(buffer.getDroppedCount() > 0);
+        for (String line : lines) {
+            String[] words = line.substring(line.indexOf(": ") + 2).split(" ");
+            assertEquals(line, words[1], words[3]);
+        }
+        assertTrue(lines[lines.length - 1].endsWith("template 69999 arg 69999"));
+    }
+
+    @Test
+    public void testClear_ShouldDropRecordsAndDictionaries() throws IOException {
+        AppLog.d("Clear", "before {}", 1);
+        buffer.clear();
+        AppLog.d("Other", "after {}", 2);
+
+        String[] lines = dump();
+        assertEquals(1, lines.length);
+        assertTrue(lines[0], lines[0].endsWith(" D/Other: after 2"));
+    }
+
+    private String[] dump() throws IOException {
+        StringWriter writer = new StringWriter();
+        buffer.dump(writer);
+        String text = writer.toString();
+        return text.isEmpty() ? new String[0] : text.split("\n");
+    }
+}
@@ -0,0 +1,160 @@
+package com.majboormajdoor.locationtracker;
+
+import android.util.Log;
+
+import com.majboormajdoor.locationtracker.dto.Location;
+import com.majboormajdoor.locationtracker.utils.PendingLocationQueue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.MockedStatic;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class PendingLocationQueueTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private MockedStatic<Log> logMock;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        logMock = mockStatic(Log.class);
+        file = new File(temporaryFolder.newFolder("queue"), "pending_uploads.json");
+    }
+
+    @After
+    public void tearDown() {
+        logMock.close();
+    }
+
+    @Test
+    public void testEnqueue_FromOtherProcess_ShouldBeSeenWithoutRestart() {
+        // Two instances on one file stand in for the tracking and app processes
+        PendingLocationQueue tracker = new PendingLocationQueue(file);
+        PendingLocationQueue app = new PendingLocationQueue(file);
+        assertEquals(0, app.size());
+
+        tracker.enqueue(location(51.5, -0.12, "2024-01-01 10:00:00"), 1_000L);
+        tracker.enqueue(location(51.6, -0.13, "2024-01-01 10:10:00"), 2_000L);
+
+        List<PendingLocationQueue.PendingLocation> batch = app.peek(10);
+        assertEquals(2, batch.size());
+        assertEquals(1_000L, batch.get(0).fixTimeMillis);
+    }
+
+    @Test
+    public void testLastKnownSize_ShouldTrackOwnWritesAndOnlyReadsOfOthers() {
+        PendingLocationQueue tracker = new PendingLocationQueue(file);
+        PendingLocationQueue app = new PendingLocationQueue(file);
+
+        tracker.enqueue(location(51.5, -0.12, "2024-01-01 10:00:00"), 1_000L);
+        tracker.enqueue(location(51.6, -0.13, "2024-01-01 10:10:00"), 2_000L);
+
+        assertEquals(2, tracker.lastKnownSize());
+        // Never touches the file, so the other process's writes wait for the next read
+        assertEquals(0, app.lastKnownSize());
+        app.peek(1);
+        assertEquals(2, app.lastKnownSize());
+    }
+
+    @Test
+    public void testRemove_AfterOtherProcessWrote_ShouldMatchByContentAndKeepItsEntries() {
+        PendingLocationQueue tracker = new PendingLocationQueue(file);
+        PendingLocationQueue app = new PendingLocationQueue(file);
+        tracker.enqueue(location(51.5, -0.12, "2024-01-01 10:00:00"), 1_000L);
+        PendingLocationQueue.PendingLocation peeked = tracker.peek(1).get(0);
+
+        // The app process appends while the tracker is uploading what it peeked
+        app.enqueue(location(51.6, -0.13, "2024-01-01 10:10:00"), 2_000L);
+        tracker.remove(peeked);
+
+        assertEquals(1, tracker.size());
+        assertEquals(1, app.size());
+        assertEquals(2_000L, app.peek(1).get(0).fixTimeMillis);
+        assertEquals(1, new PendingLocationQueue(file).size());
+    }
+
+    @Test
+    public void testPeek_AfterSameSizeRewriteWithinClockTick_ShouldReload() {
+        PendingLocationQueue tracker = new PendingLocationQueue(file);
+        PendingLocationQueue app = new PendingLocationQueue(file);
+        tracker.enqueue(location(51.5, -0.12, "2024-01-01 10:00:00"), 1_000L);
+        assertEquals(1_000L, app.peek(1).get(0).fixTimeMillis);
+        long length = file.length();
+        long modified = file.lastModified();
+
+        // Same length and modification time, only the content differs
+        tracker.remove(tracker.peek(1).get(0));
+        tracker.enqueue(location(51.6, -0.13, "2024-01-01 10:10:00"), 2_000L);
+        assertTrue(file.setLastModified(modified));
+        assertEquals(length, file.length());
+
+        assertEquals(2_000L, app.peek(1).get(0).fixTimeMillis);
+        // Writing from the stale view would have brought the uploaded entry back
+        app.enqueue(location(51.7, -0.14, "2024-01-01 10:20:00"), 3_000L);
+        assertEquals(2, tracker.size());
+        assertEquals(2_000L, tracker.peek(1).get(0).fixTimeMillis);
+    }
+
+    @Test
+    public void testRunUploadPass_ShouldNeverOverlapAcrossQueues() throws InterruptedException {
+        PendingLocationQueue tracker = new PendingLocationQueue(file);
+        PendingLocationQueue app = new PendingLocationQueue(file);
+        CountDownLatch trackerInside = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean overlapped = new AtomicBoolean();
+        AtomicBoolean trackerRunning = new AtomicBoolean();
+
+        Thread lean = new Thread(() -> tracker.runUploadPass(() -> {
+            trackerRunning.set(true);
+            trackerInside.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            trackerRunning.set(false);
+            return null;
+        }));
+        lean.start();
+        assertTrue(trackerInside.await(5, TimeUnit.SECONDS));
+
+        CountDownLatch appDone = new CountDownLatch(1);
+        Thread worker = new Thread(() -> app.runUploadPass(() -> {
+            overlapped.set(trackerRunning.get());
+            appDone.countDown();
+            return null;
+        }));
+        worker.start();
+        // The worker's pass waits for the tracker's to finish
+        assertFalse(appDone.await(100, TimeUnit.MILLISECONDS));
+
+        release.countDown();
+        assertTrue(appDone.await(5, TimeUnit.SECONDS));
+        assertFalse(overlapped.get());
+        lean.join();
+        worker.join();
+    }
+
+    private static Location location(double latitude, double longitude, String timestamp) {
+        Location location = new Location();
+        location.setLatitude(latitude);
+        location.setLongitude(longitude);
+        location.setInsertionTimestamp(timestamp);
+        location.setUserName("trackie");
+        return location;
+    }
+}
@@ -0,0 +1,182 @@
+package com.majboormajdoor.locationtracker;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.majboormajdoor.locationtracker.constants.AppConstants;
+import com.majboormajdoor.locationtracker.utils.PreferenceManager;
+import com.majboormajdoor.locationtracker.utils.Settings;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockedStatic;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class SettingsTest {
+
+    private MockedStatic<Log> logMock;
+    private FakePreferences preferences;
+    private PreferenceManager manager;
+    private final List<Set<String>> notified = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        logMock = mockStatic(Log.class);
+        preferences = new FakePreferences();
+        Context context = mock(Context.class);
+        when(context.getSharedPreferences(eq(AppConstants.PREFS_NAME), anyInt())).thenReturn(preferences);
+        manager = new PreferenceManager(context);
+        manager.addListener((previous, current, changedKeys) -> notified.add(changedKeys));
+    }
+
+    @After
+    public void tearDown() {
+        logMock.close();
+    }
+
+    @Test
+    public void testApply_ShouldPublishSnapshotAndWriteOnlyChangedKeys() {
+        manager.edit().setPin("1234").setTrackingStatus(true).setTimeIntervalMinutes(15).apply();
+
+        Settings settings = manager.getSettings();
+        assertEquals("1234", settings.pin);
+        assertTrue(settings.trackingStatus);
+        assertEquals(15, settings.timeIntervalMinutes);
+
+        // Written straight away through apply(), not on a delay
+        assertEquals(1, preferences.applied);
+        assertEquals("1234", preferences.values.get(AppConstants.PREF_PIN_KEY));
+        assertEquals(true, preferences.values.get(AppConstants.TRACKING_STATUS));
+        assertEquals(15, preferences.values.get(AppConstants.PREF_TIME_INTERVAL));
+        assertEquals(3, preferences.values.size());
+
+        assertEquals(1, notified.size());
+        assertEquals(new HashSet<>(List.of(AppConstants.PREF_PIN_KEY, AppConstants.TRACKING_STATUS,
+                AppConstants.PREF_TIME_INTERVAL)), notified.get(0));
+    }
+
+    @Test
+    public void testApply_OnlySetFieldsChange_BatchesNeverUndoEachOther() {
+        Settings.Editor first = manager.edit().setUserId("user-1");
+        Settings.Editor second = manager.edit().setTrackieName("trackie");
+        first.apply();
+        second.apply();
+
+        Settings settings = manager.getSettings();
+        assertEquals("user-1", settings.userId);
+        assertEquals("trackie", settings.trackieName);
+        assertEquals(AppConstants.DEFAULT_TIME_INTERVAL_MINUTES, settings.timeIntervalMinutes);
+        assertTrue(settings.firstLaunch);
+    }
+
+    @Test
+    public void testApply_WithSameValues_ShouldNotWriteOrNotify() {
+        manager.edit().setHasSubscription(false).setPhoneNumber("").apply();
+
+        assertEquals(0, preferences.applied);
+        assertTrue(notified.isEmpty());
+    }
+
+    @Test
+    public void testDiff_ShouldNameEveryChangedKey() {
+        Settings before = manager.getSettings();
+        manager.edit().setFirstLaunch(false).setShowInfoOnLaunch(false).setLeanTrackingProcess(true).apply();
+        Settings after = manager.getSettings();
+
+        assertEquals(new HashSet<>(List.of(AppConstants.PREF_IS_FIRST_LAUNCH, AppConstants.PREF_SHOW_INFO_ON_LAUNCH,
+                AppConstants.PREF_LEAN_TRACKING_PROCESS)), before.diff(after));
+        assertTrue(after.diff(after).isEmpty());
+    }
+
+    @Test
+    public void testClearAllPreferences_ShouldResetSnapshotAndFile() {
+        manager.savePin("1234");
+        manager.clearAllPreferences();
+
+        assertEquals(AppConstants.DEFAULT_PIN, manager.getPin());
+        assertTrue(preferences.values.isEmpty());
+        assertEquals(AppConstants.PREF_PIN_KEY, notified.get(1).iterator().next());
+    }
+
+    @Test
+    public void testReloadIfChanged_ShouldPickUpWritesFromAnotherProcess() {
+        manager.reloadIfChanged();
+        assertTrue(notified.isEmpty());
+
+        // Another process rewrote the file, the platform reloads it under our snapshot
+        preferences.values.put(AppConstants.PREF_TIME_INTERVAL, 30);
+        manager.reloadIfChanged();
+
+        assertEquals(30, manager.getTimeInterval());
+        assertEquals(List.of(Set.of(AppConstants.PREF_TIME_INTERVAL)), notified);
+    }
+
+    /**
+     * In-memory SharedPreferences, apply() lands at once like the platform's in-memory map
+     */
+    private static class FakePreferences implements SharedPreferences {
+        final Map<String, Object> values = new HashMap<>();
+        int applied;
+
+        @Override public Map<String, ?> getAll() { return new HashMap<>(values); }
+        @Override public String getString(String key, String defValue) { return (String) values.getOrDefault(key, defValue); }
+        @SuppressWarnings("unchecked")
+        @Override public Set<String> getStringSet(String key, Set<String> defValues) { return (Set<String>) values.getOrDefault(key, defValues); }
+        @Override public int getInt(String key, int defValue) { return (Integer) values.getOrDefault(key, defValue); }
+        @Override public long getLong(String key, long defValue) { return (Long) values.getOrDefault(key, defValue); }
+        @Override public float getFloat(String key, float defValue) { return (Float) values.getOrDefault(key, defValue); }
+        @Override public boolean getBoolean(String key, boolean defValue) { return (Boolean) values.getOrDefault(key, defValue); }
+        @Override public boolean contains(String key) { return values.containsKey(key); }
+        @Override public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) { }
+        @Override public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) { }
+
+        @Override
+        public Editor edit() {
+            Map<String, Object> pending = new HashMap<>();
+            boolean[] clear = new boolean[1];
+            return new Editor() {
+                @Override public Editor putString(String key, String value) { pending.put(key, value); return this; }
+                @Override public Editor putStringSet(String key, Set<String> value) { pending.put(key, value); return this; }
+                @Override public Editor putInt(String key, int value) { pending.put(key, value); return this; }
+                @Override public Editor putLong(String key, long value) { pending.put(key, value); return this; }
+                @Override public Editor putFloat(String key, float value) { pending.put(key, value); return this; }
+                @Override public Editor putBoolean(String key, boolean value) { pending.put(key, value); return this; }
+                @Override public Editor remove(String key) { pending.put(key, null); return this; }
+                @Override public Editor clear() { clear[0] = true; return this; }
+
+                @Override
+                public boolean commit() {
+                    if (clear[0]) {
+                        values.clear();
+                    }
+                    for (Map.Entry<String, Object> entry : pending.entrySet()) {
+                        if (entry.getValue() == null) {
+                            values.remove(entry.getKey());
+                        } else {
+                            values.put(entry.getKey(), entry.getValue());
+                        }
+                    }
+                    return true;
+                }
+
+                @Override
+                public void apply() {
+                    applied++;
+                    commit();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.majboormajdoor.locationtracker;
+
+import android.util.Log;
+
+import com.majboormajdoor.locationtracker.constants.AppConstants;
+import com.majboormajdoor.locationtracker.metrics.MetricsRegistry;
+import com.majboormajdoor.locationtracker.pipeline.SleepModeController;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockedStatic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class SleepModeControllerTest {
+
+    private static final long MINUTE = 60_000L;
+    private static final double LATITUDE = 37.7749;
+    private static final double LONGITUDE = -122.4194;
+    // Roughly 10 m of latitude
+    private static final double TEN_METERS = 0.00009;
+
+    private MockedStatic<Log> logMock;
+    private FakeProvider provider;
+    private SleepModeController controller;
+
+    @Before
+    public void setUp() {
+        logMock = mockStatic(Log.class);
+        provider = new FakeProvider();
+        controller = new SleepModeController(provider, 50f, 10 * MINUTE, 50f, 150f);
+    }
+
+    @After
+    public void tearDown() {
+        logMock.close();
+    }
+
+    @Test
+    public void testOnFix_WhenParked_ShouldSleepOnlyOnceGeofenceIsAdded() {
+        // Jitter within the dwell radius for ten minutes
+        for (int i = 0; i <= 10; i++) {
+            controller.onFix(LATITUDE + (i % 3) * TEN_METERS, LONGITUDE, 8f, i * MINUTE);
+        }
+
+        assertEquals(SleepModeController.State.ARMING, controller.getState());
+        assertEquals(Arrays.asList("add 37.7749,-122.4194,150"), provider.calls);
+
+        controller.onGeofenceAdded();
+
+        assertTrue(controller.isSleeping());
+        assertEquals(Arrays.asList("add 37.7749,-122.4194,150", "stop"), provider.calls);
+    }
+
+    @Test
+    public void testOnFix_WhenMoving_ShouldStayActive() {
+        for (int i = 0; i <= 60; i++) {
+            controller.onFix(LATITUDE + i * 10 * TEN_METERS, LONGITUDE, 8f, i * MINUTE);
+        }
+
+        assertEquals(SleepModeController.State.ACTIVE, controller.getState());
+        assertTrue(provider.calls.isEmpty());
+    }
+
+    @Test
+    public void testOnFix_WithPoorAccuracy_ShouldNeitherStartNorBreakDwell() {
+        controller.onFix(LATITUDE, LONGITUDE, 8f, 0);
+        // A wild low-accuracy fix far away must not move the anchor
+        controller.onFix(LATITUDE + 100 * TEN_METERS, LONGITUDE, 500f, 5 * MINUTE);
+        controller.onFix(LATITUDE, LONGITUDE, 8f, 10 * MINUTE);
+
+        assertEquals(SleepModeController.State.ARMING, controller.getState());
+    }
+
+    @Test
+    public void testOnGeofenceExit_ShouldResumeAndRequireNewDwell() {
+        park();
+        provider.calls.clear();
+
+        controller.onGeofenceExit();
+
+        assertEquals(SleepModeController.State.ACTIVE, controller.getState());
+        assertEquals(Arrays.asList("remove", "start"), provider.calls);
+
+        // One fix after waking is not a dwell, even at the old position
+        controller.onFix(LATITUDE, LONGITUDE, 8f, 30 * MINUTE);
+        assertEquals(SleepModeController.State.ACTIVE, controller.getState());
+    }
+
+    @Test
+    public void testOnGeofenceFailed_ShouldStayActiveAndRetryAfterAnotherDwell() {
+        for (int i = 0; i <= 10; i++) {
+            controller.onFix(LATITUDE, LONGITUDE, 8f, i * MINUTE);
+        }
+        controller.onGeofenceFailed();
+
+        assertEquals(SleepModeController.State.ACTIVE, controller.getState());
+        controller.onFix(LATITUDE, LONGITUDE, 8f, 11 * MINUTE);
+        assertEquals(SleepModeController.State.ACTIVE, controller.getState());
+        controller.onFix(LATITUDE, LONGITUDE, 8f, 21 * MINUTE);
+        assertEquals(SleepModeController.State.ARMING, controller.getState());
+        assertFalse(provider.calls.contains("stop"));
+    }
+
+    @Test
+    public void testOnFix_WithoutGeofencing_ShouldStayActiveWithoutFailing() {
+        provider.canGeofence = false;
+        long failed = MetricsRegistry.getInstance().counter(AppConstants.METRIC_SLEEP_GEOFENCE_FAILED).get();
+        for (int i = 0; i <= 30; i++) {
+            controller.onFix(LATITUDE, LONGITUDE, 8f, i * MINUTE);
+        }
+
+        assertEquals(SleepModeController.State.ACTIVE, controller.getState());
+        assertTrue(provider.calls.isEmpty());
+        assertEquals(failed, MetricsRegistry.getInstance().counter(AppConstants.METRIC_SLEEP_GEOFENCE_FAILED).get());
+
+        // Granted later, the next full dwell arms
+        provider.canGeofence = true;
+        for (int i = 31; i <= 41; i++) {
+            controller.onFix(LATITUDE, LONGITUDE, 8f, i * MINUTE);
+        }
+        assertEquals(SleepModeController.State.ARMING, controller.getState());
+    }
+
+    @Test
+    public void testStop_WhileArming_ShouldDropLateGeofence() {
+        for (int i = 0; i <= 10; i++) {
+            controller.onFix(LATITUDE, LONGITUDE, 8f, i * MINUTE);
+        }
+        controller.stop();
+        controller.onGeofenceAdded();
+
+        assertFalse(controller.isSleeping());
+        assertEquals(Arrays.asList("add 37.7749,-122.4194,150", "remove", "remove"), provider.calls);
+    }
+
+    private void park() {
+        for (int i = 0; i <= 10; i++) {
+            controller.onFix(LATITUDE, LONGITUDE, 8f, i * MINUTE);
+        }
+        controller.onGeofenceAdded();
+        assertTrue(controller.isSleeping());
+    }
+
+    /**
+     * Records what the controller asked the platform to do
+     */
+    private static final class FakeProvider implements SleepModeController.Provider {
+        final List<String> calls = new ArrayList<>();
+        boolean canGeofence = true;
+
+        @Override
+        public boolean canGeofence() {
+            return canGeofence;
+        }
+
+        @Override
+        public void startActiveUpdates() {
+            calls.add("start");
+        }
+
+        @Override
+        public void stopActiveUpdates() {
+            calls.add("stop");
+        }
+
+        @Override
+        public void addExitGeofence(double latitude, double longitude, float radiusMeters) {
+            calls.add("add " + latitude + "," + longitude + "," + Math.round(radiusMeters));
+        }
+
+        @Override
+        public void removeExitGeofence() {
+            calls.add("remove");
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.majboormajdoor.locationtracker;
+
+import com.majboormajdoor.locationtracker.dto.Location;
+import com.majboormajdoor.locationtracker.storage.SortedMerge;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class SortedMergeTest {
+
+    @Test
+    public void testSort_WithDescendingAndMixedRuns_ShouldOrderAscending() {
+        List<Location> locations = new ArrayList<>();
+        for (int i = 9; i >= 0; i--) {
+            locations.add(locationAt(i, "user123"));
+        }
+        for (int i = 10; i < 20; i++) {
+            locations.add(locationAt(i, "user123"));
+        }
+        locations.add(locationAt(5, "user456"));
+
+        List<Location> sorted = SortedMerge.sort(locations);
+
+        assertEquals(21, sorted.size());
+        assertAscending(sorted);
+    }
+
+    @Test
+    public void testNewestFirst_ShouldOrderDescending() {
+        List<Location> locations = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            locations.add(locationAt(i, "user123"));
+        }
+
+        List<Location> result = SortedMerge.newestFirst(locations);
+
+        assertEquals(locations.get(9), result.get(0));
+        assertEquals(locations.get(0), result.get(9));
+    }
+
+    @Test
+    public void testMerge_WithDuplicateKeys_ShouldKeepLaterRun() {
+        List<Location> history = List.of(locationAt(1, "user123"), locationAt(2, "user123"), locationAt(3, "user123"));
+        Location updated = locationAt(2, "user123");
+        updated.setLatitude(1.0);
+        List<Location> page = List.of(locationAt(2, "user456"), updated, locationAt(4, "user123"));
+
+        List<Location> merged = SortedMerge.merge(List.of(history, page));
+
+        assertEquals(5, merged.size());
+        assertAscending(merged);
+        assertTrue(merged.contains(updated));
+        assertFalse(merged.contains(history.get(1)));
+    }
+
+    @Test
+    public void testMergeBenchmark_AgainstFullResort() {
+        Benchmarks.assumeEnabled();
+        int historySize = 100_000;
+        int pageSize = 1_000;
+        List<Location> history = new ArrayList<>(historySize);
+        for (int i = 0; i < historySize; i++) {
+            history.add(locationAt(i, "user123"));
+        }
+        // A server page overlapping the newest history plus fresh records
+        List<Location> page = new ArrayList<>(pageSize);
+        for (int i = historySize - pageSize / 2; i < historySize + pageSize / 2; i++) {
+            page.add(locationAt(i, "user123"));
+        }
+
+        long resortNanos = Long.MAX_VALUE;
+        long mergeNanos = Long.MAX_VALUE;
+        List<Location> resorted = null;
+        List<Location> merged = null;
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            resorted = fullResort(history, page);
+            resortNanos = Math.min(resortNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            merged = SortedMerge.merge(List.of(history, page));
+            Collections.reverse(merged);
+            mergeNanos = Math.min(mergeNanos, System.nanoTime() - start);
+        }
+
+        Benchmarks.report("SortedMerge: %d + %d records, full re-sort %.1f ms, k-way merge %.1f ms%n",
+                historySize, pageSize, resortNanos / 1e6, mergeNanos / 1e6);
+        assertEquals(historySize + pageSize / 2, merged.size());
+        assertEquals(resorted.get(0).getInsertionTimestamp(), merged.get(0).getInsertionTimestamp());
+        assertEquals(resorted.get(resorted.size() - 1).getInsertionTimestamp(),
+                merged.get(merged.size() - 1).getInsertionTimestamp());
+    }
+
+    // Helper methods
+
+    /**
+     * What LocationAdapter used to do: dedupe through a map, then sort the whole list by timestamp string
+     */
+    private List<Location> fullResort(List<Location> history, List<Location> page) {
+        Map<String, Location> byKey = new LinkedHashMap<>();
+        for (Location location : history) {
+            byKey.put(location.getUserId() + "_" + location.getInsertionTimestamp(), location);
+        }
+        for (Location location : page) {
+            byKey.put(location.getUserId() + "_" + location.getInsertionTimestamp(), location);
+        }
+        return byKey.values().stream().sorted((l1, l2) -> {
+            String t1 = l1.getInsertionTimestamp();
+            String t2 = l2.getInsertionTimestamp();
+            return t2.compareTo(t1);
+        }).collect(Collectors.toList());
+    }
+
+    private void assertAscending(List<Location> locations) {
+        for (int i = 1; i < locations.size(); i++) {
+            String previous = locations.get(i - 1).getInsertionTimestamp();
+            String current = locations.get(i).getInsertionTimestamp();
+            assertTrue(previous + " after " + current, previous.compareTo(current) <= 0);
+        }
+    }
+
+    /**
+     * One record per second from 2024-01-01T00:00:00Z
+     */
+    private Location locationAt(int second, String userId) {
+        String timestamp = String.format(Locale.US, "2024-01-%02dT%02d:%02d:%02dZ",
+                1 + second / 86_400, (second / 3600) % 24, (second / 60) % 60, second % 60);
+        Location location = new Location(37.7749, -122.4194, "test@example.com", timestamp);
+        location.setUserId(userId);
+        return location;
+    }
+}
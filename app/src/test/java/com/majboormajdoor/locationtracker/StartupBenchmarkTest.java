@@ -0,0 +1,316 @@
+package com.majboormajdoor.locationtracker;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.majboormajdoor.locationtracker.activities.LaunchDependencies;
+import com.majboormajdoor.locationtracker.activities.MainActivity;
+import com.majboormajdoor.locationtracker.activities.PinLockActivity;
+import com.majboormajdoor.locationtracker.billing.BillingManager;
+import com.majboormajdoor.locationtracker.constants.AppConstants;
+import com.majboormajdoor.locationtracker.metrics.MetricsRegistry;
+import com.majboormajdoor.locationtracker.metrics.MetricsSnapshot;
+import com.majboormajdoor.locationtracker.services.ApiService;
+import com.majboormajdoor.locationtracker.services.CognitoAuthService;
+import com.majboormajdoor.locationtracker.services.StartupPrewarmer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Cold start from PinLockActivity to MainActivity against fake Cognito, Play and API services
+ *
+ * Opt-in, run with
+ * ./gradlew testDebugUnitTest --tests '*StartupBenchmarkTest' -Pstartup.benchmark=true
+ * Latencies, run count, report path and the regression check against an earlier report are
+ * set with further startup.* properties, see the constants below
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class StartupBenchmarkTest {
+
+    private static final String PROPERTY_ENABLED = "startup.benchmark";
+    private static final String PROPERTY_RUNS = "startup.benchmark.runs";
+    private static final String PROPERTY_AUTH_MS = "startup.latency.auth";
+    private static final String PROPERTY_PLAY_MS = "startup.latency.play";
+    private static final String PROPERTY_SERVER_MS = "startup.latency.server";
+    private static final String PROPERTY_REPORT = "startup.benchmark.report";
+    private static final String PROPERTY_BASELINE = "startup.benchmark.baseline";
+    // Allowed p50 growth over the baseline, as a fraction
+    private static final String PROPERTY_TOLERANCE = "startup.benchmark.tolerance";
+    // Growth below this many milliseconds is noise whatever the fraction
+    private static final String PROPERTY_NOISE_MS = "startup.benchmark.noise";
+
+    private static final long LAUNCH_TIMEOUT_MS = 30_000;
+
+    private static final Map<String, String> PHASES = new LinkedHashMap<>();
+
+    static {
+        PHASES.put("content_view", AppConstants.METRIC_STARTUP_CONTENT_VIEW);
+        PHASES.put("initialize_services", AppConstants.METRIC_STARTUP_SERVICES);
+        PHASES.put("check_existing_auth", AppConstants.METRIC_STARTUP_AUTH_CHECK);
+        PHASES.put("entitlement", AppConstants.METRIC_STARTUP_ENTITLEMENT);
+        PHASES.put("main_activity", AppConstants.METRIC_STARTUP_MAIN);
+        PHASES.put("launch_to_main", AppConstants.METRIC_LAUNCH_TO_MAIN);
+    }
+
+    private final ScheduledExecutorService latency = Executors.newSingleThreadScheduledExecutor();
+    private final boolean metricsWereEnabled = MetricsRegistry.isEnabled();
+
+    @Before
+    public void setUp() {
+        assumeTrue("startup benchmark is opt-in", Boolean.getBoolean(PROPERTY_ENABLED));
+        MetricsRegistry.setEnabled(true);
+        MetricsRegistry.getInstance().reset();
+    }
+
+    @After
+    public void tearDown() {
+        latency.shutdownNow();
+        LaunchDependencies.set(null);
+        CognitoAuthService.setInstance(null);
+        MetricsRegistry.setEnabled(metricsWereEnabled);
+    }
+
+    @Test
+    public void testColdStart_ShouldReportPhasesWithinThreshold() throws IOException, InterruptedException {
+        int runs = Integer.getInteger(PROPERTY_RUNS, 10);
+        long authMillis = Long.getLong(PROPERTY_AUTH_MS, 150L);
+        long playMillis = Long.getLong(PROPERTY_PLAY_MS, 300L);
+        long serverMillis = Long.getLong(PROPERTY_SERVER_MS, 400L);
+
+        FakeAuthService auth = new FakeAuthService(authMillis);
+        CognitoAuthService.setInstance(auth);
+        LaunchDependencies.set(new FakeDependencies(auth, playMillis, serverMillis));
+
+        for (int run = 0; run < runs; run++) {
+            launchOnce();
+        }
+
+        JsonObject report = report(runs, authMillis, playMillis, serverMillis);
+        List<String> regressions = regressions(report);
+        report.add("regressions", new Gson().toJsonTree(regressions));
+        File reportFile = writeReport(report);
+
+        System.out.printf("Startup: %d launches, launch to main p50 %.1f ms, report %s%n", runs,
+                report.getAsJsonObject("phases").getAsJsonObject("launch_to_main").get("p50Ms").getAsDouble(),
+                reportFile.getAbsolutePath());
+        assertTrue("Startup regressed: " + regressions, regressions.isEmpty());
+    }
+
+    /**
+     * One launch, from creating the sign-in screen to MainActivity resumed with its fragment
+     */
+    private void launchOnce() throws InterruptedException {
+        ActivityController<PinLockActivity> pinLock = Robolectric.buildActivity(PinLockActivity.class).setup();
+        Intent next = null;
+        long deadline = System.currentTimeMillis() + LAUNCH_TIMEOUT_MS;
+        // The fakes answer on their own threads, keep draining the main looper until the hand-over
+        while (next == null && System.currentTimeMillis() < deadline) {
+            shadowOf(Looper.getMainLooper()).idle();
+            next = shadowOf(pinLock.get()).getNextStartedActivity();
+            if (next == null) {
+                Thread.sleep(1);
+            }
+        }
+        assertNotNull("PinLockActivity never handed over", next);
+        assertEquals(MainActivity.class.getName(), next.getComponent().getClassName());
+
+        ActivityController<MainActivity> main = Robolectric.buildActivity(MainActivity.class, next).setup();
+        shadowOf(Looper.getMainLooper()).idle();
+        main.destroy();
+        pinLock.destroy();
+    }
+
+    private JsonObject report(int runs, long authMillis, long playMillis, long serverMillis) {
+        MetricsSnapshot snapshot = MetricsRegistry.getInstance().snapshot();
+        Gson gson = new Gson();
+        JsonObject phases = new JsonObject();
+        for (Map.Entry<String, String> phase : PHASES.entrySet()) {
+            MetricsSnapshot.HistogramSnapshot histogram = snapshot.histograms.get(phase.getValue());
+            assertTrue("Phase not recorded: " + phase.getKey(), histogram != null && histogram.count > 0);
+            phases.add(phase.getKey(), gson.toJsonTree(histogram));
+        }
+        JsonObject latencies = new JsonObject();
+        latencies.addProperty("authMs", authMillis);
+        latencies.addProperty("playMs", playMillis);
+        latencies.addProperty("serverMs", serverMillis);
+
+        JsonObject report = new JsonObject();
+        report.addProperty("runs", runs);
+        report.addProperty("capturedAtMillis", snapshot.capturedAtMillis);
+        report.add("latencies", latencies);
+        report.add("phases", phases);
+        return report;
+    }
+
+    /**
+     * Phases whose median grew past the tolerance over the baseline report, empty without one
+     */
+    private static List<String> regressions(JsonObject report) throws IOException {
+        List<String> regressions = new ArrayList<>();
+        String baselinePath = System.getProperty(PROPERTY_BASELINE);
+        if (baselinePath == null || baselinePath.isEmpty()) {
+            return regressions;
+        }
+        double tolerance = Double.parseDouble(System.getProperty(PROPERTY_TOLERANCE, "0.2"));
+        double noiseMillis = Double.parseDouble(System.getProperty(PROPERTY_NOISE_MS, "5"));
+        JsonObject baseline;
+        try (Reader reader = new FileReader(baselinePath)) {
+            baseline = JsonParser.parseReader(reader).getAsJsonObject().getAsJsonObject("phases");
+        }
+        JsonObject phases = report.getAsJsonObject("phases");
+        for (String phase : PHASES.keySet()) {
+            JsonElement before = baseline.get(phase);
+            if (before == null) {
+                continue;
+            }
+            double was = before.getAsJsonObject().get("p50Ms").getAsDouble();
+            double now = phases.getAsJsonObject(phase).get("p50Ms").getAsDouble();
+            if (now > was * (1 + tolerance) && now - was > noiseMillis) {
+                regressions.add(String.format("%s p50 %.1f ms, baseline %.1f ms", phase, now, was));
+            }
+        }
+        return regressions;
+    }
+
+    private static File writeReport(JsonObject report) throws IOException {
+        File file = new File(System.getProperty(PROPERTY_REPORT, "build/reports/startup/startup.json"));
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        try (Writer writer = new FileWriter(file)) {
+            gson.toJson(report, writer);
+        }
+        return file;
+    }
+
+    /**
+     * Run an answer after a delay, on the main thread like the real service would
+     */
+    private void onMainAfter(long delayMillis, Runnable answer) {
+        Handler main = new Handler(Looper.getMainLooper());
+        latency.schedule(() -> main.post(answer), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private final class FakeDependencies extends LaunchDependencies {
+        private final FakeAuthService auth;
+        private final long playMillis;
+        private final long serverMillis;
+
+        FakeDependencies(FakeAuthService auth, long playMillis, long serverMillis) {
+            this.auth = auth;
+            this.playMillis = playMillis;
+            this.serverMillis = serverMillis;
+        }
+
+        @Override
+        public CognitoAuthService authService(Context context) {
+            return auth;
+        }
+
+        @Override
+        public ApiService apiService(Context context) {
+            return new FakeApiService(context, serverMillis);
+        }
+
+        @Override
+        public BillingManager billingManager(Activity activity) {
+            return new FakeBillingManager(activity, playMillis);
+        }
+
+        @Override
+        public StartupPrewarmer startPrewarmer(Context context) {
+            // No network in the harness
+            return null;
+        }
+    }
+
+    /**
+     * Signed in, answering after the set latency
+     */
+    private final class FakeAuthService extends CognitoAuthService {
+        private final long latencyMillis;
+
+        FakeAuthService(long latencyMillis) {
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public void isSignedIn(AuthCallback callback, Context context) {
+            onMainAfter(latencyMillis, () -> callback.onSuccess("User is signed in"));
+        }
+
+        @Override
+        public void primeSession(Context context, Runnable done) {
+            done.run();
+        }
+    }
+
+    /**
+     * Play reports an active subscription after the set latency
+     */
+    private final class FakeBillingManager extends BillingManager {
+        private final long latencyMillis;
+
+        FakeBillingManager(Context context, long latencyMillis) {
+            super(context);
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public void checkSubscriptionStatus(SubscriptionStatusCallback callback) {
+            onMainAfter(latencyMillis, () -> callback.onResult(true));
+        }
+    }
+
+    /**
+     * The server has no record after the set latency, answering off the main thread like the real one
+     */
+    private final class FakeApiService extends ApiService {
+        private final long latencyMillis;
+
+        FakeApiService(Context context, long latencyMillis) {
+            super(context);
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public void checkSubscription(Context context, UserCallback callback) {
+            latency.schedule(() -> callback.onSubscriptionCheckError("No subscription"), latencyMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.majboormajdoor.locationtracker;
+
+import com.majboormajdoor.locationtracker.constants.AppConstants;
+import com.majboormajdoor.locationtracker.logging.AppLog;
+import com.majboormajdoor.locationtracker.metrics.MetricsRegistry;
+import com.majboormajdoor.locationtracker.services.StartupPrewarmer;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.classic.methods.HttpHead;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.ssl.DefaultClientTlsStrategy;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.ssl.SSLContextBuilder;
+import org.apache.hc.core5.ssl.SSLContexts;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.net.ssl.SSLContext;
+
+import static org.junit.Assert.*;
+
+public class StartupPrewarmerTest {
+
+    // Endpoint for the warm versus cold benchmark, a loopback TLS server when unset
+    private static final String PROPERTY_URL = "benchmark.prewarm.url";
+    private static final String PROPERTY_RUNS = "benchmark.prewarm.runs";
+    private static final char[] PASSWORD = "prewarm".toCharArray();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private boolean metricsEnabled;
+
+    @Before
+    public void setUp() {
+        // Steps run on pool threads, keep them away from logcat
+        AppLog.setMinLevel(Integer.MAX_VALUE);
+        metricsEnabled = MetricsRegistry.isEnabled();
+        MetricsRegistry.setEnabled(true);
+        MetricsRegistry.getInstance().reset();
+    }
+
+    @After
+    public void tearDown() {
+        MetricsRegistry.getInstance().reset();
+        MetricsRegistry.setEnabled(metricsEnabled);
+        AppLog.setMinLevel(BuildConfig.DEBUG ? android.util.Log.DEBUG : android.util.Log.INFO);
+    }
+
+    @Test
+    public void testStart_ShouldFinishOnlyOnceEveryStepReported() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch slowStarted = new CountDownLatch(1);
+        StartupPrewarmer prewarmer = StartupPrewarmer.start(Arrays.asList(
+                Runnable::run,
+                done -> {
+                    // Reporting twice still counts once
+                    done.run();
+                    done.run();
+                },
+                done -> {
+                    throw new IllegalStateException("step failed");
+                },
+                done -> {
+                    slowStarted.countDown();
+                    new Thread(() -> {
+                        awaitQuietly(release);
+                        done.run();
+                    }).start();
+                }));
+
+        assertTrue(slowStarted.await(5, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        assertFalse(prewarmer.isDone());
+        assertEquals(0, prewarmTimerCount());
+
+        release.countDown();
+        awaitDone(prewarmer);
+        assertEquals(1, prewarmTimerCount());
+    }
+
+    @Test
+    public void testCancel_ShouldLetRunningStepsSeeItAndStillFinish() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean sawCancel = new AtomicBoolean();
+        StartupPrewarmer[] self = new StartupPrewarmer[1];
+        CountDownLatch published = new CountDownLatch(1);
+        self[0] = StartupPrewarmer.start(Arrays.asList(done -> {
+            started.countDown();
+            awaitQuietly(published);
+            // A step polls for cancellation the way the warm-up request is aborted
+            while (!self[0].isCancelled()) {
+                Thread.yield();
+            }
+            sawCancel.set(true);
+            done.run();
+        }));
+        published.countDown();
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertFalse(self[0].isDone());
+        self[0].cancel();
+
+        awaitDone(self[0]);
+        assertTrue(sawCancel.get());
+        assertTrue(self[0].isCancelled());
+    }
+
+    /**
+     * First request latency on a fresh pooled client, cold against after a HEAD warm-up like
+     * the prewarmer's. On loopback this is the TCP and TLS setup cost alone, point
+     * benchmark.prewarm.url at the real API to include network round trips
+     */
+    @Test
+    public void testBenchmark_FirstRequestWarmVsCold() throws Exception {
+        Benchmarks.assumeEnabled();
+        String url = System.getProperty(PROPERTY_URL);
+        SSLContext ssl = SSLContexts.createSystemDefault();
+        ServerSocket server = null;
+        if (url == null) {
+            KeyStore keyStore = selfSignedKeyStore();
+            ssl = SSLContextBuilder.create()
+                    .loadKeyMaterial(keyStore, PASSWORD)
+                    .loadTrustMaterial(keyStore, null)
+                    .build();
+            server = startLoopbackServer(ssl);
+            url = "https://localhost:" + server.getLocalPort() + "/";
+        }
+        try {
+            int runs = Integer.getInteger(PROPERTY_RUNS, 50);
+            long[] cold = new long[runs];
+            long[] warm = new long[runs];
+            // Class loading and JIT land on neither side
+            for (int i = 0; i < 5; i++) {
+                firstRequestNanos(url, ssl, false);
+                firstRequestNanos(url, ssl, true);
+            }
+            for (int i = 0; i < runs; i++) {
+                cold[i] = firstRequestNanos(url, ssl, false);
+                warm[i] = firstRequestNanos(url, ssl, true);
+            }
+            Arrays.sort(cold);
+            Arrays.sort(warm);
+            Benchmarks.report("First request to %s over %d runs: cold p50 %.2f ms p90 %.2f ms,"
+                            + " warm p50 %.2f ms p90 %.2f ms%n", url, runs,
+                    cold[runs / 2] / 1e6, cold[runs * 9 / 10] / 1e6,
+                    warm[runs / 2] / 1e6, warm[runs * 9 / 10] / 1e6);
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    private static long firstRequestNanos(String url, SSLContext ssl, boolean prewarm) throws IOException {
+        try (CloseableHttpClient client = HttpClients.custom()
+                .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                        .setTlsSocketStrategy(new DefaultClientTlsStrategy(ssl))
+                        .build())
+                .build()) {
+            if (prewarm) {
+                client.execute(new HttpHead(url), response -> response.getCode());
+            }
+            long start = System.nanoTime();
+            client.execute(new HttpGet(url), response -> {
+                EntityUtils.consume(response.getEntity());
+                return response.getCode();
+            });
+            return System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Answers every request on a kept-alive TLS connection with an empty 200, nothing else
+     */
+    private static ServerSocket startLoopbackServer(SSLContext ssl) throws IOException {
+        ServerSocket server = ssl.getServerSocketFactory().createServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    socket.setTcpNoDelay(true);
+                    Thread connection = new Thread(() -> serve(socket));
+                    connection.setDaemon(true);
+                    connection.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return server;
+    }
+
+    private static void serve(Socket socket) {
+        byte[] response = "HTTP/1.1 200 OK\r\nContent-Length: 0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+        try (Socket connection = socket) {
+            InputStream in = connection.getInputStream();
+            OutputStream out = connection.getOutputStream();
+            // Count line-break bytes, four in a row end the request headers
+            int breaks = 0;
+            int b;
+            while ((b = in.read()) != -1) {
+                breaks = b == '\r' || b == '\n' ? breaks + 1 : 0;
+                if (breaks == 4) {
+                    out.write(response);
+                    out.flush();
+                    breaks = 0;
+                }
+            }
+        } catch (IOException e) {
+            // Client went away
+        }
+    }
+
+    private KeyStore selfSignedKeyStore() throws Exception {
+        File file = new File(temporaryFolder.getRoot(), "localhost.p12");
+        java.lang.Process keytool = new ProcessBuilder(
+                new File(System.getProperty("java.home"), "bin/keytool").getPath(),
+                "-genkeypair", "-alias", "localhost", "-keyalg", "EC", "-groupname", "secp256r1",
+                "-dname", "CN=localhost", "-ext", "SAN=dns:localhost,ip:127.0.0.1", "-validity", "1",
+                "-storetype", "PKCS12", "-keystore", file.getPath(),
+                "-storepass", new String(PASSWORD), "-keypass", new String(PASSWORD))
+                .redirectErrorStream(true)
+                .start();
+        keytool.getInputStream().transferTo(OutputStream.nullOutputStream());
+        assertEquals(0, keytool.waitFor());
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream in = new FileInputStream(file)) {
+            keyStore.load(in, PASSWORD);
+        }
+        return keyStore;
+    }
+
+    private static long prewarmTimerCount() {
+        return MetricsRegistry.getInstance().histogram(AppConstants.METRIC_STARTUP_PREWARM).getCount();
+    }
+
+    private static void awaitDone(StartupPrewarmer prewarmer) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!prewarmer.isDone() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(prewarmer.isDone());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.majboormajdoor.locationtracker;
+
+import android.util.Log;
+
+import com.majboormajdoor.locationtracker.constants.AppConstants;
+import com.majboormajdoor.locationtracker.metrics.Counter;
+import com.majboormajdoor.locationtracker.metrics.MetricsRegistry;
+import com.majboormajdoor.locationtracker.workers.UploadCadence;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockedStatic;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class UploadCadenceTest {
+
+    private static final long MINUTE = 60_000L;
+
+    private MockedStatic<Log> logMock;
+    private boolean metricsEnabled;
+
+    private long now;
+    private long armedAt;
+    private final List<Long> ticks = new ArrayList<>();
+    private UploadCadence cadence;
+
+    @Before
+    public void setUp() {
+        logMock = mockStatic(Log.class);
+        metricsEnabled = MetricsRegistry.isEnabled();
+        MetricsRegistry.setEnabled(true);
+        now = 1_000_000L;
+        armedAt = -1;
+        UploadCadence.Timer timer = new UploadCadence.Timer() {
+            @Override
+            public void arm(long triggerAtMillis) {
+                armedAt = triggerAtMillis;
+            }
+
+            @Override
+            public void cancel() {
+                armedAt = -1;
+            }
+        };
+        cadence = new UploadCadence(timer, () -> now, () -> ticks.add(now));
+    }
+
+    @After
+    public void tearDown() {
+        MetricsRegistry.setEnabled(metricsEnabled);
+        logMock.close();
+    }
+
+    @Test
+    public void testOnTimer_ShouldKeepFixedRateDespiteLateness() {
+        long before = cadence.getLateness().getCount();
+        cadence.start(10 * MINUTE, MINUTE);
+        assertEquals(now + MINUTE, armedAt);
+
+        // The first tick runs 5 s late, the next is still due one interval after it was scheduled
+        long firstDue = armedAt;
+        fireAt(firstDue + 5_000);
+        assertEquals(firstDue + 10 * MINUTE, armedAt);
+        fireAt(armedAt);
+
+        assertEquals(2, ticks.size());
+        assertEquals(2, cadence.getLateness().getCount() - before);
+    }
+
+    @Test
+    public void testOnTimer_AfterDoze_ShouldDropMissedTicksInsteadOfBunching() {
+        Counter missed = MetricsRegistry.getInstance().counter(AppConstants.METRIC_UPLOAD_TICK_MISSED);
+        long missedBefore = missed.get();
+        cadence.start(10 * MINUTE, 0);
+        long due = armedAt;
+
+        // Dozing for 35 minutes: one late tick, three intervals lost, then back to the interval
+        fireAt(due + 35 * MINUTE);
+
+        assertEquals(1, ticks.size());
+        assertEquals(3, missed.get() - missedBefore);
+        assertEquals(now + 10 * MINUTE, armedAt);
+    }
+
+    @Test
+    public void testSetInterval_ShouldRearmFromLastTick() {
+        cadence.start(30 * MINUTE, 0);
+        fireAt(armedAt);
+        long lastTick = now;
+
+        now += 5 * MINUTE;
+        cadence.setInterval(10 * MINUTE);
+        assertEquals(lastTick + 10 * MINUTE, armedAt);
+
+        // Shrinking below the time already passed fires right away
+        now += 10 * MINUTE;
+        cadence.setInterval(MINUTE);
+        assertEquals(now, armedAt);
+    }
+
+    @Test
+    public void testOnTimer_AfterStopOrEarly_ShouldNotRunTask() {
+        cadence.start(10 * MINUTE, MINUTE);
+        long due = armedAt;
+
+        // A stale wake-up before the due time only re-arms
+        fireAt(due - 1_000);
+        assertEquals(due, armedAt);
+
+        cadence.stop();
+        fireAt(due);
+
+        assertTrue(ticks.isEmpty());
+        assertFalse(cadence.isRunning());
+        assertEquals(-1, armedAt);
+    }
+
+    private void fireAt(long millis) {
+        now = millis;
+        cadence.onTimer();
+    }
+}